@@ -0,0 +1,60 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * BoundedCache
+ *
+ * Per-JVM cache of values resolved from a string argument, such as compiled
+ * masks, patterns or time zones. It keeps only the most recently used entries,
+ * so that an argument taken from a column can not grow it without bound.
+ * Lookups are synchronized, which is cheap as the UDFs look up only when the
+ * argument differs from the previous row.
+ */
+final class BoundedCache<V> {
+
+	private final Map<String, V> map;
+
+	BoundedCache(final int capacity) {
+		map = new LinkedHashMap<String, V>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	synchronized V get(String key) {
+		return map.get(key);
+	}
+
+	synchronized void put(String key, V value) {
+		map.put(key, value);
+	}
+
+	synchronized int size() {
+		return map.size();
+	}
+}
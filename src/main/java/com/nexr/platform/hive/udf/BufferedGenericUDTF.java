@@ -0,0 +1,210 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nexr.platform.hive.udf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils.ObjectInspectorCopyOption;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.StructField;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorUtils;
+
+/**
+ * BufferedGenericUDTF
+ *
+ * A table function over sorted partitions whose result needs every row of the
+ * partition, such as ratio_to_report. It is called in the select list as
+ * <code>function(partition_key, argument, struct(col1, col2, ...)[, ...])
+ * AS (col1, col2, ..., result)</code>: the columns of each row are copied
+ * into a buffer, and when the next partition starts or the input ends the
+ * buffered rows are emitted with the results computed by the function. The
+ * buffer is limited like the state of the other analytic functions.
+ * <p>
+ * A function that needs only the row count of the partition, such as ntile,
+ * can take it as an optional argument. A partition whose first row has a
+ * count is not buffered: each row is emitted when the next row that is not
+ * its peer comes, so only the peers of the current row are kept. The
+ * partitions without a count, NULL when the counts are outer joined, are
+ * buffered.
+ * <p>
+ * In a LATERAL VIEW, Hive joins each emitted row with the input row being
+ * processed when it is emitted, the first row of the next partition or the
+ * last row of the input, so only the columns of the struct are emitted right.
+ */
+public abstract class BufferedGenericUDTF extends MeteredGenericUDTF {
+	static final int COLUMNS = 2;
+
+	protected final StateSize state = StateSize.of(getClass(), metrics);
+
+	private PartitionKey key;
+	private StructObjectInspector columnsOI;
+	private ObjectInspector columnsCopyOI;
+	private final List<Object> rows = new ArrayList<Object>();
+	private long bufferBytes;
+	private Object[] row;
+	private int width;
+	private PrimitiveObjectInspector rowsOI;
+	private long count;
+	private long emitted;
+
+	@Override
+	public final StructObjectInspector initialize(ObjectInspector[] args) throws UDFArgumentException {
+		if (args.length <= COLUMNS) {
+			throw new UDFArgumentException(usage());
+		}
+		if (args[COLUMNS].getCategory() != ObjectInspector.Category.STRUCT) {
+			throw new UDFArgumentTypeException(COLUMNS, "A struct of the columns to emit is expected but "
+					+ args[COLUMNS].getTypeName() + " is passed.");
+		}
+		key = new PartitionKey(args, 0, 1);
+		int rowsArgument = rowsArgument();
+		if (rowsArgument >= 0 && rowsArgument < args.length) {
+			rowsOI = GenericUDFRank.numberArgument(args, rowsArgument);
+		}
+		columnsOI = (StructObjectInspector) args[COLUMNS];
+		columnsCopyOI = ObjectInspectorUtils.getStandardObjectInspector(columnsOI, ObjectInspectorCopyOption.WRITABLE);
+
+		List<? extends StructField> fields = ((StructObjectInspector) columnsCopyOI).getAllStructFieldRefs();
+		List<String> names = new ArrayList<String>();
+		List<ObjectInspector> inspectors = new ArrayList<ObjectInspector>();
+		for (StructField field : fields) {
+			names.add(field.getFieldName());
+			inspectors.add(field.getFieldObjectInspector());
+		}
+		width = fields.size();
+		initializeResults(args, names, inspectors);
+		row = new Object[names.size()];
+		return ObjectInspectorFactory.getStandardStructObjectInspector(names, inspectors);
+	}
+
+	/** @return the message for a wrong number of arguments. */
+	protected abstract String usage();
+
+	/**
+	 * Checks the arguments other than the partition key and the struct, and
+	 * appends the result columns.
+	 */
+	protected abstract void initializeResults(ObjectInspector[] args, List<String> names,
+			List<ObjectInspector> inspectors) throws UDFArgumentException;
+
+	/**
+	 * @return the index of the optional row count argument, or -1 if the
+	 *         partition is always buffered.
+	 */
+	protected int rowsArgument() {
+		return -1;
+	}
+
+	/**
+	 * Called for each row before {@link #add}.
+	 *
+	 * @return true if the row is a peer of the previous row of its partition,
+	 *         which is then kept until the row whose peer it is gets emitted.
+	 */
+	protected boolean peer(Object[] args) {
+		return false;
+	}
+
+	/**
+	 * Takes the arguments of the row buffered at the index.
+	 *
+	 * @return the bytes kept for the row besides its columns.
+	 */
+	protected abstract long add(int index, Object[] args) throws HiveException;
+
+	/**
+	 * Sets the result columns of a buffered row, from <code>result[offset]</code> on.
+	 *
+	 * @param index the index of the row in the buffer.
+	 * @param row the number of the row in its partition, from 0.
+	 * @param count the row count of the partition.
+	 */
+	protected abstract void result(int index, long row, long count, Object[] result, int offset)
+			throws HiveException;
+
+	/** Forgets the partition that was emitted. */
+	protected abstract void reset();
+
+	/** @return the number of buffered rows. */
+	protected final int buffered() {
+		return rows.size();
+	}
+
+	@Override
+	protected final void processRow(Object[] args) throws HiveException {
+		if (key.isNew(args)) {
+			flush();
+			reset();
+			emitted = 0;
+			count = partitionRows(args);
+		}
+		if (!peer(args) && count >= 0) {
+			flush();
+		}
+		if (count >= 0 && emitted + rows.size() == count) {
+			throw new HiveException(this + " found more rows than the row count " + count + " of their partition."
+					+ " Check the join on the partition columns and the DISTRIBUTE BY clause.");
+		}
+		Object copy = ObjectInspectorUtils.copyToStandardObject(args[COLUMNS], columnsOI,
+				ObjectInspectorCopyOption.WRITABLE);
+		int index = rows.size();
+		rows.add(copy);
+		bufferBytes += StateSize.estimate(copy, columnsCopyOI) + add(index, args);
+		state.set(key.bytes() + bufferBytes);
+	}
+
+	/** @return the row count given with the first row of a partition, or -1. */
+	private long partitionRows(Object[] args) {
+		int rowsArgument = rowsArgument();
+		if (rowsOI == null || args[rowsArgument] == null) {
+			return -1;
+		}
+		return PrimitiveObjectInspectorUtils.getLong(args[rowsArgument], rowsOI);
+	}
+
+	/** Emits the buffered rows, of a partition that ended or before the current row. */
+	private void flush() throws HiveException {
+		int buffered = rows.size();
+		long partitionRows = count >= 0 ? count : emitted + buffered;
+		for (int i = 0; i < buffered; i++) {
+			List<?> fields = (List<?>) rows.get(i);
+			for (int j = 0; j < width; j++) {
+				row[j] = fields.get(j);
+			}
+			result(i, emitted + i, partitionRows, row, width);
+			forward(row);
+		}
+		emitted += buffered;
+		rows.clear();
+		bufferBytes = 0;
+	}
+
+	@Override
+	protected final void closeRows() throws HiveException {
+		flush();
+	}
+}
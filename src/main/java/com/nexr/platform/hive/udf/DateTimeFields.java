@@ -0,0 +1,547 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nexr.platform.hive.udf;
+
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Date;
+
+import org.apache.hadoop.hive.serde2.io.TimestampWritable;
+import org.apache.hadoop.io.Text;
+
+/**
+ * DateTimeFields
+ *
+ * Mutable year to second fields of a 'yyyy-MM-dd HH:mm:ss' date, read from and
+ * written to UTF-8 bytes directly. Parsing follows a non-lenient
+ * SimpleDateFormat: each field takes one or more digits after optional blanks,
+ * every field is range checked and trailing text after the seconds is ignored.
+ * <p>
+ * Date arithmetic goes through the epoch day, the number of days since
+ * 1970-01-01, and the epoch second of the wall clock time, so it needs no
+ * Calendar or time zone. Dates follow java.util.GregorianCalendar, and so
+ * SimpleDateFormat: the Julian calendar before 15 October 1582, whose leap
+ * years are every fourth year, and the days from 5 to 14 October 1582 do not
+ * exist.
+ * <p>
+ * Instants, bigint epoch seconds and Hive timestamps, are converted to and from
+ * the wall clock time of {@link #zone}, the JVM default time zone unless set,
+ * through its precomputed {@link ZoneOffsets}.
+ */
+final class DateTimeFields {
+
+	private static final int[] DAYS_IN_MONTH = { 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
+
+	/** First year that java.util.GregorianCalendar reads as Gregorian throughout. */
+	private static final int GREGORIAN_YEAR = 1583;
+
+	/** Epoch day of 1582-10-15, the first day of the Gregorian calendar. */
+	private static final long GREGORIAN_EPOCH_DAY = -141427;
+
+	/** Julian day number of 1970-01-01. */
+	private static final long EPOCH_JULIAN_DAY = 2440588;
+
+	/** Length of a formatted value with a four digit year. */
+	static final int STANDARD_LENGTH = 19;
+
+	int year;
+	int month;
+	int day;
+	int hour;
+	int minute;
+	int second;
+
+	ZoneOffsets zone = ZoneOffsets.DEFAULT;
+
+	private final byte[] buffer = new byte[STANDARD_LENGTH + 6];
+	private final Timestamp timestamp = new Timestamp(0);
+
+	static boolean isLeapYear(int year) {
+		return (year & 3) == 0 && (year < GREGORIAN_YEAR || year % 100 != 0 || year % 400 == 0);
+	}
+
+	/** @return true for the days skipped by the switch to the Gregorian calendar. */
+	private static boolean isSkipped(int year, int month, int day) {
+		return year == GREGORIAN_YEAR - 1 && month == 10 && day > 4 && day < 15;
+	}
+
+	private boolean isJulian() {
+		return year < GREGORIAN_YEAR - 1 || year == GREGORIAN_YEAR - 1 && (month < 10 || month == 10 && day < 15);
+	}
+
+	/** @return the number of days of the month, 1 based. */
+	static int daysInMonth(int year, int month) {
+		if (month == 2 && isLeapYear(year)) {
+			return 29;
+		}
+		return DAYS_IN_MONTH[month - 1];
+	}
+
+	/**
+	 * Parses a 'yyyy-MM-dd HH:mm:ss' value.
+	 *
+	 * @return false if the text does not match the pattern or a field is out of range.
+	 */
+	boolean parse(byte[] bytes, int start, int length) {
+		int end = start + length;
+		pos = start;
+		int y = number(bytes, end);
+		int mo = separator(bytes, end, '-') ? number(bytes, end) : -1;
+		int d = separator(bytes, end, '-') ? number(bytes, end) : -1;
+		int h = separator(bytes, end, ' ') ? number(bytes, end) : -1;
+		int mi = separator(bytes, end, ':') ? number(bytes, end) : -1;
+		int s = separator(bytes, end, ':') ? number(bytes, end) : -1;
+		return set(y, mo, d, h, mi, s);
+	}
+
+	/**
+	 * Parses a 'yyyy-MM-dd HH:mm:ss' value that must be a wall clock time of
+	 * {@link #zone}, as a non lenient SimpleDateFormat reads it.
+	 *
+	 * @return false if the text does not match the pattern, a field is out of
+	 *         range or the time falls in a daylight saving gap.
+	 */
+	boolean parseExisting(byte[] bytes, int start, int length) {
+		return parse(bytes, start, length) && exists();
+	}
+
+	/**
+	 * Parses a 'yyyy-MM-dd' value, the time is midnight.
+	 *
+	 * @return false if the text does not match the pattern or a field is out of range.
+	 */
+	boolean parseDate(byte[] bytes, int start, int length) {
+		int end = start + length;
+		pos = start;
+		int y = number(bytes, end);
+		int mo = separator(bytes, end, '-') ? number(bytes, end) : -1;
+		int d = separator(bytes, end, '-') ? number(bytes, end) : -1;
+		return set(y, mo, d, 0, 0, 0);
+	}
+
+	/**
+	 * Parses a value of the pattern as a non lenient SimpleDateFormat does:
+	 * fields missing from the pattern are those of 1970-01-01 00:00:00, a field
+	 * followed by another field takes as many digits as it has letters, and
+	 * trailing text is ignored.
+	 *
+	 * @return false if the text does not match the pattern, a field is out of
+	 *         range, the year is past 9999 or the time does not exist. The
+	 *         text may still be read by a SimpleDateFormat then, for example a
+	 *         field with a sign or non ASCII digits.
+	 */
+	boolean parse(Pattern pattern, byte[] bytes, int start, int length) {
+		int end = start + length;
+		pos = start;
+		int y = 1970;
+		int mo = 1;
+		int d = 1;
+		int h = 0;
+		int mi = 0;
+		int s = 0;
+		char[] letters = pattern.letters;
+		int[] counts = pattern.counts;
+		for (int i = 0; i < letters.length; i++) {
+			if (letters[i] == 0) {
+				if (!separator(bytes, end, (char) counts[i])) {
+					return false;
+				}
+				continue;
+			}
+			int value = i + 1 < letters.length && letters[i + 1] != 0
+					? number(bytes, end, counts[i]) : number(bytes, end);
+			if (value < 0 || pos < end && bytes[pos] == 'E') {
+				return false;
+			}
+			switch (letters[i]) {
+			case 'y':
+				y = value;
+				break;
+			case 'M':
+				mo = value;
+				break;
+			case 'd':
+				d = value;
+				break;
+			case 'H':
+				h = value;
+				break;
+			case 'm':
+				mi = value;
+				break;
+			default:
+				s = value;
+				break;
+			}
+		}
+		return y <= 9999 && set(y, mo, d, h, mi, s) && exists();
+	}
+
+	private int pos;
+
+	private boolean separator(byte[] bytes, int end, char c) {
+		if (pos < end && bytes[pos] == c) {
+			pos++;
+			return true;
+		}
+		return false;
+	}
+
+	/** @return the unsigned number at pos, or -1 if there is none or it is too long. */
+	private int number(byte[] bytes, int end) {
+		while (pos < end && (bytes[pos] == ' ' || bytes[pos] == '\t')) {
+			pos++;
+		}
+		int start = pos;
+		int value = 0;
+		while (pos < end && bytes[pos] >= '0' && bytes[pos] <= '9') {
+			if (value >= 100000000) {
+				return -1;
+			}
+			value = value * 10 + (bytes[pos++] - '0');
+		}
+		return pos == start ? -1 : value;
+	}
+
+	/**
+	 * @return the unsigned number of exactly width digits at pos, or -1 if
+	 *         there is none. Blanks are not skipped: SimpleDateFormat counts
+	 *         them in the width.
+	 */
+	private int number(byte[] bytes, int end, int width) {
+		if (end - pos < width) {
+			return -1;
+		}
+		int value = 0;
+		for (int i = 0; i < width; i++, pos++) {
+			if (bytes[pos] < '0' || bytes[pos] > '9') {
+				return -1;
+			}
+			value = value * 10 + (bytes[pos] - '0');
+		}
+		return value;
+	}
+
+	/**
+	 * Sets all fields after checking their ranges.
+	 *
+	 * @return false, leaving the fields unchanged, if a value is out of range.
+	 */
+	boolean set(int year, int month, int day, int hour, int minute, int second) {
+		if (year < 1 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+				|| isSkipped(year, month, day)
+				|| hour > 23 || minute > 59 || second > 59 || hour < 0 || minute < 0 || second < 0) {
+			return false;
+		}
+		this.year = year;
+		this.month = month;
+		this.day = day;
+		this.hour = hour;
+		this.minute = minute;
+		this.second = second;
+		return true;
+	}
+
+	/** Sets the fields from the wall clock time of a calendar. */
+	boolean set(Calendar calendar) {
+		if (calendar.get(Calendar.ERA) != java.util.GregorianCalendar.AD) {
+			return false;
+		}
+		return set(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1,
+				calendar.get(Calendar.DAY_OF_MONTH), calendar.get(Calendar.HOUR_OF_DAY),
+				calendar.get(Calendar.MINUTE), calendar.get(Calendar.SECOND));
+	}
+
+	boolean isLastDayOfMonth() {
+		return day == daysInMonth(year, month);
+	}
+
+	/** @return the day of the week, {@link Calendar#SUNDAY} to {@link Calendar#SATURDAY}. */
+	int dayOfWeek() {
+		// 1970-01-01 was a Thursday
+		return (int) floorMod(toEpochDay() + 4, 7) + Calendar.SUNDAY;
+	}
+
+	long toEpochDay() {
+		if (isJulian()) {
+			long a = (14 - month) / 12;
+			long y = year + 4800 - a;
+			long m = month + 12 * a - 3;
+			return day + (153 * m + 2) / 5 + 365 * y + y / 4 - 32083 - EPOCH_JULIAN_DAY;
+		}
+		long y = month <= 2 ? year - 1 : year;
+		long era = floorDiv(y, 400);
+		long yearOfEra = y - era * 400;
+		long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	/**
+	 * Sets the date, keeping the time of day.
+	 *
+	 * @return false, leaving the fields unchanged, if the year falls outside 1 to 999999.
+	 */
+	boolean setEpochDay(long epochDay) {
+		if (epochDay < GREGORIAN_EPOCH_DAY) {
+			long c = epochDay + EPOCH_JULIAN_DAY + 32082;
+			long d = (4 * c + 3) / 1461;
+			long e = c - 1461 * d / 4;
+			long m = (5 * e + 2) / 153;
+			long y = d - 4800 + m / 10;
+			if (c < 0 || y < 1) {
+				return false;
+			}
+			year = (int) y;
+			month = (int) (m + 3 - 12 * (m / 10));
+			day = (int) (e - (153 * m + 2) / 5 + 1);
+			return true;
+		}
+		long z = epochDay + 719468;
+		long era = floorDiv(z, 146097);
+		long dayOfEra = z - era * 146097;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		long mp = (5 * dayOfYear + 2) / 153;
+		int d = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+		int m = (int) (mp < 10 ? mp + 3 : mp - 9);
+		long y = yearOfEra + era * 400 + (m <= 2 ? 1 : 0);
+		if (y < 1 || y > 999999) {
+			return false;
+		}
+		year = (int) y;
+		month = m;
+		day = d;
+		return true;
+	}
+
+	/** @return the seconds since 1970-01-01 00:00:00 of the wall clock time. */
+	long toEpochSecond() {
+		return toEpochDay() * 86400 + hour * 3600 + minute * 60 + second;
+	}
+
+	boolean setEpochSecond(long epochSecond) {
+		long epochDay = floorDiv(epochSecond, 86400);
+		int secondOfDay = (int) (epochSecond - epochDay * 86400);
+		if (!setEpochDay(epochDay)) {
+			return false;
+		}
+		hour = secondOfDay / 3600;
+		minute = secondOfDay / 60 % 60;
+		second = secondOfDay % 60;
+		return true;
+	}
+
+	/** @return false if the wall clock time falls in a daylight saving gap of {@link #zone}. */
+	boolean exists() {
+		return zone.exists(toEpochSecond());
+	}
+
+	/** Sets the fields to the wall clock time of the instant in {@link #zone}. */
+	boolean setInstant(long epochSecond) {
+		return setEpochSecond(zone.toLocal(epochSecond));
+	}
+
+	boolean set(TimestampWritable timestamp) {
+		return setInstant(timestamp.getSeconds());
+	}
+
+	/**
+	 * @return the instant of the wall clock time in {@link #zone}. A time that
+	 *         falls in a daylight saving gap is moved forward, as a lenient
+	 *         Calendar does.
+	 */
+	long toInstant() {
+		return zone.toInstant(toEpochSecond());
+	}
+
+	/**
+	 * Sets the date to the instant of the wall clock time, as a non lenient
+	 * SimpleDateFormat parses it, so that a SimpleDateFormat formats the date
+	 * back to the same fields. Years before 1583 are read by the calendar,
+	 * which must be non lenient and of the time zone of {@link #zone}, because
+	 * it follows the Julian calendar before 15 October 1582.
+	 *
+	 * @return false if the time does not exist: a day skipped by the switch to
+	 *         the Gregorian calendar, or a time in a daylight saving gap.
+	 */
+	boolean toDate(Date date, Calendar calendar) {
+		if (year < GREGORIAN_YEAR) {
+			calendar.clear();
+			calendar.set(year, month - 1, day, hour, minute, second);
+			try {
+				date.setTime(calendar.getTimeInMillis());
+			} catch (IllegalArgumentException e) {
+				return false;
+			}
+			return true;
+		}
+		long localSecond = toEpochSecond();
+		if (!zone.exists(localSecond)) {
+			return false;
+		}
+		date.setTime(zone.toInstant(localSecond) * 1000);
+		return true;
+	}
+
+	/** Writes the instant of the fields, with the given nanoseconds, into the writable. */
+	void write(TimestampWritable writable, int nanos) {
+		timestamp.setTime(toInstant() * 1000);
+		timestamp.setNanos(nanos);
+		writable.set(timestamp);
+	}
+
+	/** Clears the time of day. */
+	void truncateTime() {
+		hour = 0;
+		minute = 0;
+		second = 0;
+	}
+
+	boolean addDays(long days) {
+		return days == 0 || setEpochDay(toEpochDay() + days);
+	}
+
+	/**
+	 * Adds months as Oracle ADD_MONTHS does: the last day of a month maps to the
+	 * last day of the resulting month, and a day past the end of a shorter month
+	 * is moved back to its last day. A day skipped in October 1582 is moved
+	 * forward over the gap, as by a lenient Calendar.
+	 */
+	boolean addMonths(int months) {
+		long total = year * 12L + (month - 1) + months;
+		long y = floorDiv(total, 12);
+		if (y < 1 || y > 999999) {
+			return false;
+		}
+		boolean lastDay = isLastDayOfMonth();
+		year = (int) y;
+		month = (int) (total - y * 12) + 1;
+		int days = daysInMonth(year, month);
+		if (lastDay || day > days) {
+			day = days;
+		}
+		if (isSkipped(year, month, day)) {
+			day += 10;
+		}
+		return true;
+	}
+
+	static long floorDiv(long x, long y) {
+		long q = x / y;
+		return (x % y != 0 && (x ^ y) < 0) ? q - 1 : q;
+	}
+
+	static long floorMod(long x, long y) {
+		return x - floorDiv(x, y) * y;
+	}
+
+	/** Writes the fields as 'yyyy-MM-dd HH:mm:ss' into the text. */
+	void write(Text text) {
+		text.set(buffer, 0, write(buffer, 0));
+	}
+
+	/**
+	 * Writes the fields as 'yyyy-MM-dd HH:mm:ss'. The buffer needs
+	 * {@link #STANDARD_LENGTH} bytes, more for years past 9999.
+	 *
+	 * @return the offset after the last written byte.
+	 */
+	int write(byte[] buffer, int offset) {
+		int pos = offset;
+		if (year > 9999) {
+			int digits = 0;
+			for (int y = year; y > 0; y /= 10) {
+				digits++;
+			}
+			for (int i = digits - 1, y = year; i >= 0; i--, y /= 10) {
+				buffer[pos + i] = (byte) ('0' + y % 10);
+			}
+			pos += digits;
+		} else {
+			pos = write2(buffer, write2(buffer, pos, year / 100), year % 100);
+		}
+		buffer[pos++] = '-';
+		pos = write2(buffer, pos, month);
+		buffer[pos++] = '-';
+		pos = write2(buffer, pos, day);
+		buffer[pos++] = ' ';
+		pos = write2(buffer, pos, hour);
+		buffer[pos++] = ':';
+		pos = write2(buffer, pos, minute);
+		buffer[pos++] = ':';
+		return write2(buffer, pos, second);
+	}
+
+	private static int write2(byte[] buffer, int pos, int value) {
+		buffer[pos] = (byte) ('0' + value / 10);
+		buffer[pos + 1] = (byte) ('0' + value % 10);
+		return pos + 2;
+	}
+
+	/**
+	 * A SimpleDateFormat pattern that {@link DateTimeFields#parse(Pattern, byte[], int, int)}
+	 * reads: the numeric fields yyy (three or more letters), M, MM, d, H, m and
+	 * s, and unquoted ASCII literals.
+	 */
+	static final class Pattern {
+		/** Per item: the field letter, or 0 for a literal. */
+		private final char[] letters;
+		/** Per item: the number of letters of a field, or the literal. */
+		private final int[] counts;
+
+		private Pattern(char[] letters, int[] counts) {
+			this.letters = letters;
+			this.counts = counts;
+		}
+
+		/** @return the compiled pattern, or null if only SimpleDateFormat reads it. */
+		static Pattern compile(String pattern) {
+			char[] letters = new char[pattern.length()];
+			int[] counts = new int[pattern.length()];
+			int items = 0;
+			for (int i = 0; i < pattern.length();) {
+				char c = pattern.charAt(i);
+				int count = 1;
+				while (i + count < pattern.length() && pattern.charAt(i + count) == c) {
+					count++;
+				}
+				if (c == 'y' && count >= 3 || c == 'M' && count <= 2 || c == 'd' || c == 'H' || c == 'm'
+						|| c == 's') {
+					if (count > 8) {
+						return null;
+					}
+					letters[items] = c;
+					counts[items++] = count;
+					i += count;
+				} else if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '\'' || c >= 0x80) {
+					return null;
+				} else {
+					counts[items++] = c;
+					i++;
+				}
+			}
+			char[] exactLetters = new char[items];
+			int[] exactCounts = new int[items];
+			System.arraycopy(letters, 0, exactLetters, 0, items);
+			System.arraycopy(counts, 0, exactCounts, 0, items);
+			return new Pattern(exactLetters, exactCounts);
+		}
+	}
+}
@@ -0,0 +1,457 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nexr.platform.hive.udf;
+
+import java.math.BigInteger;
+
+import org.apache.hadoop.hive.serde2.ByteStream;
+
+/**
+ * DecimalDigits
+ *
+ * Mutable decimal representation of a number: the value is
+ * <code>0.d[0]d[1]...d[count-1] * 10^point</code>. A long is converted exactly,
+ * a double or a float is converted to the shortest digit string that reads back
+ * to the same value, using the Ryu algorithm (Ulf Adams, PLDI 2018).
+ * <p>
+ * An instance is meant to be reused for every row, so nothing is allocated after
+ * construction.
+ */
+final class DecimalDigits {
+
+	private static final int DOUBLE_MANTISSA_BITS = 52;
+	private static final int DOUBLE_EXPONENT_BITS = 11;
+	private static final int DOUBLE_BIAS = 1023;
+	private static final int FLOAT_MANTISSA_BITS = 23;
+	private static final int FLOAT_EXPONENT_BITS = 8;
+	private static final int FLOAT_BIAS = 127;
+
+	private static final int POW5_INV_BITCOUNT = 125;
+	private static final int POW5_BITCOUNT = 125;
+	private static final int POW5_INV_TABLE_SIZE = 342;
+	private static final int POW5_TABLE_SIZE = 326;
+
+	// 125 bit approximations of 5^i and 2^k / 5^i, split in two 64 bit words
+	private static final long[] POW5_INV_SPLIT_LO = new long[POW5_INV_TABLE_SIZE];
+	private static final long[] POW5_INV_SPLIT_HI = new long[POW5_INV_TABLE_SIZE];
+	private static final long[] POW5_SPLIT_LO = new long[POW5_TABLE_SIZE];
+	private static final long[] POW5_SPLIT_HI = new long[POW5_TABLE_SIZE];
+
+	static {
+		BigInteger mask64 = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+		for (int i = 0; i < Math.max(POW5_INV_TABLE_SIZE, POW5_TABLE_SIZE); i++) {
+			BigInteger pow = BigInteger.valueOf(5).pow(i);
+			int pow5len = pow.bitLength();
+			if (i < POW5_TABLE_SIZE) {
+				BigInteger split = pow5len > POW5_BITCOUNT ? pow.shiftRight(pow5len - POW5_BITCOUNT) : pow
+						.shiftLeft(POW5_BITCOUNT - pow5len);
+				POW5_SPLIT_LO[i] = split.and(mask64).longValue();
+				POW5_SPLIT_HI[i] = split.shiftRight(64).longValue();
+			}
+			if (i < POW5_INV_TABLE_SIZE) {
+				BigInteger inv = BigInteger.ONE.shiftLeft(pow5len - 1 + POW5_INV_BITCOUNT).divide(pow)
+						.add(BigInteger.ONE);
+				POW5_INV_SPLIT_LO[i] = inv.and(mask64).longValue();
+				POW5_INV_SPLIT_HI[i] = inv.shiftRight(64).longValue();
+			}
+		}
+	}
+
+	final byte[] digits = new byte[20];
+	int count;
+	int point;
+	boolean negative;
+	boolean nan;
+	boolean infinite;
+
+	/** Sets an exact integer value. */
+	void set(long value) {
+		reset();
+		negative = value < 0;
+		if (value == 0) {
+			return;
+		}
+		// work on the negative value so that Long.MIN_VALUE is handled
+		long v = negative ? value : -value;
+		int n = 0;
+		byte[] reversed = digits;
+		while (v != 0) {
+			long q = v / 10;
+			reversed[n++] = (byte) (q * 10 - v);
+			v = q;
+		}
+		for (int i = 0, j = n - 1; i < j; i++, j--) {
+			byte t = reversed[i];
+			reversed[i] = reversed[j];
+			reversed[j] = t;
+		}
+		count = n;
+		point = n;
+		stripTrailingZeros();
+	}
+
+	/** Sets the shortest decimal that reads back to the given double. */
+	void set(double value) {
+		reset();
+		long bits = Double.doubleToRawLongBits(value);
+		negative = bits < 0;
+		long ieeeMantissa = bits & ((1L << DOUBLE_MANTISSA_BITS) - 1);
+		int ieeeExponent = (int) ((bits >>> DOUBLE_MANTISSA_BITS) & ((1 << DOUBLE_EXPONENT_BITS) - 1));
+		if (ieeeExponent == (1 << DOUBLE_EXPONENT_BITS) - 1) {
+			nan = ieeeMantissa != 0;
+			infinite = !nan;
+			return;
+		}
+		if (ieeeExponent == 0 && ieeeMantissa == 0) {
+			return;
+		}
+		int e2;
+		long m2;
+		if (ieeeExponent == 0) {
+			e2 = 1 - DOUBLE_BIAS - DOUBLE_MANTISSA_BITS - 2;
+			m2 = ieeeMantissa;
+		} else {
+			e2 = ieeeExponent - DOUBLE_BIAS - DOUBLE_MANTISSA_BITS - 2;
+			m2 = (1L << DOUBLE_MANTISSA_BITS) | ieeeMantissa;
+		}
+		shortest(m2, e2, ieeeMantissa != 0 || ieeeExponent <= 1);
+	}
+
+	/** Sets the shortest decimal that reads back to the given float. */
+	void set(float value) {
+		reset();
+		int bits = Float.floatToRawIntBits(value);
+		negative = bits < 0;
+		int ieeeMantissa = bits & ((1 << FLOAT_MANTISSA_BITS) - 1);
+		int ieeeExponent = (bits >>> FLOAT_MANTISSA_BITS) & ((1 << FLOAT_EXPONENT_BITS) - 1);
+		if (ieeeExponent == (1 << FLOAT_EXPONENT_BITS) - 1) {
+			nan = ieeeMantissa != 0;
+			infinite = !nan;
+			return;
+		}
+		if (ieeeExponent == 0 && ieeeMantissa == 0) {
+			return;
+		}
+		int e2;
+		long m2;
+		if (ieeeExponent == 0) {
+			e2 = 1 - FLOAT_BIAS - FLOAT_MANTISSA_BITS - 2;
+			m2 = ieeeMantissa;
+		} else {
+			e2 = ieeeExponent - FLOAT_BIAS - FLOAT_MANTISSA_BITS - 2;
+			m2 = (1L << FLOAT_MANTISSA_BITS) | ieeeMantissa;
+		}
+		shortest(m2, e2, ieeeMantissa != 0 || ieeeExponent <= 1);
+	}
+
+	boolean isZero() {
+		return count == 0 && !nan && !infinite;
+	}
+
+	/**
+	 * Rounds half away from zero so that at most <code>fraction</code> digits
+	 * are left after the decimal point.
+	 */
+	void roundFraction(int fraction) {
+		roundAt(point + fraction);
+	}
+
+	/** Rounds half away from zero to at most <code>significant</code> digits. */
+	void roundSignificant(int significant) {
+		roundAt(significant);
+	}
+
+	/**
+	 * Writes the value the way Double.toString and Float.toString do: plain
+	 * notation when 10^-3 &lt;= |value| &lt; 10^7, computerized scientific
+	 * notation otherwise, and always at least one digit after the point.
+	 */
+	void writeJavaString(ByteStream.Output out) {
+		if (nan) {
+			writeAscii(out, "NaN");
+			return;
+		}
+		if (negative) {
+			out.write('-');
+		}
+		if (infinite) {
+			writeAscii(out, "Infinity");
+			return;
+		}
+		if (count == 0) {
+			writeAscii(out, "0.0");
+			return;
+		}
+		int exponent = point - 1;
+		if (exponent >= -3 && exponent < 7) {
+			if (point <= 0) {
+				out.write('0');
+				out.write('.');
+				for (int i = point; i < 0; i++) {
+					out.write('0');
+				}
+				writeDigits(out, 0, count);
+			} else {
+				for (int i = 0; i < point; i++) {
+					out.write(digitAt(i));
+				}
+				out.write('.');
+				if (count > point) {
+					writeDigits(out, point, count);
+				} else {
+					out.write('0');
+				}
+			}
+		} else {
+			out.write('0' + digits[0]);
+			out.write('.');
+			if (count > 1) {
+				writeDigits(out, 1, count);
+			} else {
+				out.write('0');
+			}
+			out.write('E');
+			writeInt(out, exponent);
+		}
+	}
+
+	/** @return the ASCII digit at index i, or '0' past the last digit. */
+	int digitAt(int i) {
+		return i >= 0 && i < count ? '0' + digits[i] : '0';
+	}
+
+	static void writeInt(ByteStream.Output out, int value) {
+		if (value < 0) {
+			out.write('-');
+			value = -value;
+		}
+		if (value >= 10) {
+			writeInt(out, value / 10);
+		}
+		out.write('0' + value % 10);
+	}
+
+	static void writeAscii(ByteStream.Output out, String s) {
+		for (int i = 0; i < s.length(); i++) {
+			out.write(s.charAt(i));
+		}
+	}
+
+	private void writeDigits(ByteStream.Output out, int from, int to) {
+		for (int i = from; i < to; i++) {
+			out.write('0' + digits[i]);
+		}
+	}
+
+	private void reset() {
+		count = 0;
+		point = 0;
+		negative = false;
+		nan = false;
+		infinite = false;
+	}
+
+	private void roundAt(int keep) {
+		if (keep >= count) {
+			return;
+		}
+		if (keep < 0) {
+			count = 0;
+			return;
+		}
+		boolean roundUp = digits[keep] >= 5;
+		count = keep;
+		if (roundUp) {
+			int i = keep - 1;
+			while (i >= 0 && digits[i] == 9) {
+				i--;
+			}
+			if (i < 0) {
+				digits[0] = 1;
+				count = 1;
+				point++;
+				return;
+			}
+			digits[i]++;
+			count = i + 1;
+		}
+		stripTrailingZeros();
+	}
+
+	private void stripTrailingZeros() {
+		while (count > 0 && digits[count - 1] == 0) {
+			count--;
+		}
+	}
+
+	private void setDigits(long output, int exponent) {
+		int n = 0;
+		while (output != 0) {
+			digits[n++] = (byte) (output % 10);
+			output /= 10;
+		}
+		for (int i = 0, j = n - 1; i < j; i++, j--) {
+			byte t = digits[i];
+			digits[i] = digits[j];
+			digits[j] = t;
+		}
+		count = n;
+		point = n + exponent;
+		stripTrailingZeros();
+	}
+
+	/** Ryu: shortest decimal inside the rounding interval of m2 * 2^e2 (both already offset by 2). */
+	private void shortest(long m2, int e2, boolean mmShiftFlag) {
+		boolean even = (m2 & 1) == 0;
+		boolean acceptBounds = even;
+		long mv = 4 * m2;
+		int mmShift = mmShiftFlag ? 1 : 0;
+
+		long vr, vp, vm;
+		int e10;
+		boolean vmIsTrailingZeros = false;
+		boolean vrIsTrailingZeros = false;
+		if (e2 >= 0) {
+			int q = log10Pow2(e2) - (e2 > 3 ? 1 : 0);
+			e10 = q;
+			int k = POW5_INV_BITCOUNT + pow5bits(q) - 1;
+			int i = -e2 + q + k;
+			vr = mulShift64(4 * m2, POW5_INV_SPLIT_LO[q], POW5_INV_SPLIT_HI[q], i);
+			vp = mulShift64(4 * m2 + 2, POW5_INV_SPLIT_LO[q], POW5_INV_SPLIT_HI[q], i);
+			vm = mulShift64(4 * m2 - 1 - mmShift, POW5_INV_SPLIT_LO[q], POW5_INV_SPLIT_HI[q], i);
+			if (q <= 21) {
+				if (mv % 5 == 0) {
+					vrIsTrailingZeros = multipleOfPowerOf5(mv, q);
+				} else if (acceptBounds) {
+					vmIsTrailingZeros = multipleOfPowerOf5(mv - 1 - mmShift, q);
+				} else {
+					vp -= multipleOfPowerOf5(mv + 2, q) ? 1 : 0;
+				}
+			}
+		} else {
+			int q = log10Pow5(-e2) - (-e2 > 1 ? 1 : 0);
+			e10 = q + e2;
+			int i = -e2 - q;
+			int k = pow5bits(i) - POW5_BITCOUNT;
+			int j = q - k;
+			vr = mulShift64(4 * m2, POW5_SPLIT_LO[i], POW5_SPLIT_HI[i], j);
+			vp = mulShift64(4 * m2 + 2, POW5_SPLIT_LO[i], POW5_SPLIT_HI[i], j);
+			vm = mulShift64(4 * m2 - 1 - mmShift, POW5_SPLIT_LO[i], POW5_SPLIT_HI[i], j);
+			if (q <= 1) {
+				vrIsTrailingZeros = true;
+				if (acceptBounds) {
+					vmIsTrailingZeros = mmShift == 1;
+				} else {
+					--vp;
+				}
+			} else if (q < 63) {
+				vrIsTrailingZeros = (mv & ((1L << q) - 1)) == 0;
+			}
+		}
+
+		int removed = 0;
+		int lastRemovedDigit = 0;
+		long output;
+		if (vmIsTrailingZeros || vrIsTrailingZeros) {
+			while (vp / 10 > vm / 10) {
+				vmIsTrailingZeros &= vm % 10 == 0;
+				vrIsTrailingZeros &= lastRemovedDigit == 0;
+				lastRemovedDigit = (int) (vr % 10);
+				vr /= 10;
+				vp /= 10;
+				vm /= 10;
+				removed++;
+			}
+			if (vmIsTrailingZeros) {
+				while (vm % 10 == 0) {
+					vrIsTrailingZeros &= lastRemovedDigit == 0;
+					lastRemovedDigit = (int) (vr % 10);
+					vr /= 10;
+					vp /= 10;
+					vm /= 10;
+					removed++;
+				}
+			}
+			if (vrIsTrailingZeros && lastRemovedDigit == 5 && vr % 2 == 0) {
+				// round even if the exact number is .....50..0
+				lastRemovedDigit = 4;
+			}
+			output = vr + ((vr == vm && (!acceptBounds || !vmIsTrailingZeros)) || lastRemovedDigit >= 5 ? 1 : 0);
+		} else {
+			boolean roundUp = false;
+			while (vp / 10 > vm / 10) {
+				roundUp = vr % 10 >= 5;
+				vr /= 10;
+				vp /= 10;
+				vm /= 10;
+				removed++;
+			}
+			output = vr + (vr == vm || roundUp ? 1 : 0);
+		}
+		setDigits(output, e10 + removed);
+	}
+
+	private static int pow5bits(int e) {
+		return ((e * 1217359) >>> 19) + 1;
+	}
+
+	private static int log10Pow2(int e) {
+		return (e * 78913) >>> 18;
+	}
+
+	private static int log10Pow5(int e) {
+		return (e * 732923) >>> 20;
+	}
+
+	private static boolean multipleOfPowerOf5(long value, int p) {
+		int count = 0;
+		while (value > 0 && value % 5 == 0 && count < p) {
+			value /= 5;
+			count++;
+		}
+		return count >= p;
+	}
+
+	/** (m * (hi * 2^64 + lo)) &gt;&gt; j, for 64 &lt; j &lt; 128 and m below 2^55. */
+	private static long mulShift64(long m, long lo, long hi, int j) {
+		long high1 = multiplyHigh(m, hi);
+		long low1 = m * hi;
+		long high0 = multiplyHigh(m, lo);
+		long sum = high0 + low1;
+		if ((sum ^ Long.MIN_VALUE) < (high0 ^ Long.MIN_VALUE)) {
+			high1++;
+		}
+		int dist = j - 64;
+		return (high1 << (64 - dist)) | (sum >>> dist);
+	}
+
+	/** Upper 64 bits of the unsigned 128 bit product of a and b. */
+	private static long multiplyHigh(long a, long b) {
+		long aLo = a & 0xFFFFFFFFL;
+		long aHi = a >>> 32;
+		long bLo = b & 0xFFFFFFFFL;
+		long bHi = b >>> 32;
+		long loLo = aLo * bLo;
+		long hiLo = aHi * bLo;
+		long loHi = aLo * bHi;
+		long hiHi = aHi * bHi;
+		long cross = (loLo >>> 32) + (hiLo & 0xFFFFFFFFL) + loHi;
+		return hiHi + (hiLo >>> 32) + (cross >>> 32);
+	}
+}
@@ -0,0 +1,307 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import org.apache.hadoop.io.Text;
+
+/**
+ * DecimalSum
+ *
+ * Exact sum of decimal values, kept as an unscaled 128-bit two's complement
+ * integer and a scale, so that <code>sum = unscaled * 10^-scale</code>. As long
+ * as the sum fits in a long an addend of the same scale is a single addition;
+ * otherwise the addition carries into the high word. The scale of the sum is
+ * the largest scale added, as for BigDecimal.add, and 128 bits hold 38 digits
+ * like Oracle's NUMBER.
+ * <p>
+ * Strings are parsed from their bytes and doubles and floats are added as the
+ * shortest decimal that reads back to them, so nothing is allocated per value.
+ * A sum beyond 128 bits sets {@link #overflowed()} instead of wrapping.
+ */
+final class DecimalSum {
+
+	private static final long MASK = 0xffffffffL;
+	private static final int[] POW10 = { 1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000,
+			1000000000 };
+	private static final long LONG_DIGITS = 100000000000000000L;
+
+	/** hi, lo */
+	private final long[] sum = new long[2];
+	private final long[] addend = new long[2];
+	private final long[] work = new long[2];
+	private int scale;
+	private boolean empty = true;
+	private boolean overflow;
+	private byte[] buffer = new byte[48];
+
+	void reset() {
+		sum[0] = 0;
+		sum[1] = 0;
+		scale = 0;
+		empty = true;
+		overflow = false;
+	}
+
+	/** @return true if no value was added since the last reset. */
+	boolean isEmpty() {
+		return empty;
+	}
+
+	/** @return true if the sum overflowed 128 bits since the last reset. */
+	boolean overflowed() {
+		return overflow;
+	}
+
+	/** Adds <code>unscaled * 10^-scale</code>. */
+	void add(long unscaled, int scale) {
+		empty = false;
+		if (scale == this.scale && sum[0] == (sum[1] >> 63)) {
+			long r = sum[1] + unscaled;
+			if (((sum[1] ^ r) & (unscaled ^ r)) >= 0) {
+				sum[1] = r;
+				sum[0] = r >> 63;
+				return;
+			}
+		}
+		addend[0] = unscaled >> 63;
+		addend[1] = unscaled;
+		addAddend(scale);
+	}
+
+	/** Adds the exact value of a DecimalDigits, which must not be NaN or infinite. */
+	void add(DecimalDigits value) {
+		long unscaled = 0;
+		for (int i = 0; i < value.count; i++) {
+			unscaled = unscaled * 10 + value.digits[i];
+		}
+		int digitsScale = value.count - value.point;
+		if (digitsScale >= 0) {
+			add(value.negative ? -unscaled : unscaled, digitsScale);
+			return;
+		}
+		empty = false;
+		addend[0] = 0;
+		addend[1] = unscaled;
+		if (!scaleUp(addend, -digitsScale)) {
+			overflow = true;
+			return;
+		}
+		if (value.negative) {
+			negate(addend);
+		}
+		addAddend(0);
+	}
+
+	/**
+	 * Parses and adds a plain decimal number, such as <code>-1234.50</code>,
+	 * with optional surrounding spaces.
+	 *
+	 * @return false if the bytes are not a number.
+	 */
+	boolean add(byte[] bytes, int start, int length) {
+		int i = start;
+		int end = start + length;
+		while (i < end && bytes[i] == ' ') {
+			i++;
+		}
+		while (end > i && bytes[end - 1] == ' ') {
+			end--;
+		}
+		boolean negative = false;
+		if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+			negative = bytes[i] == '-';
+			i++;
+		}
+
+		long unscaled = 0;
+		boolean wide = false;
+		boolean point = false;
+		boolean digits = false;
+		int digitsScale = 0;
+		for (; i < end; i++) {
+			int c = bytes[i];
+			if (c == '.' && !point) {
+				point = true;
+				continue;
+			}
+			if (c < '0' || c > '9') {
+				return false;
+			}
+			digits = true;
+			if (point) {
+				digitsScale++;
+			}
+			if (!wide && unscaled < LONG_DIGITS) {
+				unscaled = unscaled * 10 + (c - '0');
+			} else {
+				if (!wide) {
+					wide = true;
+					addend[0] = 0;
+					addend[1] = unscaled;
+				}
+				if (!multiply(addend, 10) || !addTo(addend, c - '0')) {
+					empty = false;
+					overflow = true;
+					return true;
+				}
+			}
+		}
+		if (!digits) {
+			return false;
+		}
+		if (!wide) {
+			add(negative ? -unscaled : unscaled, digitsScale);
+			return true;
+		}
+		empty = false;
+		if (negative) {
+			negate(addend);
+		}
+		addAddend(digitsScale);
+		return true;
+	}
+
+	/** Writes the sum in plain notation with exactly its scale of fraction digits. */
+	void write(Text out) {
+		work[0] = sum[0];
+		work[1] = sum[1];
+		boolean negative = work[0] < 0;
+		if (negative) {
+			negate(work);
+		}
+		if (buffer.length < scale + 44) {
+			buffer = new byte[scale + 44];
+		}
+
+		int pos = buffer.length;
+		int written = 0;
+		do {
+			long chunk = divide(work, POW10[9]);
+			boolean last = work[0] == 0 && work[1] == 0;
+			for (int i = 0; i < 9 && (!last || chunk != 0); i++) {
+				if (written == scale && scale > 0) {
+					buffer[--pos] = '.';
+				}
+				buffer[--pos] = (byte) ('0' + chunk % 10);
+				chunk /= 10;
+				written++;
+			}
+			if (last) {
+				break;
+			}
+		} while (true);
+		while (written <= scale) {
+			if (written == scale && scale > 0) {
+				buffer[--pos] = '.';
+			}
+			buffer[--pos] = '0';
+			written++;
+		}
+		if (negative) {
+			buffer[--pos] = '-';
+		}
+		out.set(buffer, pos, buffer.length - pos);
+	}
+
+	/** Adds the addend of the given scale to the sum, rescaling the smaller one. */
+	private void addAddend(int addendScale) {
+		if (addendScale > scale) {
+			if (!scaleUp(sum, addendScale - scale)) {
+				overflow = true;
+				return;
+			}
+			scale = addendScale;
+		} else if (addendScale < scale && !scaleUp(addend, scale - addendScale)) {
+			overflow = true;
+			return;
+		}
+		long lo = sum[1] + addend[1];
+		long carry = (lo ^ Long.MIN_VALUE) < (sum[1] ^ Long.MIN_VALUE) ? 1 : 0;
+		long hi = sum[0] + addend[0] + carry;
+		if (((sum[0] ^ hi) & (addend[0] ^ hi)) < 0) {
+			overflow = true;
+			return;
+		}
+		sum[0] = hi;
+		sum[1] = lo;
+	}
+
+	private static boolean scaleUp(long[] v, int digits) {
+		while (digits > 0) {
+			int k = Math.min(9, digits);
+			if (!multiply(v, POW10[k])) {
+				return false;
+			}
+			digits -= k;
+		}
+		return true;
+	}
+
+	/** Multiplies v by 0 &lt; m &lt; 2^31, returning false on overflow. */
+	private static boolean multiply(long[] v, long m) {
+		boolean negative = v[0] < 0;
+		if (negative) {
+			negate(v);
+		}
+		long p0 = (v[1] & MASK) * m;
+		long p1 = (v[1] >>> 32) * m + (p0 >>> 32);
+		long h0 = (v[0] & MASK) * m + (p1 >>> 32);
+		long h1 = (v[0] >>> 32) * m + (h0 >>> 32);
+		if ((h1 >>> 31) != 0) {
+			return false;
+		}
+		v[1] = (p1 << 32) | (p0 & MASK);
+		v[0] = (h1 << 32) | (h0 & MASK);
+		if (negative) {
+			negate(v);
+		}
+		return true;
+	}
+
+	/** Adds a small non-negative value to a non-negative v. */
+	private static boolean addTo(long[] v, int value) {
+		long lo = v[1] + value;
+		if ((lo ^ Long.MIN_VALUE) < (v[1] ^ Long.MIN_VALUE)) {
+			v[0]++;
+		}
+		v[1] = lo;
+		return v[0] >= 0;
+	}
+
+	/** Divides the unsigned v by 0 &lt; d &lt; 2^31 and returns the remainder. */
+	private static long divide(long[] v, long d) {
+		long x = v[0] >>> 32;
+		long q3 = x / d;
+		x = ((x % d) << 32) | (v[0] & MASK);
+		long q2 = x / d;
+		x = ((x % d) << 32) | (v[1] >>> 32);
+		long q1 = x / d;
+		x = ((x % d) << 32) | (v[1] & MASK);
+		long q0 = x / d;
+		v[0] = (q3 << 32) | q2;
+		v[1] = (q1 << 32) | q0;
+		return x % d;
+	}
+
+	private static void negate(long[] v) {
+		v[1] = -v[1];
+		v[0] = ~v[0] + (v[1] == 0 ? 1 : 0);
+	}
+}
@@ -24,16 +24,31 @@ import org.apache.hadoop.hive.ql.parse.SemanticException;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFParameterInfo;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFResolver2;
+import org.apache.hadoop.hive.serde2.ByteStream;
+import org.apache.hadoop.hive.serde2.lazy.ByteArrayRef;
+import org.apache.hadoop.hive.serde2.lazybinary.LazyBinaryFactory;
+import org.apache.hadoop.hive.serde2.lazybinary.LazyBinarySerDe;
+import org.apache.hadoop.hive.serde2.lazybinary.LazyBinaryStruct;
+import org.apache.hadoop.hive.serde2.lazybinary.LazyBinaryUtils;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
-import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
 import org.apache.hive.pdk.HivePdkUnitTest;
 import org.apache.hive.pdk.HivePdkUnitTests;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+/**
+ * GenericUDAFDedup
+ *
+ * Keeps the first row of each group as one LazyBinary serialized byte array
+ * instead of a deep copy of every field, and returns it as a lazy struct over
+ * that array. Fields are deserialized only when the query reads them, so
+ * <code>populate(dedup(...))</code> decodes only the columns that are used.
+ */
 @Description(name = "dedup", value = "_FUNC_(x,y,z) - Removes duplicated row and return it as a struct.")
 public class GenericUDAFDedup implements GenericUDAFResolver2 {
 
@@ -47,29 +62,37 @@ public class GenericUDAFDedup implements GenericUDAFResolver2 {
 
   public static class GenericUDAFDedupEval extends GenericUDAFEvaluator {
 
-    ObjectInspector[] input;
+    private final UDFMetrics metrics = UDFMetrics.of(GenericUDAFDedup.class);
+
+    ObjectInspector row;
     ObjectInspector output;
 
+    private final ByteStream.Output serialized = new ByteStream.Output();
+    private final ByteArrayRef ref = new ByteArrayRef();
+    private LazyBinaryStruct struct;
+
     public ObjectInspector init(Mode m, ObjectInspector[] parameters) throws HiveException {
       super.init(m, parameters);
-      this.input = parameters;
       switch (m) {
         case PARTIAL1:
         case COMPLETE:
           List<String> names = new ArrayList<String>(parameters.length);
-          List<ObjectInspector> inspectors = new ArrayList<ObjectInspector>(parameters.length);
           for (int i = 0; i < parameters.length; i++) {
             names.add("_col" + i);
-            inspectors.add(ObjectInspectorUtils.getStandardObjectInspector(parameters[i]));
           }
-          return output = ObjectInspectorFactory.getStandardStructObjectInspector(names, inspectors);
+          row = ObjectInspectorFactory.getStandardStructObjectInspector(names, Arrays.asList(parameters));
+          break;
         case PARTIAL2:
-          return output = parameters[0];
         case FINAL:
-          return output = ObjectInspectorUtils.getStandardObjectInspector(parameters[0]);
+          row = parameters[0];
+          break;
         default:
           throw new IllegalArgumentException("never");
       }
+      output = LazyBinaryUtils.getLazyBinaryObjectInspectorFromTypeInfo(
+          TypeInfoUtils.getTypeInfoFromObjectInspector(row));
+      struct = (LazyBinaryStruct) LazyBinaryFactory.createLazyBinaryObject(output);
+      return output;
     }
 
     @Override
@@ -79,39 +102,58 @@ public class GenericUDAFDedup implements GenericUDAFResolver2 {
 
     @Override
     public void reset(AggregationBuffer agg) throws HiveException {
-      ((DedupRow) agg).row = null;
+      ((DedupRow) agg).length = -1;
     }
 
     @Override
     public void iterate(AggregationBuffer agg, Object[] parameters) throws HiveException {
-      if (((DedupRow) agg).row == null) {
-        Object[] array = new Object[parameters.length];
-        for (int i = 0; i < array.length; i++) {
-          array[i] = ObjectInspectorUtils.copyToStandardObject(parameters[i], input[i]);
-        }
-        ((DedupRow) agg).row = array;
+      long start = metrics.start();
+      if (((DedupRow) agg).length < 0) {
+        ((DedupRow) agg).set(serialize(parameters));
       }
+      metrics.finish(start);
     }
 
     @Override
     public Object terminatePartial(AggregationBuffer agg) throws HiveException {
-      return ((DedupRow) agg).row;
+      return terminate(agg);
     }
 
     @Override
     public void merge(AggregationBuffer agg, Object partial) throws HiveException {
-      if (((DedupRow) agg).row == null) {
-        ((DedupRow) agg).row = ObjectInspectorUtils.copyToStandardObject(partial, input[0]);
+      if (partial != null && ((DedupRow) agg).length < 0) {
+        ((DedupRow) agg).set(serialize(partial));
       }
     }
 
     @Override
     public Object terminate(AggregationBuffer agg) throws HiveException {
-      return ((DedupRow) agg).row;
+      DedupRow dedup = (DedupRow) agg;
+      if (dedup.length < 0) {
+        return null;
+      }
+      ref.setData(dedup.bytes);
+      struct.init(ref, 0, dedup.length);
+      return struct;
+    }
+
+    private ByteStream.Output serialize(Object value) {
+      serialized.reset();
+      LazyBinarySerDe.serialize(serialized, value, row, true, false);
+      return serialized;
     }
 
     static class DedupRow implements AggregationBuffer {
-      Object row;
+      byte[] bytes = new byte[0];
+      int length = -1;
+
+      void set(ByteStream.Output serialized) {
+        length = serialized.getCount();
+        if (bytes.length < length) {
+          bytes = new byte[length];
+        }
+        System.arraycopy(serialized.getData(), 0, bytes, 0, length);
+      }
     }
   }
 }
@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.UDFType;
+import org.apache.hadoop.hive.serde.Constants;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorConverters;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorConverters.Converter;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+/**
+ * GenericUDFAvg
+ *
+ * The running average of the values of each partition, ignoring NULLs. The
+ * values are accumulated in a {@link RunningStats}, which variance and stddev
+ * share.
+ */
+@Description(name = "avg",
+    value = "_FUNC_(p1, p2, ..., value) " +
+    		"- Returns the running average of a group",
+    extended = "Example:\n"
+    + "  > SELECT _FUNC_(p1, p2, value) FROM (\n"
+    + "  > 		SELECT ~ FROM table DISTRIBUTE BY p1,p2 SORT BY p1,p2,order_by_col1, order_by_col2 DESC, ... \n"
+    + "  > );\n\n"
+    + "ORACLE :\n"
+    + "  > SELECT AVG(value) OVER(PARTITION BY p1,p2 ORDER BY order_by_col1) FROM table;\n")
+
+@HivePdkUnitTests(
+	setup = "", cleanup = "",
+    cases = {
+      @HivePdkUnitTest(
+        query = "SELECT t.empno, t.deptno, t.sal, nexr_avg(t.deptno, t.sal) as sal_avg,"
+        	+"    nexr_avg(t.deptno, t.comm) as comm_avg"
+        	+"  FROM ("
+        	+"      select a.empno, a.deptno, a.sal, a.comm from emp a"
+        	+"      distribute by a.deptno"
+        	+"      sort BY a.deptno, a.empno"
+        	+"  ) t;",
+        result ="7782\t10\t2450\t2450.0\tNULL\n"
+        	+"7839\t10\t5000\t3725.0\tNULL\n"
+        	+"7934\t10\t1300\t2916.6666666666665\tNULL\n"
+        	+"7369\t20\t800\t800.0\tNULL\n"
+        	+"7566\t20\t2975\t1887.5\tNULL\n"
+        	+"7788\t20\t3000\t2258.3333333333335\tNULL\n"
+        	+"7876\t20\t1100\t1968.75\tNULL\n"
+        	+"7902\t20\t3000\t2175.0\tNULL\n"
+        	+"7499\t30\t1600\t1600.0\t300.0\n"
+        	+"7521\t30\t1250\t1425.0\t400.0\n"
+        	+"7654\t30\t1250\t1366.6666666666667\t733.3333333333333\n"
+        	+"7698\t30\t2850\t1737.5\t733.3333333333333\n"
+        	+"7844\t30\t1500\t1690.0\t550.0\n"
+        	+"7900\t30\t950\t1566.6666666666667\t550.0")
+    }
+  )
+
+@UDFType(deterministic = false, stateful = true)
+public class GenericUDFAvg extends MeteredGenericUDF {
+	private final StateSize state = StateSize.of(getClass(), metrics);
+	private final DoubleWritable result = new DoubleWritable();
+	private final RunningStats stats = new RunningStats(RunningStats.compensated(getClass()));
+	private PartitionKey key;
+	private Converter converter;
+
+	@Override
+	public ObjectInspector initialize(ObjectInspector[] arguments) throws UDFArgumentException {
+		if (arguments.length < 2) {
+			throw new UDFArgumentException("The partition columns and a value are expected.");
+		}
+
+		int last = arguments.length - 1;
+		String t = arguments[last].getTypeName();
+		if (!(t.equals(Constants.TINYINT_TYPE_NAME)||
+				t.equals(Constants.SMALLINT_TYPE_NAME)||
+				t.equals(Constants.INT_TYPE_NAME)||
+				t.equals(Constants.BIGINT_TYPE_NAME)||
+				t.equals(Constants.FLOAT_TYPE_NAME)||
+				t.equals(Constants.DOUBLE_TYPE_NAME)||
+				t.equals(Constants.STRING_TYPE_NAME))) {
+			throw new UDFArgumentTypeException(last,
+					"Only numeric or string type arguments are accepted but "
+					+ arguments[last].getTypeName() + " is passed.");
+		}
+
+		stats.reset();
+		key = new PartitionKey(arguments, 0, last);
+		converter = ObjectInspectorConverters.getConverter(arguments[last],
+				PrimitiveObjectInspectorFactory.writableDoubleObjectInspector);
+		return PrimitiveObjectInspectorFactory.writableDoubleObjectInspector;
+	}
+
+	@Override
+	protected Object evaluateRow(DeferredObject[] arguments) throws HiveException {
+		Object value = converter.convert(arguments[arguments.length - 1].get());
+		if (key.isNew(arguments)) {
+			stats.reset();
+		}
+		state.set(key.bytes());
+
+		if (value != null) {
+			stats.add(((DoubleWritable) value).get());
+		}
+		if (stats.count() == 0) {
+			return null;
+		}
+		result.set(result(stats));
+		return result;
+	}
+
+	/** @return the value of the function for the values so far. */
+	protected double result(RunningStats stats) {
+		return stats.mean();
+	}
+
+	@Override
+	public String getDisplayString(String[] children) {
+		return "avg(" + StringUtils.join(children, ',') + ")";
+	}
+}
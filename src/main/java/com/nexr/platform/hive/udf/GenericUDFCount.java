@@ -23,10 +23,7 @@ import org.apache.hadoop.hive.ql.exec.Description;
 import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.udf.UDFType;
-import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
-import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
-import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils.ObjectInspectorCopyOption;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hive.pdk.HivePdkUnitTest;
@@ -34,11 +31,11 @@ import org.apache.hive.pdk.HivePdkUnitTests;
 
 
 @Description(name = "count",
-    value = "_FUNC_(hash_key, order_by_col) " +
+    value = "_FUNC_(p1, p2, ..., order_by_col) " +
                 "- Returns the count value of group",
     extended = "Example:\n"
-    + "  > SELECT _FUNC_(HASH(p1, p2), order_by_col) FROM (\n"
-    + "  >              SELECT ~ FROM table DISTRIBUTE BY HASH(p1,p2) SORT BY p1,p2,order_by_col DESC, ... \n"
+    + "  > SELECT _FUNC_(p1, p2, order_by_col) FROM (\n"
+    + "  >              SELECT ~ FROM table DISTRIBUTE BY p1,p2 SORT BY p1,p2,order_by_col DESC, ... \n"
     + "  > );")
  
 @HivePdkUnitTests(
@@ -69,18 +66,17 @@ import org.apache.hive.pdk.HivePdkUnitTests;
   )
     
 @UDFType(deterministic = false, stateful = true)
-public class GenericUDFCount extends GenericUDF {
+public class GenericUDFCount extends MeteredGenericUDF {
+        private final StateSize state = StateSize.of(getClass(), metrics);
         private final LongWritable longResult = new LongWritable();
-        private ObjectInspector hashOI, prevHashStandardOI;
-        private Object prevHash;
+        private PartitionKey key;
         @Override
         public ObjectInspector initialize(ObjectInspector[] arguments) throws UDFArgumentException {
-                if (arguments.length != 2) {
-                        throw new UDFArgumentException("Exactly two argument is expected.");
+                if (arguments.length < 2) {
+                        throw new UDFArgumentException("The partition columns and a column are expected.");
                 }
 
-                hashOI = arguments[0];
-                prevHashStandardOI=ObjectInspectorUtils.getStandardObjectInspector(hashOI,ObjectInspectorCopyOption.JAVA);
+                key = new PartitionKey(arguments, 0, arguments.length - 1);
                 
                 longResult.set(0);
 
@@ -88,15 +84,13 @@ public class GenericUDFCount extends GenericUDF {
         }
 
         @Override
-        public Object evaluate(DeferredObject[] arguments) throws HiveException {
-                Object hash = arguments[0].get();
- 
-                if (prevHash==null||ObjectInspectorUtils.compare(prevHash,prevHashStandardOI,hash,hashOI)!=0) {
+        protected Object evaluateRow(DeferredObject[] arguments) throws HiveException {
+                if (key.isNew(arguments)) {
                         longResult.set(0);
  
                 }
 
-                prevHash=ObjectInspectorUtils.copyToStandardObject(hash,hashOI, ObjectInspectorCopyOption.JAVA);
+                state.set(key.bytes());
                 longResult.set(longResult.get()+1);
                 return longResult;
         }
@@ -0,0 +1,151 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.UDFType;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+/**
+ * GenericUDFCumeDist
+ *
+ * The fraction of the rows of a partition that sort at or before a row, given
+ * the row count of the partition. Counting the rows up to the last peer of a
+ * row would need the rows after it, so the rows are sorted in the reverse
+ * order instead: a row whose rank is r from the end has
+ * <code>(rows - r + 1) / rows</code>.
+ * Without the counts, use {@link GenericUDTFCumeDist}.
+ */
+@Description(name = "cume_dist",
+    value = "_FUNC_(partition_key, partition_rows, order_by_col1, order_by_col2 ...) " +
+            "- Returns the cumulative distribution of a row in its partition, " +
+            "reading the rows in the reverse of the order by",
+    extended = "Example:\n"
+    + "  > SELECT _FUNC_(STRUCT(t.p1, t.p2), t.cnt, t.order_by_col1) FROM (\n"
+    + "  >      SELECT a.p1, a.p2, a.order_by_col1, c.cnt FROM table a\n"
+    + "  >      JOIN (SELECT p1, p2, COUNT(*) AS cnt FROM table GROUP BY p1, p2) c\n"
+    + "  >      ON (a.p1 = c.p1 AND a.p2 = c.p2)\n"
+    + "  >      DISTRIBUTE BY a.p1, a.p2\n"
+    + "  >      SORT BY a.p1, a.p2, a.order_by_col1 DESC\n"
+    + "  > ) t;\n"
+    + "Join the counts before DISTRIBUTE BY and SORT BY: a join does not keep the order of its input.\n\n"
+    + "ORACLE:\n"
+    + "  > SELECT CUME_DIST() OVER(PARTITION BY p1,p2 ORDER BY order_by_col1) FROM table;\n"
+    )
+
+@HivePdkUnitTests(
+    setup = "", cleanup = "",
+    cases = {
+      @HivePdkUnitTest(
+        query = "SELECT t.empno, t.deptno, t.sal,"
+        + "    nexr_cume_dist(t.deptno, if(t.deptno = 10, 3, if(t.deptno = 20, 5, 6)), t.sal) as cd"
+        + "  FROM ("
+        + "      select a.empno, a.deptno, a.sal from "
+        + "          emp a"
+        + "      distribute by a.deptno"
+        + "      sort BY a.deptno, a.sal desc, a.empno"
+        + "  ) t;",
+        result = "7839\t10\t5000\t1.0\n"
+        + "7782\t10\t2450\t0.6666666666666666\n"
+        + "7934\t10\t1300\t0.3333333333333333\n"
+        + "7788\t20\t3000\t1.0\n"
+        + "7902\t20\t3000\t1.0\n"
+        + "7566\t20\t2975\t0.6\n"
+        + "7876\t20\t1100\t0.4\n"
+        + "7369\t20\t800\t0.2\n"
+        + "7698\t30\t2850\t1.0\n"
+        + "7499\t30\t1600\t0.8333333333333334\n"
+        + "7844\t30\t1500\t0.6666666666666666\n"
+        + "7521\t30\t1250\t0.5\n"
+        + "7654\t30\t1250\t0.5\n"
+        + "7900\t30\t950\t0.16666666666666666"),
+      @HivePdkUnitTest(
+        query = "SELECT t.empno, t.deptno, t.sal, nexr_cume_dist(t.deptno, t.cnt, t.sal) as cd"
+        + "  FROM ("
+        + "      select e.empno, e.deptno, e.sal, c.cnt from emp e"
+        + "      join (select deptno as c_deptno, count(*) as cnt from emp group by deptno) c"
+        + "      on (e.deptno = c.c_deptno)"
+        + "      distribute by e.deptno"
+        + "      sort BY e.deptno, e.sal desc, e.empno"
+        + "  ) t;",
+        result = "7839\t10\t5000\t1.0\n"
+        + "7782\t10\t2450\t0.6666666666666666\n"
+        + "7934\t10\t1300\t0.3333333333333333\n"
+        + "7788\t20\t3000\t1.0\n"
+        + "7902\t20\t3000\t1.0\n"
+        + "7566\t20\t2975\t0.6\n"
+        + "7876\t20\t1100\t0.4\n"
+        + "7369\t20\t800\t0.2\n"
+        + "7698\t30\t2850\t1.0\n"
+        + "7499\t30\t1600\t0.8333333333333334\n"
+        + "7844\t30\t1500\t0.6666666666666666\n"
+        + "7521\t30\t1250\t0.5\n"
+        + "7654\t30\t1250\t0.5\n"
+        + "7900\t30\t950\t0.16666666666666666")
+    }
+  )
+
+@UDFType(deterministic = false, stateful = true)
+public class GenericUDFCumeDist extends GenericUDFRank {
+  private final DoubleWritable fraction = new DoubleWritable();
+  private PrimitiveObjectInspector rowsOI;
+
+  @Override
+  public ObjectInspector initialize(ObjectInspector[] arguments) throws UDFArgumentException {
+    if (arguments.length < 3) {
+      throw new UDFArgumentException("The function CUME_DIST accepts the partition key, the row count "
+          + "of the partition and at least one order by column.");
+    }
+    rowsOI = numberArgument(arguments, 1);
+    super.initialize(arguments);
+    return PrimitiveObjectInspectorFactory.writableDoubleObjectInspector;
+  }
+
+  @Override
+  protected int firstOrderBy() {
+    return 2;
+  }
+
+  @Override
+  protected Object evaluateRow(DeferredObject[] arguments) throws HiveException {
+    long rank = ((LongWritable) super.evaluateRow(arguments)).get();
+    Object rowsValue = arguments[1].get();
+    if (rowsValue == null) {
+      return null;
+    }
+    long rows = partitionRows(rowsValue, rowsOI, rank, "CUME_DIST");
+    fraction.set((double) (rows - rank + 1) / rows);
+    return fraction;
+  }
+
+  @Override
+  public String getDisplayString(String[] children) {
+    return "cume_dist(" + StringUtils.join(children, ',') + ")";
+  }
+}
@@ -0,0 +1,211 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.UDFType;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.StringObjectInspector;
+import org.apache.hadoop.io.Text;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+/**
+ * GenericUDFDecimalSum
+ *
+ * The running sum of each partition computed exactly in decimal, for monetary
+ * columns stored as strings or doubles. Hive has no decimal type, so the sum
+ * is returned as a string in plain notation, with as many fraction digits as
+ * the value with the most of them. A string that is not a plain decimal
+ * number, such as <code>'1,234.50'</code> or <code>'1e3'</code>, is handled
+ * by the {@link ParseErrorPolicy} of decimal_sum: by default the row gives NULL
+ * and the sum is left as it is.
+ */
+@Description(name = "decimal_sum",
+    value = "_FUNC_(p1, p2, ..., value) " +
+    		"- Returns the exact running sum of a group as a decimal string",
+    extended = "Example:\n"
+    + "  > SELECT _FUNC_(p1, p2, amount) FROM (\n"
+    + "  > 		SELECT ~ FROM table DISTRIBUTE BY p1,p2 SORT BY p1,p2,order_by_col1, order_by_col2 DESC, ... \n"
+    + "  > );")
+
+@HivePdkUnitTests(
+	setup = "", cleanup = "",
+    cases = {
+      @HivePdkUnitTest(
+        query = "SELECT t.empno, t.deptno, t.amount, nexr_decimal_sum(t.deptno, t.amount) as amount_sum,"
+        	+"    nexr_decimal_sum(t.deptno, 0.1) as tenths"
+        	+"  FROM ("
+        	+"      select a.empno, a.deptno, concat(cast(a.sal as string), '.', cast(a.empno % 100 as string)) as amount"
+        	+"      from emp a"
+        	+"      distribute by a.deptno"
+        	+"      sort BY a.deptno, a.empno"
+        	+"  ) t;",
+        result ="7782\t10\t2450.82\t2450.82\t0.1\n"
+        	+"7839\t10\t5000.39\t7451.21\t0.2\n"
+        	+"7934\t10\t1300.34\t8751.55\t0.3\n"
+        	+"7369\t20\t800.69\t800.69\t0.1\n"
+        	+"7566\t20\t2975.66\t3776.35\t0.2\n"
+        	+"7788\t20\t3000.88\t6777.23\t0.3\n"
+        	+"7876\t20\t1100.76\t7877.99\t0.4\n"
+        	+"7902\t20\t3000.2\t10878.19\t0.5\n"
+        	+"7499\t30\t1600.99\t1600.99\t0.1\n"
+        	+"7521\t30\t1250.21\t2851.20\t0.2\n"
+        	+"7654\t30\t1250.54\t4101.74\t0.3\n"
+        	+"7698\t30\t2850.98\t6952.72\t0.4\n"
+        	+"7844\t30\t1500.44\t8453.16\t0.5\n"
+        	+"7900\t30\t950.0\t9403.16\t0.6"),
+      @HivePdkUnitTest(
+        query = "SELECT t.empno, nexr_decimal_sum(t.deptno, cast('9223372036854775807' as bigint)) as big_sum"
+        	+"  FROM ("
+        	+"      select a.empno, a.deptno from emp a"
+        	+"      where a.deptno = 10"
+        	+"      sort BY a.empno"
+        	+"  ) t;",
+        result ="7782\t9223372036854775807\n"
+        	+"7839\t18446744073709551614\n"
+        	+"7934\t27670116110564327421"),
+      @HivePdkUnitTest(
+        query = "SELECT t.empno, t.amount, nexr_decimal_sum(t.deptno, t.amount) as amount_sum"
+        	+"  FROM ("
+        	+"      select a.empno, a.deptno, if(a.empno = 7369, '12.5', if(a.empno = 7566, '1,234.50',"
+        	+"          if(a.empno = 7788, '1e3', if(a.empno = 7876, 'abc', '0.25')))) as amount"
+        	+"      from emp a"
+        	+"      where a.deptno = 20"
+        	+"      sort BY a.empno"
+        	+"  ) t;",
+        result ="7369\t12.5\t12.5\n"
+        	+"7566\t1,234.50\tNULL\n"
+        	+"7788\t1e3\tNULL\n"
+        	+"7876\tabc\tNULL\n"
+        	+"7902\t0.25\t12.75")
+    }
+  )
+
+@UDFType(deterministic = false, stateful = true)
+public class GenericUDFDecimalSum extends MeteredGenericUDF {
+	private final ParseErrorPolicy parseErrors = ParseErrorPolicy.forFunction("decimal_sum");
+	private final StateSize state = StateSize.of(getClass(), metrics);
+	private final DecimalSum sum = new DecimalSum();
+	private final DecimalDigits digits = new DecimalDigits();
+	private final Text result = new Text();
+	private PartitionKey key;
+	private PrimitiveObjectInspector valueOI;
+
+	@Override
+	public ObjectInspector initialize(ObjectInspector[] arguments) throws UDFArgumentException {
+		if (arguments.length < 2) {
+			throw new UDFArgumentException("The partition columns and a value are expected.");
+		}
+
+		int last = arguments.length - 1;
+		if (arguments[last].getCategory() == ObjectInspector.Category.PRIMITIVE) {
+			valueOI = (PrimitiveObjectInspector) arguments[last];
+			switch (valueOI.getPrimitiveCategory()) {
+			case BYTE:
+			case SHORT:
+			case INT:
+			case LONG:
+			case FLOAT:
+			case DOUBLE:
+			case STRING:
+				break;
+			default:
+				valueOI = null;
+			}
+		}
+		if (valueOI == null) {
+			throw new UDFArgumentTypeException(last,
+					"Only numeric or string type arguments are accepted but "
+					+ arguments[last].getTypeName() + " is passed.");
+		}
+
+		sum.reset();
+		key = new PartitionKey(arguments, 0, last);
+		return PrimitiveObjectInspectorFactory.writableStringObjectInspector;
+	}
+
+	@Override
+	protected Object evaluateRow(DeferredObject[] arguments) throws HiveException {
+		Object value = arguments[arguments.length - 1].get();
+		if (key.isNew(arguments)) {
+			sum.reset();
+		}
+		state.set(key.bytes());
+
+		if (value != null) {
+			if (!add(value)) {
+				metrics.parseFailure();
+				Text replacement = parseErrors.onError(((StringObjectInspector) valueOI).getPrimitiveJavaObject(value));
+				if (replacement == null) {
+					return null;
+				}
+				if (!sum.add(replacement.getBytes(), 0, replacement.getLength())) {
+					throw new HiveException("decimal_sum can not add the default value " + replacement);
+				}
+			}
+			if (sum.overflowed()) {
+				throw new HiveException("decimal_sum overflowed 38 digits in a partition.");
+			}
+		}
+		if (sum.isEmpty()) {
+			return null;
+		}
+		sum.write(result);
+		return result;
+	}
+
+	/**
+	 * @return false if the value is a string that is not a number.
+	 */
+	private boolean add(Object value) throws HiveException {
+		switch (valueOI.getPrimitiveCategory()) {
+		case STRING:
+			Text text = ((StringObjectInspector) valueOI).getPrimitiveWritableObject(value);
+			return sum.add(text.getBytes(), 0, text.getLength());
+		case FLOAT:
+			digits.set(PrimitiveObjectInspectorUtils.getFloat(value, valueOI));
+			break;
+		case DOUBLE:
+			digits.set(PrimitiveObjectInspectorUtils.getDouble(value, valueOI));
+			break;
+		default:
+			sum.add(PrimitiveObjectInspectorUtils.getLong(value, valueOI), 0);
+			return true;
+		}
+		if (digits.nan || digits.infinite) {
+			throw new HiveException("decimal_sum can not add " + value + " exactly.");
+		}
+		sum.add(digits);
+		return true;
+	}
+
+	@Override
+	public String getDisplayString(String[] children) {
+		return "decimal_sum(" + StringUtils.join(children, ',') + ")";
+	}
+}
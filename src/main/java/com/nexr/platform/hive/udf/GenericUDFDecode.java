@@ -34,6 +34,10 @@ import org.apache.hive.pdk.HivePdkUnitTests;
  * GenericUDF Class for SQL construct "decode(value1, value2, value3, .... defaultValue)".
  * oracle's DECODE compares first argument to each other value one by one.
  * <p>
+ * Search values are evaluated one by one until one matches, and only the
+ * result of the matching search, or the default when nothing matches, is
+ * evaluated. As in Oracle, two NULLs are considered equal.
+ * <p>
  * There is <code>CASE...WHEN...</code>clause in Hive, 
  * but it is convenient to convert from SQL to HQL without query change.
  * <p>
@@ -54,8 +58,11 @@ import org.apache.hive.pdk.HivePdkUnitTests;
 		    		"FROM dual WHERE id = 0;", result = "ACCOUNT"),
 		@HivePdkUnitTest(
 			query = "SELECT nexr_decode(dep, 0, 'ACCOUNT', 1, 'HR', 'NO-DEP') " +
-					"FROM dual WHERE id = 2;", result = "NO-DEP") })
-public class GenericUDFDecode extends GenericUDF {
+					"FROM dual WHERE id = 2;", result = "NO-DEP"),
+		@HivePdkUnitTest(
+			query = "SELECT nexr_decode(height, null, 'UNKNOWN', 'KNOWN') " +
+					"FROM dual WHERE id = 1;", result = "UNKNOWN") })
+public class GenericUDFDecode extends MeteredGenericUDF {
 
 	private ObjectInspector[] argumentOIs;
 	private GenericUDFUtils.ReturnObjectInspectorResolver returnOIResolver;
@@ -103,37 +110,31 @@ public class GenericUDFDecode extends GenericUDF {
 	}
 
 	@Override
-	public Object evaluate(DeferredObject[] records) throws HiveException {
+	protected Object evaluateRow(DeferredObject[] records) throws HiveException {
 
 		Object fieldValue = records[0].get();
-		Object defaultValue = null;
-		if (records.length % 2 == 0) {
-			defaultValue = records[records.length - 1].get();
-		}
+		String field = fieldValue == null ? null
+				: ((PrimitiveObjectInspector) argumentOIs[0]).getPrimitiveJavaObject(fieldValue).toString();
 
-		Object returnValue = null;
 		for (int i = 1; i + 1 < records.length; i += 2) {
 			Object caseValue = records[i].get();
-			if (fieldValue == null || caseValue == null) {
-				break;
+			boolean matched;
+			if (field == null || caseValue == null) {
+				matched = field == null && caseValue == null;
+			} else {
+				Object caseObj = ((PrimitiveObjectInspector) argumentOIs[i]).getPrimitiveJavaObject(caseValue);
+				matched = field.equals(caseObj.toString());
 			}
-
-			Object caseObj = ((PrimitiveObjectInspector) argumentOIs[i]).getPrimitiveJavaObject(caseValue);
-			Object fieldObj = ((PrimitiveObjectInspector) argumentOIs[0]).getPrimitiveJavaObject(fieldValue);
-
-			if (caseObj.toString().equals(fieldObj.toString())) {
-				returnValue = records[i + 1].get();
-				returnValue = returnOIResolver.convertIfNecessary(returnValue, argumentOIs[i + 1]);
-				break;
+			if (matched) {
+				return returnOIResolver.convertIfNecessary(records[i + 1].get(), argumentOIs[i + 1]);
 			}
-
 		}
 
-		if (returnValue == null) {
-			returnValue = defaultValue;
-			returnValue = returnOIResolver.convertIfNecessary(returnValue, argumentOIs[records.length - 1]);
+		if (records.length % 2 == 0) {
+			int last = records.length - 1;
+			return returnOIResolver.convertIfNecessary(records[last].get(), argumentOIs[last]);
 		}
-		return returnValue;
+		return null;
 	}
 
 	@Override
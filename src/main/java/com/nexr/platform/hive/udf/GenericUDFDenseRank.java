@@ -34,12 +34,12 @@ import org.apache.hive.pdk.HivePdkUnitTests;
 
 
 @Description(name = "dense_rank",
-    value = "_FUNC_(hash_key, order_by_col1, order_by_col2 ...) " +
+    value = "_FUNC_(partition_key, order_by_col1, order_by_col2 ...) " +
             "- Returns  the rank of a row in an ordered group of rows",
     extended = "Example:\n"
-    + "  > SELECT _FUNC_(HASH(p1, p2), order_by_col1) FROM (\n"
+    + "  > SELECT _FUNC_(STRUCT(p1, p2), order_by_col1) FROM (\n"
     + "  > 		SELECT order_by_col1 FROM table \n"
-    + "  >      DISTRIBUTE BY HASH(p1,p2)\n"
+    + "  >      DISTRIBUTE BY p1,p2\n"
     + "  >      SORT BY p1, p2, order_by_col1 \n"
     + "  > );\n\n"
     + "ORACLE:\n"
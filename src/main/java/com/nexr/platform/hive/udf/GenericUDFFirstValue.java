@@ -0,0 +1,157 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.UDFType;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector.PrimitiveCategory;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorUtils;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+/**
+ * GenericUDFFirstValue
+ *
+ * The first value of the sorted rows of each partition. Only the value is
+ * kept from row to row, in a {@link ValueSlot}. The window ends at the
+ * current row, as Oracle's ROWS BETWEEN UNBOUNDED PRECEDING AND CURRENT ROW.
+ */
+@Description(name = "first_value",
+    value = "_FUNC_(partition_key, column[, ignore_nulls]) " +
+    		"- Returns the first value in an ordered set of values",
+    extended = "Example:\n"
+    + "  > SELECT _FUNC_(STRUCT(p1,p2), column) FROM (\n"
+    + "  > 		SELECT ~ FROM table DISTRIBUTE BY p1,p2 SORT BY p1,p2,order_by_col\n"
+    + "  > );\n\n"
+    + "ORACLE :\n"
+    + "  > SELECT FIRST_VALUE(column) OVER(PARTITION BY p1,p2 ORDER BY order_by_col\n"
+    + "  >     ROWS BETWEEN UNBOUNDED PRECEDING AND CURRENT ROW) FROM table;\n")
+
+@HivePdkUnitTests(
+	setup = "", cleanup = "",
+    cases = {
+      @HivePdkUnitTest(
+        query = "SELECT t.empno, t.deptno, t.sal, nexr_first_value(t.deptno, t.sal) as top_sal,"
+        	+"    nexr_first_value(t.deptno, t.comm, true) as first_comm"
+        	+"  FROM ("
+        	+"      select a.empno, a.deptno, a.sal, a.comm from emp a"
+        	+"      distribute by a.deptno"
+        	+"      sort BY a.deptno, a.sal desc, a.empno"
+        	+"  ) t;",
+        result ="7839\t10\t5000\t5000\tNULL\n"
+        	+"7782\t10\t2450\t5000\tNULL\n"
+        	+"7934\t10\t1300\t5000\tNULL\n"
+        	+"7788\t20\t3000\t3000\tNULL\n"
+        	+"7902\t20\t3000\t3000\tNULL\n"
+        	+"7566\t20\t2975\t3000\tNULL\n"
+        	+"7876\t20\t1100\t3000\tNULL\n"
+        	+"7369\t20\t800\t3000\tNULL\n"
+        	+"7698\t30\t2850\t2850\tNULL\n"
+        	+"7499\t30\t1600\t2850\t300\n"
+        	+"7844\t30\t1500\t2850\t300\n"
+        	+"7521\t30\t1250\t2850\t300\n"
+        	+"7654\t30\t1250\t2850\t300\n"
+        	+"7900\t30\t950\t2850\t300")
+    }
+  )
+
+@UDFType(deterministic = false, stateful = true)
+public class GenericUDFFirstValue extends MeteredGenericUDF {
+	private final StateSize state = StateSize.of(getClass(), metrics);
+	private PartitionKey key;
+	private ValueSlot slot;
+	private PrimitiveObjectInspector ignoreNullsOI;
+	private long counted;
+
+	@Override
+	public ObjectInspector initialize(ObjectInspector[] arguments) throws UDFArgumentException {
+		int options = firstOption();
+		if (arguments.length < options || arguments.length > options + 1) {
+			throw new UDFArgumentException(usage());
+		}
+		if (arguments.length > options) {
+			if (arguments[options].getCategory() != ObjectInspector.Category.PRIMITIVE
+					|| ((PrimitiveObjectInspector) arguments[options]).getPrimitiveCategory() != PrimitiveCategory.BOOLEAN) {
+				throw new UDFArgumentTypeException(options, "ignore_nulls must be a boolean but "
+						+ arguments[options].getTypeName() + " is passed.");
+			}
+			ignoreNullsOI = (PrimitiveObjectInspector) arguments[options];
+		}
+
+		key = new PartitionKey(arguments, 0, 1);
+		slot = new ValueSlot(arguments[1]);
+		return slot.resultInspector();
+	}
+
+	/** @return the index of the ignore_nulls argument. */
+	protected int firstOption() {
+		return 2;
+	}
+
+	protected String usage() {
+		return "The function FIRST_VALUE accepts the partition key, a column and an optional ignore_nulls.";
+	}
+
+	/**
+	 * @param counted the number of rows of the partition so far, counting only
+	 *        non-NULL values when NULLs are ignored.
+	 * @return true if the value of the counted-th row is kept.
+	 */
+	protected boolean keep(long counted, DeferredObject[] arguments) throws HiveException {
+		return counted == 1;
+	}
+
+	@Override
+	protected Object evaluateRow(DeferredObject[] arguments) throws HiveException {
+		if (key.isNew(arguments)) {
+			slot.clear();
+			counted = 0;
+		}
+
+		Object value = arguments[1].get();
+		if (value != null || !ignoreNulls(arguments)) {
+			counted++;
+			if (keep(counted, arguments)) {
+				slot.set(value);
+			}
+		}
+		state.set(key.bytes() + slot.bytes());
+		return slot.get();
+	}
+
+	private boolean ignoreNulls(DeferredObject[] arguments) throws HiveException {
+		if (ignoreNullsOI == null) {
+			return false;
+		}
+		Object ignoreNulls = arguments[firstOption()].get();
+		return ignoreNulls != null && PrimitiveObjectInspectorUtils.getBoolean(ignoreNulls, ignoreNullsOI);
+	}
+
+	@Override
+	public String getDisplayString(String[] children) {
+		return "first_value(" + StringUtils.join(children, ',') + ")";
+	}
+}
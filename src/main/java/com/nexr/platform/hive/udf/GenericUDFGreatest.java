@@ -19,19 +19,32 @@ package com.nexr.platform.hive.udf;
 
 import org.apache.hadoop.hive.ql.exec.Description;
 import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentLengthException;
 import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDFUtils;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorConverters;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparator;
 import org.apache.hive.pdk.HivePdkUnitTest;
 import org.apache.hive.pdk.HivePdkUnitTests;
 
 /**
  * GenericUDF Class for SQL construct "greatest(value1, value2, value3, ....)". 
  * Oracle's CREATEST returns the greatest of the list of one or more expressions.
- * 
+ * <p>
+ * As in Oracle, the result is NULL if any of the expressions is NULL.
+ * The comparison and the conversion to the return type are resolved for each
+ * argument in initialize(): integer and floating point arguments are compared
+ * as long and double values and strings are compared on their UTF-8 bytes.
+ * {@link GenericUDFLeast} shares this implementation.
  */
 @Description(name = "greatest", value = "_FUNC_(value1, value2, value3, ....) " +
 		"- Returns the greatest value in the list.", 
@@ -45,15 +58,34 @@ import org.apache.hive.pdk.HivePdkUnitTests;
 		@HivePdkUnitTest(query = "SELECT nexr_greatest('2', '5', '12', '3') " +
 				"FROM dual_data;", result = "5"),
 		@HivePdkUnitTest(query = "SELECT nexr_greatest('apples', 'oranges', 'bananas') " +
-				"FROM dual_data;", result = "oranges") })
-public class GenericUDFGreatest extends GenericUDF {
+				"FROM dual_data;", result = "oranges"),
+		@HivePdkUnitTest(query = "SELECT nexr_greatest(1.5, 2, 0) " +
+				"FROM dual_data;", result = "2.0"),
+		@HivePdkUnitTest(query = "SELECT nexr_greatest(2, null, 12) " +
+				"FROM dual_data;", result = "NULL") })
+public class GenericUDFGreatest extends MeteredGenericUDF {
+
+	private static final int COMPARE_LONG = 0;
+	private static final int COMPARE_DOUBLE = 1;
+	private static final int COMPARE_STRING = 2;
+	private static final int COMPARE_OTHER = 3;
 
 	private ObjectInspector[] argumentOIs;
 	private GenericUDFUtils.ReturnObjectInspectorResolver returnOIResolver;
+	private ObjectInspectorConverters.Converter[] compareConverters;
+	private ObjectInspectorConverters.Converter[] returnConverters;
+	private ObjectInspector compareOI;
+	private int compareType;
+	private int direction;
 
 	@Override
 	public ObjectInspector initialize(ObjectInspector[] arguments) throws UDFArgumentException {
 
+		if (arguments.length < 1) {
+			throw new UDFArgumentLengthException("The function " + getFuncName()
+					+ "(value1, value2, ...) needs at least one argument.");
+		}
+
 		for (int i = 0; i < arguments.length; i++) {
 			if (arguments[i].getCategory() != ObjectInspector.Category.PRIMITIVE) {
 				throw new UDFArgumentTypeException(i, "Only primitive type arguments are accepted but "
@@ -71,36 +103,115 @@ public class GenericUDFGreatest extends GenericUDF {
 						+ "\" is found");
 			}
 		}
+		ObjectInspector returnOI = returnOIResolver.get();
+
+		switch (((PrimitiveObjectInspector) returnOI).getPrimitiveCategory()) {
+		case BYTE:
+		case SHORT:
+		case INT:
+		case LONG:
+			compareType = COMPARE_LONG;
+			compareOI = PrimitiveObjectInspectorFactory.writableLongObjectInspector;
+			break;
+		case FLOAT:
+		case DOUBLE:
+			compareType = COMPARE_DOUBLE;
+			compareOI = PrimitiveObjectInspectorFactory.writableDoubleObjectInspector;
+			break;
+		case STRING:
+			compareType = COMPARE_STRING;
+			compareOI = PrimitiveObjectInspectorFactory.writableStringObjectInspector;
+			break;
+		default:
+			compareType = COMPARE_OTHER;
+			compareOI = returnOI;
+		}
 
-		return returnOIResolver.get();
+		compareConverters = new ObjectInspectorConverters.Converter[arguments.length];
+		returnConverters = new ObjectInspectorConverters.Converter[arguments.length];
+		for (int i = 0; i < arguments.length; i++) {
+			compareConverters[i] = ObjectInspectorConverters.getConverter(arguments[i], compareOI);
+			returnConverters[i] = ObjectInspectorConverters.getConverter(arguments[i], returnOI);
+		}
+		direction = direction();
+		return returnOI;
 	}
 
 	@Override
-	public Object evaluate(DeferredObject[] fields) throws HiveException {
-		Object greatestObject = null;
-		ObjectInspector greatestOI = null;
+	protected Object evaluateRow(DeferredObject[] fields) throws HiveException {
+		int best = -1;
+		Object bestObject = null;
+		long bestLong = 0;
+		double bestDouble = 0;
+		Text bestText = null;
+		Object bestOther = null;
 
 		for (int i = 0; i < fields.length; i++) {
 			Object fieldObject = fields[i].get();
-			if (greatestObject == null) {
-				greatestObject = fieldObject;
-				greatestOI = argumentOIs[i];
-				continue;
+			if (fieldObject == null) {
+				return null;
 			}
 
-			if (ObjectInspectorUtils.compare(greatestObject, greatestOI, fieldObject, argumentOIs[i]) <= 0) {
-				greatestObject = fieldObject;
-				greatestOI = argumentOIs[i];
+			int cmp;
+			switch (compareType) {
+			case COMPARE_LONG: {
+				long value = ((LongWritable) compareConverters[i].convert(fieldObject)).get();
+				cmp = value < bestLong ? -1 : (value == bestLong ? 0 : 1);
+				if (best < 0 || cmp * direction > 0) {
+					bestLong = value;
+				}
+				break;
+			}
+			case COMPARE_DOUBLE: {
+				double value = ((DoubleWritable) compareConverters[i].convert(fieldObject)).get();
+				cmp = Double.compare(value, bestDouble);
+				if (best < 0 || cmp * direction > 0) {
+					bestDouble = value;
+				}
+				break;
+			}
+			case COMPARE_STRING: {
+				Text value = (Text) compareConverters[i].convert(fieldObject);
+				cmp = best < 0 ? 0 : WritableComparator.compareBytes(value.getBytes(), 0, value.getLength(),
+						bestText.getBytes(), 0, bestText.getLength());
+				if (best < 0 || cmp * direction > 0) {
+					bestText = value;
+				}
+				break;
+			}
+			default: {
+				Object value = compareConverters[i].convert(fieldObject);
+				cmp = best < 0 ? 0 : ObjectInspectorUtils.compare(value, compareOI, bestOther, compareOI);
+				if (best < 0 || cmp * direction > 0) {
+					bestOther = value;
+				}
+			}
+			}
+
+			if (best < 0 || cmp * direction > 0) {
+				best = i;
+				bestObject = fieldObject;
 			}
 		}
 
-		return returnOIResolver.convertIfNecessary(greatestObject, greatestOI);
+		return returnConverters[best].convert(bestObject);
+	}
+
+	/**
+	 * @return 1 to keep the greatest value, -1 to keep the least value.
+	 */
+	protected int direction() {
+		return 1;
+	}
+
+	protected String getFuncName() {
+		return "greatest";
 	}
 
 	@Override
 	public String getDisplayString(String[] children) {
 		StringBuilder sb = new StringBuilder();
-		sb.append("greatest (");
+		sb.append(getFuncName()).append(" (");
 		for (int i = 0; i < children.length - 1; i++) {
 			sb.append(children[i]).append(", ");
 		}
@@ -26,7 +26,6 @@ import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
 import org.apache.hadoop.hive.ql.exec.UDFArgumentLengthException;
 import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
-import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDFUtils;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorConverters;
@@ -79,7 +78,7 @@ import org.apache.hadoop.io.Text;
     }
   )
 
-public class GenericUDFInstr extends GenericUDF {
+public class GenericUDFInstr extends MeteredGenericUDF {
 
 	private ObjectInspectorConverters.Converter[] converters;
 
@@ -125,7 +124,7 @@ public class GenericUDFInstr extends GenericUDF {
 	private IntWritable intWritable = new IntWritable(0);
 
 	@Override
-	public Object evaluate(DeferredObject[] arguments) throws HiveException {
+	protected Object evaluateRow(DeferredObject[] arguments) throws HiveException {
 		if (arguments[0].get() == null || arguments[1].get() == null) {
 			return null;
 		}
@@ -25,7 +25,6 @@ import org.apache.hadoop.hive.ql.exec.Description;
 import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.udf.UDFType;
-import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorConverters;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorConverters.Converter;
@@ -38,11 +37,11 @@ import org.apache.hive.pdk.HivePdkUnitTests;
 
 
 @Description(name = "lag",
-    value = "_FUNC_(hash_key,column[,offset[,default]]) " +
+    value = "_FUNC_(partition_key,column[,offset[,default]]) " +
     		"-  Returns values from a previous row in the table.",
     extended = "Example:\n"
-    + "  > SELECT _FUNC_(HASH(p1,p2), column [,offset[,default]]) FROM (\n"
-    + "  > 		SELECT ~ FROM table DISTRIBUTE BY HASH(p1,p2) SORT BY p1,p2\n"
+    + "  > SELECT _FUNC_(STRUCT(p1,p2), column [,offset[,default]]) FROM (\n"
+    + "  > 		SELECT ~ FROM table DISTRIBUTE BY p1,p2 SORT BY p1,p2\n"
     + "  > );")
 
     @HivePdkUnitTests(
@@ -97,10 +96,12 @@ import org.apache.hive.pdk.HivePdkUnitTests;
     
     
 @UDFType(deterministic = false, stateful = true)
-public class GenericUDFLag extends GenericUDF {
+public class GenericUDFLag extends MeteredGenericUDF {
+	private final StateSize state = StateSize.of(getClass(), metrics);
+	private long queueBytes;
 	private ObjectInspector[] argumentOIs;
-	private ObjectInspector resultOI, prevHashStandardOI, valueStandardOI;
-	private Object prevHash;
+	private PartitionKey key;
+	private ObjectInspector resultOI, valueStandardOI;
 	private ArrayList<Object> queue = new ArrayList<Object>();
 	@Override
 	public ObjectInspector initialize(ObjectInspector[] arguments) throws UDFArgumentException {
@@ -109,15 +110,14 @@ public class GenericUDFLag extends GenericUDF {
 		}
 		
 		argumentOIs = arguments;
-		prevHashStandardOI = ObjectInspectorUtils.getStandardObjectInspector(arguments[0],ObjectInspectorCopyOption.JAVA);
+		key = new PartitionKey(arguments, 0, 1);
 		valueStandardOI =  ObjectInspectorUtils.getStandardObjectInspector(arguments[1],ObjectInspectorCopyOption.JAVA);
 		resultOI=arguments[1];
 		return resultOI;
 	}
 
 	@Override
-	public Object evaluate(DeferredObject[] arguments) throws HiveException {
-		Object hash = arguments[0].get();
+	protected Object evaluateRow(DeferredObject[] arguments) throws HiveException {
 		Object value = arguments[1].get();
 		int offset=1;
 		Object defaultValue=null;
@@ -127,15 +127,20 @@ public class GenericUDFLag extends GenericUDF {
 		if (arguments.length==4)
 			defaultValue=arguments[3].get();
 		
-		if (prevHash==null||ObjectInspectorUtils.compare(prevHash,prevHashStandardOI,hash,argumentOIs[0])!=0) {
+		if (key.isNew(arguments)) {
 			queue.clear();
+			queueBytes = 0;
 		}
 		
-		queue.add(ObjectInspectorUtils.copyToStandardObject(value,argumentOIs[1],ObjectInspectorCopyOption.JAVA));
-		prevHash=ObjectInspectorUtils.copyToStandardObject(hash, argumentOIs[0],ObjectInspectorCopyOption.JAVA);
+		Object copy = ObjectInspectorUtils.copyToStandardObject(value,argumentOIs[1],ObjectInspectorCopyOption.JAVA);
+		queue.add(copy);
+		queueBytes += StateSize.estimate(copy, valueStandardOI);
+		state.set(queueBytes + key.bytes());
 		if (queue.size()==offset+1) {
+			Object lagged = queue.remove(0);
+			queueBytes -= StateSize.estimate(lagged, valueStandardOI);
 			Converter converter = ObjectInspectorConverters.getConverter(valueStandardOI, resultOI);
-			return converter.convert(queue.remove(0));
+			return converter.convert(lagged);
 		}
 		return defaultValue;
 	}
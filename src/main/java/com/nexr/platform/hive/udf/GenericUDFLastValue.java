@@ -0,0 +1,94 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.UDFType;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+/**
+ * GenericUDFLastValue
+ *
+ * The value of the last row of each partition up to the current one, which
+ * is the current value, or the last non-NULL value when NULLs are ignored.
+ * The window ends at the current row, as Oracle's ROWS BETWEEN UNBOUNDED
+ * PRECEDING AND CURRENT ROW, not at its last peer as Oracle's default RANGE
+ * window with ORDER BY. For the last value of a whole partition use
+ * {@link GenericUDTFLastValue}.
+ */
+@Description(name = "last_value",
+    value = "_FUNC_(partition_key, column[, ignore_nulls]) " +
+    		"- Returns the last value up to the current row in an ordered set of values",
+    extended = "Example:\n"
+    + "  > SELECT _FUNC_(STRUCT(p1,p2), column, true) FROM (\n"
+    + "  > 		SELECT ~ FROM table DISTRIBUTE BY p1,p2 SORT BY p1,p2,order_by_col\n"
+    + "  > );\n\n"
+    + "ORACLE :\n"
+    + "  > SELECT LAST_VALUE(column IGNORE NULLS) OVER(PARTITION BY p1,p2 ORDER BY order_by_col\n"
+    + "  >     ROWS BETWEEN UNBOUNDED PRECEDING AND CURRENT ROW) FROM table;\n")
+
+@HivePdkUnitTests(
+	setup = "", cleanup = "",
+    cases = {
+      @HivePdkUnitTest(
+        query = "SELECT t.empno, t.deptno, t.comm, nexr_last_value(t.deptno, t.comm, true) as last_comm"
+        	+"  FROM ("
+        	+"      select a.empno, a.deptno, a.comm from emp a"
+        	+"      distribute by a.deptno"
+        	+"      sort BY a.deptno, a.empno"
+        	+"  ) t;",
+        result ="7782\t10\tNULL\tNULL\n"
+        	+"7839\t10\tNULL\tNULL\n"
+        	+"7934\t10\tNULL\tNULL\n"
+        	+"7369\t20\tNULL\tNULL\n"
+        	+"7566\t20\tNULL\tNULL\n"
+        	+"7788\t20\tNULL\tNULL\n"
+        	+"7876\t20\tNULL\tNULL\n"
+        	+"7902\t20\tNULL\tNULL\n"
+        	+"7499\t30\t300\t300\n"
+        	+"7521\t30\t500\t500\n"
+        	+"7654\t30\t1400\t1400\n"
+        	+"7698\t30\tNULL\t1400\n"
+        	+"7844\t30\t0\t0\n"
+        	+"7900\t30\tNULL\t0")
+    }
+  )
+
+@UDFType(deterministic = false, stateful = true)
+public class GenericUDFLastValue extends GenericUDFFirstValue {
+
+	@Override
+	protected String usage() {
+		return "The function LAST_VALUE accepts the partition key, a column and an optional ignore_nulls.";
+	}
+
+	@Override
+	protected boolean keep(long counted, DeferredObject[] arguments) throws HiveException {
+		return true;
+	}
+
+	@Override
+	public String getDisplayString(String[] children) {
+		return "last_value(" + StringUtils.join(children, ',') + ")";
+	}
+}
@@ -0,0 +1,56 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.nexr.platform.hive.udf;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+/**
+ * GenericUDF Class for SQL construct "least(value1, value2, value3, ....)". 
+ * Oracle's LEAST returns the least of the list of one or more expressions.
+ * It shares the typed comparison of {@link GenericUDFGreatest}.
+ */
+@Description(name = "least", value = "_FUNC_(value1, value2, value3, ....) " +
+		"- Returns the least value in the list.", 
+		extended = "Example:\n" + " > SELECT _FUNC_(2, 5, 12, 3) FROM src;\n 2")
+@HivePdkUnitTests(setup = "create table dual_data (i int); "
+		+ "insert overwrite table dual_data select 1 from dual limit 1;", 
+		cleanup = "drop table if exists dual_data;", 
+		cases = {
+		@HivePdkUnitTest(query = "SELECT nexr_least(2, 5, 12, 3) " +
+				"FROM dual_data;", result = "2"),
+		@HivePdkUnitTest(query = "SELECT nexr_least('2', '5', '12', '3') " +
+				"FROM dual_data;", result = "12"),
+		@HivePdkUnitTest(query = "SELECT nexr_least('apples', 'oranges', 'bananas') " +
+				"FROM dual_data;", result = "apples"),
+		@HivePdkUnitTest(query = "SELECT nexr_least(2, null, 12) " +
+				"FROM dual_data;", result = "NULL") })
+public class GenericUDFLeast extends GenericUDFGreatest {
+
+	@Override
+	protected int direction() {
+		return -1;
+	}
+
+	@Override
+	protected String getFuncName() {
+		return "least";
+	}
+
+}
@@ -56,7 +56,7 @@ import org.apache.hive.pdk.HivePdkUnitTests;
 		@HivePdkUnitTest(query = "SELECT nexr_lnnvl(true) FROM dual_data;", result = "false"),
 		@HivePdkUnitTest(query = "SELECT name, height FROM dual WHERE nexr_lnnvl(height > 175 );", result = "Adam\t174.3\n"
 				+ "Bravo\tNULL") })
-public class GenericUDFLnnvl extends GenericUDF {
+public class GenericUDFLnnvl extends MeteredGenericUDF {
 
 	private ObjectInspector[] argumentIOs;
 	private ObjectInspector returnInspector;
@@ -90,7 +90,7 @@ public class GenericUDFLnnvl extends GenericUDF {
 	private BooleanWritable booleanWritable = new BooleanWritable();
 
 	@Override
-	public Object evaluate(DeferredObject[] arguments) throws HiveException {
+	protected Object evaluateRow(DeferredObject[] arguments) throws HiveException {
 
 		if (arguments[0].get() == null) {
 			booleanWritable.set(true);
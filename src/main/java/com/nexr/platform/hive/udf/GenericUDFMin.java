@@ -24,7 +24,6 @@ import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
 import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.udf.UDFType;
-import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
 import org.apache.hadoop.hive.serde.Constants;
 import org.apache.hadoop.hive.serde2.io.DoubleWritable;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
@@ -39,11 +38,11 @@ import org.apache.hive.pdk.HivePdkUnitTests;
 
 
 @Description(name = "min",
-		value = "_FUNC_(hash_key, order_by_col1, order_by_col2 ...) " +
+		value = "_FUNC_(p1, p2, ..., value) " +
 				"- Returns the minimum value in a group of values",
 		extended = "Example:\n"
-			+ "  > SELECT _FUNC_(HASH(p1, p2), order_by_col1, order_by_col2, ... ) FROM (\n"
-			+ "  > 		SELECT ~ FROM table DISTRIBUTE BY HASH(p1,p2) " 
+			+ "  > SELECT _FUNC_(p1, p2, value) FROM (\n"
+			+ "  > 		SELECT ~ FROM table DISTRIBUTE BY p1,p2 " 
 			+ "SORT BY order_by_col1, order_by_col2 DESC, ... \n"
 			+ "  > );")
 
@@ -75,26 +74,27 @@ import org.apache.hive.pdk.HivePdkUnitTests;
   )
   
 @UDFType(deterministic = false, stateful = true)
-public class GenericUDFMin extends GenericUDF {
+public class GenericUDFMin extends MeteredGenericUDF {
+	private final StateSize state = StateSize.of(getClass(), metrics);
 	private final LongWritable longResult = new LongWritable();
 	private final DoubleWritable doubleResult = new DoubleWritable();
-	private ObjectInspector hashOI,valueOI,prevHashStandardOI,resultOI,minStandardOI;
-	private Object prevHash,min;
+	private PartitionKey key;
+	private ObjectInspector valueOI,resultOI,minStandardOI;
+	private Object min;
 	@Override
 	public ObjectInspector initialize(ObjectInspector[] arguments) throws UDFArgumentException {
-		if (arguments.length != 2) {
-			throw new UDFArgumentException("Exactly two argument is expected.");
+		if (arguments.length < 2) {
+			throw new UDFArgumentException("The partition columns and a value are expected.");
 		}
 
-		for(int i=0;i<arguments.length;i++){
-			if (arguments[i].getCategory() != ObjectInspector.Category.PRIMITIVE) {
-				throw new UDFArgumentTypeException(i,
-						"Only primitive type arguments are accepted but "
-						+ arguments[i].getTypeName() + " is passed.");
-			}
+		int last = arguments.length - 1;
+		if (arguments[last].getCategory() != ObjectInspector.Category.PRIMITIVE) {
+			throw new UDFArgumentTypeException(last,
+					"Only primitive type arguments are accepted but "
+					+ arguments[last].getTypeName() + " is passed.");
 		}
 
-		String t = arguments[1].getTypeName();
+		String t = arguments[last].getTypeName();
 		if (t.equals(Constants.TINYINT_TYPE_NAME)||
 				t.equals(Constants.SMALLINT_TYPE_NAME)||
 				t.equals(Constants.INT_TYPE_NAME)||
@@ -105,23 +105,21 @@ public class GenericUDFMin extends GenericUDF {
 				t.equals(Constants.STRING_TYPE_NAME))
 			resultOI = PrimitiveObjectInspectorFactory.writableDoubleObjectInspector;
 		else{ 
-			throw new UDFArgumentTypeException(1,
+			throw new UDFArgumentTypeException(last,
 					"Only numeric or string type arguments are accepted but "
-					+ arguments[1].getTypeName() + " is passed.");
+					+ arguments[last].getTypeName() + " is passed.");
 		}
 
-		hashOI = arguments[0];
-		valueOI = arguments[1];
-		prevHashStandardOI=ObjectInspectorUtils.getStandardObjectInspector(hashOI,ObjectInspectorCopyOption.JAVA);
+		key = new PartitionKey(arguments, 0, last);
+		valueOI = arguments[last];
 		minStandardOI= ObjectInspectorUtils.getStandardObjectInspector(valueOI,ObjectInspectorCopyOption.JAVA); 
 		return resultOI;
 	}
 
 	@Override
-	public Object evaluate(DeferredObject[] arguments) throws HiveException {
-		Object hash = arguments[0].get();
-		Object value = arguments[1].get();
-		if (prevHash==null||ObjectInspectorUtils.compare(prevHash,prevHashStandardOI,hash,hashOI)!=0) {
+	protected Object evaluateRow(DeferredObject[] arguments) throws HiveException {
+		Object value = arguments[arguments.length - 1].get();
+		if (key.isNew(arguments)) {
 			min = ObjectInspectorUtils.copyToStandardObject(value,valueOI,ObjectInspectorCopyOption.JAVA);
 		}
 		else{
@@ -130,7 +128,7 @@ public class GenericUDFMin extends GenericUDF {
 			}
 		}
 
-		prevHash=ObjectInspectorUtils.copyToStandardObject(hash,hashOI, ObjectInspectorCopyOption.JAVA);
+		state.set(key.bytes()+StateSize.estimate(min,minStandardOI));
 
 		Converter converter = ObjectInspectorConverters.getConverter(minStandardOI, resultOI);
 		if(resultOI.getTypeName()==Constants.DOUBLE_TYPE_NAME){
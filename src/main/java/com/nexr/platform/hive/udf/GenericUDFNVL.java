@@ -30,24 +30,32 @@ import org.apache.hive.pdk.HivePdkUnitTest;
 import org.apache.hive.pdk.HivePdkUnitTests;
 
 /**
- * GenericUDF Class for SQL construct "nvl(expr1, expr2)". see <a href=
+ * GenericUDF Class for SQL construct "nvl(expr1, expr2, ...)". see <a href=
  * "http://download.oracle.com/docs/cd/B19306_01/server.102/b14200/functions105.htm" >NVL</a>.
  * <p>
+ * With more than two arguments it returns the first one which is not null, like
+ * <code>COALESCE</code>. Arguments are evaluated from left to right and the ones
+ * after the first non-null value are never evaluated.
+ * <p>
  * There is function <code>COALESCE</code> in Hive, 
  * but it is convenient to convert from SQL to HQL without query
  * changes.
  * <p>
  * 
  */
-@Description(name = "nvl", value = "_FUNC_(expr1, expr2) - Returns expr2 if expr1 is null", 
+@Description(name = "nvl", value = "_FUNC_(expr1, expr2, ...) - Returns expr2 if expr1 is null, "
+		+ "or the first non-null expression when more than two are given", 
 		extended = "Example:\n"
-		+ " > SELECT _FUNC_(dep, 'Not Applicable') FROM src;\n 'Not Applicable' if dep is null")
+		+ " > SELECT _FUNC_(dep, 'Not Applicable') FROM src;\n 'Not Applicable' if dep is null\n"
+		+ " > SELECT _FUNC_(dep, prev_dep, 'Not Applicable') FROM src;\n prev_dep if dep is null")
 @HivePdkUnitTests(setup = "create table dual_data (i int); "
 		+ "insert overwrite table dual_data select null from dual limit 1;", 
 		cleanup = "drop table if exists dual_data;", 
 		cases = { @HivePdkUnitTest(query = "SELECT nexr_nvl(i, 'Not Applicable') " +
-				"FROM dual_data;", result = "Not Applicable") })
-public class GenericUDFNVL extends GenericUDF {
+				"FROM dual_data;", result = "Not Applicable"),
+				@HivePdkUnitTest(query = "SELECT nexr_nvl(i, null, 'Second', 'Third') " +
+				"FROM dual_data;", result = "Second") })
+public class GenericUDFNVL extends MeteredGenericUDF {
 
 	private ObjectInspector[] argumentOIs;
 	private GenericUDFUtils.ReturnObjectInspectorResolver returnOIResolver;
@@ -69,28 +77,29 @@ public class GenericUDFNVL extends GenericUDF {
 		argumentOIs = arguments;
 		returnOIResolver = new GenericUDFUtils.ReturnObjectInspectorResolver(true);
 
-		if (!(returnOIResolver.update(arguments[0]) && returnOIResolver.update(arguments[1]))) {
-			throw new UDFArgumentTypeException(1,
-					"The first and the second arguments of function NVL should have the same type, "
-							+ "but they are different: \"" + arguments[0].getTypeName() + "\" and \""
-							+ arguments[1].getTypeName() + "\"");
+		for (int i = 0; i < arguments.length; i++) {
+			if (!returnOIResolver.update(arguments[i])) {
+				throw new UDFArgumentTypeException(i,
+						"The arguments of function NVL should have the same type, "
+								+ "but they are different: \"" + returnOIResolver.get().getTypeName()
+								+ "\" and \"" + arguments[i].getTypeName() + "\"");
+			}
 		}
 
 		return returnOIResolver.get();
 	}
 
 	@Override
-	public Object evaluate(DeferredObject[] arguments) throws HiveException {
+	protected Object evaluateRow(DeferredObject[] arguments) throws HiveException {
 
-		Object returnValue = null;
-		if (arguments[0].get() == null) {
-			// fieldValue is null, return defaultValue
-			returnValue = returnOIResolver.convertIfNecessary(arguments[1].get(), argumentOIs[1]);
-		} else {
-			returnValue = returnOIResolver.convertIfNecessary(arguments[0].get(), argumentOIs[0]);
+		// evaluate each argument once, and only until a non-null value is found
+		for (int i = 0; i < arguments.length; i++) {
+			Object value = arguments[i].get();
+			if (value != null) {
+				return returnOIResolver.convertIfNecessary(value, argumentOIs[i]);
+			}
 		}
-
-		return returnValue;
+		return null;
 	}
 
 	@Override
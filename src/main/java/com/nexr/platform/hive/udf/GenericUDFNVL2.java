@@ -46,6 +46,7 @@ import org.apache.hive.pdk.HivePdkUnitTests;
  * 
  * It returns 'n/a' if supplier_city is null otherwise return 'Completed'.
  * </pre>
+ * Only the selected value expression is evaluated.
  * 
  * 
  */
@@ -60,7 +61,7 @@ import org.apache.hive.pdk.HivePdkUnitTests;
 		cases = {
 		@HivePdkUnitTest(query = "SELECT nexr_nvl2(null, 'Completed', 'n/a') " +
 				"FROM dual_data;", result = "n/a") })
-public class GenericUDFNVL2 extends GenericUDF {
+public class GenericUDFNVL2 extends MeteredGenericUDF {
 
 	private ObjectInspector[] argumentOIs;
 	private GenericUDFUtils.ReturnObjectInspectorResolver returnOIResolver;
@@ -96,17 +97,11 @@ public class GenericUDFNVL2 extends GenericUDF {
 	}
 
 	@Override
-	public Object evaluate(DeferredObject[] arguments) throws HiveException {
+	protected Object evaluateRow(DeferredObject[] arguments) throws HiveException {
 
-		Object returnValue = null;
-		if (arguments[0].get() == null) {
-			// return value_if_null
-			returnValue = returnOIResolver.convertIfNecessary(arguments[2].get(), argumentOIs[2]);
-		} else {
-			returnValue = returnOIResolver.convertIfNecessary(arguments[1].get(), argumentOIs[1]);
-		}
-
-		return returnValue;
+		// the condition is evaluated once, and only the selected branch after it
+		int selected = arguments[0].get() == null ? 2 : 1;
+		return returnOIResolver.convertIfNecessary(arguments[selected].get(), argumentOIs[selected]);
 	}
 
 	@Override
@@ -0,0 +1,122 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.UDFType;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorUtils;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+/**
+ * GenericUDFNthValue
+ *
+ * NULL for the first n - 1 rows of each partition and the value of the n-th
+ * row from then on. Only that value is kept, not the rows before it.
+ * <p>
+ * The window ends at the current row, as Oracle's ROWS BETWEEN UNBOUNDED
+ * PRECEDING AND CURRENT ROW. Oracle's default window with ORDER BY is a RANGE
+ * that also takes the peers of the current row, the rows with the same order
+ * by values, so the results differ on ties.
+ */
+@Description(name = "nth_value",
+    value = "_FUNC_(partition_key, column, n[, ignore_nulls]) " +
+    		"- Returns the n-th value in an ordered set of values",
+    extended = "Example:\n"
+    + "  > SELECT _FUNC_(STRUCT(p1,p2), column, 2) FROM (\n"
+    + "  > 		SELECT ~ FROM table DISTRIBUTE BY p1,p2 SORT BY p1,p2,order_by_col\n"
+    + "  > );\n\n"
+    + "ORACLE :\n"
+    + "  > SELECT NTH_VALUE(column, 2) OVER(PARTITION BY p1,p2 ORDER BY order_by_col\n"
+    + "  >     ROWS BETWEEN UNBOUNDED PRECEDING AND CURRENT ROW) FROM table;\n")
+
+@HivePdkUnitTests(
+	setup = "", cleanup = "",
+    cases = {
+      @HivePdkUnitTest(
+        query = "SELECT t.empno, t.deptno, t.ename, nexr_nth_value(t.deptno, t.ename, 2) as second"
+        	+"  FROM ("
+        	+"      select a.empno, a.deptno, a.ename from emp a"
+        	+"      distribute by a.deptno"
+        	+"      sort BY a.deptno, a.empno"
+        	+"  ) t;",
+        result ="7782\t10\tCLARK\tNULL\n"
+        	+"7839\t10\tKING\tKING\n"
+        	+"7934\t10\tMILLER\tKING\n"
+        	+"7369\t20\tSMITH\tNULL\n"
+        	+"7566\t20\tJONES\tJONES\n"
+        	+"7788\t20\tSCOTT\tJONES\n"
+        	+"7876\t20\tADAMS\tJONES\n"
+        	+"7902\t20\tFORD\tJONES\n"
+        	+"7499\t30\tALLEN\tNULL\n"
+        	+"7521\t30\tWARD\tWARD\n"
+        	+"7654\t30\tMARTIN\tWARD\n"
+        	+"7698\t30\tBLAKE\tWARD\n"
+        	+"7844\t30\tTURNER\tWARD\n"
+        	+"7900\t30\tJAMES\tWARD")
+    }
+  )
+
+@UDFType(deterministic = false, stateful = true)
+public class GenericUDFNthValue extends GenericUDFFirstValue {
+	private PrimitiveObjectInspector nOI;
+
+	@Override
+	public ObjectInspector initialize(ObjectInspector[] arguments) throws UDFArgumentException {
+		if (arguments.length < 3) {
+			throw new UDFArgumentException(usage());
+		}
+		nOI = GenericUDFRank.numberArgument(arguments, 2);
+		return super.initialize(arguments);
+	}
+
+	@Override
+	protected int firstOption() {
+		return 3;
+	}
+
+	@Override
+	protected String usage() {
+		return "The function NTH_VALUE accepts the partition key, a column, n and an optional ignore_nulls.";
+	}
+
+	@Override
+	protected boolean keep(long counted, DeferredObject[] arguments) throws HiveException {
+		Object n = arguments[2].get();
+		if (n == null) {
+			return false;
+		}
+		long nth = PrimitiveObjectInspectorUtils.getLong(n, nOI);
+		if (nth <= 0) {
+			throw new HiveException("NTH_VALUE needs a positive n but " + nth + " is passed.");
+		}
+		return counted == nth;
+	}
+
+	@Override
+	public String getDisplayString(String[] children) {
+		return "nth_value(" + StringUtils.join(children, ',') + ")";
+	}
+}
@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.UDFType;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorUtils;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+/**
+ * GenericUDFNtile
+ *
+ * Divides the sorted rows of each partition into a number of buckets, given the
+ * row count of the partition. The first <code>rows % buckets</code> buckets get
+ * one row more than the others, as in Oracle.
+ * Without the counts, use {@link GenericUDTFNtile}.
+ */
+@Description(name = "ntile",
+    value = "_FUNC_(partition_key, buckets, partition_rows) " +
+            "- Returns the bucket number of a row in the ordered rows of its partition",
+    extended = "Example:\n"
+    + "  > SELECT _FUNC_(STRUCT(t.p1, t.p2), 4, t.cnt) FROM (\n"
+    + "  >      SELECT a.p1, a.p2, a.order_by_col1, c.cnt FROM table a\n"
+    + "  >      JOIN (SELECT p1, p2, COUNT(*) AS cnt FROM table GROUP BY p1, p2) c\n"
+    + "  >      ON (a.p1 = c.p1 AND a.p2 = c.p2)\n"
+    + "  >      DISTRIBUTE BY a.p1, a.p2\n"
+    + "  >      SORT BY a.p1, a.p2, a.order_by_col1\n"
+    + "  > ) t;\n"
+    + "Join the counts before DISTRIBUTE BY and SORT BY: a join does not keep the order of its input.\n\n"
+    + "ORACLE:\n"
+    + "  > SELECT NTILE(4) OVER(PARTITION BY p1,p2 ORDER BY order_by_col1) FROM table;\n"
+    )
+
+@HivePdkUnitTests(
+    setup = "", cleanup = "",
+    cases = {
+      @HivePdkUnitTest(
+        query = "SELECT t.empno, t.deptno, t.sal,"
+        + "    nexr_ntile(t.deptno, 4, if(t.deptno = 10, 3, if(t.deptno = 20, 5, 6))) as bucket"
+        + "  FROM ("
+        + "      select a.empno, a.deptno, a.sal from "
+        + "          emp a"
+        + "      distribute by a.deptno"
+        + "      sort BY a.deptno, a.sal, a.empno"
+        + "  ) t;",
+        result = "7934\t10\t1300\t1\n"
+        + "7782\t10\t2450\t2\n"
+        + "7839\t10\t5000\t3\n"
+        + "7369\t20\t800\t1\n"
+        + "7876\t20\t1100\t1\n"
+        + "7566\t20\t2975\t2\n"
+        + "7788\t20\t3000\t3\n"
+        + "7902\t20\t3000\t4\n"
+        + "7900\t30\t950\t1\n"
+        + "7521\t30\t1250\t1\n"
+        + "7654\t30\t1250\t2\n"
+        + "7844\t30\t1500\t2\n"
+        + "7499\t30\t1600\t3\n"
+        + "7698\t30\t2850\t4"),
+      @HivePdkUnitTest(
+        query = "SELECT t.empno, t.deptno, t.sal, nexr_ntile(t.deptno, 4, t.cnt) as bucket"
+        + "  FROM ("
+        + "      select e.empno, e.deptno, e.sal, c.cnt from emp e"
+        + "      join (select deptno as c_deptno, count(*) as cnt from emp group by deptno) c"
+        + "      on (e.deptno = c.c_deptno)"
+        + "      distribute by e.deptno"
+        + "      sort BY e.deptno, e.sal, e.empno"
+        + "  ) t;",
+        result = "7934\t10\t1300\t1\n"
+        + "7782\t10\t2450\t2\n"
+        + "7839\t10\t5000\t3\n"
+        + "7369\t20\t800\t1\n"
+        + "7876\t20\t1100\t1\n"
+        + "7566\t20\t2975\t2\n"
+        + "7788\t20\t3000\t3\n"
+        + "7902\t20\t3000\t4\n"
+        + "7900\t30\t950\t1\n"
+        + "7521\t30\t1250\t1\n"
+        + "7654\t30\t1250\t2\n"
+        + "7844\t30\t1500\t2\n"
+        + "7499\t30\t1600\t3\n"
+        + "7698\t30\t2850\t4")
+    }
+  )
+
+@UDFType(deterministic = false, stateful = true)
+public class GenericUDFNtile extends MeteredGenericUDF {
+  private final StateSize state = StateSize.of(getClass(), metrics);
+  private final LongWritable result = new LongWritable();
+  private PartitionKey key;
+  private PrimitiveObjectInspector bucketsOI;
+  private PrimitiveObjectInspector rowsOI;
+  private long row;
+
+  @Override
+  public ObjectInspector initialize(ObjectInspector[] arguments) throws UDFArgumentException {
+    if (arguments.length != 3) {
+      throw new UDFArgumentException("The function NTILE accepts the partition key, the number of buckets "
+          + "and the row count of the partition.");
+    }
+    key = new PartitionKey(arguments, 0, 1);
+    bucketsOI = GenericUDFRank.numberArgument(arguments, 1);
+    rowsOI = GenericUDFRank.numberArgument(arguments, 2);
+    return PrimitiveObjectInspectorFactory.writableLongObjectInspector;
+  }
+
+  @Override
+  protected Object evaluateRow(DeferredObject[] arguments) throws HiveException {
+    if (key.isNew(arguments)) {
+      row = 0;
+    }
+    row++;
+    state.set(key.bytes());
+
+    Object bucketsValue = arguments[1].get();
+    Object rowsValue = arguments[2].get();
+    if (bucketsValue == null || rowsValue == null) {
+      return null;
+    }
+    long buckets = PrimitiveObjectInspectorUtils.getLong(bucketsValue, bucketsOI);
+    if (buckets <= 0) {
+      throw new HiveException("NTILE needs a positive number of buckets but " + buckets + " is passed.");
+    }
+    long rows = GenericUDFRank.partitionRows(rowsValue, rowsOI, row, "NTILE");
+    result.set(bucket(row - 1, rows, buckets));
+    return result;
+  }
+
+  /** @return the bucket, from 1, of the index-th row, from 0, of a partition. */
+  static long bucket(long index, long rows, long buckets) {
+    long size = rows / buckets;
+    long larger = rows % buckets;
+    long inLarger = larger * (size + 1);
+    if (index < inLarger) {
+      return index / (size + 1) + 1;
+    }
+    return larger + (index - inLarger) / size + 1;
+  }
+
+  @Override
+  public String getDisplayString(String[] children) {
+    return "ntile(" + StringUtils.join(children, ',') + ")";
+  }
+}
@@ -21,13 +21,15 @@ package com.nexr.platform.hive.udf;
 import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.hive.ql.exec.Description;
 import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.udf.UDFType;
-import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils.ObjectInspectorCopyOption;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorUtils;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hive.pdk.HivePdkUnitTest;
 import org.apache.hive.pdk.HivePdkUnitTests;
@@ -37,12 +39,12 @@ import org.apache.hive.pdk.HivePdkUnitTests;
  * GenericUDFRank
  */
 @Description(name = "rank",
-    value = "_FUNC_(hash_key, order_by_col1, order_by_col2 ...) " +
+    value = "_FUNC_(partition_key, order_by_col1, order_by_col2 ...) " +
             "- Returns the rank of a value in a group of values",
     extended = "Example:\n"
-    + "  > SELECT _FUNC_(HASH(p1, p2), order_by_col1) FROM (\n"
+    + "  > SELECT _FUNC_(STRUCT(p1, p2), order_by_col1) FROM (\n"
     + "  > 		SELECT order_by_col1 FROM table \n"
-    + "  >      DISTRIBUTE BY HASH(p1,p2)\n"
+    + "  >      DISTRIBUTE BY p1,p2\n"
     + "  >      SORT BY p1, p2, order_by_col1 \n"
     + "  > );\n\n"
     + "  ORACLE \n"
@@ -73,16 +75,41 @@ import org.apache.hive.pdk.HivePdkUnitTests;
         + "7654\t30\t1250\t2\n"
         + "7844\t30\t1500\t4\n"
         + "7499\t30\t1600\t5\n"
-        + "7698\t30\t2850\t6")
+        + "7698\t30\t2850\t6"),
+      @HivePdkUnitTest(
+        query = "SELECT t.empno, t.deptno, t.job, t.sal, nexr_rank(struct(t.deptno, t.job), t.sal) as rank"
+        + "  FROM ("
+        + "      select a.empno, a.deptno, a.job, a.sal from "
+        + "          emp a"
+        + "      distribute by a.deptno, a.job"
+        + "      sort BY a.deptno, a.job, a.sal desc, a.empno"
+        + "  ) t;",
+        result = "7934\t10\tCLERK\t1300\t1\n"
+        + "7782\t10\tMANAGER\t2450\t1\n"
+        + "7839\t10\tPRESIDENT\t5000\t1\n"
+        + "7788\t20\tANALYST\t3000\t1\n"
+        + "7902\t20\tANALYST\t3000\t1\n"
+        + "7876\t20\tCLERK\t1100\t1\n"
+        + "7369\t20\tCLERK\t800\t2\n"
+        + "7566\t20\tMANAGER\t2975\t1\n"
+        + "7900\t30\tCLERK\t950\t1\n"
+        + "7698\t30\tMANAGER\t2850\t1\n"
+        + "7499\t30\tSALESMAN\t1600\t1\n"
+        + "7844\t30\tSALESMAN\t1500\t2\n"
+        + "7521\t30\tSALESMAN\t1250\t3\n"
+        + "7654\t30\tSALESMAN\t1250\t3")
     }
   )
 
 @UDFType(deterministic = false, stateful = true)
-public class GenericUDFRank extends GenericUDF {
+public class GenericUDFRank extends MeteredGenericUDF {
+  private final StateSize state = StateSize.of(getClass(), metrics);
 
   private ObjectInspector[] argumentIOs;
+  private PartitionKey key;
   private Object[] prevArguments;
-  private ObjectInspector prevHashKeyIO;
+  private ObjectInspector[] prevArgumentIOs;
+  private int firstOrderBy;
 
   protected long counter;
   protected final LongWritable result = new LongWritable(1);
@@ -94,22 +121,23 @@ public class GenericUDFRank extends GenericUDF {
     }
     result.set(1);
     argumentIOs = arguments;
+    key = new PartitionKey(arguments, 0, 1);
+    firstOrderBy = firstOrderBy();
     prevArguments = new Object[arguments.length];
-    prevHashKeyIO = ObjectInspectorUtils.getStandardObjectInspector(arguments[0], ObjectInspectorCopyOption.JAVA);
+    prevArgumentIOs = new ObjectInspector[arguments.length];
+    for (int i = firstOrderBy; i < arguments.length; i++) {
+      prevArgumentIOs[i] = ObjectInspectorUtils.getStandardObjectInspector(arguments[i], ObjectInspectorCopyOption.JAVA);
+    }
     return PrimitiveObjectInspectorFactory.writableLongObjectInspector;
   }
 
   @Override
-  public Object evaluate(DeferredObject[] arguments) throws HiveException {
-    Object hashKey = arguments[0].get();
-    Object prevHashKey = prevArguments[0];
-
-    if (prevHashKey == null || ObjectInspectorUtils.compare(prevHashKey, prevHashKeyIO, hashKey, argumentIOs[0]) != 0) {
+  protected Object evaluateRow(DeferredObject[] arguments) throws HiveException {
+    if (key.isNew(arguments)) {
       different(true);
     } else {
-      for (int i = 1; i < arguments.length; i++) {
-        if (ObjectInspectorUtils.compare(prevArguments[i], ObjectInspectorUtils.getStandardObjectInspector(argumentIOs[i],
-            ObjectInspectorCopyOption.JAVA), arguments[i].get(), argumentIOs[i]) != 0) {
+      for (int i = firstOrderBy; i < arguments.length; i++) {
+        if (ObjectInspectorUtils.compare(prevArguments[i], prevArgumentIOs[i], arguments[i].get(), argumentIOs[i]) != 0) {
           different(false);
           break;
         }
@@ -117,10 +145,13 @@ public class GenericUDFRank extends GenericUDF {
     }
     next();
 
-    for (int i = 0; i < arguments.length; i++) {
+    long bytes = key.bytes();
+    for (int i = firstOrderBy; i < arguments.length; i++) {
       prevArguments[i] = ObjectInspectorUtils.copyToStandardObject(arguments[i].get(),
           argumentIOs[i], ObjectInspectorCopyOption.JAVA);
+      bytes += StateSize.estimate(prevArguments[i], prevArgumentIOs[i]);
     }
+    state.set(bytes);
 
     return result;
   }
@@ -130,6 +161,48 @@ public class GenericUDFRank extends GenericUDF {
     return "rank(" + StringUtils.join(children, ',') + ")";
   }
 
+  /**
+   * @return the index of the first order by column. Arguments between the
+   *         partition key and this index are not compared.
+   */
+  protected int firstOrderBy() {
+    return 1;
+  }
+
+  /**
+   * Checks that the argument at index i is a number, such as the row count of
+   * a partition joined back from a <code>COUNT(*) ... GROUP BY</code> query.
+   */
+  static PrimitiveObjectInspector numberArgument(ObjectInspector[] arguments, int i)
+      throws UDFArgumentTypeException {
+    if (arguments[i].getCategory() == ObjectInspector.Category.PRIMITIVE) {
+      PrimitiveObjectInspector poi = (PrimitiveObjectInspector) arguments[i];
+      switch (poi.getPrimitiveCategory()) {
+      case BYTE:
+      case SHORT:
+      case INT:
+      case LONG:
+        return poi;
+      }
+    }
+    throw new UDFArgumentTypeException(i, "Only integer type arguments are accepted but "
+        + arguments[i].getTypeName() + " is passed.");
+  }
+
+  /**
+   * @return the row count of the partition of the row-th row.
+   * @throws HiveException if the partition has more rows than its count.
+   */
+  static long partitionRows(Object value, PrimitiveObjectInspector oi, long row, String function)
+      throws HiveException {
+    long rows = PrimitiveObjectInspectorUtils.getLong(value, oi);
+    if (row > rows) {
+      throw new HiveException(function + " found " + row + " rows in a partition whose row count is "
+          + rows + ". Check the join on the partition columns and the DISTRIBUTE BY clause.");
+    }
+    return rows;
+  }
+
   protected void different(boolean newKey) {
     if (newKey) {
       counter = 1;
@@ -0,0 +1,175 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentLengthException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorConverters;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+
+/**
+ * GenericUDFRegexpInstr
+ *
+ * This emulates the function from Oracle
+ * http://docs.oracle.com/cd/B19306_01/server.102/b14200/functions129.htm
+ *
+ * <code>REGEXP_INSTR(source, pattern [, position [, occurrence [, return_option [, match_parameter [, subexpr]]]]])</code>
+ * returns the character position where the occurrence-th match of pattern in
+ * source starts, searching from the character position, or where it ends
+ * if return_option is 1. With subexpr the position is that of the
+ * subexpr-th group. Returns 0 if there is no such match.
+ * <p>
+ * The pattern is compiled once per task; see {@link RegexPattern}.
+ */
+@Description(name = "regexp_instr",
+    value = "_FUNC_(source, pattern [, position [, occurrence [, return_option [, match_parameter [, subexpr]]]]]) "
+    + "- Returns the position of the pattern in source",
+    extended = "Example:\n"
+    + "  > SELECT _FUNC_('500 Oracle Parkway, Redwood Shores, CA', '[^ ]+', 1, 6) FROM src LIMIT 1;\n"
+    + "  37\n")
+@HivePdkUnitTests(
+	setup = "", cleanup = "",
+    cases = {
+      @HivePdkUnitTest(
+        query = "SELECT nexr_regexp_instr('500 Oracle Parkway, Redwood Shores, CA', '[^ ]+', 1, 6) FROM onerow;",
+        result = "37"),
+      @HivePdkUnitTest(
+        query = "SELECT nexr_regexp_instr('500 Oracle Parkway, Redwood Shores, CA', '[s|r|p][[:alpha:]]{6}', 3, 2, 1, 'i') "
+            + "FROM onerow;",
+        result = "28"),
+      @HivePdkUnitTest(
+        query = "SELECT nexr_regexp_instr('1234567890', '(123)(4(56)(78))', 1, 1, 0, 'i', 4), "
+            + "nexr_regexp_instr('1234567890', 'x') FROM onerow;",
+        result = "7\t0"),
+      @HivePdkUnitTest(
+        query = "SELECT nexr_regexp_instr('\uC11C\uC6B8\uC2DC \uAC15\uB0A8\uAD6C \uC5ED\uC0BC\uB3D9', '\uAC15\uB0A8'), nexr_regexp_instr('\uC11C\uC6B8\uC2DC \uAC15\uB0A8\uAD6C \uC5ED\uC0BC\uB3D9', '\uAC15\uB0A8', 1, 1, 1) "
+            + "FROM onerow;",
+        result = "5\t7")
+    }
+  )
+
+public class GenericUDFRegexpInstr extends MeteredGenericUDF {
+
+	private ObjectInspectorConverters.Converter[] converters;
+	/** The argument values of the current row, each read once. */
+	private Object[] values;
+	private final RegexPattern.LastCompiled compiled = new RegexPattern.LastCompiled();
+	private final RegexPattern.Search search = new RegexPattern.Search();
+	private final IntWritable result = new IntWritable();
+
+	@Override
+	public ObjectInspector initialize(ObjectInspector[] arguments) throws UDFArgumentException {
+		if (arguments.length < 2 || arguments.length > 7) {
+			throw new UDFArgumentLengthException("The function REGEXP_INSTR must have 2 to 7 arguments.");
+		}
+
+		converters = new ObjectInspectorConverters.Converter[arguments.length];
+		values = new Object[arguments.length];
+		for (int i = 0; i < arguments.length; i++) {
+			String type = arguments[i].getTypeName().toLowerCase();
+			if (i < 2 || i == 5) {// source, pattern, match_parameter : String
+				if (!type.equals("string") && !type.equals("void")) {
+					throw new UDFArgumentTypeException(i, "The " + GenericUDFUtils.getOrdinal(i + 1)
+							+ " argument of function REGEXP_INSTR is expected to a string type, but " + type
+							+ " is found");
+				}
+				converters[i] = ObjectInspectorConverters.getConverter(
+						arguments[i], PrimitiveObjectInspectorFactory.writableStringObjectInspector);
+			} else {// position, occurrence, return_option, subexpr : Int
+				if (!type.equals("int") && !type.equals("void")) {
+					throw new UDFArgumentTypeException(i, "The " + GenericUDFUtils.getOrdinal(i + 1)
+							+ " argument of function REGEXP_INSTR is expected to a int type, but " + type
+							+ " is found");
+				}
+				converters[i] = ObjectInspectorConverters.getConverter(
+						arguments[i], PrimitiveObjectInspectorFactory.writableIntObjectInspector);
+			}
+		}
+
+		return PrimitiveObjectInspectorFactory.writableIntObjectInspector;
+	}
+
+	@Override
+	protected Object evaluateRow(DeferredObject[] arguments) throws HiveException {
+		for (int i = 0; i < arguments.length; i++) {
+			values[i] = arguments[i].get();
+			if (i != 5 && values[i] == null) {
+				return null;
+			}
+		}
+		Text source = (Text) converters[0].convert(values[0]);
+		int position = intArgument(2, 1);
+		int occurrence = intArgument(3, 1);
+		int returnOption = intArgument(4, 0);
+		int subexpr = intArgument(6, 0);
+		if (position < 1 || occurrence < 1 || returnOption < 0 || returnOption > 1 || subexpr < 0 || subexpr > 9) {
+			throw new HiveException("REGEXP_INSTR argument is out of range.");
+		}
+		Text parameter = null;
+		if (values.length > 5 && values[5] != null) {
+			parameter = (Text) converters[5].convert(values[5]);
+		}
+
+		RegexPattern regex;
+		try {
+			regex = compiled.get((Text) converters[1].convert(values[1]), parameter);
+		} catch (IllegalArgumentException e) {
+			throw new HiveException("REGEXP_INSTR: " + e.getMessage());
+		}
+		result.set(0);
+		if (subexpr > regex.groupCount) {
+			return result;
+		}
+		int from = RegexPattern.byteOffset(source.getBytes(), source.getLength(), position);
+		if (from < 0) {
+			return result;
+		}
+		search.reset(regex, source, subexpr > 0);
+		if (!search.find(from, occurrence) || search.start(subexpr) < 0) {
+			return result;
+		}
+		int offset = returnOption == 0 ? search.start(subexpr) : search.end(subexpr);
+		result.set(RegexPattern.position(search.bytes(), offset));
+		return result;
+	}
+
+	private int intArgument(int i, int defaultValue) {
+		if (values.length <= i) {
+			return defaultValue;
+		}
+		return ((IntWritable) converters[i].convert(values[i])).get();
+	}
+
+	@Override
+	public String getDisplayString(String[] children) {
+		return "regexp_instr(" + StringUtils.join(children, ',') + ")";
+	}
+}
@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentLengthException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorConverters;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.BooleanWritable;
+import org.apache.hadoop.io.Text;
+
+/**
+ * GenericUDFRegexpLike
+ *
+ * This emulates the function from Oracle
+ * http://docs.oracle.com/cd/B19306_01/server.102/b14200/conditions007.htm
+ *
+ * <code>REGEXP_LIKE(source, pattern [, match_parameter])</code> is true if the
+ * pattern matches somewhere in source. match_parameter is any of
+ * <code>i</code> (case-insensitive), <code>c</code> (case-sensitive),
+ * <code>n</code> (. matches newline), <code>m</code> (^ and $ match at lines)
+ * and <code>x</code> (whitespace in the pattern is ignored).
+ * <p>
+ * The pattern is compiled once per task; see {@link RegexPattern}.
+ */
+@Description(name = "regexp_like",
+    value = "_FUNC_(source, pattern [, match_parameter]) - Returns true if the pattern matches source",
+    extended = "Example:\n"
+    + "  > SELECT _FUNC_('Steven', '^Ste(v|ph)en$') FROM src LIMIT 1;\n" + "  true\n")
+@HivePdkUnitTests(
+	setup = "", cleanup = "",
+    cases = {
+      @HivePdkUnitTest(
+        query = "SELECT nexr_regexp_like('Steven', '^Ste(v|ph)en$') FROM onerow;",
+        result = "true"),
+      @HivePdkUnitTest(
+        query = "SELECT nexr_regexp_like('Stephan', '^Ste(v|ph)en$') FROM onerow;",
+        result = "false"),
+      @HivePdkUnitTest(
+        query = "SELECT nexr_regexp_like('KING', 'k[aeiou]ng', 'i'), nexr_regexp_like('KING', 'k[aeiou]ng') FROM onerow;",
+        result = "true\tfalse"),
+      @HivePdkUnitTest(
+        query = "SELECT nexr_regexp_like('order 1024', '[[:digit:]]{4}'), nexr_regexp_like('\uC11C\uC6B8 \uAC15\uB0A8', '^\uC11C\uC6B8') FROM onerow;",
+        result = "true\ttrue"),
+      @HivePdkUnitTest(
+        query = "SELECT nexr_regexp_like('order 1024 x', '^o.{0,64}x$'), nexr_regexp_like('order 1024 x', 'r.{0,3}x') FROM onerow;",
+        result = "true\tfalse")
+    }
+  )
+
+public class GenericUDFRegexpLike extends MeteredGenericUDF {
+
+	private ObjectInspectorConverters.Converter[] converters;
+	private final RegexPattern.LastCompiled compiled = new RegexPattern.LastCompiled();
+	private final BooleanWritable result = new BooleanWritable();
+
+	@Override
+	public ObjectInspector initialize(ObjectInspector[] arguments) throws UDFArgumentException {
+		if (arguments.length < 2 || arguments.length > 3) {
+			throw new UDFArgumentLengthException("The function REGEXP_LIKE must have 2 or 3 arguments.");
+		}
+
+		converters = new ObjectInspectorConverters.Converter[arguments.length];
+		for (int i = 0; i < arguments.length; i++) {
+			String type = arguments[i].getTypeName().toLowerCase();
+			if (!type.equals("string") && !type.equals("void")) {
+				throw new UDFArgumentTypeException(i, "The " + GenericUDFUtils.getOrdinal(i + 1)
+						+ " argument of function REGEXP_LIKE is expected to a string type, but " + type
+						+ " is found");
+			}
+			converters[i] = ObjectInspectorConverters.getConverter(
+					arguments[i], PrimitiveObjectInspectorFactory.writableStringObjectInspector);
+		}
+
+		return PrimitiveObjectInspectorFactory.writableBooleanObjectInspector;
+	}
+
+	@Override
+	protected Object evaluateRow(DeferredObject[] arguments) throws HiveException {
+		Object source = arguments[0].get();
+		Object pattern = arguments[1].get();
+		if (source == null || pattern == null) {
+			return null;
+		}
+		Text parameter = null;
+		Object match = arguments.length == 3 ? arguments[2].get() : null;
+		if (match != null) {
+			parameter = (Text) converters[2].convert(match);
+		}
+
+		RegexPattern regex;
+		try {
+			regex = compiled.get((Text) converters[1].convert(pattern), parameter);
+		} catch (IllegalArgumentException e) {
+			throw new HiveException("REGEXP_LIKE: " + e.getMessage());
+		}
+		result.set(regex.find((Text) converters[0].convert(source)));
+		return result;
+	}
+
+	@Override
+	public String getDisplayString(String[] children) {
+		return "regexp_like(" + StringUtils.join(children, ',') + ")";
+	}
+}
@@ -0,0 +1,236 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentLengthException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorConverters;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+
+/**
+ * GenericUDFRegexpReplace
+ *
+ * This emulates the function from Oracle
+ * http://docs.oracle.com/cd/B19306_01/server.102/b14200/functions130.htm
+ *
+ * <code>REGEXP_REPLACE(source, pattern [, replace_string [, position [, occurrence [, match_parameter]]]])</code>
+ * replaces the matches of pattern in source, searching from the character
+ * position, with replace_string, in which <code>\1</code> to <code>\9</code>
+ * stand for the groups of the match. occurrence 0, the default, replaces
+ * every match, n only the n-th. A NULL or omitted replace_string removes the
+ * matches, and a NULL pattern returns source unchanged.
+ * <p>
+ * The pattern is compiled once per task; see {@link RegexPattern}.
+ */
+@Description(name = "regexp_replace",
+    value = "_FUNC_(source, pattern [, replace_string [, position [, occurrence [, match_parameter]]]]) "
+    + "- Replaces the matches of the pattern in source",
+    extended = "Example:\n"
+    + "  > SELECT _FUNC_('515.123.4567', '([[:digit:]]{3})\\\\.([[:digit:]]{3})\\\\.([[:digit:]]{4})', "
+    + "'(\\\\1) \\\\2-\\\\3') FROM src LIMIT 1;\n"
+    + "  (515) 123-4567\n")
+@HivePdkUnitTests(
+	setup = "", cleanup = "",
+    cases = {
+      @HivePdkUnitTest(
+        query = "SELECT nexr_regexp_replace('515.123.4567', '([[:digit:]]{3})\\\\.([[:digit:]]{3})\\\\.([[:digit:]]{4})', "
+            + "'(\\\\1) \\\\2-\\\\3') FROM onerow;",
+        result = "(515) 123-4567"),
+      @HivePdkUnitTest(
+        query = "SELECT nexr_regexp_replace('500   Oracle     Parkway', '( ){2,}', ' '), "
+            + "nexr_regexp_replace('a1b22c333', '[0-9]+') FROM onerow;",
+        result = "500 Oracle Parkway\tabc"),
+      @HivePdkUnitTest(
+        query = "SELECT nexr_regexp_replace('a1b22c333', '[0-9]+', '#', 1, 2), "
+            + "nexr_regexp_replace('a1b22c333', '[0-9]+', '#', 3, 0), nexr_regexp_replace('abc', 'x*', '-') FROM onerow;",
+        result = "a1b#c333\ta1b#c#\t-a-b-c-"),
+      @HivePdkUnitTest(
+        query = "SELECT nexr_regexp_replace('\uC11C\uC6B8\uC2DC \uAC15\uB0A8\uAD6C \uC5ED\uC0BC\uB3D9', '[^ ]+\uAD6C', '**'), "
+            + "nexr_regexp_replace('Hello WORLD', 'o', '0', 1, 0, 'i') FROM onerow;",
+        result = "\uC11C\uC6B8\uC2DC ** \uC5ED\uC0BC\uB3D9\tHell0 W0RLD")
+    }
+  )
+
+public class GenericUDFRegexpReplace extends MeteredGenericUDF {
+
+	private ObjectInspectorConverters.Converter[] converters;
+	/** The argument values of the current row, each read once. */
+	private Object[] values;
+	private final RegexPattern.LastCompiled compiled = new RegexPattern.LastCompiled();
+	private final RegexPattern.Search search = new RegexPattern.Search();
+	private final Text result = new Text();
+	private byte[] buffer = new byte[64];
+	private int length;
+
+	@Override
+	public ObjectInspector initialize(ObjectInspector[] arguments) throws UDFArgumentException {
+		if (arguments.length < 2 || arguments.length > 6) {
+			throw new UDFArgumentLengthException("The function REGEXP_REPLACE must have 2 to 6 arguments.");
+		}
+
+		converters = new ObjectInspectorConverters.Converter[arguments.length];
+		values = new Object[arguments.length];
+		for (int i = 0; i < arguments.length; i++) {
+			String type = arguments[i].getTypeName().toLowerCase();
+			if (i < 3 || i == 5) {// source, pattern, replace_string, match_parameter : String
+				if (!type.equals("string") && !type.equals("void")) {
+					throw new UDFArgumentTypeException(i, "The " + GenericUDFUtils.getOrdinal(i + 1)
+							+ " argument of function REGEXP_REPLACE is expected to a string type, but " + type
+							+ " is found");
+				}
+				converters[i] = ObjectInspectorConverters.getConverter(
+						arguments[i], PrimitiveObjectInspectorFactory.writableStringObjectInspector);
+			} else {// position, occurrence : Int
+				if (!type.equals("int") && !type.equals("void")) {
+					throw new UDFArgumentTypeException(i, "The " + GenericUDFUtils.getOrdinal(i + 1)
+							+ " argument of function REGEXP_REPLACE is expected to a int type, but " + type
+							+ " is found");
+				}
+				converters[i] = ObjectInspectorConverters.getConverter(
+						arguments[i], PrimitiveObjectInspectorFactory.writableIntObjectInspector);
+			}
+		}
+
+		return PrimitiveObjectInspectorFactory.writableStringObjectInspector;
+	}
+
+	@Override
+	protected Object evaluateRow(DeferredObject[] arguments) throws HiveException {
+		for (int i = 0; i < arguments.length; i++) {
+			values[i] = arguments[i].get();
+		}
+		if (values[0] == null) {
+			return null;
+		}
+		Text source = (Text) converters[0].convert(values[0]);
+		if (values[1] == null) {
+			return source;
+		}
+		for (int i = 3; i < values.length && i < 5; i++) {
+			if (values[i] == null) {
+				return null;
+			}
+		}
+		byte[] replace = null;
+		int replaceLength = 0;
+		if (values.length > 2 && values[2] != null) {
+			Text text = (Text) converters[2].convert(values[2]);
+			replace = text.getBytes();
+			replaceLength = text.getLength();
+		}
+		int position = intArgument(3, 1);
+		int occurrence = intArgument(4, 0);
+		if (position < 1 || occurrence < 0) {
+			throw new HiveException("REGEXP_REPLACE argument is out of range.");
+		}
+		Text parameter = null;
+		if (values.length > 5 && values[5] != null) {
+			parameter = (Text) converters[5].convert(values[5]);
+		}
+
+		RegexPattern regex;
+		try {
+			regex = compiled.get((Text) converters[1].convert(values[1]), parameter);
+		} catch (IllegalArgumentException e) {
+			throw new HiveException("REGEXP_REPLACE: " + e.getMessage());
+		}
+		byte[] bytes = source.getBytes();
+		int from = RegexPattern.byteOffset(bytes, source.getLength(), position);
+		if (from < 0) {
+			return source;
+		}
+		search.reset(regex, source, hasBackReference(replace, replaceLength));
+		if (!search.find(from, Math.max(occurrence, 1))) {
+			return source;
+		}
+
+		length = 0;
+		int copied = 0;
+		do {
+			append(bytes, copied, search.start() - copied);
+			appendReplacement(replace, replaceLength, regex.groupCount);
+			copied = search.end();
+		} while (occurrence == 0 && search.findNext());
+		append(bytes, copied, search.length() - copied);
+		result.set(buffer, 0, length);
+		return result;
+	}
+
+	private static boolean hasBackReference(byte[] replace, int replaceLength) {
+		for (int i = 0; i + 1 < replaceLength; i++) {
+			if (replace[i] == '\\' && replace[i + 1] >= '0' && replace[i + 1] <= '9') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void appendReplacement(byte[] replace, int replaceLength, int groupCount) {
+		int literal = 0;
+		for (int i = 0; i + 1 < replaceLength; i++) {
+			if (replace[i] == '\\' && replace[i + 1] >= '0' && replace[i + 1] <= '9') {
+				append(replace, literal, i - literal);
+				int group = replace[i + 1] - '0';
+				if (group <= groupCount && search.start(group) >= 0) {
+					append(search.bytes(), search.start(group), search.end(group) - search.start(group));
+				}
+				i++;
+				literal = i + 1;
+			}
+		}
+		append(replace, literal, replaceLength - literal);
+	}
+
+	private void append(byte[] bytes, int start, int count) {
+		if (count <= 0) {
+			return;
+		}
+		if (length + count > buffer.length) {
+			byte[] grown = new byte[Math.max(buffer.length * 2, length + count)];
+			System.arraycopy(buffer, 0, grown, 0, length);
+			buffer = grown;
+		}
+		System.arraycopy(bytes, start, buffer, length, count);
+		length += count;
+	}
+
+	private int intArgument(int i, int defaultValue) {
+		if (values.length <= i) {
+			return defaultValue;
+		}
+		return ((IntWritable) converters[i].convert(values[i])).get();
+	}
+
+	@Override
+	public String getDisplayString(String[] children) {
+		return "regexp_replace(" + StringUtils.join(children, ',') + ")";
+	}
+}
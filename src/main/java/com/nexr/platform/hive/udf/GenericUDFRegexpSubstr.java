@@ -0,0 +1,170 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentLengthException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorConverters;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+
+/**
+ * GenericUDFRegexpSubstr
+ *
+ * This emulates the function from Oracle
+ * http://docs.oracle.com/cd/B19306_01/server.102/b14200/functions131.htm
+ *
+ * <code>REGEXP_SUBSTR(source, pattern [, position [, occurrence [, match_parameter [, subexpr]]]])</code>
+ * returns the occurrence-th match of pattern in source, searching from the
+ * character position, or the part of it matched by the subexpr-th group.
+ * position and occurrence default to 1 and subexpr to 0, the whole match.
+ * Returns NULL if there is no such match.
+ * <p>
+ * The pattern is compiled once per task; see {@link RegexPattern}.
+ */
+@Description(name = "regexp_substr",
+    value = "_FUNC_(source, pattern [, position [, occurrence [, match_parameter [, subexpr]]]]) "
+    + "- Returns the part of source matching the pattern",
+    extended = "Example:\n"
+    + "  > SELECT _FUNC_('500 Oracle Parkway, Redwood Shores, CA', ',[^,]+,') FROM src LIMIT 1;\n"
+    + "  , Redwood Shores,\n")
+@HivePdkUnitTests(
+	setup = "", cleanup = "",
+    cases = {
+      @HivePdkUnitTest(
+        query = "SELECT nexr_regexp_substr('500 Oracle Parkway, Redwood Shores, CA', ',[^,]+,') FROM onerow;",
+        result = ", Redwood Shores,"),
+      @HivePdkUnitTest(
+        query = "SELECT nexr_regexp_substr('a1b22c333', '[0-9]+', 1, 3), nexr_regexp_substr('a1b22c333', '[0-9]+', 4, 1), "
+            + "nexr_regexp_substr('a1b22c333', '[0-9]+', 1, 4) FROM onerow;",
+        result = "333\t22\tNULL"),
+      @HivePdkUnitTest(
+        query = "SELECT nexr_regexp_substr('scott@example.com', '([a-z]+)@([a-z.]+)', 1, 1, 'i', 2) FROM onerow;",
+        result = "example.com"),
+      @HivePdkUnitTest(
+        query = "SELECT nexr_regexp_substr('\uC11C\uC6B8\uC2DC \uAC15\uB0A8\uAD6C \uC5ED\uC0BC\uB3D9', '[^ ]+', 1, 2) FROM onerow;",
+        result = "\uAC15\uB0A8\uAD6C")
+    }
+  )
+
+public class GenericUDFRegexpSubstr extends MeteredGenericUDF {
+
+	private ObjectInspectorConverters.Converter[] converters;
+	/** The argument values of the current row, each read once. */
+	private Object[] values;
+	private final RegexPattern.LastCompiled compiled = new RegexPattern.LastCompiled();
+	private final RegexPattern.Search search = new RegexPattern.Search();
+	private final Text result = new Text();
+
+	@Override
+	public ObjectInspector initialize(ObjectInspector[] arguments) throws UDFArgumentException {
+		if (arguments.length < 2 || arguments.length > 6) {
+			throw new UDFArgumentLengthException("The function REGEXP_SUBSTR must have 2 to 6 arguments.");
+		}
+
+		converters = new ObjectInspectorConverters.Converter[arguments.length];
+		values = new Object[arguments.length];
+		for (int i = 0; i < arguments.length; i++) {
+			String type = arguments[i].getTypeName().toLowerCase();
+			if (i < 2 || i == 4) {// source, pattern, match_parameter : String
+				if (!type.equals("string") && !type.equals("void")) {
+					throw new UDFArgumentTypeException(i, "The " + GenericUDFUtils.getOrdinal(i + 1)
+							+ " argument of function REGEXP_SUBSTR is expected to a string type, but " + type
+							+ " is found");
+				}
+				converters[i] = ObjectInspectorConverters.getConverter(
+						arguments[i], PrimitiveObjectInspectorFactory.writableStringObjectInspector);
+			} else {// position, occurrence, subexpr : Int
+				if (!type.equals("int") && !type.equals("void")) {
+					throw new UDFArgumentTypeException(i, "The " + GenericUDFUtils.getOrdinal(i + 1)
+							+ " argument of function REGEXP_SUBSTR is expected to a int type, but " + type
+							+ " is found");
+				}
+				converters[i] = ObjectInspectorConverters.getConverter(
+						arguments[i], PrimitiveObjectInspectorFactory.writableIntObjectInspector);
+			}
+		}
+
+		return PrimitiveObjectInspectorFactory.writableStringObjectInspector;
+	}
+
+	@Override
+	protected Object evaluateRow(DeferredObject[] arguments) throws HiveException {
+		for (int i = 0; i < arguments.length; i++) {
+			values[i] = arguments[i].get();
+			if (i != 4 && values[i] == null) {
+				return null;
+			}
+		}
+		Text source = (Text) converters[0].convert(values[0]);
+		int position = intArgument(2, 1);
+		int occurrence = intArgument(3, 1);
+		int subexpr = intArgument(5, 0);
+		if (position < 1 || occurrence < 1 || subexpr < 0 || subexpr > 9) {
+			throw new HiveException("REGEXP_SUBSTR argument is out of range.");
+		}
+		Text parameter = null;
+		if (values.length > 4 && values[4] != null) {
+			parameter = (Text) converters[4].convert(values[4]);
+		}
+
+		RegexPattern regex;
+		try {
+			regex = compiled.get((Text) converters[1].convert(values[1]), parameter);
+		} catch (IllegalArgumentException e) {
+			throw new HiveException("REGEXP_SUBSTR: " + e.getMessage());
+		}
+		if (subexpr > regex.groupCount) {
+			return null;
+		}
+		int from = RegexPattern.byteOffset(source.getBytes(), source.getLength(), position);
+		if (from < 0) {
+			return null;
+		}
+		search.reset(regex, source, subexpr > 0);
+		if (!search.find(from, occurrence) || search.start(subexpr) < 0) {
+			return null;
+		}
+		result.set(search.bytes(), search.start(subexpr), search.end(subexpr) - search.start(subexpr));
+		return result;
+	}
+
+	private int intArgument(int i, int defaultValue) {
+		if (values.length <= i) {
+			return defaultValue;
+		}
+		return ((IntWritable) converters[i].convert(values[i])).get();
+	}
+
+	@Override
+	public String getDisplayString(String[] children) {
+		return "regexp_substr(" + StringUtils.join(children, ',') + ")";
+	}
+}
@@ -23,10 +23,7 @@ import org.apache.hadoop.hive.ql.exec.Description;
 import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.udf.UDFType;
-import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
-import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
-import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils.ObjectInspectorCopyOption;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hive.pdk.HivePdkUnitTest;
@@ -37,11 +34,11 @@ import org.apache.hive.pdk.HivePdkUnitTests;
  *
  */
 @Description(name = "row_number",
-	    value = "_FUNC_(hash_key) - Returns the row number of a value in a group of values",
+	    value = "_FUNC_(p1, p2, ...) - Returns the row number of a value in a group of values",
 	    extended = "Example:\n"
-	    + "  > SELECT _FUNC_(HASH(p1, p2)) FROM (\n"
+	    + "  > SELECT _FUNC_(p1, p2) FROM (\n"
 	    + "  > 		SELECT order_by_col1 FROM table \n"
-	    + "  >      DISTRIBUTE BY HASH(p1,p2)\n"
+	    + "  >      DISTRIBUTE BY p1,p2\n"
 	    + "  >      SORT BY p1,p2, order_by_col1 \n"
 	    + "  > );\n\n"
 	    + "ORACLE :\n"
@@ -73,34 +70,54 @@ import org.apache.hive.pdk.HivePdkUnitTests;
         	+"7654\t30\t1250\t3\n"
         	+"7844\t30\t1500\t4\n"
         	+"7499\t30\t1600\t5\n"
-        	+"7698\t30\t2850\t6" )
+        	+"7698\t30\t2850\t6" ),
+      @HivePdkUnitTest(
+        query = "SELECT t.empno, t.deptno, t.job, nexr_row_number(t.deptno, t.job) as rank"
+        	+"  FROM ("
+        	+"      select a.empno, a.deptno, a.job, a.sal from "
+        	+"          emp a"
+        	+"      distribute by a.deptno, a.job"
+        	+"      sort BY a.deptno, a.job, a.sal, a.empno"
+        	+"  ) t;",
+        result ="7934\t10\tCLERK\t1\n"
+        	+"7782\t10\tMANAGER\t1\n"
+        	+"7839\t10\tPRESIDENT\t1\n"
+        	+"7788\t20\tANALYST\t1\n"
+        	+"7902\t20\tANALYST\t2\n"
+        	+"7369\t20\tCLERK\t1\n"
+        	+"7876\t20\tCLERK\t2\n"
+        	+"7566\t20\tMANAGER\t1\n"
+        	+"7900\t30\tCLERK\t1\n"
+        	+"7698\t30\tMANAGER\t1\n"
+        	+"7521\t30\tSALESMAN\t1\n"
+        	+"7654\t30\tSALESMAN\t2\n"
+        	+"7844\t30\tSALESMAN\t3\n"
+        	+"7499\t30\tSALESMAN\t4" )
     }
   )
 	    
 @UDFType(deterministic = false, stateful = true)
-public class GenericUDFRowNumber extends GenericUDF {
+public class GenericUDFRowNumber extends MeteredGenericUDF {
+  private final StateSize state = StateSize.of(getClass(), metrics);
   private final LongWritable result = new LongWritable(1);
-  private ObjectInspector argumentIOs, prevHashKeyIO;
-  private Object prevHashKey;
+  private PartitionKey key;
   @Override
   public ObjectInspector initialize(ObjectInspector[] arguments) throws UDFArgumentException {
-    if (arguments.length!=1) {
-        throw new UDFArgumentException("The function ROW_NUMBER accepts 1 argument.");
+    if (arguments.length < 1) {
+        throw new UDFArgumentException("The function ROW_NUMBER accepts the partition columns.");
       }
     result.set(1);
-    argumentIOs = arguments[0];
-    prevHashKeyIO = ObjectInspectorUtils.getStandardObjectInspector(arguments[0],ObjectInspectorCopyOption.JAVA);
+    key = new PartitionKey(arguments, 0, arguments.length);
     return PrimitiveObjectInspectorFactory.writableLongObjectInspector;
   }
 
   @Override
-  public Object evaluate(DeferredObject[] arguments) throws HiveException {
-	  Object hashKey = arguments[0].get();
-	  if (prevHashKey==null||ObjectInspectorUtils.compare(prevHashKey,prevHashKeyIO,hashKey,argumentIOs)!=0) {
+  protected Object evaluateRow(DeferredObject[] arguments) throws HiveException {
+	  if (key.isNew(arguments)) {
 	  	  result.set(0);
 	  }
 	  result.set(result.get()+1);
-	  prevHashKey=ObjectInspectorUtils.copyToStandardObject(arguments[0].get(), argumentIOs, ObjectInspectorCopyOption.JAVA);
+	  state.set(key.bytes());
 	  return result;
   }
 
@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.udf.UDFType;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+/**
+ * GenericUDFStddev
+ *
+ * The running sample standard deviation of the values of each partition, 0
+ * for a single value as in Oracle.
+ */
+@Description(name = "stddev",
+    value = "_FUNC_(p1, p2, ..., value) " +
+    		"- Returns the running sample standard deviation of a group",
+    extended = "Example:\n"
+    + "  > SELECT _FUNC_(p1, p2, value) FROM (\n"
+    + "  > 		SELECT ~ FROM table DISTRIBUTE BY p1,p2 SORT BY p1,p2,order_by_col1, order_by_col2 DESC, ... \n"
+    + "  > );\n\n"
+    + "ORACLE :\n"
+    + "  > SELECT STDDEV(value) OVER(PARTITION BY p1,p2 ORDER BY order_by_col1) FROM table;\n")
+
+@HivePdkUnitTests(
+	setup = "", cleanup = "",
+    cases = {
+      @HivePdkUnitTest(
+        query = "SELECT t.empno, t.deptno, t.sal, nexr_stddev(t.deptno, t.sal) as sal_stddev"
+        	+"  FROM ("
+        	+"      select a.empno, a.deptno, a.sal from emp a"
+        	+"      distribute by a.deptno"
+        	+"      sort BY a.deptno, a.empno"
+        	+"  ) t;",
+        result ="7782\t10\t2450\t0.0\n"
+        	+"7839\t10\t5000\t1803.1222920256962\n"
+        	+"7934\t10\t1300\t1893.6296716447314\n"
+        	+"7369\t20\t800\t0.0\n"
+        	+"7566\t20\t2975\t1537.957249080741\n"
+        	+"7788\t20\t3000\t1263.0155712948804\n"
+        	+"7876\t20\t1100\t1182.7536725793752\n"
+        	+"7902\t20\t3000\t1123.3320969330487\n"
+        	+"7499\t30\t1600\t0.0\n"
+        	+"7521\t30\t1250\t247.48737341529164\n"
+        	+"7654\t30\t1250\t202.07259421636905\n"
+        	+"7698\t30\t2850\t759.7971220442116\n"
+        	+"7844\t30\t1500\t666.5208173793224\n"
+        	+"7900\t30\t950\t668.3312551921141")
+    }
+  )
+
+@UDFType(deterministic = false, stateful = true)
+public class GenericUDFStddev extends GenericUDFAvg {
+
+	@Override
+	protected double result(RunningStats stats) {
+		return Math.sqrt(stats.variance());
+	}
+
+	@Override
+	public String getDisplayString(String[] children) {
+		return "stddev(" + StringUtils.join(children, ',') + ")";
+	}
+}
@@ -24,14 +24,11 @@ import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
 import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.udf.UDFType;
-import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
 import org.apache.hadoop.hive.serde.Constants;
 import org.apache.hadoop.hive.serde2.io.DoubleWritable;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorConverters;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorConverters.Converter;
-import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
-import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils.ObjectInspectorCopyOption;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hive.pdk.HivePdkUnitTest;
@@ -39,11 +36,11 @@ import org.apache.hive.pdk.HivePdkUnitTests;
 
 
 @Description(name = "sum",
-    value = "_FUNC_(hash_key, order_by_col1, order_by_col2 ...) " +
+    value = "_FUNC_(p1, p2, ..., value) " +
     		"- Returns the summed value of group",
     extended = "Example:\n"
-    + "  > SELECT _FUNC_(HASH(p1, p2), order_by_col1, order_by_col2, ... ) FROM (\n"
-    + "  > 		SELECT ~ FROM table DISTRIBUTE BY HASH(p1,p2) SORT BY p1,p2,order_by_col1, order_by_col2 DESC, ... \n"
+    + "  > SELECT _FUNC_(p1, p2, value) FROM (\n"
+    + "  > 		SELECT ~ FROM table DISTRIBUTE BY p1,p2 SORT BY p1,p2,order_by_col1, order_by_col2 DESC, ... \n"
     + "  > );")
 
 @HivePdkUnitTests(
@@ -69,31 +66,54 @@ import org.apache.hive.pdk.HivePdkUnitTests;
         	+"7654\t30\t1250\t4100\n"
         	+"7698\t30\t2850\t6950\n"
         	+"7844\t30\t1500\t8450\n"
-        	+"7900\t30\t950\t9400")
+        	+"7900\t30\t950\t9400"),
+      @HivePdkUnitTest(
+        query = "SELECT t.empno, t.deptno, t.job, t.sal, nexr_sum(t.deptno, t.job, t.sal) as sal_sum"
+        	+"  FROM ("
+        	+"      select a.empno, a.deptno, a.job, a.sal from emp a"
+        	+"      distribute by a.deptno, a.job"
+        	+"      sort BY a.deptno, a.job, a.sal, a.empno"
+        	+"  ) t;",
+        result ="7934\t10\tCLERK\t1300\t1300\n"
+        	+"7782\t10\tMANAGER\t2450\t2450\n"
+        	+"7839\t10\tPRESIDENT\t5000\t5000\n"
+        	+"7788\t20\tANALYST\t3000\t3000\n"
+        	+"7902\t20\tANALYST\t3000\t6000\n"
+        	+"7369\t20\tCLERK\t800\t800\n"
+        	+"7876\t20\tCLERK\t1100\t1900\n"
+        	+"7566\t20\tMANAGER\t2975\t2975\n"
+        	+"7900\t30\tCLERK\t950\t950\n"
+        	+"7698\t30\tMANAGER\t2850\t2850\n"
+        	+"7521\t30\tSALESMAN\t1250\t1250\n"
+        	+"7654\t30\tSALESMAN\t1250\t2500\n"
+        	+"7844\t30\tSALESMAN\t1500\t4000\n"
+        	+"7499\t30\tSALESMAN\t1600\t5600")
     }
   )
     
 @UDFType(deterministic = false, stateful = true)
-public class GenericUDFSum extends GenericUDF {
+public class GenericUDFSum extends MeteredGenericUDF {
+	private final StateSize state = StateSize.of(getClass(), metrics);
 	private final LongWritable longResult = new LongWritable();
 	private final DoubleWritable doubleResult = new DoubleWritable();
-	private ObjectInspector hashOI, valueOI, prevHashStandardOI, resultOI;
-	private Object prevHash;
+	private final RunningStats stats = new RunningStats(RunningStats.compensated(getClass()));
+	private PartitionKey key;
+	private ObjectInspector resultOI;
+	private Converter converter;
 	@Override
 	public ObjectInspector initialize(ObjectInspector[] arguments) throws UDFArgumentException {
-		if (arguments.length != 2) {
-			throw new UDFArgumentException("Exactly two argument is expected.");
+		if (arguments.length < 2) {
+			throw new UDFArgumentException("The partition columns and a value are expected.");
 		}
 
-		for(int i=0;i<arguments.length;i++){
-			if (arguments[i].getCategory() != ObjectInspector.Category.PRIMITIVE) {
-				throw new UDFArgumentTypeException(i,
-						"Only primitive type arguments are accepted but "
-						+ arguments[i].getTypeName() + " is passed.");
-			}
+		int last = arguments.length - 1;
+		if (arguments[last].getCategory() != ObjectInspector.Category.PRIMITIVE) {
+			throw new UDFArgumentTypeException(last,
+					"Only primitive type arguments are accepted but "
+					+ arguments[last].getTypeName() + " is passed.");
 		}
 
-		String t = arguments[1].getTypeName();
+		String t = arguments[last].getTypeName();
 		if (t.equals(Constants.TINYINT_TYPE_NAME)||
 				t.equals(Constants.SMALLINT_TYPE_NAME)||
 				t.equals(Constants.INT_TYPE_NAME)||
@@ -104,38 +124,47 @@ public class GenericUDFSum extends GenericUDF {
 				t.equals(Constants.STRING_TYPE_NAME)) {
 			resultOI = PrimitiveObjectInspectorFactory.writableDoubleObjectInspector;
 		} else{ 
-			throw new UDFArgumentTypeException(1,
+			throw new UDFArgumentTypeException(last,
 					"Only numeric or string type arguments are accepted but "
-					+ arguments[1].getTypeName() + " is passed.");
+					+ arguments[last].getTypeName() + " is passed.");
 		}
 
 		longResult.set(0);
 		doubleResult.set(0);
-		hashOI = arguments[0];
-		valueOI = arguments[1];
-		prevHashStandardOI=ObjectInspectorUtils.getStandardObjectInspector(hashOI,ObjectInspectorCopyOption.JAVA);
+		stats.reset();
+		key = new PartitionKey(arguments, 0, last);
+		converter = ObjectInspectorConverters.getConverter(arguments[last], resultOI);
 		return resultOI;
 	}
 
 	@Override
-	public Object evaluate(DeferredObject[] arguments) throws HiveException {
-		Object hash = arguments[0].get();
-		Object value = arguments[1].get();
-		if (prevHash==null||ObjectInspectorUtils.compare(prevHash,prevHashStandardOI,hash,hashOI)!=0) {
+	protected Object evaluateRow(DeferredObject[] arguments) throws HiveException {
+		Object value = arguments[arguments.length - 1].get();
+		if (key.isNew(arguments)) {
 			longResult.set(0);
 			doubleResult.set(0);
+			stats.reset();
 		}
 
-		prevHash=ObjectInspectorUtils.copyToStandardObject(hash,hashOI, ObjectInspectorCopyOption.JAVA);
+		state.set(key.bytes());
 
-		Converter converter = ObjectInspectorConverters.getConverter(valueOI, resultOI);
+		Object valueW = converter.convert(value);
 		if(resultOI.getTypeName()==Constants.DOUBLE_TYPE_NAME){
-			DoubleWritable valueW = (DoubleWritable)converter.convert(value);
-			doubleResult.set(doubleResult.get()+valueW.get());
+			if (valueW != null) {
+				stats.add(((DoubleWritable)valueW).get());
+				doubleResult.set(stats.sum());
+			}
 			return doubleResult;
 		}
-		LongWritable valueW = (LongWritable)converter.convert(value);
-		longResult.set(longResult.get()+valueW.get());
+		if (valueW != null) {
+			long sum = longResult.get();
+			long add = ((LongWritable)valueW).get();
+			long r = sum + add;
+			if (((sum ^ r) & (add ^ r)) < 0) {
+				throw new HiveException("sum overflowed BIGINT in a partition. Use decimal_sum for an exact sum.");
+			}
+			longResult.set(r);
+		}
 		return longResult;
 	}
 
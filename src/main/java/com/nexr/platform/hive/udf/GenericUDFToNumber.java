@@ -18,10 +18,6 @@
 
 package com.nexr.platform.hive.udf;
 
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
-import java.util.Locale;
-
 import org.apache.hadoop.hive.ql.exec.Description;
 import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
 import org.apache.hadoop.hive.ql.exec.UDFArgumentLengthException;
@@ -47,12 +43,19 @@ import org.apache.hive.pdk.HivePdkUnitTests;
  * It can be used for the most frequently requested
  * examples such as below.
  * <p>
+ * The format mask is compiled once into a {@link NumberFormatMask} and the value
+ * is parsed directly from the bytes of the string. A value which does not match
+ * the mask returns NULL. The optional nls_params (a locale such as 'de_DE' or
+ * Oracle parameters such as "NLS_NUMERIC_CHARACTERS = ',.'") gives the
+ * characters used for the D, G and L elements, see {@link NlsSymbols}.
+ * <p>
  * 
  * 
  */
-@Description(name = "to_number", value = "_FUNC_(value, format_mask) " +
+@Description(name = "to_number", value = "_FUNC_(value[, format_mask[, nls_params]]) " +
 		"- Returns the number converted from string.", extended = "Example:\n"
-		+ " > SELECT _FUNC_('1210') FROM src;\n 1210")
+		+ " > SELECT _FUNC_('1210') FROM src;\n 1210\n"
+		+ " > SELECT _FUNC_('1.210,5', '9G999D9', 'NLS_NUMERIC_CHARACTERS = '',.''') FROM src;\n 1210.5")
 @HivePdkUnitTests(setup = "create table dual_data (i int); "
 		+ "insert overwrite table dual_data select 0 from dual limit 1;", 
 		cleanup = "drop table if exists dual_data;", cases = {
@@ -66,9 +69,18 @@ import org.apache.hive.pdk.HivePdkUnitTests;
 				"FROM dual_data;", result = "1234.0"),
 		@HivePdkUnitTest(query = "SELECT nexr_to_number('$1234.56', '$9999.99') " +
 				"FROM dual_data;", result = "1234.56"),
+		@HivePdkUnitTest(query = "SELECT nexr_to_number('-1,234.5', '9,999.99') " +
+				"FROM dual_data;", result = "-1234.5"),
+		@HivePdkUnitTest(query = "SELECT nexr_to_number('1.234,5', '9G999D99', 'de_DE') " +
+				"FROM dual_data;", result = "1234.5"),
+		@HivePdkUnitTest(query = "SELECT nexr_to_number('12345.6', '9999.99') " +
+				"FROM dual_data;", result = "NULL"),
 		@HivePdkUnitTest(query = "SELECT nexr_to_number('HIGH', '$9999.99') " +
+				"FROM dual_data;", result = "NULL"),
+		@HivePdkUnitTest(query = "SELECT nexr_to_number('1,234.5', '9999.99') " +
 				"FROM dual_data;", result = "NULL") })
-public class GenericUDFToNumber extends GenericUDF {
+public class GenericUDFToNumber extends MeteredGenericUDF {
+	private final ParseErrorPolicy parseErrors = ParseErrorPolicy.forFunction("to_number");
 
 	private ObjectInspector returnInspector;
 
@@ -88,6 +100,11 @@ public class GenericUDFToNumber extends GenericUDF {
 					+ arguments[0].getTypeName() + "\" was found.");
 		}
 
+		if (arguments.length > 3) {
+			throw new UDFArgumentLengthException(
+					"The function to_number(value, format_mask, nls_params) takes at most three arguments.");
+		}
+
 		if (arguments.length > 1
 				&& !(arguments[1].getTypeName() == Constants.DOUBLE_TYPE_NAME || 
 						arguments[1].getTypeName() == Constants.STRING_TYPE_NAME)) {
@@ -97,6 +114,12 @@ public class GenericUDFToNumber extends GenericUDF {
 					+ arguments[1].getTypeName() + "\" was found.");
 		}
 
+		if (arguments.length > 2 && arguments[2].getTypeName() != Constants.STRING_TYPE_NAME) {
+			throw new UDFArgumentTypeException(2, "Argument " + (3) + " of function to_number must be \""
+					+ Constants.STRING_TYPE_NAME + "\", but \""
+					+ arguments[2].getTypeName() + "\" was found.");
+		}
+
 		converters = new ObjectInspectorConverters.Converter[arguments.length];
 		for (int i = 0; i < arguments.length; i++) {
 			converters[i] = ObjectInspectorConverters.getConverter(arguments[i],
@@ -109,49 +132,94 @@ public class GenericUDFToNumber extends GenericUDF {
 			returnInspector = PrimitiveObjectInspectorFactory.writableDoubleObjectInspector;
 		}
 
+		if (parseErrors.defaultValue != null) {
+			String value = parseErrors.defaultValue.trim();
+			try {
+				if (arguments.length == 1) {
+					longDefault = new LongWritable(Long.parseLong(value));
+				} else {
+					doubleDefault = new DoubleWritable(Double.parseDouble(value));
+				}
+			} catch (NumberFormatException e) {
+				throw new UDFArgumentException("nexr.to_number.default is not a valid "
+						+ returnInspector.getTypeName() + ": " + parseErrors.defaultValue);
+			}
+		}
+
 		return returnInspector;
 	}
 
 	private LongWritable longResult = new LongWritable();
 	private DoubleWritable doubleResult = new DoubleWritable();
+	private LongWritable longDefault;
+	private DoubleWritable doubleDefault;
+
+	private final NumberFormatMask.ParsedNumber parsed = new NumberFormatMask.ParsedNumber();
+	private final Text lastMaskText = new Text();
+	private NumberFormatMask mask;
+	private NlsSymbols maskSymbols;
+	private boolean maskResolved;
+	private final NlsSymbols.LastResolved lastNls = new NlsSymbols.LastResolved();
 
 	@Override
-	public Object evaluate(DeferredObject[] arguments) throws HiveException {
+	protected Object evaluateRow(DeferredObject[] arguments) throws HiveException {
 
-		if (arguments[0].get() == null) {
+		Object valueObject = arguments[0].get();
+		if (valueObject == null) {
 			return null;
 		}
+		Text value = (Text) converters[0].convert(valueObject);
 
-		try {
-			Text value = (Text) converters[0].convert(arguments[0].get());
-
-			Locale locale = Locale.getDefault();
-
-			// @todo convert nls_params to locale if needed.
-
-			NumberFormat formatter = NumberFormat.getInstance(locale);
-			if (formatter instanceof DecimalFormat) {
-				DecimalFormat df = (DecimalFormat) formatter;
+		if (returnInspector == PrimitiveObjectInspectorFactory.writableLongObjectInspector) {
+			if (!NumberFormatMask.DEFAULT.parse(value.getBytes(), 0, value.getLength(), parsed)
+					|| !parsed.isLong()) {
+				metrics.parseFailure();
+				return parseErrors.onError(value, longDefault);
+			}
+			longResult.set(parsed.longValue());
+			return longResult;
+		}
 
-				if (returnInspector.getTypeName() == Constants.BIGINT_TYPE_NAME) {
-					longResult.set(df.parse(value.toString()).longValue());
-					return longResult;
-				}
+		Object maskObject = arguments[1].get();
+		if (maskObject == null) {
+			return null;
+		}
+		Text maskText = (Text) converters[1].convert(maskObject);
 
-				// Double
-				String pattern = ((Text) converters[1].convert(arguments[1].get())).toString();
-				pattern = pattern.replace("9", "0");
-				df.applyPattern(pattern);
-				doubleResult.set(df.parse(value.toString()).doubleValue());
+		NlsSymbols nls = NlsSymbols.DEFAULT;
+		if (arguments.length > 2) {
+			Object nlsObject = arguments[2].get();
+			if (nlsObject == null) {
+				return null;
 			}
+			nls = lastNls.get((Text) converters[2].convert(nlsObject));
+			if (nls == null) {
+				return null;
+			}
+		}
 
-			return doubleResult;
-
-		} catch (Exception e) {
-			e.printStackTrace();
+		boolean hit = maskResolved && nls == maskSymbols && maskText.equals(lastMaskText);
+		metrics.cache(hit);
+		if (!hit) {
+			lastMaskText.set(maskText);
+			maskSymbols = nls;
+			maskResolved = true;
+			try {
+				mask = NumberFormatMask.compile(maskText.toString(), nls);
+			} catch (IllegalArgumentException e) {
+				// invalid mask, every value is NULL
+				mask = null;
+			}
+		}
+		if (mask == null) {
 			return null;
 		}
-
+		if (!mask.parse(value.getBytes(), 0, value.getLength(), parsed)) {
+			metrics.parseFailure();
+			return parseErrors.onError(value, doubleDefault);
+		}
+		doubleResult.set(parsed.doubleValue());
+		return doubleResult;
 	}
 
 	@Override
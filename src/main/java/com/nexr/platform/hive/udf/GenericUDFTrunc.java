@@ -17,7 +17,7 @@
  */
 package com.nexr.platform.hive.udf;
 
-import java.text.ParseException;
+import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
@@ -27,11 +27,15 @@ import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
 import org.apache.hadoop.hive.ql.exec.UDFArgumentLengthException;
 import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
-import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
 import org.apache.hadoop.hive.serde.Constants;
+import org.apache.hadoop.hive.serde2.io.TimestampWritable;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector.PrimitiveCategory;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.TimestampObjectInspector;
+import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hive.pdk.HivePdkUnitTest;
 import org.apache.hive.pdk.HivePdkUnitTests;
@@ -39,7 +43,8 @@ import org.apache.hive.pdk.HivePdkUnitTests;
 /**
  * GenericUDFTrunc Class for SQL construct "trunc(date, [format])". This mimics the function form <a href=
  * "http://download.oracle.com/docs/cd/B19306_01/server.102/b14200/functions201.htm" >TRUNC(date)</a>. The date should
- * be valid pattern of 'yyyy-MM-dd HH:mm:ss'.
+ * be valid pattern of 'yyyy-MM-dd HH:mm:ss', epoch seconds or a timestamp; the result has the type of the date
+ * argument, so chained date functions can stay numeric.
  * <p>
  * Below are the valid format parameters:
  * <ul>
@@ -63,17 +68,27 @@ import org.apache.hive.pdk.HivePdkUnitTests;
 		@HivePdkUnitTest(query = "SELECT nexr_trunc('2011-08-02 01:01:01','MM') " +
 				"FROM dual_data;", result = "2011-08-01 00:00:00"),
 		@HivePdkUnitTest(query = "SELECT nexr_trunc('2011-08-02 01:01:01','DD') " +
-				"FROM dual_data;", result = "2011-08-02 00:00:00") })
-public class GenericUDFTrunc extends GenericUDF {
+				"FROM dual_data;", result = "2011-08-02 00:00:00"),
+		@HivePdkUnitTest(query = "SELECT from_unixtime(nexr_trunc(unix_timestamp('2011-08-02 01:01:01'),'MM')) " +
+				"FROM dual_data;", result = "2011-08-01 00:00:00"),
+		@HivePdkUnitTest(query = "SELECT nexr_trunc(cast('2011-08-02 01:01:01' as timestamp),'YYYY') " +
+				"FROM dual_data;", result = "2011-01-01 00:00:00") })
+public class GenericUDFTrunc extends MeteredGenericUDF {
+	private final ParseErrorPolicy parseErrors = ParseErrorPolicy.forFunction("trunc");
 
 	private final String YYYY = "YYYY";
 	private final String MM = "MM";
 	private final String DD = "DD";
 
-	private final SimpleDateFormat HIVE_DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+	private PrimitiveObjectInspector dateOI;
+	private PrimitiveObjectInspector formatOI;
 
-	private ObjectInspector[] argumentIOs;
-	private ObjectInspector returnInspector;
+	private final ThreadLocal<State> state = new ThreadLocal<State>() {
+		@Override
+		protected State initialValue() {
+			return new State(dateOI.getPrimitiveCategory());
+		}
+	};
 
 	@Override
 	public ObjectInspector initialize(ObjectInspector[] arguments) throws UDFArgumentException {
@@ -83,33 +98,52 @@ public class GenericUDFTrunc extends GenericUDF {
 		}
 
 		for (int i = 0; i < arguments.length; i++) {
-			if (arguments[i].getTypeName() != Constants.STRING_TYPE_NAME) {
-				throw new UDFArgumentTypeException(i, "Only String type arguments are accepted but "
+			if (arguments[i].getCategory() != ObjectInspector.Category.PRIMITIVE) {
+				throw new UDFArgumentTypeException(i, "Only primitive type arguments are accepted but "
 						+ arguments[i].getTypeName() + " is passed.");
 			}
 		}
 
-		argumentIOs = arguments;
-		returnInspector = PrimitiveObjectInspectorFactory.writableStringObjectInspector;
+		dateOI = (PrimitiveObjectInspector) arguments[0];
+		ObjectInspector returnInspector;
+		switch (dateOI.getPrimitiveCategory()) {
+		case STRING:
+			returnInspector = PrimitiveObjectInspectorFactory.writableStringObjectInspector;
+			break;
+		case INT:
+		case LONG:
+			returnInspector = PrimitiveObjectInspectorFactory.writableLongObjectInspector;
+			break;
+		case TIMESTAMP:
+			returnInspector = PrimitiveObjectInspectorFactory.writableTimestampObjectInspector;
+			break;
+		default:
+			throw new UDFArgumentTypeException(0, "A date string, epoch seconds or a timestamp is expected but "
+					+ dateOI.getTypeName() + " is passed.");
+		}
+		if (arguments.length > 1) {
+			if (arguments[1].getTypeName() != Constants.STRING_TYPE_NAME) {
+				throw new UDFArgumentTypeException(1, "Only String type arguments are accepted but "
+						+ arguments[1].getTypeName() + " is passed.");
+			}
+			formatOI = (PrimitiveObjectInspector) arguments[1];
+		}
 		return returnInspector;
 	}
 
-	private Text returnText = new Text();
-
 	@Override
-	public Object evaluate(DeferredObject[] records) throws HiveException {
-		String date = ((PrimitiveObjectInspector) argumentIOs[0]).getPrimitiveJavaObject(records[0].get()).toString();
-		Date parsedDate = null;
-		try {
-			parsedDate = HIVE_DATE_FORMAT.parse(date);
-		} catch (ParseException e) {
-			e.printStackTrace();
+	protected Object evaluateRow(DeferredObject[] records) throws HiveException {
+		Object date = records[0].get();
+		if (date == null) {
 			return null;
 		}
 		char TRUNC_MODE = 'D';
 		if (records.length > 1) {
-			String mode = ((PrimitiveObjectInspector) argumentIOs[1]).getPrimitiveJavaObject(records[1].get())
-					.toString();
+			Object format = records[1].get();
+			if (format == null) {
+				return null;
+			}
+			String mode = formatOI.getPrimitiveJavaObject(format).toString();
 			if (mode.equals(YYYY)) {
 				TRUNC_MODE = 'Y';
 			} else if (mode.equals(MM)) {
@@ -119,34 +153,81 @@ public class GenericUDFTrunc extends GenericUDF {
 			}
 		}
 
-		Calendar calendar = Calendar.getInstance();
-		calendar.setTime(parsedDate);
-		int year = calendar.get(Calendar.YEAR);
-		int month = calendar.get(Calendar.MONTH);
-		int day = calendar.get(Calendar.DAY_OF_MONTH);
+		State s = state.get();
+		DateTimeFields fields = s.fields;
+		boolean valid;
+		switch (dateOI.getPrimitiveCategory()) {
+		case STRING:
+			String value = dateOI.getPrimitiveJavaObject(date).toString();
+			s.position.setIndex(0);
+			s.position.setErrorIndex(-1);
+			Date parsed = s.hiveDateFormat.parse(value, s.position);
+			if (parsed == null) {
+				metrics.parseFailure();
+				return parseErrors.onError(value);
+			}
+			s.calendar.setTime(parsed);
+			valid = fields.set(s.calendar);
+			break;
+		case TIMESTAMP:
+			valid = fields.set(((TimestampObjectInspector) dateOI).getPrimitiveWritableObject(date));
+			break;
+		default:
+			valid = fields.setInstant(PrimitiveObjectInspectorUtils.getLong(date, dateOI));
+			break;
+		}
+		if (!valid) {
+			return null;
+		}
+
 		switch (TRUNC_MODE) {
 		case 'Y':
-			calendar.clear();
-			calendar.set(Calendar.YEAR, year);
+			fields.month = 1;
+			fields.day = 1;
 			break;
 		case 'M':
-			calendar.clear();
-			calendar.set(Calendar.YEAR, year);
-			calendar.set(Calendar.MONTH, month);
+			fields.day = 1;
 			break;
 		case 'D':
 		default:
-			calendar.clear();
-			calendar.set(Calendar.YEAR, year);
-			calendar.set(Calendar.MONTH, month);
-			calendar.set(Calendar.DAY_OF_MONTH, day);
 			break;
 		}
+		fields.truncateTime();
+
+		Object result = s.result;
+		if (result instanceof Text) {
+			fields.write((Text) result);
+		} else if (result instanceof LongWritable) {
+			((LongWritable) result).set(fields.toInstant());
+		} else {
+			fields.write((TimestampWritable) result, 0);
+		}
+		return result;
+	}
 
-		String truncated = HIVE_DATE_FORMAT.format(calendar.getTime());
-
-		returnText.set(truncated);
-		return returnText;
+	/**
+	 * Parser, calendar and the result of one thread.
+	 */
+	private static final class State {
+		private final SimpleDateFormat hiveDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+		private final ParsePosition position = new ParsePosition(0);
+		private final Calendar calendar = Calendar.getInstance();
+		private final DateTimeFields fields = new DateTimeFields();
+		private final Object result;
+
+		State(PrimitiveCategory category) {
+			switch (category) {
+			case STRING:
+				result = new Text();
+				break;
+			case TIMESTAMP:
+				result = new TimestampWritable();
+				break;
+			default:
+				result = new LongWritable();
+				break;
+			}
+		}
 	}
 
 	@Override
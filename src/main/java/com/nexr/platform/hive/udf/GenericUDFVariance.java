@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.udf.UDFType;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+/**
+ * GenericUDFVariance
+ *
+ * The running sample variance of the values of each partition, 0 for
+ * a single value as in Oracle.
+ */
+@Description(name = "variance",
+    value = "_FUNC_(p1, p2, ..., value) " +
+    		"- Returns the running sample variance of a group",
+    extended = "Example:\n"
+    + "  > SELECT _FUNC_(p1, p2, value) FROM (\n"
+    + "  > 		SELECT ~ FROM table DISTRIBUTE BY p1,p2 SORT BY p1,p2,order_by_col1, order_by_col2 DESC, ... \n"
+    + "  > );\n\n"
+    + "ORACLE :\n"
+    + "  > SELECT VARIANCE(value) OVER(PARTITION BY p1,p2 ORDER BY order_by_col1) FROM table;\n")
+
+@HivePdkUnitTests(
+	setup = "", cleanup = "",
+    cases = {
+      @HivePdkUnitTest(
+        query = "SELECT t.empno, t.deptno, t.sal, nexr_variance(t.deptno, t.sal) as sal_variance"
+        	+"  FROM ("
+        	+"      select a.empno, a.deptno, a.sal from emp a"
+        	+"      distribute by a.deptno"
+        	+"      sort BY a.deptno, a.empno"
+        	+"  ) t;",
+        result ="7782\t10\t2450\t0.0\n"
+        	+"7839\t10\t5000\t3251250.0\n"
+        	+"7934\t10\t1300\t3585833.333333333\n"
+        	+"7369\t20\t800\t0.0\n"
+        	+"7566\t20\t2975\t2365312.5\n"
+        	+"7788\t20\t3000\t1595208.3333333333\n"
+        	+"7876\t20\t1100\t1398906.25\n"
+        	+"7902\t20\t3000\t1261875.0\n"
+        	+"7499\t30\t1600\t0.0\n"
+        	+"7521\t30\t1250\t61250.0\n"
+        	+"7654\t30\t1250\t40833.33333333334\n"
+        	+"7698\t30\t2850\t577291.6666666666\n"
+        	+"7844\t30\t1500\t444250.0\n"
+        	+"7900\t30\t950\t446666.6666666667")
+    }
+  )
+
+@UDFType(deterministic = false, stateful = true)
+public class GenericUDFVariance extends GenericUDFAvg {
+
+	@Override
+	protected double result(RunningStats stats) {
+		return stats.variance();
+	}
+
+	@Override
+	public String getDisplayString(String[] children) {
+		return "variance(" + StringUtils.join(children, ',') + ")";
+	}
+}
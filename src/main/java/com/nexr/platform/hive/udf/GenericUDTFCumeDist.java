@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nexr.platform.hive.udf;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+/**
+ * GenericUDTFCumeDist
+ *
+ * Emits the columns of each row with its cumulative distribution, the
+ * fraction of the rows of its partition up to its last peer. Unlike
+ * {@link GenericUDFCumeDist} the rows are sorted in the order of the window,
+ * as the peers of a row are kept until the next row that is not a peer. A
+ * partition without a row count is buffered.
+ */
+@Description(name = "partition_cume_dist",
+    value = "_FUNC_(partition_key, order_by_key, struct(col1, col2, ...)[, partition_rows]) " +
+            "- emits col1, col2, ... and the cumulative distribution of the row in its partition",
+    extended = "Example:\n"
+    + "  > SELECT _FUNC_(STRUCT(p1,p2), STRUCT(order_by_col1, order_by_col2), STRUCT(p1, p2, id))"
+    + " AS (p1, p2, id, cume_dist) FROM (\n"
+    + "  >      SELECT ~ FROM table DISTRIBUTE BY p1,p2 SORT BY p1,p2,order_by_col1,order_by_col2\n"
+    + "  > ) t;\n\n"
+    + "ORACLE:\n"
+    + "  > SELECT p1, p2, id, CUME_DIST() OVER(PARTITION BY p1,p2 ORDER BY order_by_col1,order_by_col2)"
+    + " FROM table;\n")
+@HivePdkUnitTests(
+    setup = "", cleanup = "",
+    cases = {
+      @HivePdkUnitTest(
+        query = "SELECT nexr_partition_cume_dist(t.deptno, t.sal, struct(t.empno, t.deptno, t.sal))"
+        + "  AS (id, dept, salary, cd) FROM ("
+        + "      select a.empno, a.deptno, a.sal from emp a"
+        + "      distribute by a.deptno"
+        + "      sort BY a.deptno, a.sal, a.empno"
+        + "  ) t;",
+        result = "7934\t10\t1300\t0.3333333333333333\n"
+        + "7782\t10\t2450\t0.6666666666666666\n"
+        + "7839\t10\t5000\t1.0\n"
+        + "7369\t20\t800\t0.2\n"
+        + "7876\t20\t1100\t0.4\n"
+        + "7566\t20\t2975\t0.6\n"
+        + "7788\t20\t3000\t1.0\n"
+        + "7902\t20\t3000\t1.0\n"
+        + "7900\t30\t950\t0.16666666666666666\n"
+        + "7521\t30\t1250\t0.5\n"
+        + "7654\t30\t1250\t0.5\n"
+        + "7844\t30\t1500\t0.6666666666666666\n"
+        + "7499\t30\t1600\t0.8333333333333334\n"
+        + "7698\t30\t2850\t1.0"),
+      @HivePdkUnitTest(
+        query = "SELECT nexr_partition_cume_dist(t.deptno, t.sal, struct(t.empno, t.deptno, t.sal),"
+        + "    if(t.deptno = 30, 6, if(t.deptno = 20, 5, null)))"
+        + "  AS (id, dept, salary, cd) FROM ("
+        + "      select a.empno, a.deptno, a.sal from emp a"
+        + "      distribute by a.deptno"
+        + "      sort BY a.deptno, a.sal, a.empno"
+        + "  ) t;",
+        result = "7934\t10\t1300\t0.3333333333333333\n"
+        + "7782\t10\t2450\t0.6666666666666666\n"
+        + "7839\t10\t5000\t1.0\n"
+        + "7369\t20\t800\t0.2\n"
+        + "7876\t20\t1100\t0.4\n"
+        + "7566\t20\t2975\t0.6\n"
+        + "7788\t20\t3000\t1.0\n"
+        + "7902\t20\t3000\t1.0\n"
+        + "7900\t30\t950\t0.16666666666666666\n"
+        + "7521\t30\t1250\t0.5\n"
+        + "7654\t30\t1250\t0.5\n"
+        + "7844\t30\t1500\t0.6666666666666666\n"
+        + "7499\t30\t1600\t0.8333333333333334\n"
+        + "7698\t30\t2850\t1.0")
+    }
+  )
+public class GenericUDTFCumeDist extends GenericUDTFPercentRank {
+
+  private final DoubleWritable fraction = new DoubleWritable();
+  private int lastPeer;
+
+  @Override
+  protected boolean peer(Object[] args) {
+    super.peer(args);
+    return samePeer;
+  }
+
+  @Override
+  protected void result(int index, long row, long count, Object[] result, int offset) {
+    if (index == 0 || index > lastPeer) {
+      lastPeer = index;
+      while (lastPeer + 1 < buffered() && ranks[lastPeer + 1] == ranks[index]) {
+        lastPeer++;
+      }
+    }
+    fraction.set((double) (row + lastPeer - index + 1) / count);
+    result[offset] = fraction;
+  }
+
+  @Override
+  public String toString() {
+    return "partition_cume_dist";
+  }
+}
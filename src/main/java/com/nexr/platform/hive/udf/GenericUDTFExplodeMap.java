@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.serde2.objectinspector.MapObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+/**
+ * GenericUDTFExplodeMap
+ *
+ * Emits one row per map entry. The output row is reused for every entry.
+ */
+@Description(name = "explode_map",
+    value = "_FUNC_(m) - separates the entries of map m into rows of (key, value)",
+    extended = "Example:\n"
+    + "  > SELECT t.key, t.value FROM src LATERAL VIEW _FUNC_(map('a',1)) t AS key, value;\n"
+    + "  a\t1")
+@HivePdkUnitTests(
+    setup = "", cleanup = "",
+    cases = {
+      @HivePdkUnitTest(
+        query = "SELECT t.key, t.value FROM onerow LATERAL VIEW nexr_explode_map(map('a',1)) t AS key, value;",
+        result = "a\t1")
+    }
+  )
+public class GenericUDTFExplodeMap extends MeteredGenericUDTF {
+
+  private MapObjectInspector mapOI;
+  private final Object[] row = new Object[2];
+
+  @Override
+  protected void closeRows() throws HiveException {
+  }
+
+  @Override
+  public StructObjectInspector initialize(ObjectInspector[] args) throws UDFArgumentException {
+    if (args.length != 1 || args[0].getCategory() != ObjectInspector.Category.MAP) {
+      throw new UDFArgumentException("explode_map() takes only one map argument");
+    }
+    mapOI = (MapObjectInspector) args[0];
+
+    List<String> names = new ArrayList<String>(2);
+    List<ObjectInspector> inspectors = new ArrayList<ObjectInspector>(2);
+    names.add("key");
+    inspectors.add(mapOI.getMapKeyObjectInspector());
+    names.add("value");
+    inspectors.add(mapOI.getMapValueObjectInspector());
+    return ObjectInspectorFactory.getStandardStructObjectInspector(names, inspectors);
+  }
+
+  @Override
+  protected void processRow(Object[] o) throws HiveException {
+    Map<?, ?> map = mapOI.getMap(o[0]);
+    if (map != null) {
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        row[0] = entry.getKey();
+        row[1] = entry.getValue();
+        forward(row);
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "explode_map";
+  }
+}
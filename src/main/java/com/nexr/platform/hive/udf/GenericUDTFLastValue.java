@@ -0,0 +1,163 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nexr.platform.hive.udf;
+
+import java.util.List;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector.PrimitiveCategory;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorUtils;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+/**
+ * GenericUDTFLastValue
+ *
+ * Emits the columns of each row with the last value of its whole partition,
+ * or the last non-NULL value when NULLs are ignored, as Oracle's LAST_VALUE
+ * with a window up to the end of the partition. The rows of the current
+ * partition are buffered until it ends; the value is kept in a
+ * {@link ValueSlot}.
+ */
+@Description(name = "partition_last_value",
+    value = "_FUNC_(partition_key, column, struct(col1, col2, ...)[, ignore_nulls]) " +
+            "- emits col1, col2, ... and the last value of column in its partition",
+    extended = "Example:\n"
+    + "  > SELECT _FUNC_(STRUCT(p1,p2), column, STRUCT(p1, p2, id, column), true) AS (p1, p2, id, column, last) FROM (\n"
+    + "  >      SELECT ~ FROM table DISTRIBUTE BY p1,p2 SORT BY p1,p2,order_by_col\n"
+    + "  > ) t;\n\n"
+    + "ORACLE:\n"
+    + "  > SELECT p1, p2, id, column, LAST_VALUE(column IGNORE NULLS) OVER(PARTITION BY p1,p2 ORDER BY order_by_col\n"
+    + "  >     ROWS BETWEEN UNBOUNDED PRECEDING AND UNBOUNDED FOLLOWING) FROM table;\n")
+@HivePdkUnitTests(
+    setup = "", cleanup = "",
+    cases = {
+      @HivePdkUnitTest(
+        query = "SELECT nexr_partition_last_value(t.deptno, t.comm, struct(t.empno, t.deptno, t.comm), true)"
+        + "  AS (id, dept, comm, last_comm) FROM ("
+        + "      select a.empno, a.deptno, a.comm from emp a"
+        + "      distribute by a.deptno"
+        + "      sort BY a.deptno, a.empno"
+        + "  ) t;",
+        result = "7782\t10\tNULL\tNULL\n"
+        + "7839\t10\tNULL\tNULL\n"
+        + "7934\t10\tNULL\tNULL\n"
+        + "7369\t20\tNULL\tNULL\n"
+        + "7566\t20\tNULL\tNULL\n"
+        + "7788\t20\tNULL\tNULL\n"
+        + "7876\t20\tNULL\tNULL\n"
+        + "7902\t20\tNULL\tNULL\n"
+        + "7499\t30\t300\t0\n"
+        + "7521\t30\t500\t0\n"
+        + "7654\t30\t1400\t0\n"
+        + "7698\t30\tNULL\t0\n"
+        + "7844\t30\t0\t0\n"
+        + "7900\t30\tNULL\t0"),
+      @HivePdkUnitTest(
+        query = "SELECT nexr_partition_last_value(t.deptno, t.sal, struct(t.empno, t.deptno, t.sal))"
+        + "  AS (id, dept, salary, last_sal) FROM ("
+        + "      select a.empno, a.deptno, a.sal from emp a"
+        + "      distribute by a.deptno"
+        + "      sort BY a.deptno, a.empno"
+        + "  ) t;",
+        result = "7782\t10\t2450\t1300\n"
+        + "7839\t10\t5000\t1300\n"
+        + "7934\t10\t1300\t1300\n"
+        + "7369\t20\t800\t3000\n"
+        + "7566\t20\t2975\t3000\n"
+        + "7788\t20\t3000\t3000\n"
+        + "7876\t20\t1100\t3000\n"
+        + "7902\t20\t3000\t3000\n"
+        + "7499\t30\t1600\t950\n"
+        + "7521\t30\t1250\t950\n"
+        + "7654\t30\t1250\t950\n"
+        + "7698\t30\t2850\t950\n"
+        + "7844\t30\t1500\t950\n"
+        + "7900\t30\t950\t950")
+    }
+  )
+public class GenericUDTFLastValue extends BufferedGenericUDTF {
+
+  private ValueSlot slot;
+  private long slotBytes;
+  private PrimitiveObjectInspector ignoreNullsOI;
+
+  @Override
+  protected String usage() {
+    return "partition_last_value() takes the partition key, a column, a struct of columns and an optional ignore_nulls";
+  }
+
+  @Override
+  protected void initializeResults(ObjectInspector[] args, List<String> names, List<ObjectInspector> inspectors)
+      throws UDFArgumentException {
+    if (args.length > 4) {
+      throw new UDFArgumentException(usage());
+    }
+    if (args.length == 4) {
+      if (args[3].getCategory() != ObjectInspector.Category.PRIMITIVE
+          || ((PrimitiveObjectInspector) args[3]).getPrimitiveCategory() != PrimitiveCategory.BOOLEAN) {
+        throw new UDFArgumentTypeException(3, "ignore_nulls must be a boolean but "
+            + args[3].getTypeName() + " is passed.");
+      }
+      ignoreNullsOI = (PrimitiveObjectInspector) args[3];
+    }
+    slot = new ValueSlot(args[1]);
+    names.add("last_value");
+    inspectors.add(slot.resultInspector());
+  }
+
+  @Override
+  protected long add(int index, Object[] args) throws HiveException {
+    Object value = args[1];
+    if (value == null && ignoreNulls(args)) {
+      return 0;
+    }
+    slot.set(value);
+    long bytes = slot.bytes();
+    long added = bytes - slotBytes;
+    slotBytes = bytes;
+    return added;
+  }
+
+  private boolean ignoreNulls(Object[] args) {
+    return ignoreNullsOI != null && args[3] != null
+        && PrimitiveObjectInspectorUtils.getBoolean(args[3], ignoreNullsOI);
+  }
+
+  @Override
+  protected void result(int index, long row, long count, Object[] result, int offset) {
+    result[offset] = slot.get();
+  }
+
+  @Override
+  protected void reset() {
+    slot.clear();
+    slotBytes = 0;
+  }
+
+  @Override
+  public String toString() {
+    return "partition_last_value";
+  }
+}
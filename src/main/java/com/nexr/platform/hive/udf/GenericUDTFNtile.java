@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nexr.platform.hive.udf;
+
+import java.util.List;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorUtils;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+/**
+ * GenericUDTFNtile
+ *
+ * Emits the columns of each row with its bucket, as {@link GenericUDFNtile},
+ * without a join of the partition row counts: the rows of a partition are
+ * buffered and counted. A partition with a row count is streamed instead, so
+ * the counts of the large partitions only can be joined.
+ */
+@Description(name = "partition_ntile",
+    value = "_FUNC_(partition_key, buckets, struct(col1, col2, ...)[, partition_rows]) " +
+            "- emits col1, col2, ... and the bucket number of the row in the ordered rows of its partition",
+    extended = "Example:\n"
+    + "  > SELECT _FUNC_(STRUCT(p1,p2), 4, STRUCT(p1, p2, id)) AS (p1, p2, id, bucket) FROM (\n"
+    + "  >      SELECT ~ FROM table DISTRIBUTE BY p1,p2 SORT BY p1,p2,order_by_col1\n"
+    + "  > ) t;\n\n"
+    + "ORACLE:\n"
+    + "  > SELECT p1, p2, id, NTILE(4) OVER(PARTITION BY p1,p2 ORDER BY order_by_col1) FROM table;\n")
+@HivePdkUnitTests(
+    setup = "", cleanup = "",
+    cases = {
+      @HivePdkUnitTest(
+        query = "SELECT nexr_partition_ntile(t.deptno, 4, struct(t.empno, t.deptno, t.sal))"
+        + "  AS (id, dept, salary, bucket) FROM ("
+        + "      select a.empno, a.deptno, a.sal from emp a"
+        + "      distribute by a.deptno"
+        + "      sort BY a.deptno, a.sal, a.empno"
+        + "  ) t;",
+        result = "7934\t10\t1300\t1\n"
+        + "7782\t10\t2450\t2\n"
+        + "7839\t10\t5000\t3\n"
+        + "7369\t20\t800\t1\n"
+        + "7876\t20\t1100\t1\n"
+        + "7566\t20\t2975\t2\n"
+        + "7788\t20\t3000\t3\n"
+        + "7902\t20\t3000\t4\n"
+        + "7900\t30\t950\t1\n"
+        + "7521\t30\t1250\t1\n"
+        + "7654\t30\t1250\t2\n"
+        + "7844\t30\t1500\t2\n"
+        + "7499\t30\t1600\t3\n"
+        + "7698\t30\t2850\t4"),
+      @HivePdkUnitTest(
+        query = "SELECT nexr_partition_ntile(t.deptno, 4, struct(t.empno, t.deptno, t.sal),"
+        + "    if(t.deptno = 30, 6, if(t.deptno = 20, 5, null)))"
+        + "  AS (id, dept, salary, bucket) FROM ("
+        + "      select a.empno, a.deptno, a.sal from emp a"
+        + "      distribute by a.deptno"
+        + "      sort BY a.deptno, a.sal, a.empno"
+        + "  ) t;",
+        result = "7934\t10\t1300\t1\n"
+        + "7782\t10\t2450\t2\n"
+        + "7839\t10\t5000\t3\n"
+        + "7369\t20\t800\t1\n"
+        + "7876\t20\t1100\t1\n"
+        + "7566\t20\t2975\t2\n"
+        + "7788\t20\t3000\t3\n"
+        + "7902\t20\t3000\t4\n"
+        + "7900\t30\t950\t1\n"
+        + "7521\t30\t1250\t1\n"
+        + "7654\t30\t1250\t2\n"
+        + "7844\t30\t1500\t2\n"
+        + "7499\t30\t1600\t3\n"
+        + "7698\t30\t2850\t4")
+    }
+  )
+public class GenericUDTFNtile extends BufferedGenericUDTF {
+
+  private final LongWritable bucket = new LongWritable();
+  private PrimitiveObjectInspector bucketsOI;
+  private long buckets;
+
+  @Override
+  protected String usage() {
+    return "partition_ntile() takes the partition key, the number of buckets, a struct of columns "
+        + "and an optional row count of the partition";
+  }
+
+  @Override
+  protected int rowsArgument() {
+    return 3;
+  }
+
+  @Override
+  protected void initializeResults(ObjectInspector[] args, List<String> names, List<ObjectInspector> inspectors)
+      throws UDFArgumentException {
+    if (args.length > 4) {
+      throw new UDFArgumentException(usage());
+    }
+    bucketsOI = GenericUDFRank.numberArgument(args, 1);
+    names.add("ntile");
+    inspectors.add(PrimitiveObjectInspectorFactory.writableLongObjectInspector);
+  }
+
+  @Override
+  protected long add(int index, Object[] args) throws HiveException {
+    if (args[1] == null) {
+      buckets = 0;
+      return 0;
+    }
+    buckets = PrimitiveObjectInspectorUtils.getLong(args[1], bucketsOI);
+    if (buckets <= 0) {
+      throw new HiveException("NTILE needs a positive number of buckets but " + buckets + " is passed.");
+    }
+    return 0;
+  }
+
+  @Override
+  protected void result(int index, long row, long count, Object[] result, int offset) {
+    if (buckets == 0) {
+      result[offset] = null;
+    } else {
+      bucket.set(GenericUDFNtile.bucket(row, count, buckets));
+      result[offset] = bucket;
+    }
+  }
+
+  @Override
+  protected void reset() {
+  }
+
+  @Override
+  public String toString() {
+    return "partition_ntile";
+  }
+}
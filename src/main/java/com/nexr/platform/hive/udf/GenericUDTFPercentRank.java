@@ -0,0 +1,172 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nexr.platform.hive.udf;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+/**
+ * GenericUDTFPercentRank
+ *
+ * Emits the columns of each row with its percent rank, as
+ * {@link GenericUDFPercentRank}, without a join of the partition row counts:
+ * the rows of a partition are buffered and counted. A partition with a row
+ * count is streamed instead, so the counts of the large partitions only can be
+ * joined.
+ */
+@Description(name = "partition_percent_rank",
+    value = "_FUNC_(partition_key, order_by_key, struct(col1, col2, ...)[, partition_rows]) " +
+            "- emits col1, col2, ... and the relative rank of the row in its partition, from 0 to 1",
+    extended = "Example:\n"
+    + "  > SELECT _FUNC_(STRUCT(p1,p2), STRUCT(order_by_col1, order_by_col2), STRUCT(p1, p2, id))"
+    + " AS (p1, p2, id, percent_rank) FROM (\n"
+    + "  >      SELECT ~ FROM table DISTRIBUTE BY p1,p2 SORT BY p1,p2,order_by_col1,order_by_col2\n"
+    + "  > ) t;\n\n"
+    + "ORACLE:\n"
+    + "  > SELECT p1, p2, id, PERCENT_RANK() OVER(PARTITION BY p1,p2 ORDER BY order_by_col1,order_by_col2)"
+    + " FROM table;\n")
+@HivePdkUnitTests(
+    setup = "", cleanup = "",
+    cases = {
+      @HivePdkUnitTest(
+        query = "SELECT nexr_partition_percent_rank(t.deptno, t.sal, struct(t.empno, t.deptno, t.sal))"
+        + "  AS (id, dept, salary, pr) FROM ("
+        + "      select a.empno, a.deptno, a.sal from emp a"
+        + "      distribute by a.deptno"
+        + "      sort BY a.deptno, a.sal, a.empno"
+        + "  ) t;",
+        result = "7934\t10\t1300\t0.0\n"
+        + "7782\t10\t2450\t0.5\n"
+        + "7839\t10\t5000\t1.0\n"
+        + "7369\t20\t800\t0.0\n"
+        + "7876\t20\t1100\t0.25\n"
+        + "7566\t20\t2975\t0.5\n"
+        + "7788\t20\t3000\t0.75\n"
+        + "7902\t20\t3000\t0.75\n"
+        + "7900\t30\t950\t0.0\n"
+        + "7521\t30\t1250\t0.2\n"
+        + "7654\t30\t1250\t0.2\n"
+        + "7844\t30\t1500\t0.6\n"
+        + "7499\t30\t1600\t0.8\n"
+        + "7698\t30\t2850\t1.0"),
+      @HivePdkUnitTest(
+        query = "SELECT nexr_partition_percent_rank(t.deptno, t.sal, struct(t.empno, t.deptno, t.sal),"
+        + "    if(t.deptno = 30, 6, if(t.deptno = 20, 5, null)))"
+        + "  AS (id, dept, salary, pr) FROM ("
+        + "      select a.empno, a.deptno, a.sal from emp a"
+        + "      distribute by a.deptno"
+        + "      sort BY a.deptno, a.sal, a.empno"
+        + "  ) t;",
+        result = "7934\t10\t1300\t0.0\n"
+        + "7782\t10\t2450\t0.5\n"
+        + "7839\t10\t5000\t1.0\n"
+        + "7369\t20\t800\t0.0\n"
+        + "7876\t20\t1100\t0.25\n"
+        + "7566\t20\t2975\t0.5\n"
+        + "7788\t20\t3000\t0.75\n"
+        + "7902\t20\t3000\t0.75\n"
+        + "7900\t30\t950\t0.0\n"
+        + "7521\t30\t1250\t0.2\n"
+        + "7654\t30\t1250\t0.2\n"
+        + "7844\t30\t1500\t0.6\n"
+        + "7499\t30\t1600\t0.8\n"
+        + "7698\t30\t2850\t1.0")
+    }
+  )
+public class GenericUDTFPercentRank extends BufferedGenericUDTF {
+
+  private final DoubleWritable fraction = new DoubleWritable();
+  private PartitionKey order;
+  private boolean started;
+  private long rows;
+  private long rank;
+
+  /** The rank of each buffered row. */
+  protected long[] ranks = new long[64];
+  /** True if the current row is a peer of the previous one. */
+  protected boolean samePeer;
+
+  @Override
+  protected String usage() {
+    return toString() + "() takes the partition key, the order by key, a struct of columns "
+        + "and an optional row count of the partition";
+  }
+
+  @Override
+  protected int rowsArgument() {
+    return 3;
+  }
+
+  @Override
+  protected void initializeResults(ObjectInspector[] args, List<String> names, List<ObjectInspector> inspectors)
+      throws UDFArgumentException {
+    if (args.length > 4) {
+      throw new UDFArgumentException(usage());
+    }
+    order = new PartitionKey(args, 1, 2);
+    names.add(toString());
+    inspectors.add(PrimitiveObjectInspectorFactory.writableDoubleObjectInspector);
+  }
+
+  @Override
+  protected boolean peer(Object[] args) {
+    boolean newOrder = order.isNew(args);
+    samePeer = started && !newOrder;
+    started = true;
+    return false;
+  }
+
+  @Override
+  protected long add(int index, Object[] args) {
+    rows++;
+    if (!samePeer) {
+      rank = rows;
+    }
+    if (index == ranks.length) {
+      ranks = Arrays.copyOf(ranks, index * 2);
+    }
+    ranks[index] = rank;
+    return 8;
+  }
+
+  @Override
+  protected void result(int index, long row, long count, Object[] result, int offset) {
+    fraction.set(count == 1 ? 0 : (double) (ranks[index] - 1) / (count - 1));
+    result[offset] = fraction;
+  }
+
+  @Override
+  protected void reset() {
+    started = false;
+    rows = 0;
+  }
+
+  @Override
+  public String toString() {
+    return "partition_percent_rank";
+  }
+}
@@ -21,28 +21,34 @@ package com.nexr.platform.hive.udf;
 import org.apache.hadoop.hive.ql.exec.Description;
 import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
-import org.apache.hadoop.hive.ql.udf.generic.GenericUDTF;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
 
+/**
+ * GenericUDTFPopulate
+ *
+ * Forwards the struct as the row without copying it, so over the lazy struct
+ * of {@link GenericUDAFDedup} only the columns read by the query are
+ * deserialized.
+ */
 @Description(name = "populate",
     value = "_FUNC_(a) - populate struct input as single row")
-public class GenericUDTFPopulate extends GenericUDTF {
+public class GenericUDTFPopulate extends MeteredGenericUDTF {
 
   @Override
-  public void close() throws HiveException {
+  protected void closeRows() throws HiveException {
   }
 
   @Override
   public StructObjectInspector initialize(ObjectInspector[] args) throws UDFArgumentException {
-    if (args.length != 1 && args[0].getCategory() != ObjectInspector.Category.STRUCT) {
+    if (args.length != 1 || args[0].getCategory() != ObjectInspector.Category.STRUCT) {
       throw new UDFArgumentException("populate() takes only one struct type argument");
     }
     return (StructObjectInspector) args[0];
   }
 
   @Override
-  public void process(Object[] o) throws HiveException {
+  protected void processRow(Object[] o) throws HiveException {
     forward(o[0]);
   }
 
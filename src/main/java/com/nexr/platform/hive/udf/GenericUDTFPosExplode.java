@@ -0,0 +1,98 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.serde2.objectinspector.ListObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+/**
+ * GenericUDTFPosExplode
+ *
+ * Emits one row per array element with its 0 based position. The output row
+ * and the position are reused for every element.
+ */
+@Description(name = "posexplode",
+    value = "_FUNC_(a) - separates the elements of array a into rows of (pos, val)",
+    extended = "Example:\n"
+    + "  > SELECT t.pos, t.val FROM src LATERAL VIEW _FUNC_(array('x','y')) t AS pos, val;\n"
+    + "  0\tx\n"
+    + "  1\ty")
+@HivePdkUnitTests(
+    setup = "", cleanup = "",
+    cases = {
+      @HivePdkUnitTest(
+        query = "SELECT t.pos, t.val FROM onerow LATERAL VIEW nexr_posexplode(array('x','y')) t AS pos, val;",
+        result = "0\tx\n"
+        + "1\ty")
+    }
+  )
+public class GenericUDTFPosExplode extends MeteredGenericUDTF {
+
+  private ListObjectInspector listOI;
+  private final IntWritable pos = new IntWritable();
+  private final Object[] row = new Object[] { pos, null };
+
+  @Override
+  protected void closeRows() throws HiveException {
+  }
+
+  @Override
+  public StructObjectInspector initialize(ObjectInspector[] args) throws UDFArgumentException {
+    if (args.length != 1 || args[0].getCategory() != ObjectInspector.Category.LIST) {
+      throw new UDFArgumentException("posexplode() takes only one array argument");
+    }
+    listOI = (ListObjectInspector) args[0];
+
+    List<String> names = new ArrayList<String>(2);
+    List<ObjectInspector> inspectors = new ArrayList<ObjectInspector>(2);
+    names.add("pos");
+    inspectors.add(PrimitiveObjectInspectorFactory.writableIntObjectInspector);
+    names.add("val");
+    inspectors.add(listOI.getListElementObjectInspector());
+    return ObjectInspectorFactory.getStandardStructObjectInspector(names, inspectors);
+  }
+
+  @Override
+  protected void processRow(Object[] o) throws HiveException {
+    int length = listOI.getListLength(o[0]);
+    for (int i = 0; i < length; i++) {
+      pos.set(i);
+      row[1] = listOI.getListElement(o[0], i);
+      forward(row);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "posexplode";
+  }
+}
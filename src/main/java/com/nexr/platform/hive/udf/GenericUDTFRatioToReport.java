@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorConverters;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorConverters.Converter;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+/**
+ * GenericUDTFRatioToReport
+ *
+ * Emits the columns of each row with the ratio of its value to the sum of the
+ * values of its partition. The sum is known only at the end of a partition, so
+ * the rows of the current partition are buffered, their values in a double
+ * array, and emitted when the next partition starts or the input ends. The
+ * buffer is limited like the state of the other analytic functions.
+ * <p>
+ * Call it in the select list, <code>SELECT ratio_to_report(...) AS (...)</code>.
+ * In a LATERAL VIEW, Hive joins each emitted row with the input row being
+ * processed when it is emitted, the first row of the next partition or the
+ * last row of the input, so any input column selected next to the function's
+ * columns is wrongly paired; see {@link BufferedGenericUDTF}.
+ */
+@Description(name = "ratio_to_report",
+    value = "_FUNC_(partition_key, value, struct(col1, col2, ...)) " +
+            "- emits col1, col2, ... and the ratio of value to the sum of its partition",
+    extended = "Example:\n"
+    + "  > SELECT _FUNC_(STRUCT(p1,p2), value, STRUCT(p1, p2, id, value)) AS (p1, p2, id, value, ratio) FROM (\n"
+    + "  >      SELECT ~ FROM table DISTRIBUTE BY p1,p2 SORT BY p1,p2\n"
+    + "  > ) t;\n\n"
+    + "Pass every column needed in the struct: in a LATERAL VIEW the input columns are\n"
+    + "paired with the wrong rows, as the rows of a partition are emitted after it ends.\n\n"
+    + "ORACLE:\n"
+    + "  > SELECT p1, p2, id, value, RATIO_TO_REPORT(value) OVER(PARTITION BY p1,p2) FROM table;\n")
+@HivePdkUnitTests(
+    setup = "", cleanup = "",
+    cases = {
+      @HivePdkUnitTest(
+        query = "SELECT nexr_ratio_to_report(t.deptno, t.sal, struct(t.empno, t.deptno, t.sal))"
+        + "  AS (id, dept, salary, ratio) FROM ("
+        + "      select a.empno, a.deptno, a.sal from emp a"
+        + "      distribute by a.deptno"
+        + "      sort BY a.deptno, a.empno"
+        + "  ) t;",
+        result = "7782\t10\t2450\t0.28\n"
+        + "7839\t10\t5000\t0.5714285714285714\n"
+        + "7934\t10\t1300\t0.14857142857142858\n"
+        + "7369\t20\t800\t0.0735632183908046\n"
+        + "7566\t20\t2975\t0.2735632183908046\n"
+        + "7788\t20\t3000\t0.27586206896551724\n"
+        + "7876\t20\t1100\t0.10114942528735632\n"
+        + "7902\t20\t3000\t0.27586206896551724\n"
+        + "7499\t30\t1600\t0.1702127659574468\n"
+        + "7521\t30\t1250\t0.13297872340425532\n"
+        + "7654\t30\t1250\t0.13297872340425532\n"
+        + "7698\t30\t2850\t0.30319148936170215\n"
+        + "7844\t30\t1500\t0.1595744680851064\n"
+        + "7900\t30\t950\t0.10106382978723404")
+    }
+  )
+public class GenericUDTFRatioToReport extends BufferedGenericUDTF {
+
+  private final RunningStats stats = new RunningStats(RunningStats.compensated(getClass()));
+  private final DoubleWritable ratio = new DoubleWritable();
+
+  private Converter converter;
+  private double[] values = new double[64];
+  private boolean[] nulls = new boolean[64];
+
+  @Override
+  protected String usage() {
+    return "ratio_to_report() takes the partition key, a value and a struct of columns";
+  }
+
+  @Override
+  protected void initializeResults(ObjectInspector[] args, List<String> names, List<ObjectInspector> inspectors)
+      throws UDFArgumentException {
+    if (args.length != 3) {
+      throw new UDFArgumentException(usage());
+    }
+    if (args[1].getCategory() != ObjectInspector.Category.PRIMITIVE) {
+      throw new UDFArgumentTypeException(1, "Only numeric type arguments are accepted but "
+          + args[1].getTypeName() + " is passed.");
+    }
+    converter = ObjectInspectorConverters.getConverter(args[1],
+        PrimitiveObjectInspectorFactory.writableDoubleObjectInspector);
+    names.add("ratio_to_report");
+    inspectors.add(PrimitiveObjectInspectorFactory.writableDoubleObjectInspector);
+  }
+
+  @Override
+  protected long add(int index, Object[] args) throws HiveException {
+    if (index == values.length) {
+      values = Arrays.copyOf(values, index * 2);
+      nulls = Arrays.copyOf(nulls, index * 2);
+    }
+    Object value = converter.convert(args[1]);
+    nulls[index] = value == null;
+    if (value != null) {
+      values[index] = ((DoubleWritable) value).get();
+      stats.add(values[index]);
+    }
+    return 9;
+  }
+
+  @Override
+  protected void result(int index, long row, long count, Object[] result, int offset) {
+    double sum = stats.sum();
+    if (nulls[index] || stats.count() == 0 || sum == 0) {
+      result[offset] = null;
+    } else {
+      ratio.set(values[index] / sum);
+      result[offset] = ratio;
+    }
+  }
+
+  @Override
+  protected void reset() {
+    stats.reset();
+  }
+
+  @Override
+  public String toString() {
+    return "ratio_to_report";
+  }
+}
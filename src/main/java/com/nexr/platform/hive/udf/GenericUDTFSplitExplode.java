@@ -0,0 +1,193 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector.PrimitiveCategory;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.StringObjectInspector;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+/**
+ * GenericUDTFSplitExplode
+ *
+ * Splits a string around a literal delimiter and emits one row per token with
+ * its 0 based position, as <code>posexplode(split(str, delimiter))</code> does
+ * for a delimiter without regex characters: the string is split from left to
+ * right, so <code>('xaaa', 'aa')</code> gives <code>x, a</code>, and the
+ * trailing empty tokens are dropped. An empty delimiter gives the whole string
+ * as one token.
+ * <p>
+ * Tokens are sliced from the UTF-8 bytes of the input into one reused Text,
+ * so no String or array is created per value or token.
+ */
+@Description(name = "split_explode",
+    value = "_FUNC_(str, delimiter) - splits str around the literal delimiter into rows of (pos, token)",
+    extended = "Example:\n"
+    + "  > SELECT t.pos, t.tag FROM src LATERAL VIEW _FUNC_('a,b,,c', ',') t AS pos, tag;\n"
+    + "  0\ta\n"
+    + "  1\tb\n"
+    + "  2\t\n"
+    + "  3\tc")
+@HivePdkUnitTests(
+    setup = "", cleanup = "",
+    cases = {
+      @HivePdkUnitTest(
+        query = "SELECT t.pos, t.tag FROM onerow LATERAL VIEW nexr_split_explode('a,b,,c,,', ',') t AS pos, tag;",
+        result = "0\ta\n"
+        + "1\tb\n"
+        + "2\t\n"
+        + "3\tc"),
+      @HivePdkUnitTest(
+        query = "SELECT t.pos, t.tag FROM onerow LATERAL VIEW nexr_split_explode('x::y', '::') t AS pos, tag;",
+        result = "0\tx\n"
+        + "1\ty"),
+      @HivePdkUnitTest(
+        query = "SELECT t.pos, t.tag FROM onerow LATERAL VIEW nexr_split_explode('xaaa', 'aa') t AS pos, tag;",
+        result = "0\tx\n"
+        + "1\ta"),
+      @HivePdkUnitTest(
+        query = "SELECT t.pos, t.tag FROM onerow LATERAL VIEW nexr_split_explode('aaa', 'aa') t AS pos, tag;",
+        result = "0\t\n"
+        + "1\ta")
+    }
+  )
+public class GenericUDTFSplitExplode extends MeteredGenericUDTF {
+
+  private StringObjectInspector valueOI;
+  private StringObjectInspector delimiterOI;
+  private final IntWritable pos = new IntWritable();
+  private final Text token = new Text();
+  private final Object[] row = new Object[] { pos, token };
+
+  @Override
+  protected void closeRows() throws HiveException {
+  }
+
+  @Override
+  public StructObjectInspector initialize(ObjectInspector[] args) throws UDFArgumentException {
+    if (args.length != 2) {
+      throw new UDFArgumentException("split_explode() takes a string and a delimiter");
+    }
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].getCategory() != ObjectInspector.Category.PRIMITIVE
+          || ((PrimitiveObjectInspector) args[i]).getPrimitiveCategory() != PrimitiveCategory.STRING) {
+        throw new UDFArgumentTypeException(i, "Only string arguments are accepted but "
+            + args[i].getTypeName() + " is passed.");
+      }
+    }
+    valueOI = (StringObjectInspector) args[0];
+    delimiterOI = (StringObjectInspector) args[1];
+
+    List<String> names = new ArrayList<String>(2);
+    List<ObjectInspector> inspectors = new ArrayList<ObjectInspector>(2);
+    names.add("pos");
+    inspectors.add(PrimitiveObjectInspectorFactory.writableIntObjectInspector);
+    names.add("token");
+    inspectors.add(PrimitiveObjectInspectorFactory.writableStringObjectInspector);
+    return ObjectInspectorFactory.getStandardStructObjectInspector(names, inspectors);
+  }
+
+  @Override
+  protected void processRow(Object[] o) throws HiveException {
+    if (o[0] != null && o[1] != null) {
+      split(valueOI.getPrimitiveWritableObject(o[0]), delimiterOI.getPrimitiveWritableObject(o[1]));
+    }
+  }
+
+  private void split(Text value, Text delimiter) throws HiveException {
+    byte[] bytes = value.getBytes();
+    int length = value.getLength();
+    byte[] separator = delimiter.getBytes();
+    int separatorLength = delimiter.getLength();
+
+    if (separatorLength == 0 || length == 0) {
+      emit(0, bytes, 0, length);
+      return;
+    }
+
+    // empty tokens wait for a token after them, as the trailing ones are dropped
+    int index = 0;
+    int empty = 0;
+    int from = 0;
+    while (true) {
+      int to = indexOf(bytes, from, length, separator, separatorLength);
+      if (to < 0) {
+        to = length;
+      }
+      if (to == from) {
+        empty++;
+      } else {
+        for (; empty > 0; empty--) {
+          emit(index++, bytes, from, 0);
+        }
+        emit(index++, bytes, from, to - from);
+      }
+      if (to == length) {
+        return;
+      }
+      from = to + separatorLength;
+    }
+  }
+
+  private void emit(int index, byte[] bytes, int start, int length) throws HiveException {
+    pos.set(index);
+    token.set(bytes, start, length);
+    forward(row);
+  }
+
+  /** @return the offset of the first separator in bytes[from, to), or -1. */
+  static int indexOf(byte[] bytes, int from, int to, byte[] separator, int separatorLength) {
+    byte first = separator[0];
+    for (int i = from, last = to - separatorLength; i <= last; i++) {
+      if (bytes[i] == first && matches(bytes, i, separator, separatorLength)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean matches(byte[] bytes, int offset, byte[] separator, int separatorLength) {
+    for (int i = 0; i < separatorLength; i++) {
+      if (bytes[offset + i] != separator[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return "split_explode";
+  }
+}
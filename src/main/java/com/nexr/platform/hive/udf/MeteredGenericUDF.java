@@ -0,0 +1,40 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nexr.platform.hive.udf;
+
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
+
+/**
+ * MeteredGenericUDF
+ *
+ * A GenericUDF whose rows are counted and sampled by the {@link UDFMetrics} of
+ * the instance. Functions implement {@link #evaluateRow(DeferredObject[])}.
+ */
+public abstract class MeteredGenericUDF extends GenericUDF {
+	protected final UDFMetrics metrics = UDFMetrics.of(getClass());
+
+	@Override
+	public final Object evaluate(DeferredObject[] arguments) throws HiveException {
+		return metrics.finish(metrics.start(), evaluateRow(arguments));
+	}
+
+	/** @return the result of one row, as {@link #evaluate(DeferredObject[])}. */
+	protected abstract Object evaluateRow(DeferredObject[] arguments) throws HiveException;
+}
@@ -0,0 +1,52 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nexr.platform.hive.udf;
+
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDTF;
+
+/**
+ * MeteredGenericUDTF
+ *
+ * A GenericUDTF whose input rows are counted and sampled by the
+ * {@link UDFMetrics} of the instance, which are logged when it is closed.
+ * Functions implement {@link #processRow(Object[])} and {@link #closeRows()}.
+ */
+public abstract class MeteredGenericUDTF extends GenericUDTF {
+	protected final UDFMetrics metrics = UDFMetrics.of(getClass());
+
+	@Override
+	public final void process(Object[] args) throws HiveException {
+		long start = metrics.start();
+		processRow(args);
+		metrics.finish(start);
+	}
+
+	@Override
+	public final void close() throws HiveException {
+		closeRows();
+		metrics.flush();
+	}
+
+	/** Processes one input row, as {@link #process(Object[])}. */
+	protected abstract void processRow(Object[] args) throws HiveException;
+
+	/** Emits the rows still held at the end of the input, as {@link #close()}. */
+	protected abstract void closeRows() throws HiveException;
+}
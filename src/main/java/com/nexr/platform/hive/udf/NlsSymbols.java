@@ -0,0 +1,241 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nexr.platform.hive.udf;
+
+import java.text.DateFormatSymbols;
+import java.text.DecimalFormatSymbols;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.hadoop.io.Text;
+
+/**
+ * NlsSymbols
+ *
+ * Symbol table resolved from an Oracle style <code>nls_params</code> argument:
+ * decimal and group separators, currency symbol, and month and day names.
+ * <p>
+ * The argument is either a Java locale (<code>'ko_KR'</code>, <code>'de-DE'</code>)
+ * or Oracle parameters, for example
+ * <pre>
+ * NLS_NUMERIC_CHARACTERS = ',.' NLS_CURRENCY = 'EUR' NLS_DATE_LANGUAGE = 'KOREAN'
+ * </pre>
+ * Resolved tables, and invalid values, are cached per JVM for the most recently
+ * used {@link #CACHE_SIZE} values, so each distinct value is resolved once per
+ * task no matter how many rows or UDF instances use it.
+ */
+final class NlsSymbols {
+
+	/** Symbols used when no nls_params is given. */
+	static final NlsSymbols DEFAULT = new NlsSymbols(Locale.getDefault(), '.', ',', "$");
+
+	static final int CACHE_SIZE = 256;
+
+	private static final BoundedCache<NlsSymbols> CACHE = new BoundedCache<NlsSymbols>(CACHE_SIZE);
+
+	/** Cached for parameters that can not be resolved. */
+	private static final NlsSymbols INVALID = new NlsSymbols(Locale.ROOT, '.', ',', "");
+
+	private static final Map<String, Locale> LANGUAGES = new HashMap<String, Locale>();
+
+	static {
+		LANGUAGES.put("AMERICAN", Locale.US);
+		LANGUAGES.put("ENGLISH", Locale.UK);
+		LANGUAGES.put("KOREAN", Locale.KOREA);
+		LANGUAGES.put("JAPANESE", Locale.JAPAN);
+		LANGUAGES.put("SIMPLIFIED CHINESE", Locale.SIMPLIFIED_CHINESE);
+		LANGUAGES.put("TRADITIONAL CHINESE", Locale.TRADITIONAL_CHINESE);
+		LANGUAGES.put("GERMAN", Locale.GERMANY);
+		LANGUAGES.put("FRENCH", Locale.FRANCE);
+		LANGUAGES.put("ITALIAN", Locale.ITALY);
+		LANGUAGES.put("SPANISH", new Locale("es", "ES"));
+		LANGUAGES.put("DUTCH", new Locale("nl", "NL"));
+		LANGUAGES.put("PORTUGUESE", new Locale("pt", "PT"));
+		LANGUAGES.put("SWEDISH", new Locale("sv", "SE"));
+		LANGUAGES.put("POLISH", new Locale("pl", "PL"));
+		LANGUAGES.put("RUSSIAN", new Locale("ru", "RU"));
+	}
+
+	final Locale locale;
+	final DateFormatSymbols dateSymbols;
+	final char decimalChar;
+	final char groupChar;
+	final String currencySymbol;
+	final byte[] decimal;
+	final byte[] group;
+	final byte[] currency;
+
+	private NlsSymbols(Locale locale, char decimal, char group, String currency) {
+		this.locale = locale;
+		this.dateSymbols = DateFormatSymbols.getInstance(locale);
+		this.decimalChar = decimal;
+		this.groupChar = group;
+		this.currencySymbol = currency;
+		this.decimal = utf8(String.valueOf(decimal));
+		this.group = utf8(String.valueOf(group));
+		this.currency = utf8(currency);
+	}
+
+	/**
+	 * Returns the symbols for the given nls_params, resolving them on first use.
+	 * Invalid parameters are cached too, so they are not parsed again.
+	 *
+	 * @return the symbols, or null if the parameters can not be resolved.
+	 */
+	static NlsSymbols forName(String nls) {
+		NlsSymbols symbols = CACHE.get(nls);
+		if (symbols == null) {
+			try {
+				symbols = resolve(nls);
+			} catch (IllegalArgumentException e) {
+				symbols = INVALID;
+			}
+			CACHE.put(nls, symbols);
+		}
+		return symbols == INVALID ? null : symbols;
+	}
+
+	static byte[] utf8(String s) {
+		Text text = new Text(s);
+		byte[] bytes = new byte[text.getLength()];
+		System.arraycopy(text.getBytes(), 0, bytes, 0, bytes.length);
+		return bytes;
+	}
+
+	private static NlsSymbols resolve(String nls) {
+		String trimmed = nls.trim();
+		if (trimmed.length() == 0) {
+			return DEFAULT;
+		}
+		if (trimmed.indexOf('=') < 0) {
+			return forLocale(toLocale(trimmed));
+		}
+
+		Map<String, String> params = parseParams(trimmed);
+		Locale locale = Locale.getDefault();
+		String language = params.get("NLS_DATE_LANGUAGE");
+		if (language == null) {
+			language = params.get("NLS_LANGUAGE");
+		}
+		if (language != null) {
+			locale = LANGUAGES.get(language.toUpperCase());
+			if (locale == null) {
+				locale = toLocale(language);
+			}
+		}
+
+		NlsSymbols base = forLocale(locale);
+		char decimal = base.decimalChar;
+		char group = base.groupChar;
+		String currency = base.currencySymbol;
+		String numeric = params.get("NLS_NUMERIC_CHARACTERS");
+		if (numeric != null) {
+			if (numeric.length() != 2 || numeric.charAt(0) == numeric.charAt(1)) {
+				throw new IllegalArgumentException("NLS_NUMERIC_CHARACTERS needs two different characters: "
+						+ numeric);
+			}
+			decimal = numeric.charAt(0);
+			group = numeric.charAt(1);
+		}
+		if (params.containsKey("NLS_CURRENCY")) {
+			currency = params.get("NLS_CURRENCY");
+		}
+		return new NlsSymbols(locale, decimal, group, currency);
+	}
+
+	private static NlsSymbols forLocale(Locale locale) {
+		DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+		return new NlsSymbols(locale, symbols.getDecimalSeparator(), symbols.getGroupingSeparator(),
+				symbols.getCurrencySymbol());
+	}
+
+	private static Locale toLocale(String name) {
+		String[] parts = name.split("[_-]");
+		if (parts.length == 1) {
+			return new Locale(parts[0]);
+		} else if (parts.length == 2) {
+			return new Locale(parts[0], parts[1]);
+		}
+		return new Locale(parts[0], parts[1], parts[2]);
+	}
+
+	/** Parses <code>NAME = 'value' NAME = value ...</code>. */
+	private static Map<String, String> parseParams(String nls) {
+		Map<String, String> params = new HashMap<String, String>();
+		int i = 0;
+		int len = nls.length();
+		while (i < len) {
+			while (i < len && Character.isWhitespace(nls.charAt(i))) {
+				i++;
+			}
+			if (i == len) {
+				break;
+			}
+			int eq = nls.indexOf('=', i);
+			if (eq < 0) {
+				throw new IllegalArgumentException("Invalid nls_params: " + nls);
+			}
+			String name = nls.substring(i, eq).trim().toUpperCase();
+			i = eq + 1;
+			while (i < len && Character.isWhitespace(nls.charAt(i))) {
+				i++;
+			}
+			String value;
+			if (i < len && (nls.charAt(i) == '\'' || nls.charAt(i) == '"')) {
+				int close = nls.indexOf(nls.charAt(i), i + 1);
+				if (close < 0) {
+					throw new IllegalArgumentException("Unterminated quote in nls_params: " + nls);
+				}
+				value = nls.substring(i + 1, close);
+				i = close + 1;
+			} else {
+				int start = i;
+				while (i < len && !Character.isWhitespace(nls.charAt(i))) {
+					i++;
+				}
+				value = nls.substring(start, i);
+			}
+			params.put(name, value);
+		}
+		return params;
+	}
+
+	/**
+	 * Remembers the nls_params last seen by one UDF instance, so that a constant
+	 * argument is converted to a String and looked up only once.
+	 */
+	static final class LastResolved {
+		private final Text lastText = new Text();
+		private boolean resolved;
+		private NlsSymbols symbols;
+
+		/**
+		 * @return the symbols, or null if the parameters can not be resolved.
+		 */
+		NlsSymbols get(Text nls) {
+			if (!resolved || !nls.equals(lastText)) {
+				lastText.set(nls);
+				resolved = true;
+				symbols = forName(nls.toString());
+			}
+			return symbols;
+		}
+	}
+}
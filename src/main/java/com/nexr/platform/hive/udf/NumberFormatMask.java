@@ -0,0 +1,559 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nexr.platform.hive.udf;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import org.apache.hadoop.hive.serde2.ByteStream;
+
+/**
+ * NumberFormatMask
+ *
+ * A compiled Oracle number format mask such as <code>$9,999.99</code>. The mask is
+ * compiled once and then used to parse UTF-8 bytes directly, or to write the
+ * digits of a {@link DecimalDigits} straight into an output buffer, without
+ * creating a String or a java.text.NumberFormat per row.
+ * <p>
+ * Supported elements:
+ * <ul>
+ * <li>9, 0 : digit
+ * <li>, G : group separator (G uses the NLS group separator)
+ * <li>. D : decimal point (D uses the NLS decimal character)
+ * <li>$ L : currency symbol (L uses the NLS currency)
+ * <li>S : leading or trailing sign, MI : trailing minus, PR : negative value in angle brackets
+ * <li>FM : fill mode
+ * <li>EEEE : scientific notation
+ * <li>any other character : literal that must appear as is before or after the number
+ * </ul>
+ * Formatting always works in fill mode, the way to_char has always behaved:
+ * no blank padding for the sign or for unused '9' positions, and trailing zeros
+ * are only kept up to the last '0' of the fraction. A value which does not fit
+ * the integer digits of the mask is written as '#' characters.
+ * <p>
+ * A compiled mask is immutable and can be shared. Parse results are written
+ * into a caller supplied {@link ParsedNumber}.
+ */
+final class NumberFormatMask {
+
+	static final int SIGN_NONE = 0;
+	static final int SIGN_LEADING = 1;
+	static final int SIGN_TRAILING = 2;
+	static final int SIGN_MINUS = 3;
+	static final int SIGN_BRACKET = 4;
+
+	/** Mask used when no format is given: any number of digits, groups and fraction. */
+	static final NumberFormatMask DEFAULT = new NumberFormatMask();
+
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private static final int MAX_MANTISSA_DIGITS = 18;
+
+	final boolean unbounded;
+	boolean fillMode;
+	boolean currency;
+	boolean scientific;
+	int signMode = SIGN_NONE;
+	int intDigits;
+	int zeroDigits;
+	boolean[] groupAt;
+	/** True if the mask has a group separator, so that parsing accepts group symbols. */
+	boolean grouped;
+	boolean decimal;
+	int fracDigits;
+	int fracZeros;
+	byte[] prefix = new byte[0];
+	byte[] suffix = new byte[0];
+	byte[] decimalSymbol = NlsSymbols.DEFAULT.decimal;
+	byte[] groupSymbol = NlsSymbols.DEFAULT.group;
+	byte[] currencySymbol = NlsSymbols.DEFAULT.currency;
+
+	private NumberFormatMask() {
+		this.unbounded = true;
+		this.decimal = true;
+		this.grouped = true;
+		this.groupAt = new boolean[0];
+	}
+
+	private NumberFormatMask(boolean unbounded) {
+		this.unbounded = unbounded;
+	}
+
+	/**
+	 * Compiles the given mask with the default symbols.
+	 *
+	 * @throws IllegalArgumentException if the mask is not a valid number format.
+	 */
+	static NumberFormatMask compile(String mask) {
+		return compile(mask, NlsSymbols.DEFAULT);
+	}
+
+	/**
+	 * Compiles the given mask, binding D, G and L to the given symbols.
+	 *
+	 * @throws IllegalArgumentException if the mask is not a valid number format.
+	 */
+	static NumberFormatMask compile(String mask, NlsSymbols nls) {
+		NumberFormatMask m = new NumberFormatMask(false);
+		String upper = mask.toUpperCase();
+		int len = upper.length();
+		int i = 0;
+
+		if (upper.startsWith("FM")) {
+			m.fillMode = true;
+			i = 2;
+		}
+		if (i < len && upper.charAt(i) == 'S') {
+			m.signMode = SIGN_LEADING;
+			i++;
+		}
+
+		StringBuilder prefix = new StringBuilder();
+		StringBuilder suffix = new StringBuilder();
+		// group separator positions, counted from the left of the integer part
+		StringBuilder layout = new StringBuilder();
+		boolean inNumber = false;
+		boolean afterNumber = false;
+
+		while (i < len) {
+			char c = upper.charAt(i);
+			if (c == '9' || c == '0') {
+				if (afterNumber) {
+					throw new IllegalArgumentException("Digit after the end of number in mask " + mask);
+				}
+				inNumber = true;
+				if (m.decimal) {
+					m.fracDigits++;
+					if (c == '0') {
+						m.fracZeros = m.fracDigits;
+					}
+				} else {
+					layout.append(c);
+				}
+				i++;
+			} else if (c == ',' || c == 'G') {
+				if (!inNumber || m.decimal) {
+					throw new IllegalArgumentException("Misplaced group separator in mask " + mask);
+				}
+				m.groupSymbol = c == 'G' ? nls.group : NlsSymbols.DEFAULT.group;
+				m.grouped = true;
+				layout.append(',');
+				i++;
+			} else if (c == '.' || c == 'D') {
+				if (m.decimal) {
+					throw new IllegalArgumentException("Duplicated decimal point in mask " + mask);
+				}
+				inNumber = true;
+				m.decimal = true;
+				m.decimalSymbol = c == 'D' ? nls.decimal : NlsSymbols.DEFAULT.decimal;
+				i++;
+			} else if (c == '$' || c == 'L') {
+				m.currency = true;
+				m.currencySymbol = c == 'L' ? nls.currency : NlsSymbols.DEFAULT.currency;
+				i++;
+			} else if (upper.startsWith("EEEE", i)) {
+				if (!inNumber) {
+					throw new IllegalArgumentException("Misplaced EEEE in mask " + mask);
+				}
+				m.scientific = true;
+				afterNumber = true;
+				i += 4;
+			} else if (upper.startsWith("MI", i) && i + 2 == len) {
+				m.signMode = SIGN_MINUS;
+				i += 2;
+			} else if (upper.startsWith("PR", i) && i + 2 == len) {
+				m.signMode = SIGN_BRACKET;
+				i += 2;
+			} else if (c == 'S' && i + 1 == len && m.signMode == SIGN_NONE) {
+				m.signMode = SIGN_TRAILING;
+				i++;
+			} else {
+				if (inNumber) {
+					afterNumber = true;
+					suffix.append(mask.charAt(i));
+				} else {
+					prefix.append(mask.charAt(i));
+				}
+				i++;
+			}
+		}
+
+		if (!inNumber) {
+			throw new IllegalArgumentException("No digit in mask " + mask);
+		}
+
+		// resolve integer digits, leading zeros and group positions
+		int intDigits = 0;
+		for (int j = 0; j < layout.length(); j++) {
+			if (layout.charAt(j) != ',') {
+				intDigits++;
+			}
+		}
+		m.intDigits = intDigits;
+		m.groupAt = new boolean[intDigits + 1];
+		int remaining = intDigits;
+		int zeroDigits = 0;
+		for (int j = 0; j < layout.length(); j++) {
+			char c = layout.charAt(j);
+			if (c == ',') {
+				m.groupAt[remaining] = true;
+			} else {
+				if (c == '0' && zeroDigits == 0) {
+					zeroDigits = remaining;
+				}
+				remaining--;
+			}
+		}
+		m.zeroDigits = zeroDigits;
+		m.prefix = NlsSymbols.utf8(prefix.toString());
+		m.suffix = NlsSymbols.utf8(suffix.toString());
+		return m;
+	}
+
+	/**
+	 * Parses bytes[start, end) according to this mask.
+	 *
+	 * @return false if the input does not match the mask.
+	 */
+	boolean parse(byte[] bytes, int start, int end, ParsedNumber out) {
+		out.clear();
+		int i = skipSpaces(bytes, start, end);
+		boolean negative = false;
+		boolean bracket = false;
+
+		if (i < end && signMode == SIGN_BRACKET && bytes[i] == '<') {
+			bracket = true;
+			i++;
+		}
+		if (i < end && (signMode == SIGN_NONE || signMode == SIGN_LEADING) && (bytes[i] == '-' || bytes[i] == '+')) {
+			negative = bytes[i] == '-';
+			i++;
+		}
+		i = match(bytes, i, end, prefix);
+		if (i < 0) {
+			return false;
+		}
+		if (currency && startsWith(bytes, i, end, currencySymbol)) {
+			i += currencySymbol.length;
+		}
+
+		// integer part
+		int intCount = 0;
+		while (i < end) {
+			byte c = bytes[i];
+			if (c >= '0' && c <= '9') {
+				out.addIntDigit(c - '0');
+				intCount++;
+				i++;
+			} else if (intCount > 0 && grouped && startsWith(bytes, i, end, groupSymbol)
+					&& i + groupSymbol.length < end && bytes[i + groupSymbol.length] >= '0'
+					&& bytes[i + groupSymbol.length] <= '9') {
+				i += groupSymbol.length;
+			} else {
+				break;
+			}
+		}
+		if (!unbounded && out.significantIntDigits() > intDigits) {
+			return false;
+		}
+
+		// fraction part
+		int fracCount = 0;
+		if (startsWith(bytes, i, end, decimalSymbol)) {
+			if (!decimal) {
+				return false;
+			}
+			i += decimalSymbol.length;
+			while (i < end && bytes[i] >= '0' && bytes[i] <= '9') {
+				out.addFracDigit(bytes[i] - '0');
+				fracCount++;
+				i++;
+			}
+			if (!unbounded && !scientific && fracCount > fracDigits) {
+				return false;
+			}
+		}
+		if (intCount + fracCount == 0) {
+			return false;
+		}
+
+		if (scientific && i < end && (bytes[i] == 'E' || bytes[i] == 'e')) {
+			i++;
+			boolean expNegative = false;
+			if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+				expNegative = bytes[i] == '-';
+				i++;
+			}
+			int exp = 0;
+			int expStart = i;
+			while (i < end && bytes[i] >= '0' && bytes[i] <= '9' && exp < 1000) {
+				exp = exp * 10 + (bytes[i] - '0');
+				i++;
+			}
+			if (i == expStart) {
+				return false;
+			}
+			out.exponent += expNegative ? -exp : exp;
+		}
+
+		// trailing sign
+		if (i < end) {
+			if (signMode == SIGN_TRAILING && (bytes[i] == '-' || bytes[i] == '+')) {
+				negative = bytes[i] == '-';
+				i++;
+			} else if (signMode == SIGN_MINUS && (bytes[i] == '-' || bytes[i] == '+')) {
+				negative = bytes[i] == '-';
+				i++;
+			} else if (bracket && bytes[i] == '>') {
+				negative = true;
+				bracket = false;
+				i++;
+			}
+		}
+		if (bracket) {
+			return false;
+		}
+
+		i = match(bytes, i, end, suffix);
+		if (i < 0) {
+			return false;
+		}
+		if (skipSpaces(bytes, i, end) != end) {
+			return false;
+		}
+		out.negative = negative;
+		return true;
+	}
+
+	/**
+	 * Writes the value according to this mask. The digits are rounded in place.
+	 */
+	void format(DecimalDigits value, ByteStream.Output out) {
+		if (value.nan || value.infinite) {
+			overflow(out);
+			return;
+		}
+		if (scientific) {
+			formatScientific(value, out);
+			return;
+		}
+
+		value.roundFraction(fracDigits);
+		int intCount = value.count == 0 ? 0 : Math.max(value.point, 0);
+		if (intCount > intDigits) {
+			overflow(out);
+			return;
+		}
+		boolean negative = value.negative && value.count > 0;
+		int fracCount = value.count == 0 ? fracZeros : Math.max(fracZeros, value.count - value.point);
+		int width = Math.max(intCount, zeroDigits);
+		if (width == 0 && fracCount == 0) {
+			width = 1;
+		}
+
+		writeLeading(negative, out);
+		for (int k = width - 1; k >= 0; k--) {
+			out.write(value.digitAt(value.point - 1 - k));
+			if (k > 0 && k < groupAt.length && groupAt[k]) {
+				out.write(groupSymbol, 0, groupSymbol.length);
+			}
+		}
+		if (fracCount > 0) {
+			out.write(decimalSymbol, 0, decimalSymbol.length);
+			for (int k = 0; k < fracCount; k++) {
+				out.write(value.digitAt(value.point + k));
+			}
+		}
+		writeTrailing(negative, out);
+	}
+
+	private void formatScientific(DecimalDigits value, ByteStream.Output out) {
+		int leading = intDigits > 0 ? 1 : 0;
+		value.roundSignificant(leading + fracDigits);
+		boolean negative = value.negative && value.count > 0;
+		int exponent = value.count == 0 ? 0 : value.point - leading;
+
+		writeLeading(negative, out);
+		int next = 0;
+		if (leading > 0) {
+			out.write(value.digitAt(next++));
+		}
+		if (fracDigits > 0) {
+			out.write(decimalSymbol, 0, decimalSymbol.length);
+			for (int k = 0; k < fracDigits; k++) {
+				out.write(value.digitAt(next++));
+			}
+		}
+		out.write('E');
+		out.write(exponent < 0 ? '-' : '+');
+		if (exponent < 0) {
+			exponent = -exponent;
+		}
+		if (exponent < 10) {
+			out.write('0');
+		}
+		DecimalDigits.writeInt(out, exponent);
+		writeTrailing(negative, out);
+	}
+
+	private void writeLeading(boolean negative, ByteStream.Output out) {
+		out.write(prefix, 0, prefix.length);
+		if (signMode == SIGN_LEADING) {
+			out.write(negative ? '-' : '+');
+		} else if (signMode == SIGN_NONE && negative) {
+			out.write('-');
+		} else if (signMode == SIGN_BRACKET && negative) {
+			out.write('<');
+		}
+		if (currency) {
+			out.write(currencySymbol, 0, currencySymbol.length);
+		}
+	}
+
+	private void writeTrailing(boolean negative, ByteStream.Output out) {
+		if (signMode == SIGN_TRAILING) {
+			out.write(negative ? '-' : '+');
+		} else if (signMode == SIGN_MINUS && negative) {
+			out.write('-');
+		} else if (signMode == SIGN_BRACKET && negative) {
+			out.write('>');
+		}
+		out.write(suffix, 0, suffix.length);
+	}
+
+	private void overflow(ByteStream.Output out) {
+		int width = intDigits + (decimal ? fracDigits + 1 : 0) + (scientific ? 4 : 0) + 1;
+		for (int i = 1; i < groupAt.length; i++) {
+			if (groupAt[i]) {
+				width++;
+			}
+		}
+		for (int i = 0; i < width; i++) {
+			out.write('#');
+		}
+	}
+
+	private static int skipSpaces(byte[] bytes, int i, int end) {
+		while (i < end && bytes[i] == ' ') {
+			i++;
+		}
+		return i;
+	}
+
+	private static boolean startsWith(byte[] bytes, int i, int end, byte[] literal) {
+		if (end - i < literal.length) {
+			return false;
+		}
+		for (int j = 0; j < literal.length; j++) {
+			if (bytes[i + j] != literal[j]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int match(byte[] bytes, int i, int end, byte[] literal) {
+		return startsWith(bytes, i, end, literal) ? i + literal.length : -1;
+	}
+
+	/**
+	 * Mutable result of {@link NumberFormatMask#parse}. Keeps up to 18 significant
+	 * digits in a long mantissa with a decimal exponent, and the integer part
+	 * separately for the bigint conversion.
+	 */
+	static final class ParsedNumber {
+		boolean negative;
+		long mantissa;
+		int mantissaDigits;
+		int exponent;
+		long intValue;
+		boolean intOverflow;
+		int intDigits;
+
+		void clear() {
+			negative = false;
+			mantissa = 0;
+			mantissaDigits = 0;
+			exponent = 0;
+			intValue = 0;
+			intOverflow = false;
+			intDigits = 0;
+		}
+
+		int significantIntDigits() {
+			return intDigits;
+		}
+
+		void addIntDigit(int d) {
+			if (intDigits > 0 || d != 0) {
+				intDigits++;
+			}
+			if (!intOverflow) {
+				if (intValue > (Long.MAX_VALUE - d) / 10) {
+					intOverflow = true;
+				} else {
+					intValue = intValue * 10 + d;
+				}
+			}
+			if (mantissaDigits < MAX_MANTISSA_DIGITS) {
+				if (mantissaDigits > 0 || d != 0) {
+					mantissa = mantissa * 10 + d;
+					mantissaDigits++;
+				}
+			} else {
+				exponent++;
+			}
+		}
+
+		void addFracDigit(int d) {
+			if (mantissaDigits < MAX_MANTISSA_DIGITS) {
+				mantissa = mantissa * 10 + d;
+				if (mantissaDigits > 0 || d != 0) {
+					mantissaDigits++;
+				}
+				exponent--;
+			}
+		}
+
+		/**
+		 * @return false if the integer part does not fit in a long.
+		 */
+		boolean isLong() {
+			return !intOverflow;
+		}
+
+		long longValue() {
+			return negative ? -intValue : intValue;
+		}
+
+		double doubleValue() {
+			double value;
+			if (mantissa == 0) {
+				value = 0.0;
+			} else if (mantissa < (1L << 53) && exponent >= -22 && exponent <= 22) {
+				// both operands are exact, so a single rounding gives the correct result
+				value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+			} else {
+				value = new BigDecimal(BigInteger.valueOf(mantissa), -exponent).doubleValue();
+			}
+			return negative ? -value : value;
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import org.apache.hadoop.io.Text;
+
+/**
+ * ParseErrorPolicy
+ *
+ * What a function returns for a value it can not parse, chosen per function
+ * with JVM system properties of the task (e.g. through
+ * <code>mapred.child.java.opts</code>):
+ * <pre>
+ * -Dnexr.to_number.on.error=null|default|fail
+ * -Dnexr.to_number.default=0
+ * </pre>
+ * <code>null</code>, the default, returns NULL. <code>default</code> returns the
+ * value of <code>nexr.&lt;function&gt;.default</code>, or NULL if there is none;
+ * setting the default value alone selects this policy. <code>fail</code> stops
+ * the task with the offending value in the message.
+ * <p>
+ * The policy only applies to values. A NULL argument still gives NULL and an
+ * invalid pattern or nls_params is handled as before.
+ */
+final class ParseErrorPolicy {
+
+	enum Action {
+		NULL, DEFAULT, FAIL
+	}
+
+	final String function;
+	final Action action;
+	final String defaultValue;
+	private final Text defaultText;
+
+	private ParseErrorPolicy(String function, Action action, String defaultValue) {
+		this.function = function;
+		this.action = action;
+		this.defaultValue = defaultValue;
+		this.defaultText = defaultValue == null ? null : new Text(defaultValue);
+	}
+
+	/**
+	 * Reads the policy of the function from the system properties.
+	 *
+	 * @throws IllegalArgumentException if the policy name is unknown.
+	 */
+	static ParseErrorPolicy forFunction(String function) {
+		String name = System.getProperty("nexr." + function + ".on.error");
+		String defaultValue = System.getProperty("nexr." + function + ".default");
+		Action action;
+		if (name == null) {
+			action = defaultValue == null ? Action.NULL : Action.DEFAULT;
+		} else {
+			try {
+				action = Action.valueOf(name.trim().toUpperCase());
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("nexr." + function + ".on.error must be null, default or fail: "
+						+ name);
+			}
+		}
+		return new ParseErrorPolicy(function, action, defaultValue);
+	}
+
+	/**
+	 * @return NULL or the default value for a value that can not be parsed.
+	 * @throws IllegalArgumentException if the policy is to fail.
+	 */
+	Text onError(Object value) {
+		return onError(value, defaultText);
+	}
+
+	/**
+	 * @return NULL or the given default result for a value that can not be parsed.
+	 * @throws IllegalArgumentException if the policy is to fail.
+	 */
+	<T> T onError(Object value, T defaultResult) {
+		switch (action) {
+		case DEFAULT:
+			return defaultResult;
+		case FAIL:
+			throw new IllegalArgumentException(function + " can not parse '" + value + "'");
+		default:
+			return null;
+		}
+	}
+}
@@ -0,0 +1,156 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF.DeferredObject;
+import org.apache.hadoop.hive.serde2.objectinspector.ListObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils.ObjectInspectorCopyOption;
+import org.apache.hadoop.hive.serde2.objectinspector.StructField;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+
+/**
+ * PartitionKey
+ *
+ * The partition columns of a stateful analytic function, which restarts its
+ * state when they change from one row to the next. The columns are passed
+ * directly, or as one <code>struct(p1, p2, ...)</code>, instead of
+ * <code>HASH(p1, p2, ...)</code>, with which two partitions whose hashes
+ * collide and that sort next to each other would be merged.
+ * <p>
+ * A row is compared with the previous one by the hash of its columns first,
+ * and only when the hashes match by the exact values, bytes for strings. The
+ * key is copied only when a new partition starts. NULL columns compare equal,
+ * so rows with a NULL key form one partition.
+ */
+final class PartitionKey {
+
+	private final int from;
+	private final ObjectInspector[] inspectors;
+	private final ObjectInspector[] copyInspectors;
+	private final Object[] current;
+	private final Object[] previous;
+	private boolean started;
+	private int previousHash;
+	private long bytes;
+
+	/**
+	 * @param arguments the ObjectInspectors of all arguments of the function.
+	 * @param from the index of the first partition column.
+	 * @param to the index after the last partition column.
+	 */
+	PartitionKey(ObjectInspector[] arguments, int from, int to) {
+		this.from = from;
+		int count = to - from;
+		inspectors = new ObjectInspector[count];
+		copyInspectors = new ObjectInspector[count];
+		for (int i = 0; i < count; i++) {
+			inspectors[i] = arguments[from + i];
+			copyInspectors[i] = ObjectInspectorUtils.getStandardObjectInspector(inspectors[i],
+					ObjectInspectorCopyOption.WRITABLE);
+		}
+		current = new Object[count];
+		previous = new Object[count];
+	}
+
+	/**
+	 * @return true if the row starts a new partition, whose key is then kept
+	 *         for the next rows.
+	 */
+	boolean isNew(DeferredObject[] arguments) throws HiveException {
+		for (int i = 0; i < current.length; i++) {
+			current[i] = arguments[from + i].get();
+		}
+		return isNew();
+	}
+
+	/** The same as {@link #isNew(DeferredObject[])} for the arguments of a UDTF. */
+	boolean isNew(Object[] arguments) {
+		System.arraycopy(arguments, from, current, 0, current.length);
+		return isNew();
+	}
+
+	private boolean isNew() {
+		int hash = 0;
+		for (int i = 0; i < current.length; i++) {
+			hash = 31 * hash + hashCode(current[i], inspectors[i]);
+		}
+		if (started && hash == previousHash && equalsPrevious()) {
+			return false;
+		}
+
+		started = true;
+		previousHash = hash;
+		bytes = 0;
+		for (int i = 0; i < current.length; i++) {
+			previous[i] = ObjectInspectorUtils.copyToStandardObject(current[i], inspectors[i],
+					ObjectInspectorCopyOption.WRITABLE);
+			bytes += StateSize.estimate(previous[i], copyInspectors[i]);
+		}
+		return true;
+	}
+
+	/**
+	 * Hashes primitives like {@link ObjectInspectorUtils#hashCode}, which does
+	 * not support complex types, and combines the fields of a struct or the
+	 * elements of a list. Other types hash to 0 and are compared exactly.
+	 */
+	private static int hashCode(Object o, ObjectInspector oi) {
+		if (o == null) {
+			return 0;
+		}
+		switch (oi.getCategory()) {
+		case PRIMITIVE:
+			return ObjectInspectorUtils.hashCode(o, oi);
+		case STRUCT:
+			StructObjectInspector soi = (StructObjectInspector) oi;
+			int hash = 0;
+			for (StructField field : soi.getAllStructFieldRefs()) {
+				hash = 31 * hash + hashCode(soi.getStructFieldData(o, field), field.getFieldObjectInspector());
+			}
+			return hash;
+		case LIST:
+			ListObjectInspector loi = (ListObjectInspector) oi;
+			int listHash = 0;
+			for (int i = 0; i < loi.getListLength(o); i++) {
+				listHash = 31 * listHash + hashCode(loi.getListElement(o, i), loi.getListElementObjectInspector());
+			}
+			return listHash;
+		default:
+			return 0;
+		}
+	}
+
+	private boolean equalsPrevious() {
+		for (int i = 0; i < current.length; i++) {
+			if (ObjectInspectorUtils.compare(previous[i], copyInspectors[i], current[i], inspectors[i]) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** @return the estimated bytes of the kept key. */
+	long bytes() {
+		return bytes;
+	}
+}
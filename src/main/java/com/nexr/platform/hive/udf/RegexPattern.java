@@ -0,0 +1,1253 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.hadoop.io.Text;
+
+/**
+ * RegexPattern
+ *
+ * An Oracle regular expression with its match parameter, compiled into a
+ * java.util.regex.Pattern once per JVM and cached for the most recently used
+ * {@link #CACHE_SIZE} patterns, so that patterns taken from a column can not
+ * grow the cache without bound. The Oracle syntax is translated: POSIX bracket
+ * classes such as <code>[[:alpha:]]</code>, <code>.</code> and <code>$</code>
+ * that only know <code>\n</code> as a line end, and the match parameters
+ * <code>i c n m x</code>.
+ * <p>
+ * A simple pattern, made of literals, <code>.</code>, bracket classes,
+ * <code>\d \w \s</code>, quantifiers, groups and alternation without back
+ * references, is also compiled into a DFA over the UTF-8 bytes of a Text, so
+ * that matching creates no String and backtracks never. The DFA finds the
+ * leftmost-longest match, which is the match java.util.regex finds only when
+ * there are no groups or alternation, so only such patterns use it to locate
+ * matches; the others use it to test for a match. Rows the DFA can not decide
+ * exactly, non-ASCII text with <code>i</code> and text ending in a newline
+ * with <code>$</code>, go to java.util.regex.
+ */
+final class RegexPattern {
+
+	/** Patterns needing more DFA states are matched by java.util.regex only. */
+	static final int MAX_DFA_STATES = 1024;
+
+	/**
+	 * Patterns whose bounded repeats expand to more NFA states, such as
+	 * <code>.{0,64}x</code> or nested repeats, are matched by java.util.regex
+	 * only. They are rejected before the NFA is built.
+	 */
+	static final int MAX_NFA_STATES = 256;
+
+	/**
+	 * Subset construction stops, and the pattern is matched by java.util.regex
+	 * only, once the NFA states of the DFA states built add up to more.
+	 */
+	static final int MAX_DFA_WORK = 1 << 16;
+
+	static final int CACHE_SIZE = 256;
+
+	private static final int MAX_REPEAT = 64;
+	private static final BoundedCache<RegexPattern> CACHE = new BoundedCache<RegexPattern>(CACHE_SIZE);
+
+	final Pattern pattern;
+	final int groupCount;
+	private final Dfa dfa;
+	private final Dfa unanchored;
+	private final boolean dfaExtents;
+	private final boolean asciiOnly;
+	private final boolean anchorStart;
+	private final boolean anchorEnd;
+
+	private RegexPattern(String regex, String matchParameter) {
+		int flags = Pattern.UNIX_LINES;
+		boolean caseInsensitive = false;
+		boolean dotAll = false;
+		boolean multiline = false;
+		boolean extended = false;
+		for (int i = 0; i < matchParameter.length(); i++) {
+			switch (matchParameter.charAt(i)) {
+			case 'i':
+				caseInsensitive = true;
+				break;
+			case 'c':
+				caseInsensitive = false;
+				break;
+			case 'n':
+				dotAll = true;
+				break;
+			case 'm':
+				multiline = true;
+				break;
+			case 'x':
+				extended = true;
+				break;
+			default:
+				throw new IllegalArgumentException("Invalid match parameter '" + matchParameter + "'");
+			}
+		}
+		if (extended) {
+			regex = regex.replaceAll("\\s", "");
+		}
+		if (caseInsensitive) {
+			flags |= Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+		}
+		if (dotAll) {
+			flags |= Pattern.DOTALL;
+		}
+		if (multiline) {
+			flags |= Pattern.MULTILINE;
+		}
+
+		Parser parser = new Parser(regex, caseInsensitive, dotAll, multiline);
+		Node root;
+		String source;
+		try {
+			root = parser.parse();
+			source = parser.java.toString();
+		} catch (Unsupported e) {
+			root = null;
+			source = regex;
+		}
+		pattern = Pattern.compile(source, flags);
+		groupCount = pattern.matcher("").groupCount();
+		dfa = root != null && parser.simple ? Dfa.build(root, false) : null;
+		unanchored = dfa != null && !parser.anchorStart ? Dfa.build(root, true) : null;
+		dfaExtents = dfa != null && parser.groups == 0 && !parser.alternation;
+		asciiOnly = caseInsensitive;
+		anchorStart = parser.anchorStart;
+		anchorEnd = parser.anchorEnd;
+	}
+
+	/**
+	 * Returns the compiled pattern, compiling it on first use.
+	 *
+	 * @throws IllegalArgumentException if the pattern or the match parameter
+	 *         is invalid.
+	 */
+	static RegexPattern compile(String regex, String matchParameter) {
+		String key = matchParameter + '\u0000' + regex;
+		RegexPattern compiled = CACHE.get(key);
+		if (compiled == null) {
+			compiled = new RegexPattern(regex, matchParameter);
+			CACHE.put(key, compiled);
+		}
+		return compiled;
+	}
+
+	/** @return true if the DFA decides the text, finding matches too if extents. */
+	private boolean dfaDecides(byte[] bytes, int length, boolean extents) {
+		if (dfa == null || (extents && !dfaExtents)) {
+			return false;
+		}
+		if (anchorEnd && length > 0 && bytes[length - 1] == '\n') {
+			return false;
+		}
+		if (asciiOnly) {
+			for (int i = 0; i < length; i++) {
+				if (bytes[i] < 0) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/** @return true if the pattern matches somewhere in the text. */
+	boolean find(Text text) {
+		byte[] bytes = text.getBytes();
+		int length = text.getLength();
+		if (!dfaDecides(bytes, length, false)) {
+			return pattern.matcher(text.toString()).find();
+		}
+		if (anchorStart) {
+			return dfa.longest(bytes, 0, length, anchorEnd) >= 0;
+		}
+		if (unanchored != null) {
+			return unanchored.scan(bytes, length, anchorEnd);
+		}
+		return dfa.search(bytes, length, anchorEnd);
+	}
+
+	/**
+	 * Remembers the pattern last compiled for one UDF instance, so that a
+	 * constant pattern is converted to a String and looked up only once.
+	 */
+	static final class LastCompiled {
+		private static final Text EMPTY = new Text();
+
+		private final Text lastRegex = new Text();
+		private final Text lastParameter = new Text();
+		private RegexPattern compiled;
+
+		RegexPattern get(Text regex, Text matchParameter) {
+			if (matchParameter == null) {
+				matchParameter = EMPTY;
+			}
+			if (compiled == null || !regex.equals(lastRegex) || !matchParameter.equals(lastParameter)) {
+				compiled = null;
+				lastRegex.set(regex);
+				lastParameter.set(matchParameter);
+				compiled = compile(regex.toString(), matchParameter.toString());
+			}
+			return compiled;
+		}
+	}
+
+	/**
+	 * The matches of a pattern in one row, reused for every row. Offsets are in
+	 * bytes of the Text whichever engine finds the matches.
+	 */
+	static final class Search {
+		private RegexPattern regex;
+		private byte[] bytes;
+		private int length;
+		private boolean useDfa;
+		private Pattern matcherPattern;
+		private Matcher matcher;
+		private String string;
+		private int cursorUtf16;
+		private int cursorByte;
+		private int start;
+		private int end;
+
+		/**
+		 * @param groups true if group offsets are needed, which only
+		 *        java.util.regex reports.
+		 */
+		void reset(RegexPattern regex, Text text, boolean groups) {
+			this.regex = regex;
+			bytes = text.getBytes();
+			length = text.getLength();
+			useDfa = !groups && regex.dfaDecides(bytes, length, true);
+			if (!useDfa) {
+				string = text.toString();
+				if (matcher == null || matcherPattern != regex.pattern) {
+					matcherPattern = regex.pattern;
+					matcher = regex.pattern.matcher(string);
+				} else {
+					matcher.reset(string);
+				}
+				cursorUtf16 = 0;
+				cursorByte = 0;
+			}
+		}
+
+		/** Finds the first match starting at or after a byte offset. */
+		boolean find(int from) {
+			if (!useDfa) {
+				if (!matcher.find(utf16(from))) {
+					return false;
+				}
+				start = byteOffset(matcher.start());
+				end = byteOffset(matcher.end());
+				return true;
+			}
+			return dfaFind(from);
+		}
+
+		/** Finds the nth match starting at or after a byte offset. */
+		boolean find(int from, int occurrence) {
+			if (!find(from)) {
+				return false;
+			}
+			for (int i = 1; i < occurrence; i++) {
+				if (!findNext()) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/** Finds the next match, after an empty match one character further. */
+		boolean findNext() {
+			if (!useDfa) {
+				if (!matcher.find()) {
+					return false;
+				}
+				start = byteOffset(matcher.start());
+				end = byteOffset(matcher.end());
+				return true;
+			}
+			int from = end;
+			if (start == end) {
+				if (from >= length) {
+					return false;
+				}
+				from += charLength(bytes[from]);
+			}
+			return dfaFind(from);
+		}
+
+		private boolean dfaFind(int from) {
+			if (regex.anchorStart) {
+				if (from > 0) {
+					return false;
+				}
+				int longest = regex.dfa.longest(bytes, 0, length, regex.anchorEnd);
+				return found(0, longest);
+			}
+			Dfa dfa = regex.dfa;
+			for (int i = from; i <= length; i++) {
+				if (i < length && (bytes[i] & 0xC0) == 0x80) {
+					continue;
+				}
+				if (!dfa.matchesEmpty && (i == length || !dfa.first[bytes[i] & 0xFF])) {
+					continue;
+				}
+				int longest = dfa.longest(bytes, i, length, regex.anchorEnd);
+				if (longest >= 0) {
+					return found(i, longest);
+				}
+			}
+			return false;
+		}
+
+		private boolean found(int start, int end) {
+			if (end < 0) {
+				return false;
+			}
+			this.start = start;
+			this.end = end;
+			return true;
+		}
+
+		int start() {
+			return start;
+		}
+
+		int end() {
+			return end;
+		}
+
+		/** @return the byte offset where a group starts, or -1 if it did not match. */
+		int start(int group) {
+			if (group == 0) {
+				return start;
+			}
+			int utf16 = matcher.start(group);
+			return utf16 < 0 ? -1 : byteOffset(utf16);
+		}
+
+		int end(int group) {
+			if (group == 0) {
+				return end;
+			}
+			int utf16 = matcher.end(group);
+			return utf16 < 0 ? -1 : byteOffset(utf16);
+		}
+
+		byte[] bytes() {
+			return bytes;
+		}
+
+		int length() {
+			return length;
+		}
+
+		/** Converts a byte offset to a UTF-16 index of the String. */
+		private int utf16(int offset) {
+			int index = 0;
+			for (int i = 0; i < offset; i += charLength(bytes[i])) {
+				index += charLength(bytes[i]) == 4 ? 2 : 1;
+			}
+			return index;
+		}
+
+		/** Converts a UTF-16 index of the String to a byte offset. */
+		private int byteOffset(int utf16) {
+			if (utf16 < cursorUtf16) {
+				cursorUtf16 = 0;
+				cursorByte = 0;
+			}
+			while (cursorUtf16 < utf16) {
+				char c = string.charAt(cursorUtf16);
+				if (c < 0x80) {
+					cursorByte += 1;
+				} else if (c < 0x800) {
+					cursorByte += 2;
+				} else if (Character.isHighSurrogate(c)) {
+					cursorByte += 4;
+					cursorUtf16++;
+				} else {
+					cursorByte += 3;
+				}
+				cursorUtf16++;
+			}
+			return cursorByte;
+		}
+	}
+
+	/** @return the length of the UTF-8 sequence that starts with the byte. */
+	static int charLength(byte lead) {
+		if (lead >= 0) {
+			return 1;
+		} else if ((lead & 0xE0) == 0xC0) {
+			return 2;
+		} else if ((lead & 0xF0) == 0xE0) {
+			return 3;
+		} else if ((lead & 0xF8) == 0xF0) {
+			return 4;
+		}
+		return 1;
+	}
+
+	/** @return the byte offset of a 1 based character position, or -1 past the end. */
+	static int byteOffset(byte[] bytes, int length, int position) {
+		int offset = 0;
+		for (int i = 1; i < position; i++) {
+			if (offset >= length) {
+				return -1;
+			}
+			offset += charLength(bytes[offset]);
+		}
+		return offset <= length ? offset : -1;
+	}
+
+	/** @return the 1 based character position of a byte offset. */
+	static int position(byte[] bytes, int offset) {
+		int position = 1;
+		for (int i = 0; i < offset; i++) {
+			if ((bytes[i] & 0xC0) != 0x80) {
+				position++;
+			}
+		}
+		return position;
+	}
+
+	/** Thrown for syntax the translation does not know, left to java.util.regex. */
+	private static final class Unsupported extends Exception {
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * Node of a simple pattern. A character class matches one character: an
+	 * ASCII byte in its set or, if nonAscii, any multi-byte character.
+	 */
+	private static final class Node {
+		static final int CLASS = 0;
+		static final int BYTES = 1;
+		static final int CONCAT = 2;
+		static final int ALTERNATION = 3;
+		static final int REPEAT = 4;
+
+		final int type;
+		final BitSet ascii;
+		final boolean nonAscii;
+		final byte[] literal;
+		final List<Node> children;
+		final int min;
+		final int max;
+
+		private Node(int type, BitSet ascii, boolean nonAscii, byte[] literal, List<Node> children, int min,
+				int max) {
+			this.type = type;
+			this.ascii = ascii;
+			this.nonAscii = nonAscii;
+			this.literal = literal;
+			this.children = children;
+			this.min = min;
+			this.max = max;
+		}
+
+		static Node charClass(BitSet ascii, boolean nonAscii) {
+			return new Node(CLASS, ascii, nonAscii, null, null, 0, 0);
+		}
+
+		static Node bytes(byte[] literal) {
+			return new Node(BYTES, null, false, literal, null, 0, 0);
+		}
+
+		static Node list(int type, List<Node> children) {
+			return children.size() == 1 ? children.get(0) : new Node(type, null, false, null, children, 0, 0);
+		}
+
+		static Node repeat(Node child, int min, int max) {
+			List<Node> children = new ArrayList<Node>(1);
+			children.add(child);
+			return new Node(REPEAT, null, false, null, children, min, max);
+		}
+
+		/**
+		 * Returns the number of NFA states compiling this node adds, or more
+		 * than MAX_NFA_STATES once it exceeds it.
+		 */
+		int states() {
+			long states = 0;
+			switch (type) {
+			case CLASS:
+				return nonAscii ? 6 : 0;
+			case BYTES:
+				return Math.max(literal.length - 1, 0);
+			case CONCAT:
+				states = Math.max(children.size() - 1, 0);
+				// fall through
+			case ALTERNATION:
+				for (Node child : children) {
+					states += child.states();
+				}
+				break;
+			default:
+				int copies = max < 0 ? min + 1 : max;
+				states = (long) (children.get(0).states() + 1) * copies + 1;
+				break;
+			}
+			return (int) Math.min(states, MAX_NFA_STATES + 1);
+		}
+	}
+
+	/**
+	 * Parses an Oracle pattern into the Java pattern and, while it is simple,
+	 * into Nodes.
+	 */
+	private static final class Parser {
+		private final String regex;
+		private final boolean caseInsensitive;
+		private final boolean dotAll;
+		private final boolean multiline;
+		private int pos;
+		final StringBuilder java = new StringBuilder();
+		boolean simple = true;
+		boolean alternation;
+		int groups;
+		boolean anchorStart;
+		boolean anchorEnd;
+
+		Parser(String regex, boolean caseInsensitive, boolean dotAll, boolean multiline) {
+			this.regex = regex;
+			this.caseInsensitive = caseInsensitive;
+			this.dotAll = dotAll;
+			this.multiline = multiline;
+		}
+
+		Node parse() throws Unsupported {
+			Node node = parseAlternation();
+			if (pos < regex.length()) {
+				throw new Unsupported();
+			}
+			if (alternation && (anchorStart || anchorEnd)) {
+				// ^a|b anchors one branch only
+				simple = false;
+			}
+			return node;
+		}
+
+		private Node parseAlternation() throws Unsupported {
+			List<Node> branches = new ArrayList<Node>();
+			branches.add(parseConcat());
+			while (pos < regex.length() && regex.charAt(pos) == '|') {
+				pos++;
+				java.append('|');
+				alternation = true;
+				branches.add(parseConcat());
+			}
+			return Node.list(Node.ALTERNATION, branches);
+		}
+
+		private Node parseConcat() throws Unsupported {
+			List<Node> items = new ArrayList<Node>();
+			while (pos < regex.length() && regex.charAt(pos) != '|' && regex.charAt(pos) != ')') {
+				Node atom = parseAtom();
+				if (atom != null) {
+					items.add(parseQuantifiers(atom));
+				}
+			}
+			return Node.list(Node.CONCAT, items);
+		}
+
+		private Node parseQuantifiers(Node atom) throws Unsupported {
+			while (pos < regex.length()) {
+				char c = regex.charAt(pos);
+				int min;
+				int max;
+				if (c == '*') {
+					min = 0;
+					max = -1;
+					pos++;
+				} else if (c == '+') {
+					min = 1;
+					max = -1;
+					pos++;
+				} else if (c == '?') {
+					min = 0;
+					max = 1;
+					pos++;
+				} else if (c == '{' && isBound(pos)) {
+					int close = regex.indexOf('}', pos);
+					String bound = regex.substring(pos + 1, close);
+					int comma = bound.indexOf(',');
+					if (comma < 0) {
+						min = max = Integer.parseInt(bound);
+					} else {
+						min = Integer.parseInt(bound.substring(0, comma));
+						max = comma == bound.length() - 1 ? -1 : Integer.parseInt(bound.substring(comma + 1));
+					}
+					java.append(regex, pos, close);
+					c = '}';
+					pos = close + 1;
+				} else {
+					return atom;
+				}
+				java.append(c);
+				if (pos < regex.length() && (regex.charAt(pos) == '?' || regex.charAt(pos) == '+')) {
+					// lazy or possessive, only java.util.regex knows them
+					java.append(regex.charAt(pos++));
+					simple = false;
+				}
+				if (min > MAX_REPEAT || max > MAX_REPEAT) {
+					simple = false;
+				}
+				if (atom != null) {
+					atom = Node.repeat(atom, min, max);
+				}
+			}
+			return atom;
+		}
+
+		private boolean isBound(int at) {
+			int close = regex.indexOf('}', at);
+			return close > at + 1 && regex.substring(at + 1, close).matches("\\d+(,\\d*)?");
+		}
+
+		/** @return the node, or null for an anchor. */
+		private Node parseAtom() throws Unsupported {
+			int c = regex.codePointAt(pos);
+			switch (c) {
+			case '(':
+				if (regex.startsWith("(?", pos)) {
+					throw new Unsupported();
+				}
+				pos++;
+				groups++;
+				java.append('(');
+				Node inner = parseAlternation();
+				if (pos >= regex.length() || regex.charAt(pos) != ')') {
+					throw new Unsupported();
+				}
+				pos++;
+				java.append(')');
+				return inner;
+			case '[':
+				return parseBracket();
+			case '.':
+				pos++;
+				java.append('.');
+				BitSet any = new BitSet(128);
+				any.set(0, 128);
+				if (!dotAll) {
+					any.clear('\n');
+				}
+				return Node.charClass(any, true);
+			case '^':
+				pos++;
+				java.append('^');
+				if (pos == 1 && !multiline) {
+					anchorStart = true;
+				} else {
+					simple = false;
+				}
+				return null;
+			case '$':
+				pos++;
+				java.append('$');
+				if (pos == regex.length() && !multiline) {
+					anchorEnd = true;
+				} else {
+					simple = false;
+				}
+				return null;
+			case '\\':
+				return parseEscape(false, null);
+			case ')':
+			case '*':
+			case '+':
+			case '?':
+				throw new Unsupported();
+			default:
+				pos += Character.charCount(c);
+				appendLiteral(c);
+				return literal(c);
+			}
+		}
+
+		private Node literal(int c) {
+			if (c < 128) {
+				BitSet set = new BitSet(128);
+				set.set(c);
+				return Node.charClass(fold(set), false);
+			}
+			if (caseInsensitive) {
+				simple = false;
+			}
+			return Node.bytes(NlsSymbols.utf8(new String(Character.toChars(c))));
+		}
+
+		/**
+		 * Parses an escape after the backslash at pos, adding to the set when in
+		 * a bracket.
+		 *
+		 * @return the node outside a bracket, or null in a bracket, where the
+		 *         nonAscii flag of the class is returned through the set's bit 128.
+		 */
+		private Node parseEscape(boolean inBracket, BitSet set) throws Unsupported {
+			if (pos + 1 >= regex.length()) {
+				throw new Unsupported();
+			}
+			int c = regex.codePointAt(pos + 1);
+			pos += 1 + Character.charCount(c);
+			BitSet escaped = new BitSet(129);
+			switch (c) {
+			case 'd':
+			case 'D':
+				escaped.set('0', '9' + 1);
+				break;
+			case 'w':
+			case 'W':
+				escaped.set('a', 'z' + 1);
+				escaped.set('A', 'Z' + 1);
+				escaped.set('0', '9' + 1);
+				escaped.set('_');
+				break;
+			case 's':
+			case 'S':
+				escaped.set(' ');
+				escaped.set('\t');
+				escaped.set('\n');
+				escaped.set(0x0B);
+				escaped.set('\f');
+				escaped.set('\r');
+				break;
+			default:
+				if (c >= '1' && c <= '9' && !inBracket) {
+					java.append('\\').append((char) c);
+					simple = false;
+					return Node.charClass(new BitSet(128), false);
+				}
+				if (Character.isLetterOrDigit(c)) {
+					throw new Unsupported();
+				}
+				if (inBracket) {
+					appendClassLiteral(c);
+					addToClass(set, c);
+					return null;
+				}
+				appendLiteral(c);
+				return literal(c);
+			}
+			java.append('\\').append((char) c);
+			if (Character.isUpperCase(c)) {
+				escaped.flip(0, 129);
+			}
+			if (inBracket) {
+				set.or(escaped);
+				return null;
+			}
+			boolean nonAscii = escaped.get(128);
+			escaped.clear(128);
+			return Node.charClass(escaped, nonAscii);
+		}
+
+		private Node parseBracket() throws Unsupported {
+			int open = java.length();
+			pos++;
+			java.append('[');
+			boolean negate = false;
+			if (pos < regex.length() && regex.charAt(pos) == '^') {
+				negate = true;
+				pos++;
+				java.append('^');
+			}
+			// bits 0-127: ASCII, bit 128: any multi-byte character
+			BitSet set = new BitSet(129);
+			boolean first = true;
+			while (true) {
+				if (pos >= regex.length()) {
+					throw new Unsupported();
+				}
+				int c = regex.codePointAt(pos);
+				if (c == ']' && !first) {
+					pos++;
+					break;
+				}
+				first = false;
+				if (c == '[' && regex.startsWith("[:", pos)) {
+					int close = regex.indexOf(":]", pos + 2);
+					if (close < 0) {
+						throw new Unsupported();
+					}
+					String name = regex.substring(pos + 2, close);
+					pos = close + 2;
+					posixClass(name, set);
+					continue;
+				}
+				if (c == '[' && (regex.startsWith("[=", pos) || regex.startsWith("[.", pos))) {
+					throw new Unsupported();
+				}
+				if (c == '\\') {
+					parseEscape(true, set);
+					continue;
+				}
+				pos += Character.charCount(c);
+				if (pos + 1 < regex.length() && regex.charAt(pos) == '-' && regex.charAt(pos + 1) != ']') {
+					int to = regex.codePointAt(pos + 1);
+					if (to == '\\' || to == '[') {
+						throw new Unsupported();
+					}
+					pos += 1 + Character.charCount(to);
+					if (to < c) {
+						throw new Unsupported();
+					}
+					appendClassLiteral(c);
+					java.append('-');
+					appendClassLiteral(to);
+					if (to >= 128) {
+						simple = false;
+					} else {
+						set.set(c, to + 1);
+					}
+					continue;
+				}
+				appendClassLiteral(c);
+				addToClass(set, c);
+			}
+			if (java.length() == open + (negate ? 2 : 1)) {
+				throw new Unsupported();
+			}
+			java.append(']');
+
+			boolean nonAscii = set.get(128);
+			set.clear(128);
+			fold(set);
+			if (negate) {
+				set.flip(0, 128);
+				nonAscii = !nonAscii;
+			}
+			return Node.charClass(set, nonAscii);
+		}
+
+		private void addToClass(BitSet set, int c) {
+			if (c < 128) {
+				set.set(c);
+			} else {
+				simple = false;
+			}
+		}
+
+		private void posixClass(String name, BitSet set) throws Unsupported {
+			String property;
+			BitSet members = new BitSet(128);
+			if (name.equals("alpha")) {
+				property = "Alpha";
+				members.set('a', 'z' + 1);
+				members.set('A', 'Z' + 1);
+			} else if (name.equals("digit")) {
+				property = "Digit";
+				members.set('0', '9' + 1);
+			} else if (name.equals("alnum")) {
+				property = "Alnum";
+				members.set('a', 'z' + 1);
+				members.set('A', 'Z' + 1);
+				members.set('0', '9' + 1);
+			} else if (name.equals("upper")) {
+				property = "Upper";
+				members.set('A', 'Z' + 1);
+			} else if (name.equals("lower")) {
+				property = "Lower";
+				members.set('a', 'z' + 1);
+			} else if (name.equals("space")) {
+				property = "Space";
+				members.set('\t', '\r' + 1);
+				members.set(' ');
+			} else if (name.equals("blank")) {
+				property = "Blank";
+				members.set('\t');
+				members.set(' ');
+			} else if (name.equals("punct")) {
+				property = "Punct";
+				for (char p : "!\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~".toCharArray()) {
+					members.set(p);
+				}
+			} else if (name.equals("xdigit")) {
+				property = "XDigit";
+				members.set('0', '9' + 1);
+				members.set('a', 'f' + 1);
+				members.set('A', 'F' + 1);
+			} else if (name.equals("cntrl")) {
+				property = "Cntrl";
+				members.set(0, 0x20);
+				members.set(0x7F);
+			} else if (name.equals("print")) {
+				property = "Print";
+				members.set(0x20, 0x7F);
+			} else if (name.equals("graph")) {
+				property = "Graph";
+				members.set(0x21, 0x7F);
+			} else {
+				throw new Unsupported();
+			}
+			java.append("\\p{").append(property).append('}');
+			set.or(members);
+		}
+
+		/** Adds the other case of ASCII letters when matching case-insensitively. */
+		private BitSet fold(BitSet set) {
+			if (caseInsensitive) {
+				for (int c = 'a'; c <= 'z'; c++) {
+					if (set.get(c) || set.get(c - 32)) {
+						set.set(c);
+						set.set(c - 32);
+					}
+				}
+			}
+			return set;
+		}
+
+		private void appendLiteral(int c) {
+			if (c < 128 && !Character.isLetterOrDigit(c) && c != ' ') {
+				java.append('\\');
+			}
+			java.appendCodePoint(c);
+		}
+
+		private void appendClassLiteral(int c) {
+			java.append("\\x{").append(Integer.toHexString(c)).append('}');
+		}
+	}
+
+	/** Thompson NFA over bytes, turned into a DFA by subset construction. */
+	private static final class Dfa {
+		/** transitions[state * 256 + byte], state 0 is dead. */
+		final int[] transitions;
+		final boolean[] accepting;
+		/** Bytes that leave the start state. */
+		final boolean[] first = new boolean[256];
+		final boolean matchesEmpty;
+		private static final int START = 1;
+
+		private Dfa(int[] transitions, boolean[] accepting) {
+			this.transitions = transitions;
+			this.accepting = accepting;
+			for (int b = 0; b < 256; b++) {
+				first[b] = transitions[START * 256 + b] != 0;
+			}
+			matchesEmpty = accepting[START];
+		}
+
+		/**
+		 * @return the end of the longest match starting at from, or -1. With
+		 *         atEnd the match must end at the end of the text.
+		 */
+		int longest(byte[] bytes, int from, int length, boolean atEnd) {
+			int state = START;
+			int longest = accepting[state] ? from : -1;
+			for (int i = from; i < length; i++) {
+				state = transitions[state * 256 + (bytes[i] & 0xFF)];
+				if (state == 0) {
+					return atEnd ? -1 : longest;
+				}
+				if (accepting[state]) {
+					longest = i + 1;
+				}
+			}
+			return atEnd ? (accepting[state] ? length : -1) : longest;
+		}
+
+		/**
+		 * Runs an unanchored DFA, which is in the start state at every byte, over
+		 * the text once.
+		 *
+		 * @return true if a match ends anywhere, or at the end with atEnd.
+		 */
+		boolean scan(byte[] bytes, int length, boolean atEnd) {
+			int state = START;
+			if (accepting[state] && !atEnd) {
+				return true;
+			}
+			for (int i = 0; i < length; i++) {
+				state = transitions[state * 256 + (bytes[i] & 0xFF)];
+				if (accepting[state] && !atEnd) {
+					return true;
+				}
+			}
+			return accepting[state];
+		}
+
+		/** @return true if a match starts anywhere, restarting at every position. */
+		boolean search(byte[] bytes, int length, boolean atEnd) {
+			if (!atEnd && matchesEmpty) {
+				return true;
+			}
+			for (int i = 0; i < length; i++) {
+				if ((bytes[i] & 0xC0) == 0x80 || !first[bytes[i] & 0xFF]) {
+					continue;
+				}
+				int end = longest(bytes, i, length, atEnd);
+				if (end >= 0) {
+					return true;
+				}
+			}
+			return atEnd && matchesEmpty;
+		}
+
+		/**
+		 * @param unanchored true to stay in the start state at every byte. A
+		 *        match never starts on a continuation byte, as every node starts
+		 *        with an ASCII or a lead byte, so that is the same as restarting
+		 *        at every character.
+		 * @return the DFA, or null if it needs more than MAX_NFA_STATES,
+		 *         MAX_DFA_STATES or MAX_DFA_WORK.
+		 */
+		static Dfa build(Node root, boolean unanchored) {
+			if (root.states() > MAX_NFA_STATES) {
+				return null;
+			}
+			Nfa nfa = new Nfa();
+			int start = nfa.state();
+			int accept = nfa.state();
+			nfa.compile(root, start, accept);
+
+			Map<BitSet, Integer> ids = new HashMap<BitSet, Integer>();
+			List<BitSet> sets = new ArrayList<BitSet>();
+			BitSet dead = new BitSet();
+			ids.put(dead, 0);
+			sets.add(dead);
+			BitSet initial = new BitSet();
+			initial.set(start);
+			nfa.closure(initial);
+			ids.put(initial, 1);
+			sets.add(initial);
+
+			int[] classes = nfa.byteClasses();
+			BitSet[] moves = new BitSet[classes[255] + 1];
+			int[] targets = new int[moves.length];
+			int[] transitions = new int[256 * 16];
+			int work = 0;
+			for (int s = 1; s < sets.size(); s++) {
+				BitSet set = sets.get(s);
+				work += set.cardinality();
+				if (work > MAX_DFA_WORK) {
+					return null;
+				}
+				nfa.moves(set, classes, moves);
+				for (int k = 0; k < moves.length; k++) {
+					BitSet next = moves[k];
+					if (unanchored) {
+						next.or(initial);
+					}
+					Integer id = ids.get(next);
+					if (id == null) {
+						if (sets.size() >= MAX_DFA_STATES) {
+							return null;
+						}
+						id = sets.size();
+						ids.put(next, id);
+						sets.add(next);
+					}
+					targets[k] = id;
+				}
+				if ((s + 1) * 256 > transitions.length) {
+					int[] grown = new int[transitions.length * 2];
+					System.arraycopy(transitions, 0, grown, 0, transitions.length);
+					transitions = grown;
+				}
+				for (int b = 0; b < 256; b++) {
+					transitions[s * 256 + b] = targets[classes[b]];
+				}
+			}
+			int[] exact = new int[sets.size() * 256];
+			System.arraycopy(transitions, 0, exact, 0, exact.length);
+			boolean[] accepting = new boolean[sets.size()];
+			for (int s = 0; s < sets.size(); s++) {
+				accepting[s] = sets.get(s).get(accept);
+			}
+			return new Dfa(exact, accepting);
+		}
+	}
+
+	private static final class Nfa {
+		private final List<int[]> epsilons = new ArrayList<int[]>();
+		/** Per state: triples of low byte, high byte and target. */
+		private final List<int[]> edges = new ArrayList<int[]>();
+
+		int state() {
+			epsilons.add(new int[0]);
+			edges.add(new int[0]);
+			return epsilons.size() - 1;
+		}
+
+		void epsilon(int from, int to) {
+			int[] old = epsilons.get(from);
+			int[] grown = new int[old.length + 1];
+			System.arraycopy(old, 0, grown, 0, old.length);
+			grown[old.length] = to;
+			epsilons.set(from, grown);
+		}
+
+		void edge(int from, int low, int high, int to) {
+			int[] old = edges.get(from);
+			int[] grown = new int[old.length + 3];
+			System.arraycopy(old, 0, grown, 0, old.length);
+			grown[old.length] = low;
+			grown[old.length + 1] = high;
+			grown[old.length + 2] = to;
+			edges.set(from, grown);
+		}
+
+		void compile(Node node, int from, int to) {
+			switch (node.type) {
+			case Node.CLASS:
+				for (int c = node.ascii.nextSetBit(0); c >= 0; c = node.ascii.nextSetBit(c + 1)) {
+					int end = node.ascii.nextClearBit(c);
+					edge(from, c, end - 1, to);
+					c = end;
+				}
+				if (node.nonAscii) {
+					int a = state();
+					edge(from, 0xC0, 0xDF, a);
+					edge(a, 0x80, 0xBF, to);
+					int b1 = state();
+					int b2 = state();
+					edge(from, 0xE0, 0xEF, b1);
+					edge(b1, 0x80, 0xBF, b2);
+					edge(b2, 0x80, 0xBF, to);
+					int c1 = state();
+					int c2 = state();
+					int c3 = state();
+					edge(from, 0xF0, 0xF7, c1);
+					edge(c1, 0x80, 0xBF, c2);
+					edge(c2, 0x80, 0xBF, c3);
+					edge(c3, 0x80, 0xBF, to);
+				}
+				break;
+			case Node.BYTES:
+				int current = from;
+				for (int i = 0; i < node.literal.length; i++) {
+					int next = i == node.literal.length - 1 ? to : state();
+					int b = node.literal[i] & 0xFF;
+					edge(current, b, b, next);
+					current = next;
+				}
+				break;
+			case Node.CONCAT:
+				int at = from;
+				for (int i = 0; i < node.children.size(); i++) {
+					int next = i == node.children.size() - 1 ? to : state();
+					compile(node.children.get(i), at, next);
+					at = next;
+				}
+				if (node.children.isEmpty()) {
+					epsilon(from, to);
+				}
+				break;
+			case Node.ALTERNATION:
+				for (Node branch : node.children) {
+					compile(branch, from, to);
+				}
+				break;
+			default:
+				Node child = node.children.get(0);
+				int previous = from;
+				for (int i = 0; i < node.min; i++) {
+					int next = state();
+					compile(child, previous, next);
+					previous = next;
+				}
+				if (node.max < 0) {
+					int loop = state();
+					epsilon(previous, loop);
+					compile(child, loop, loop);
+					epsilon(loop, to);
+				} else {
+					for (int i = node.min; i < node.max; i++) {
+						int next = state();
+						epsilon(previous, to);
+						compile(child, previous, next);
+						previous = next;
+					}
+					epsilon(previous, to);
+				}
+			}
+		}
+
+		private int[] stack = new int[0];
+
+		void closure(BitSet set) {
+			if (stack.length < epsilons.size()) {
+				stack = new int[epsilons.size()];
+			}
+			int top = 0;
+			for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+				stack[top++] = s;
+			}
+			while (top > 0) {
+				int s = stack[--top];
+				for (int t : epsilons.get(s)) {
+					if (!set.get(t)) {
+						set.set(t);
+						stack[top++] = t;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Numbers the bytes so that bytes with the same number take the same
+		 * edges: no edge starts or ends inside a run of equal numbers.
+		 */
+		int[] byteClasses() {
+			boolean[] bounds = new boolean[257];
+			for (int[] e : edges) {
+				for (int i = 0; i < e.length; i += 3) {
+					bounds[e[i]] = true;
+					bounds[e[i + 1] + 1] = true;
+				}
+			}
+			int[] classes = new int[256];
+			for (int b = 1; b < 256; b++) {
+				classes[b] = bounds[b] ? classes[b - 1] + 1 : classes[b - 1];
+			}
+			return classes;
+		}
+
+		/** Sets moves[k] to the states reached from the set on the bytes of the class k. */
+		void moves(BitSet set, int[] classes, BitSet[] moves) {
+			for (int k = 0; k < moves.length; k++) {
+				moves[k] = new BitSet();
+			}
+			for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+				int[] e = edges.get(s);
+				for (int i = 0; i < e.length; i += 3) {
+					for (int k = classes[e[i]]; k <= classes[e[i + 1]]; k++) {
+						moves[k].set(e[i + 2]);
+					}
+				}
+			}
+			for (int k = 0; k < moves.length; k++) {
+				closure(moves[k]);
+			}
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+
+/**
+ * RunningStats
+ *
+ * Count, sum, mean and sum of squared deviations of the values of a partition
+ * so far, kept in primitive fields. The mean and the deviations are updated
+ * with Welford's method, which stays accurate on long partitions where a sum of
+ * squares would cancel out.
+ * <p>
+ * The sum is naive by default. Over many doubles it drifts from Oracle's
+ * result, so it can be compensated with Neumaier's variant of Kahan summation,
+ * per function or for all of them. The compensated mean is then the
+ * compensated sum divided by the count, as Oracle computes AVG, instead of
+ * Welford's mean:
+ * <pre>
+ * -Dnexr.sum.compensated=true
+ * -Dnexr.udf.compensated=true
+ * </pre>
+ */
+final class RunningStats {
+
+	static final String COMPENSATED = "nexr.udf.compensated";
+
+	private final boolean compensated;
+	private long count;
+	private double sum;
+	private double compensation;
+	private double mean;
+	private double m2;
+
+	RunningStats(boolean compensated) {
+		this.compensated = compensated;
+	}
+
+	/**
+	 * Reads whether the sums of the function implemented by the class, named by
+	 * its Description, are compensated.
+	 */
+	static boolean compensated(Class<?> udf) {
+		String function = udf.getAnnotation(Description.class).name();
+		String value = System.getProperty("nexr." + function + ".compensated");
+		return value != null ? Boolean.parseBoolean(value) : Boolean.getBoolean(COMPENSATED);
+	}
+
+	void reset() {
+		count = 0;
+		sum = 0;
+		compensation = 0;
+		mean = 0;
+		m2 = 0;
+	}
+
+	void add(double value) {
+		count++;
+		if (compensated) {
+			double t = sum + value;
+			if (Math.abs(sum) >= Math.abs(value)) {
+				compensation += (sum - t) + value;
+			} else {
+				compensation += (value - t) + sum;
+			}
+			sum = t;
+		} else {
+			sum += value;
+		}
+		double delta = value - mean;
+		mean += delta / count;
+		m2 += delta * (value - mean);
+	}
+
+	long count() {
+		return count;
+	}
+
+	double sum() {
+		return sum + compensation;
+	}
+
+	double mean() {
+		return compensated ? sum() / count : mean;
+	}
+
+	/** @return the sample variance, or 0 for one value as in Oracle. */
+	double variance() {
+		return count > 1 ? m2 / (count - 1) : 0;
+	}
+}
@@ -0,0 +1,184 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.serde2.objectinspector.ListObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.MapObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.StructField;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.UnionObjectInspector;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.Text;
+
+/**
+ * StateSize
+ *
+ * Estimated bytes a stateful function keeps from row to row, such as the
+ * previous partition key, the values lag has still to return or the running
+ * max. The estimate assumes a 64-bit JVM with compressed references and counts
+ * the objects as copied by ObjectInspectorUtils.copyToStandardObject.
+ * <p>
+ * The state of one instance is limited, so that a partition with huge values
+ * fails the task with a clear message instead of an OutOfMemoryError. The
+ * limit is set with JVM system properties of the task, per function or for all
+ * of them:
+ * <pre>
+ * -Dnexr.lag.state.max.bytes=268435456
+ * -Dnexr.udf.state.max.bytes=268435456
+ * </pre>
+ * and is a quarter of the maximum heap by default. The peak of an instance is
+ * logged by its {@link UDFMetrics} as a
+ * <code>function#instance.PEAK_STATE_BYTES=value</code> line.
+ */
+final class StateSize {
+
+	static final String LIMIT = "nexr.udf.state.max.bytes";
+
+	private static final long OBJECT = 16;
+	private static final long REFERENCE = 4;
+	private static final long BOXED = 24;
+	private static final long STRING = 40;
+	private static final long COLLECTION = 40;
+	private static final long MAP_ENTRY = 32;
+
+	final String function;
+	final long limit;
+	private final UDFMetrics metrics;
+	private long bytes;
+	private long peak;
+
+	private StateSize(String function, long limit, UDFMetrics metrics) {
+		this.function = function;
+		this.limit = limit;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Reads the limit of the function implemented by the class, named by its
+	 * Description, from the system properties. The peak is reported to the
+	 * metrics of the instance.
+	 */
+	static StateSize of(Class<?> udf, UDFMetrics metrics) {
+		String function = udf.getAnnotation(Description.class).name();
+		long limit = Long.getLong("nexr." + function + ".state.max.bytes",
+				Long.getLong(LIMIT, Runtime.getRuntime().maxMemory() / 4));
+		return new StateSize(function, limit, metrics);
+	}
+
+	/** @return the bytes currently kept. */
+	long get() {
+		return bytes;
+	}
+
+	/**
+	 * Sets the bytes kept by the instance.
+	 *
+	 * @throws HiveException if they exceed the limit.
+	 */
+	void set(long bytes) throws HiveException {
+		this.bytes = bytes;
+		if (bytes > peak) {
+			peak = bytes;
+			metrics.stateBytes(bytes);
+			if (bytes > limit) {
+				throw new HiveException(function + " keeps about " + bytes + " bytes of state for one partition,"
+						+ " over the limit of " + limit + " bytes. Check the partition key and the size of the values,"
+						+ " or raise nexr." + function + ".state.max.bytes or " + LIMIT + ".");
+			}
+		}
+	}
+
+	/**
+	 * Adds to the bytes kept by the instance.
+	 *
+	 * @throws HiveException if they exceed the limit.
+	 */
+	void add(long delta) throws HiveException {
+		set(bytes + delta);
+	}
+
+	/**
+	 * @return the estimated bytes of a value, as copied to a standard object;
+	 *         0 for NULL.
+	 */
+	static long estimate(Object value, ObjectInspector oi) {
+		if (value == null) {
+			return 0;
+		}
+		switch (oi.getCategory()) {
+		case PRIMITIVE:
+			if (value instanceof String) {
+				return align(STRING + 2L * ((String) value).length());
+			} else if (value instanceof Text) {
+				return align(STRING + ((Text) value).getBytes().length);
+			} else if (value instanceof BytesWritable) {
+				return align(STRING + ((BytesWritable) value).getCapacity());
+			} else if (value instanceof byte[]) {
+				return align(OBJECT + ((byte[]) value).length);
+			}
+			return BOXED;
+		case LIST: {
+			ListObjectInspector loi = (ListObjectInspector) oi;
+			List<?> list = loi.getList(value);
+			long size = COLLECTION + REFERENCE * list.size();
+			for (Object element : list) {
+				size += estimate(element, loi.getListElementObjectInspector());
+			}
+			return align(size);
+		}
+		case MAP: {
+			MapObjectInspector moi = (MapObjectInspector) oi;
+			Map<?, ?> map = moi.getMap(value);
+			long size = COLLECTION + (MAP_ENTRY + REFERENCE) * map.size();
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				size += estimate(entry.getKey(), moi.getMapKeyObjectInspector())
+						+ estimate(entry.getValue(), moi.getMapValueObjectInspector());
+			}
+			return align(size);
+		}
+		case STRUCT: {
+			StructObjectInspector soi = (StructObjectInspector) oi;
+			List<? extends StructField> fields = soi.getAllStructFieldRefs();
+			long size = COLLECTION + REFERENCE * fields.size();
+			for (StructField field : fields) {
+				size += estimate(soi.getStructFieldData(value, field), field.getFieldObjectInspector());
+			}
+			return align(size);
+		}
+		case UNION: {
+			UnionObjectInspector uoi = (UnionObjectInspector) oi;
+			byte tag = uoi.getTag(value);
+			return OBJECT + estimate(uoi.getField(value), uoi.getObjectInspectors().get(tag));
+		}
+		default:
+			return OBJECT;
+		}
+	}
+
+	private static long align(long size) {
+		return (size + 7) & ~7L;
+	}
+}
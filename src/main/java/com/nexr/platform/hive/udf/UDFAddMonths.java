@@ -0,0 +1,141 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nexr.platform.hive.udf;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDF;
+import org.apache.hadoop.hive.serde2.io.TimestampWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+/**
+ * UDFAddMonths
+ *
+ * This mimics the function from Oracle ADD_MONTHS. When the date is the last day
+ * of its month, or the resulting month has fewer days than the day of the date,
+ * the result is the last day of the resulting month. The time of day is kept.
+ * The date is a string, epoch seconds or a timestamp, and the result has the
+ * same type. Dates before 15 October 1582 are Julian, and a string in a daylight
+ * saving gap returns NULL.
+ */
+@Description(name = "add_months",
+		value = "_FUNC_(date, months) - returns the date that is the given number of months after " +
+				"date, a string with yyyy-MM-dd HH:mm:ss pattern, epoch seconds or a timestamp.",
+		extended = "Example:\n"
+			+ "> SELECT _FUNC_('2011-01-31 10:00:00', 1) FROM src LIMIT 1;\n"
+			+ "2011-02-28 10:00:00\n"
+)
+@HivePdkUnitTests(
+		setup = "", cleanup = "",
+		cases = {
+			@HivePdkUnitTest(
+				query = "SELECT nexr_add_months('2011-01-31 10:00:00', 1) FROM onerow;",
+				result = "2011-02-28 10:00:00"
+			),
+			@HivePdkUnitTest(
+				query = "SELECT nexr_add_months('2011-02-28 00:00:00', 12) FROM onerow;",
+				result = "2012-02-29 00:00:00"
+			),
+			@HivePdkUnitTest(
+				query = "SELECT nexr_add_months('2011-03-15 23:59:59', -3) FROM onerow;",
+				result = "2010-12-15 23:59:59"
+			),
+			@HivePdkUnitTest(
+				query = "SELECT nexr_add_months(cast('2012-01-31 08:00:00' as timestamp), 1) FROM onerow;",
+				result = "2012-02-29 08:00:00"
+			),
+			@HivePdkUnitTest(
+				query = "SELECT nexr_add_months('1500-01-31 00:00:00', 1), nexr_add_months('1582-09-10 00:00:00', 1) FROM onerow;",
+				result = "1500-02-29 00:00:00\t1582-10-20 00:00:00"
+			),
+			// a daylight saving gap of America/New_York, the time zone of the tests
+			@HivePdkUnitTest(
+				query = "SELECT nexr_add_months('2011-03-13 02:30:00', 1) FROM onerow;",
+				result = "NULL"
+			)
+		}
+	)
+public class UDFAddMonths extends UDF {
+	private final UDFMetrics metrics = UDFMetrics.of(getClass());
+	private final ThreadLocal<State> state = new ThreadLocal<State>() {
+		@Override
+		protected State initialValue() {
+			return new State();
+		}
+	};
+
+	public Text evaluate(Text dateText, IntWritable months) {
+		return metrics.finish(metrics.start(), state.get().evaluate(dateText, months));
+	}
+
+	public LongWritable evaluate(LongWritable epochSeconds, IntWritable months) {
+		return metrics.finish(metrics.start(), state.get().evaluate(epochSeconds, months));
+	}
+
+	public TimestampWritable evaluate(TimestampWritable timestamp, IntWritable months) {
+		return metrics.finish(metrics.start(), state.get().evaluate(timestamp, months));
+	}
+
+	/**
+	 * Fields and results of one thread.
+	 */
+	private static final class State {
+		private final DateTimeFields fields = new DateTimeFields();
+
+		private final Text result = new Text();
+		private final LongWritable epochResult = new LongWritable();
+		private final TimestampWritable timestampResult = new TimestampWritable();
+
+		Text evaluate(Text dateText, IntWritable months) {
+			if (dateText == null || months == null) {
+				return null;
+			}
+			if (!fields.parseExisting(dateText.getBytes(), 0, dateText.getLength()) || !fields.addMonths(months.get())) {
+				return null;
+			}
+			fields.write(result);
+			return result;
+		}
+
+		LongWritable evaluate(LongWritable epochSeconds, IntWritable months) {
+			if (epochSeconds == null || months == null) {
+				return null;
+			}
+			if (!fields.setInstant(epochSeconds.get()) || !fields.addMonths(months.get())) {
+				return null;
+			}
+			epochResult.set(fields.toInstant());
+			return epochResult;
+		}
+
+		TimestampWritable evaluate(TimestampWritable timestamp, IntWritable months) {
+			if (timestamp == null || months == null) {
+				return null;
+			}
+			if (!fields.set(timestamp) || !fields.addMonths(months.get())) {
+				return null;
+			}
+			fields.write(timestampResult, timestamp.getNanos());
+			return timestampResult;
+		}
+	}
+}
@@ -0,0 +1,165 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nexr.platform.hive.udf;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDF;
+import org.apache.hadoop.hive.serde2.io.TimestampWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+/**
+ * UDFAtTimeZone
+ *
+ * This mimics the Oracle expression <code>date AT TIME ZONE zone</code>. The
+ * instant, epoch seconds or a timestamp, is returned as the wall clock time in
+ * the given zone, with 'yyyy-MM-dd HH:mm:ss' pattern unless a pattern is given.
+ * The default pattern is written from the precomputed {@link ZoneOffsets}
+ * without a Calendar.
+ */
+@Description(name = "at_time_zone",
+		value = "_FUNC_(instant, zone[, pattern]) - returns the wall clock time in zone of instant, " +
+				"epoch seconds or a timestamp, with yyyy-MM-dd HH:mm:ss or the given pattern.",
+		extended = "Example:\n"
+			+ "> SELECT _FUNC_(1312243200, 'Asia/Seoul') FROM src LIMIT 1;\n"
+			+ "2011-08-02 09:00:00\n"
+			+ "> SELECT _FUNC_(from_tz('2011-08-02 09:00:00', 'Asia/Seoul'), 'Europe/Berlin', 'HH:mm') FROM src LIMIT 1;\n"
+			+ "02:00\n"
+)
+@HivePdkUnitTests(
+		setup = "", cleanup = "",
+		cases = {
+			@HivePdkUnitTest(
+				query = "SELECT nexr_at_time_zone(1312243200, 'Asia/Seoul') FROM onerow;",
+				result = "2011-08-02 09:00:00"
+			),
+			@HivePdkUnitTest(
+				query = "SELECT nexr_at_time_zone(1312243200, 'America/New_York') FROM onerow;",
+				result = "2011-08-01 20:00:00"
+			),
+			@HivePdkUnitTest(
+				query = "SELECT nexr_at_time_zone(1312243200, 'Europe/Berlin', 'HH:mm') FROM onerow;",
+				result = "02:00"
+			)
+		}
+	)
+public class UDFAtTimeZone extends UDF {
+	private final UDFMetrics metrics = UDFMetrics.of(getClass());
+	private final ThreadLocal<State> state = new ThreadLocal<State>() {
+		@Override
+		protected State initialValue() {
+			return new State();
+		}
+	};
+
+	public Text evaluate(LongWritable epochSeconds, Text zone) {
+		return metrics.finish(metrics.start(), state.get().evaluate(epochSeconds, zone));
+	}
+
+	public Text evaluate(TimestampWritable timestamp, Text zone) {
+		return metrics.finish(metrics.start(), state.get().evaluate(timestamp, zone));
+	}
+
+	public Text evaluate(LongWritable epochSeconds, Text zone, Text patternText) {
+		return metrics.finish(metrics.start(), state.get().evaluate(epochSeconds, zone, patternText));
+	}
+
+	public Text evaluate(TimestampWritable timestamp, Text zone, Text patternText) {
+		return metrics.finish(metrics.start(), state.get().evaluate(timestamp, zone, patternText));
+	}
+
+	/**
+	 * Fields, the resolved zone, formatter and the result of one thread.
+	 */
+	private static final class State {
+		private final DateTimeFields fields = new DateTimeFields();
+		private final ZoneOffsets.LastResolved lastZone = new ZoneOffsets.LastResolved();
+		private final SimpleDateFormat formatter = new SimpleDateFormat();
+		private final Date date = new Date();
+		private ZoneOffsets formatterZone;
+
+		private final Text result = new Text();
+		private final Text lastPatternText = new Text();
+
+		Text evaluate(LongWritable epochSeconds, Text zone) {
+			if (epochSeconds == null || zone == null) {
+				return null;
+			}
+			return format(epochSeconds.get(), zone);
+		}
+
+		Text evaluate(TimestampWritable timestamp, Text zone) {
+			if (timestamp == null || zone == null) {
+				return null;
+			}
+			return format(timestamp.getSeconds(), zone);
+		}
+
+		Text evaluate(LongWritable epochSeconds, Text zone, Text patternText) {
+			if (epochSeconds == null || zone == null || patternText == null) {
+				return null;
+			}
+			date.setTime(epochSeconds.get() * 1000);
+			return format(date, zone, patternText);
+		}
+
+		Text evaluate(TimestampWritable timestamp, Text zone, Text patternText) {
+			if (timestamp == null || zone == null || patternText == null) {
+				return null;
+			}
+			date.setTime(timestamp.getSeconds() * 1000L + timestamp.getNanos() / 1000000);
+			return format(date, zone, patternText);
+		}
+
+		private Text format(long epochSecond, Text zone) {
+			ZoneOffsets offsets = lastZone.get(zone);
+			if (offsets == null || !fields.setEpochSecond(offsets.toLocal(epochSecond))) {
+				return null;
+			}
+			fields.write(result);
+			return result;
+		}
+
+		private Text format(Date date, Text zone, Text patternText) {
+			ZoneOffsets offsets = lastZone.get(zone);
+			if (offsets == null) {
+				return null;
+			}
+			if (offsets != formatterZone) {
+				formatter.setTimeZone(offsets.zone);
+				formatterZone = offsets;
+			}
+			try {
+				if (!patternText.equals(lastPatternText)) {
+					formatter.applyPattern(patternText.toString());
+					lastPatternText.set(patternText);
+				}
+			} catch (Exception e) {
+				return null;
+			}
+			result.set(formatter.format(date));
+			return result;
+		}
+	}
+}
@@ -56,14 +56,16 @@ import org.apache.hadoop.io.Text;
 
 
 public class UDFChr extends UDF {
+	private final UDFMetrics metrics = UDFMetrics.of(getClass());
 	private Text result = new Text();
 
 	public Text evaluate(IntWritable ascii_number) {
+		long start = metrics.start();
 		if (ascii_number == null) {
-			return null;
+			return metrics.finish(start, (Text) null);
 		}
 
 		result.set(Character.toString((char) ascii_number.get()));
-		return result;
+		return metrics.finish(start, result);
 	}
 }
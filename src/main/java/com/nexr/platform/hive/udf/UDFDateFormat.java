@@ -18,13 +18,15 @@
 
 package com.nexr.platform.hive.udf;
 
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Calendar;
 import java.util.Date;
 
 import org.apache.hadoop.hive.ql.exec.Description;
 import org.apache.hadoop.hive.ql.exec.UDF;
 import org.apache.hadoop.hive.ql.udf.UDFType;
+import org.apache.hadoop.hive.serde2.io.TimestampWritable;
+import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hive.pdk.HivePdkUnitTest;
 import org.apache.hive.pdk.HivePdkUnitTests;
@@ -34,9 +36,12 @@ import org.apache.hive.pdk.HivePdkUnitTests;
  */
 
 @Description(name = "date_format",
-	value = "_FUNC_(dateText,pattern) - Return time string with given pattern. ",
-	extended = "Convert time string with 'yyyy-MM-dd HH:mm:ss' pattern to time string with given pattern.\n"
+	value = "_FUNC_(date,pattern[,nls_params]) - Return time string with given pattern. ",
+	extended = "Convert time string with 'yyyy-MM-dd HH:mm:ss' pattern, epoch seconds or a timestamp\n"
+		+"to time string with given pattern.\n"
 		+" (see [http://java.sun.com/j2se/1.4.2/docs/api/java/text/SimpleDateFormat.html])\n\n"
+		+"Month and day names follow the optional nls_params, a locale such as 'ko_KR' or\n"
+		+"Oracle parameters such as 'NLS_DATE_LANGUAGE = KOREAN'.\n\n"
 		+"Example:\n"
 		+" > SELECT _FUNC_ ('2011-05-11 12:05:11','yyyyMMdd') FRom src LIMIT 1;\n"
 		+"20110511"
@@ -51,44 +56,155 @@ import org.apache.hive.pdk.HivePdkUnitTests;
 		@HivePdkUnitTest(
 			query = "SELECT nexr_date_format('2011-07-21 09:21:00', 'yyyy-MM-dd') FROM onerow;",
 			result = "2011-07-21"
+		),
+		@HivePdkUnitTest(
+			query = "SELECT nexr_date_format('2011-07-21 09:21:00', 'EEEE', 'en_US') FROM onerow;",
+			result = "Thursday"
+		),
+		@HivePdkUnitTest(
+			query = "SELECT nexr_date_format(unix_timestamp('2011-07-21 09:21:00'), 'yyyyMMdd HH') FROM onerow;",
+			result = "20110721 09"
+		),
+		@HivePdkUnitTest(
+			query = "SELECT nexr_date_format(cast('2011-07-21 09:21:00' as timestamp), 'yyyy/MM/dd') FROM onerow;",
+			result = "2011/07/21"
+		),
+		@HivePdkUnitTest(
+			query = "SELECT nexr_date_format('0001-01-01 00:00:00', 'yyyy-MM-dd HH:mm:ss') FROM onerow;",
+			result = "0001-01-01 00:00:00"
+		),
+		// a daylight saving gap of America/New_York, the time zone of the tests
+		@HivePdkUnitTest(
+			query = "SELECT nexr_date_format('2011-03-13 02:30:00', 'yyyy-MM-dd HH:mm') FROM onerow;",
+			result = "NULL"
 		)
 	}
 )
 
 @UDFType(deterministic = false)
 public class UDFDateFormat extends UDF {
-	private final SimpleDateFormat standardFormatter = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-	private final SimpleDateFormat formatter = new SimpleDateFormat();
-	
-	public UDFDateFormat() {
-    standardFormatter.setLenient(false);
-    formatter.setLenient(false);
+	private final UDFMetrics metrics = UDFMetrics.of(getClass());
+	private final ParseErrorPolicy parseErrors = ParseErrorPolicy.forFunction("date_format");
+	private final ThreadLocal<State> state = new ThreadLocal<State>() {
+		@Override
+		protected State initialValue() {
+			return new State();
+		}
+	};
+
+	public Text evaluate(Text dateText, Text patternText) {
+		return metrics.finish(metrics.start(), formatDate(dateText, patternText, NlsSymbols.DEFAULT));
 	}
 
-	Text result = new Text();
-	Text lastPatternText = new Text();
+	public Text evaluate(Text dateText, Text patternText, Text nls) {
+		return metrics.finish(metrics.start(), nls == null ? null : formatDate(dateText, patternText, state.get().lastNls.get(nls)));
+	}
 
-	public Text evaluate(Text dateText, Text patternText) {
+	private Text formatDate(Text dateText, Text patternText, NlsSymbols nls) {
 		if (dateText == null || patternText == null) {
 			return null;
 		}
-		
-		try {
-			if (!patternText.equals(lastPatternText)) {
-				formatter.applyPattern(patternText.toString());
-				lastPatternText.set(patternText);
+		State s = state.get();
+		if (!s.parse(dateText)) {
+			metrics.parseFailure();
+			return parseErrors.onError(dateText);
+		}
+		return s.format(s.date, patternText, nls);
+	}
+
+	public Text evaluate(LongWritable epochSeconds, Text patternText) {
+		return metrics.finish(metrics.start(), state.get().format(epochSeconds, patternText, NlsSymbols.DEFAULT));
+	}
+
+	public Text evaluate(LongWritable epochSeconds, Text patternText, Text nls) {
+		State s = state.get();
+		return metrics.finish(metrics.start(), nls == null ? null : s.format(epochSeconds, patternText, s.lastNls.get(nls)));
+	}
+
+	public Text evaluate(TimestampWritable timestamp, Text patternText) {
+		return metrics.finish(metrics.start(), state.get().format(timestamp, patternText, NlsSymbols.DEFAULT));
+	}
+
+	public Text evaluate(TimestampWritable timestamp, Text patternText, Text nls) {
+		State s = state.get();
+		return metrics.finish(metrics.start(), nls == null ? null : s.format(timestamp, patternText, s.lastNls.get(nls)));
+	}
+
+	/**
+	 * Formatters, caches and the result of one thread.
+	 */
+	private static final class State {
+		private final SimpleDateFormat formatter = new SimpleDateFormat();
+		private final DateTimeFields fields = new DateTimeFields();
+		private final Date date = new Date();
+		private final Calendar calendar = Calendar.getInstance();
+
+		private final Text result = new Text();
+		private final Text lastPatternText = new Text();
+		private boolean patternResolved;
+		private boolean patternValid;
+		private NlsSymbols formatterSymbols = NlsSymbols.DEFAULT;
+		private final NlsSymbols.LastResolved lastNls = new NlsSymbols.LastResolved();
+
+		State() {
+			formatter.setLenient(false);
+			calendar.setLenient(false);
+		}
+
+		/**
+		 * Parses a 'yyyy-MM-dd HH:mm:ss' value into {@link #date}.
+		 *
+		 * @return false if the value can not be parsed or the time does not exist.
+		 */
+		private boolean parse(Text dateText) {
+			if (!fields.parse(dateText.getBytes(), 0, dateText.getLength())) {
+				return false;
 			}
-		} catch (Exception e) {
-			return null;
+			return fields.toDate(date, calendar);
+		}
+
+		private Text format(LongWritable epochSeconds, Text patternText, NlsSymbols nls) {
+			if (epochSeconds == null) {
+				return null;
+			}
+			date.setTime(epochSeconds.get() * 1000);
+			return format(date, patternText, nls);
 		}
 
-		Date date;
-		try {
-			date = standardFormatter.parse(dateText.toString());
+		private Text format(TimestampWritable timestamp, Text patternText, NlsSymbols nls) {
+			if (timestamp == null) {
+				return null;
+			}
+			date.setTime(timestamp.getSeconds() * 1000L + timestamp.getNanos() / 1000000);
+			return format(date, patternText, nls);
+		}
+
+		private Text format(Date date, Text patternText, NlsSymbols nls) {
+			if (patternText == null || nls == null) {
+				return null;
+			}
+			if (nls != formatterSymbols) {
+				formatter.setDateFormatSymbols(nls.dateSymbols);
+				formatterSymbols = nls;
+			}
+
+			if (!patternResolved || !patternText.equals(lastPatternText)) {
+				lastPatternText.set(patternText);
+				patternResolved = true;
+				try {
+					formatter.applyPattern(patternText.toString());
+					patternValid = true;
+				} catch (IllegalArgumentException e) {
+					// invalid pattern, every value is NULL
+					patternValid = false;
+				}
+			}
+			if (!patternValid) {
+				return null;
+			}
+
 			result.set(formatter.format(date));
 			return result;
-		} catch (ParseException e) {
-			return null;
 		}
 	}
 }
@@ -0,0 +1,133 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nexr.platform.hive.udf;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDF;
+import org.apache.hadoop.hive.serde2.io.TimestampWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+/**
+ * UDFFromTz
+ *
+ * This mimics the function from Oracle FROM_TZ. The wall clock time of the date
+ * is read in the given time zone and returned as epoch seconds, which every
+ * date function here accepts. A timestamp contributes its wall clock time in
+ * the JVM default time zone. See {@link ZoneOffsets} for the zone names.
+ * A time skipped when the clocks go forward does not exist and returns NULL,
+ * as Oracle fails on it, and a time repeated when they go back is the later,
+ * standard time, instant. Dates before 15 October 1582 are Julian.
+ */
+@Description(name = "from_tz",
+		value = "_FUNC_(date, zone) - returns the epoch seconds of date, a string with " +
+				"yyyy-MM-dd HH:mm:ss pattern or a timestamp, read as wall clock time in zone.",
+		extended = "Example:\n"
+			+ "> SELECT _FUNC_('2011-08-02 09:00:00', 'Asia/Seoul') FROM src LIMIT 1;\n"
+			+ "1312243200\n"
+)
+@HivePdkUnitTests(
+		setup = "", cleanup = "",
+		cases = {
+			@HivePdkUnitTest(
+				query = "SELECT nexr_from_tz('2011-08-02 09:00:00', 'Asia/Seoul') FROM onerow;",
+				result = "1312243200"
+			),
+			@HivePdkUnitTest(
+				query = "SELECT nexr_from_tz('2011-08-02 09:00:00', '+09:00') FROM onerow;",
+				result = "1312243200"
+			),
+			@HivePdkUnitTest(
+				query = "SELECT nexr_from_tz('2011-08-02 09:00:00', 'America/New_York') FROM onerow;",
+				result = "1312290000"
+			),
+			@HivePdkUnitTest(
+				query = "SELECT nexr_from_tz('2011-08-02 09:00:00', 'Mars/Olympus') FROM onerow;",
+				result = "NULL"
+			),
+			@HivePdkUnitTest(
+				query = "SELECT nexr_from_tz('2011-03-13 02:30:00', 'America/New_York'), "
+						+ "nexr_from_tz('2011-11-06 01:30:00', 'America/New_York') FROM onerow;",
+				result = "NULL\t1320561000"
+			),
+			@HivePdkUnitTest(
+				query = "SELECT nexr_from_tz('1500-02-29 00:00:00', '+00:00') FROM onerow;",
+				result = "-14825894400"
+			)
+		}
+	)
+public class UDFFromTz extends UDF {
+	private final UDFMetrics metrics = UDFMetrics.of(getClass());
+	private final ThreadLocal<State> state = new ThreadLocal<State>() {
+		@Override
+		protected State initialValue() {
+			return new State();
+		}
+	};
+
+	public LongWritable evaluate(Text dateText, Text zone) {
+		return metrics.finish(metrics.start(), state.get().evaluate(dateText, zone));
+	}
+
+	public LongWritable evaluate(TimestampWritable timestamp, Text zone) {
+		return metrics.finish(metrics.start(), state.get().evaluate(timestamp, zone));
+	}
+
+	/**
+	 * Fields, the resolved zone and the result of one thread.
+	 */
+	private static final class State {
+		private final DateTimeFields fields = new DateTimeFields();
+		private final ZoneOffsets.LastResolved lastZone = new ZoneOffsets.LastResolved();
+
+		private final LongWritable result = new LongWritable();
+
+		LongWritable evaluate(Text dateText, Text zone) {
+			if (dateText == null || zone == null) {
+				return null;
+			}
+			if (!fields.parse(dateText.getBytes(), 0, dateText.getLength())) {
+				return null;
+			}
+			return toInstant(zone);
+		}
+
+		LongWritable evaluate(TimestampWritable timestamp, Text zone) {
+			if (timestamp == null || zone == null) {
+				return null;
+			}
+			if (!fields.set(timestamp)) {
+				return null;
+			}
+			return toInstant(zone);
+		}
+
+		private LongWritable toInstant(Text zone) {
+			ZoneOffsets offsets = lastZone.get(zone);
+			long localSecond = fields.toEpochSecond();
+			if (offsets == null || !offsets.exists(localSecond)) {
+				return null;
+			}
+			result.set(offsets.toInstant(localSecond));
+			return result;
+		}
+	}
+}
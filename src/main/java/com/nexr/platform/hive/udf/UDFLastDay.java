@@ -18,29 +18,37 @@
 
 package com.nexr.platform.hive.udf;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
-
 import org.apache.hadoop.hive.ql.exec.Description;
 import org.apache.hadoop.hive.ql.exec.UDF;
 import org.apache.hadoop.hive.ql.udf.UDFType;
+import org.apache.hadoop.hive.serde2.io.TimestampWritable;
+import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hive.pdk.HivePdkUnitTest;
 import org.apache.hive.pdk.HivePdkUnitTests;
 
 /**
  * UDFLastDay
+ *
+ * The year and month are read straight from the bytes of the argument and the
+ * result comes from a small cache of formatted month ends, so a row costs no
+ * Date, Calendar or String.
+ * <p>
+ * A bigint argument is read as epoch seconds and a timestamp as is; the result
+ * has the type of the argument, so chained date functions stay numeric. A string
+ * is read as a non lenient SimpleDateFormat reads it: in the Julian calendar
+ * before 15 October 1582, and a time in a daylight saving gap can not be parsed.
  */
 
 @UDFType(deterministic = false)
 @Description(name = "last_day",
-		value = "_FUNC_(dateString) -  returns the last day of the month based " +
-				"on a date string with yyyy-MM-dd HH:mm:ss pattern.",
+		value = "_FUNC_(date) -  returns the last day of the month based " +
+				"on a date string with yyyy-MM-dd HH:mm:ss pattern, epoch seconds or a timestamp.",
 		extended = "Example:\n"
 			+"> SELECT last_day('2003-03-15 01:22:33') FROM src LIMIT 1;"
 			+"2003-03-31 00:00:00\n"
+			+"> SELECT last_day(unix_timestamp('2003-03-15 01:22:33')) FROM src LIMIT 1;"
+			+"epoch seconds of 2003-03-31 00:00:00\n"
 )
 @HivePdkUnitTests(
 		setup = "", cleanup = "",
@@ -52,38 +60,125 @@ import org.apache.hive.pdk.HivePdkUnitTests;
 			@HivePdkUnitTest(
 				query = "SELECT nexr_last_day('2011-07-21 09:21:00') FROM onerow;",
 				result = "2011-07-31 00:00:00"
+			),
+			@HivePdkUnitTest(
+				query = "SELECT nexr_last_day('2000-02-01 00:00:00') FROM onerow;",
+				result = "2000-02-29 00:00:00"
+			),
+			@HivePdkUnitTest(
+				query = "SELECT nexr_last_day('1900-02-11 23:59:59') FROM onerow;",
+				result = "1900-02-28 00:00:00"
+			),
+			@HivePdkUnitTest(
+				query = "SELECT nexr_last_day('2011-02-30 00:00:00') FROM onerow;",
+				result = "NULL"
+			),
+			@HivePdkUnitTest(
+				query = "SELECT from_unixtime(nexr_last_day(unix_timestamp('2012-02-11 10:00:00'))) FROM onerow;",
+				result = "2012-02-29 00:00:00"
+			),
+			@HivePdkUnitTest(
+				query = "SELECT nexr_last_day(cast('2012-04-11 10:00:00' as timestamp)) FROM onerow;",
+				result = "2012-04-30 00:00:00"
+			),
+			// 1500 is a leap year of the Julian calendar
+			@HivePdkUnitTest(
+				query = "SELECT nexr_last_day('1500-02-11 00:00:00') FROM onerow;",
+				result = "1500-02-29 00:00:00"
+			),
+			// a daylight saving gap of America/New_York, the time zone of the tests
+			@HivePdkUnitTest(
+				query = "SELECT nexr_last_day('2011-03-13 02:30:00') FROM onerow;",
+				result = "NULL"
 			)
 		}
 	)
 public class UDFLastDay extends UDF {
-	private final SimpleDateFormat standardFormatter = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-	private final Calendar calendar = Calendar.getInstance();
+	private static final int CACHE_SIZE = 64;
+
+	private final UDFMetrics metrics = UDFMetrics.of(getClass());
+	private final ParseErrorPolicy parseErrors = ParseErrorPolicy.forFunction("last_day");
+
+	private final ThreadLocal<State> state = new ThreadLocal<State>() {
+		@Override
+		protected State initialValue() {
+			return new State();
+		}
+	};
 
-	public UDFLastDay() {
-    standardFormatter.setLenient(false);
-  }
+	public Text evaluate(Text dateText) {
+		return metrics.finish(metrics.start(), lastDay(dateText));
+	}
 
-	Text result = new Text();
+	public LongWritable evaluate(LongWritable epochSeconds) {
+		return metrics.finish(metrics.start(), state.get().lastDay(epochSeconds));
+	}
+
+	public TimestampWritable evaluate(TimestampWritable timestamp) {
+		return metrics.finish(metrics.start(), state.get().lastDay(timestamp));
+	}
 
-	public Text evaluate(Text dateText){
+	private Text lastDay(Text dateText) {
 		if (dateText == null) {
 			return null;
 		}
-		
-		try {
-			calendar.setTime(standardFormatter.parse(dateText.toString()));
-			int lastDate = calendar.getActualMaximum(Calendar.DATE);
-			calendar.set(Calendar.DATE, lastDate);
-			calendar.set(Calendar.HOUR_OF_DAY, 0);  
-			calendar.set(Calendar.MINUTE, 0);  
-			calendar.set(Calendar.SECOND, 0);  
-			calendar.set(Calendar.MILLISECOND, 0); 
-			Date newDate = calendar.getTime();
-			result.set(standardFormatter.format(newDate));
-			return result;
-		} catch (ParseException e) {
-			return null;
+		State s = state.get();
+		DateTimeFields fields = s.fields;
+		if (!fields.parseExisting(dateText.getBytes(), 0, dateText.getLength())) {
+			metrics.parseFailure();
+			return parseErrors.onError(dateText);
+		}
+
+		int month = fields.year * 12 + fields.month;
+		int slot = month & (CACHE_SIZE - 1);
+		byte[] cached = s.cachedResults[slot];
+		boolean hit = cached != null && s.cachedMonths[slot] == month;
+		metrics.cache(hit);
+		if (!hit) {
+			fields.set(fields.year, fields.month, DateTimeFields.daysInMonth(fields.year, fields.month), 0, 0, 0);
+			byte[] buffer = new byte[DateTimeFields.STANDARD_LENGTH + 6];
+			cached = new byte[fields.write(buffer, 0)];
+			System.arraycopy(buffer, 0, cached, 0, cached.length);
+			s.cachedResults[slot] = cached;
+			s.cachedMonths[slot] = month;
 		}
+		s.result.set(cached);
+		return s.result;
 	}
-}
 
+	/**
+	 * Month-end cache and results of one thread.
+	 */
+	private static final class State {
+		private final DateTimeFields fields = new DateTimeFields();
+		private final int[] cachedMonths = new int[CACHE_SIZE];
+		private final byte[][] cachedResults = new byte[CACHE_SIZE][];
+
+		private final Text result = new Text();
+		private final LongWritable epochResult = new LongWritable();
+		private final TimestampWritable timestampResult = new TimestampWritable();
+
+		private LongWritable lastDay(LongWritable epochSeconds) {
+			if (epochSeconds == null || !fields.setInstant(epochSeconds.get())) {
+				return null;
+			}
+			toLastDay();
+			epochResult.set(fields.toInstant());
+			return epochResult;
+		}
+
+		private TimestampWritable lastDay(TimestampWritable timestamp) {
+			if (timestamp == null || !fields.set(timestamp)) {
+				return null;
+			}
+			toLastDay();
+			fields.write(timestampResult, 0);
+			return timestampResult;
+		}
+
+		private void toLastDay() {
+			fields.day = DateTimeFields.daysInMonth(fields.year, fields.month);
+			fields.truncateTime();
+		}
+	}
+}
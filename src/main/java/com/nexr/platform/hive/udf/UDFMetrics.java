@@ -0,0 +1,194 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nexr.platform.hive.udf;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * UDFMetrics
+ *
+ * Hot path counters of one function: rows evaluated, NULL results, parse
+ * failures, cache hits and misses, the peak bytes of state kept by one
+ * instance, and the nanoseconds of one row in every {@link #SAMPLE}. Counters are collected only when the task JVM runs with
+ * <code>-Dnexr.udf.metrics=true</code> (e.g. through
+ * <code>mapred.child.java.opts</code>); otherwise every call is a test of a
+ * static final flag that the JIT removes. The sample rate is set with
+ * <code>-Dnexr.udf.metrics.sample=N</code>.
+ * <p>
+ * A UDF in Hive 0.9 is given no Reporter, so the counters can not be Hadoop
+ * counters. They are written to the task log while the task runs, as
+ * <code>group#instance.counter=value</code> lines with the totals of the
+ * instance so far: every {@link #FLUSH_ROWS} rows, set with
+ * <code>-Dnexr.udf.metrics.flush=N</code>, and when a table function is
+ * closed. A GenericUDF is never closed, so the rows it evaluates after its
+ * last flush are not logged. The log of a Hadoop task JVM is shut down before
+ * the JVM exits, so the counters are not kept for a shutdown hook.
+ * <p>
+ * Hive creates new function instances for every task, so each instance keeps
+ * its own counters and the tasks run one after another by a reused JVM are
+ * reported apart. No instance is referenced after its function is dropped.
+ * The counters are safe to update from any thread.
+ */
+final class UDFMetrics {
+
+	static final boolean ENABLED = Boolean.getBoolean("nexr.udf.metrics");
+	static final long SAMPLE = Math.max(1, Long.getLong("nexr.udf.metrics.sample", 1024));
+	static final long FLUSH_ROWS = Math.max(1, Long.getLong("nexr.udf.metrics.flush", 100000));
+
+	private static final Log LOG = LogFactory.getLog(UDFMetrics.class);
+	private static final UDFMetrics DISABLED = new UDFMetrics("");
+	private static final ConcurrentMap<String, AtomicLong> INSTANCE_IDS = new ConcurrentHashMap<String, AtomicLong>();
+
+	private final String group;
+	private final AtomicLong rows = new AtomicLong();
+	private final AtomicLong nulls = new AtomicLong();
+	private final AtomicLong parseFailures = new AtomicLong();
+	private final AtomicLong cacheHits = new AtomicLong();
+	private final AtomicLong cacheMisses = new AtomicLong();
+	private final AtomicLong peakStateBytes = new AtomicLong();
+	private final AtomicLong sampledRows = new AtomicLong();
+	private final AtomicLong sampledNanos = new AtomicLong();
+
+	private UDFMetrics(String group) {
+		this.group = group;
+	}
+
+	/**
+	 * @return new counters for an instance of the function implemented by the
+	 *         class, numbered from 1 in the JVM.
+	 */
+	static UDFMetrics of(Class<?> udf) {
+		if (!ENABLED) {
+			return DISABLED;
+		}
+		String function = udf.getSimpleName();
+		AtomicLong ids = INSTANCE_IDS.get(function);
+		if (ids == null) {
+			AtomicLong created = new AtomicLong();
+			ids = INSTANCE_IDS.putIfAbsent(function, created);
+			if (ids == null) {
+				ids = created;
+			}
+		}
+		return new UDFMetrics(function + "#" + ids.incrementAndGet());
+	}
+
+	/**
+	 * Counts a row, to be passed to {@link #finish(long, Object)} with its
+	 * result, and logs the counters every {@link #FLUSH_ROWS} rows.
+	 *
+	 * @return the start time of a sampled row, 0 otherwise.
+	 */
+	long start() {
+		if (!ENABLED) {
+			return 0;
+		}
+		long row = rows.incrementAndGet();
+		if (row % FLUSH_ROWS == 0) {
+			flush();
+		}
+		return row % SAMPLE == 0 ? System.nanoTime() : 0;
+	}
+
+	/** Counts a NULL result and the time of a sampled row, and returns the result. */
+	<T> T finish(long start, T result) {
+		if (!ENABLED) {
+			return result;
+		}
+		if (result == null) {
+			nulls.incrementAndGet();
+		}
+		if (start != 0) {
+			sampledNanos.addAndGet(System.nanoTime() - start);
+			sampledRows.incrementAndGet();
+		}
+		return result;
+	}
+
+	/** Counts the time of a sampled row of a function that returns no value. */
+	void finish(long start) {
+		if (ENABLED && start != 0) {
+			sampledNanos.addAndGet(System.nanoTime() - start);
+			sampledRows.incrementAndGet();
+		}
+	}
+
+	void parseFailure() {
+		if (ENABLED) {
+			parseFailures.incrementAndGet();
+		}
+	}
+
+	void cache(boolean hit) {
+		if (ENABLED) {
+			(hit ? cacheHits : cacheMisses).incrementAndGet();
+		}
+	}
+
+	/** Raises the peak state bytes to the given bytes if they are more. */
+	void stateBytes(long bytes) {
+		if (ENABLED) {
+			long peak = peakStateBytes.get();
+			while (bytes > peak && !peakStateBytes.compareAndSet(peak, bytes)) {
+				peak = peakStateBytes.get();
+			}
+		}
+	}
+
+	/** Logs the non zero counters of the instance, as <code>group#instance.counter=value</code> lines. */
+	void flush() {
+		if (ENABLED) {
+			for (Map.Entry<String, Long> counter : snapshot().entrySet()) {
+				LOG.info(counter.getKey() + "=" + counter.getValue());
+			}
+		}
+	}
+
+	/**
+	 * @return the non zero counters of the instance by
+	 *         <code>group#instance.counter</code>.
+	 */
+	Map<String, Long> snapshot() {
+		Map<String, Long> counters = new LinkedHashMap<String, Long>();
+		put(counters, "ROWS", rows);
+		put(counters, "NULLS", nulls);
+		put(counters, "PARSE_FAILURES", parseFailures);
+		put(counters, "CACHE_HITS", cacheHits);
+		put(counters, "CACHE_MISSES", cacheMisses);
+		put(counters, "PEAK_STATE_BYTES", peakStateBytes);
+		put(counters, "SAMPLED_ROWS", sampledRows);
+		put(counters, "SAMPLED_NANOS", sampledNanos);
+		return Collections.unmodifiableMap(counters);
+	}
+
+	private void put(Map<String, Long> counters, String name, AtomicLong counter) {
+		long value = counter.get();
+		if (value != 0) {
+			counters.put(group + "." + name, value);
+		}
+	}
+}
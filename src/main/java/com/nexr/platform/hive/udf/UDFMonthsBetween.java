@@ -0,0 +1,155 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nexr.platform.hive.udf;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDF;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.serde2.io.TimestampWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+/**
+ * UDFMonthsBetween
+ *
+ * This mimics the function from Oracle MONTHS_BETWEEN. When both dates fall on
+ * the same day of the month, or both on the last day of their months, the
+ * result is a whole number. Otherwise the fraction is computed on a 31 day
+ * month and includes the difference of the times of day. Both dates are
+ * strings, epoch seconds or timestamps. Dates before 15 October 1582 are
+ * Julian, and a string in a daylight saving gap returns NULL.
+ */
+@Description(name = "months_between",
+		value = "_FUNC_(date1, date2) - returns the number of months between two dates, " +
+				"strings with yyyy-MM-dd HH:mm:ss pattern, epoch seconds or timestamps.",
+		extended = "Example:\n"
+			+ "> SELECT _FUNC_('1995-02-02 00:00:00', '1995-01-01 00:00:00') FROM src LIMIT 1;\n"
+			+ "1.032258064516129\n"
+)
+@HivePdkUnitTests(
+		setup = "", cleanup = "",
+		cases = {
+			@HivePdkUnitTest(
+				query = "SELECT nexr_months_between('1995-02-02 00:00:00', '1995-01-01 00:00:00') FROM onerow;",
+				result = "1.032258064516129"
+			),
+			@HivePdkUnitTest(
+				query = "SELECT nexr_months_between('2011-02-28 00:00:00', '2011-01-31 12:00:00') FROM onerow;",
+				result = "1.0"
+			),
+			@HivePdkUnitTest(
+				query = "SELECT nexr_months_between('2011-01-15 00:00:00', '2011-03-15 00:00:00') FROM onerow;",
+				result = "-2.0"
+			),
+			@HivePdkUnitTest(
+				query = "SELECT nexr_months_between(unix_timestamp('2011-03-31 00:00:00'), " +
+						"unix_timestamp('2011-02-28 00:00:00')) FROM onerow;",
+				result = "1.0"
+			),
+			// 1500-02-29 is the last day of a Julian leap month
+			@HivePdkUnitTest(
+				query = "SELECT nexr_months_between('1500-02-29 00:00:00', '1500-01-31 00:00:00') FROM onerow;",
+				result = "1.0"
+			),
+			// a daylight saving gap of America/New_York, the time zone of the tests
+			@HivePdkUnitTest(
+				query = "SELECT nexr_months_between('2011-03-13 02:30:00', '2011-01-13 02:30:00') FROM onerow;",
+				result = "NULL"
+			)
+		}
+	)
+public class UDFMonthsBetween extends UDF {
+	private final UDFMetrics metrics = UDFMetrics.of(getClass());
+	private static final double SECONDS_PER_MONTH = 31 * 86400.0;
+
+	private final ThreadLocal<State> state = new ThreadLocal<State>() {
+		@Override
+		protected State initialValue() {
+			return new State();
+		}
+	};
+
+	public DoubleWritable evaluate(Text dateText1, Text dateText2) {
+		return metrics.finish(metrics.start(), state.get().evaluate(dateText1, dateText2));
+	}
+
+	public DoubleWritable evaluate(LongWritable epochSeconds1, LongWritable epochSeconds2) {
+		return metrics.finish(metrics.start(), state.get().evaluate(epochSeconds1, epochSeconds2));
+	}
+
+	public DoubleWritable evaluate(TimestampWritable timestamp1, TimestampWritable timestamp2) {
+		return metrics.finish(metrics.start(), state.get().evaluate(timestamp1, timestamp2));
+	}
+
+	/**
+	 * Fields and the result of one thread.
+	 */
+	private static final class State {
+		private final DateTimeFields fields1 = new DateTimeFields();
+		private final DateTimeFields fields2 = new DateTimeFields();
+
+		private final DoubleWritable result = new DoubleWritable();
+
+		DoubleWritable evaluate(Text dateText1, Text dateText2) {
+			if (dateText1 == null || dateText2 == null) {
+				return null;
+			}
+			if (!fields1.parseExisting(dateText1.getBytes(), 0, dateText1.getLength())
+					|| !fields2.parseExisting(dateText2.getBytes(), 0, dateText2.getLength())) {
+				return null;
+			}
+			return monthsBetween();
+		}
+
+		DoubleWritable evaluate(LongWritable epochSeconds1, LongWritable epochSeconds2) {
+			if (epochSeconds1 == null || epochSeconds2 == null) {
+				return null;
+			}
+			if (!fields1.setInstant(epochSeconds1.get()) || !fields2.setInstant(epochSeconds2.get())) {
+				return null;
+			}
+			return monthsBetween();
+		}
+
+		DoubleWritable evaluate(TimestampWritable timestamp1, TimestampWritable timestamp2) {
+			if (timestamp1 == null || timestamp2 == null) {
+				return null;
+			}
+			if (!fields1.set(timestamp1) || !fields2.set(timestamp2)) {
+				return null;
+			}
+			return monthsBetween();
+		}
+
+		private DoubleWritable monthsBetween() {
+			long months = (fields1.year - (long) fields2.year) * 12 + fields1.month - fields2.month;
+			if (fields1.day == fields2.day || (fields1.isLastDayOfMonth() && fields2.isLastDayOfMonth())) {
+				result.set(months);
+			} else {
+				long seconds = (fields1.day - fields2.day) * 86400L
+						+ (fields1.hour - fields2.hour) * 3600 + (fields1.minute - fields2.minute) * 60
+						+ fields1.second - fields2.second;
+				result.set(months + seconds / SECONDS_PER_MONTH);
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,188 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nexr.platform.hive.udf;
+
+import java.util.Calendar;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDF;
+import org.apache.hadoop.hive.serde2.io.TimestampWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+/**
+ * UDFNextDay
+ *
+ * This mimics the function from Oracle NEXT_DAY. The day of the week is an
+ * English day name, full or abbreviated to three letters, in any case. The
+ * result is always after the given date and keeps its time of day. The date is
+ * a string, epoch seconds or a timestamp, and the result has the same type.
+ * Dates before 15 October 1582 are Julian, and a string in a daylight saving
+ * gap returns NULL.
+ */
+@Description(name = "next_day",
+		value = "_FUNC_(date, dayName) - returns the first weekday named by dayName that is later " +
+				"than date, a string with yyyy-MM-dd HH:mm:ss pattern, epoch seconds or a timestamp.",
+		extended = "Example:\n"
+			+ "> SELECT _FUNC_('2011-08-02 10:00:00', 'TUESDAY') FROM src LIMIT 1;\n"
+			+ "2011-08-09 10:00:00\n"
+)
+@HivePdkUnitTests(
+		setup = "", cleanup = "",
+		cases = {
+			@HivePdkUnitTest(
+				query = "SELECT nexr_next_day('2011-08-02 10:00:00', 'TUESDAY') FROM onerow;",
+				result = "2011-08-09 10:00:00"
+			),
+			@HivePdkUnitTest(
+				query = "SELECT nexr_next_day('2011-08-02 10:00:00', 'fri') FROM onerow;",
+				result = "2011-08-05 10:00:00"
+			),
+			@HivePdkUnitTest(
+				query = "SELECT nexr_next_day('2011-12-31 00:00:00', 'Sunday') FROM onerow;",
+				result = "2012-01-01 00:00:00"
+			),
+			@HivePdkUnitTest(
+				query = "SELECT from_unixtime(nexr_next_day(unix_timestamp('2011-08-02 10:00:00'), 'MON')) FROM onerow;",
+				result = "2011-08-08 10:00:00"
+			),
+			// the Thursday before the switch to the Gregorian calendar
+			@HivePdkUnitTest(
+				query = "SELECT nexr_next_day('1582-10-04 10:00:00', 'FRIDAY'), nexr_next_day('2011-03-13 02:30:00', 'MON') FROM onerow;",
+				result = "1582-10-15 10:00:00\tNULL"
+			)
+		}
+	)
+public class UDFNextDay extends UDF {
+	private final UDFMetrics metrics = UDFMetrics.of(getClass());
+	private static final String[] DAY_NAMES = { "SUNDAY", "MONDAY", "TUESDAY", "WEDNESDAY",
+		"THURSDAY", "FRIDAY", "SATURDAY" };
+
+	private final ThreadLocal<State> state = new ThreadLocal<State>() {
+		@Override
+		protected State initialValue() {
+			return new State();
+		}
+	};
+
+	public Text evaluate(Text dateText, Text dayName) {
+		return metrics.finish(metrics.start(), state.get().evaluate(dateText, dayName));
+	}
+
+	public LongWritable evaluate(LongWritable epochSeconds, Text dayName) {
+		return metrics.finish(metrics.start(), state.get().evaluate(epochSeconds, dayName));
+	}
+
+	public TimestampWritable evaluate(TimestampWritable timestamp, Text dayName) {
+		return metrics.finish(metrics.start(), state.get().evaluate(timestamp, dayName));
+	}
+
+	/**
+	 * Fields, the resolved day name and results of one thread.
+	 */
+	private static final class State {
+		private final DateTimeFields fields = new DateTimeFields();
+		private final Text lastDayName = new Text();
+		private int lastDayOfWeek = -1;
+
+		private final Text result = new Text();
+		private final LongWritable epochResult = new LongWritable();
+		private final TimestampWritable timestampResult = new TimestampWritable();
+
+		Text evaluate(Text dateText, Text dayName) {
+			if (dateText == null || dayName == null) {
+				return null;
+			}
+			if (!fields.parseExisting(dateText.getBytes(), 0, dateText.getLength()) || !nextDay(dayName)) {
+				return null;
+			}
+			fields.write(result);
+			return result;
+		}
+
+		LongWritable evaluate(LongWritable epochSeconds, Text dayName) {
+			if (epochSeconds == null || dayName == null) {
+				return null;
+			}
+			if (!fields.setInstant(epochSeconds.get()) || !nextDay(dayName)) {
+				return null;
+			}
+			epochResult.set(fields.toInstant());
+			return epochResult;
+		}
+
+		TimestampWritable evaluate(TimestampWritable timestamp, Text dayName) {
+			if (timestamp == null || dayName == null) {
+				return null;
+			}
+			if (!fields.set(timestamp) || !nextDay(dayName)) {
+				return null;
+			}
+			fields.write(timestampResult, timestamp.getNanos());
+			return timestampResult;
+		}
+
+		private boolean nextDay(Text dayName) {
+			if (lastDayOfWeek < 0 || !dayName.equals(lastDayName)) {
+				lastDayName.set(dayName);
+				lastDayOfWeek = dayOfWeek(dayName.getBytes(), dayName.getLength());
+			}
+			if (lastDayOfWeek == 0) {
+				return false;
+			}
+			int days = lastDayOfWeek - fields.dayOfWeek();
+			if (days <= 0) {
+				days += 7;
+			}
+			return fields.addDays(days);
+		}
+	}
+
+	/**
+	 * @return the {@link Calendar} day of the week named by the bytes, or 0 if
+	 *         they do not name a day.
+	 */
+	static int dayOfWeek(byte[] bytes, int length) {
+		int start = 0;
+		int end = length;
+		while (start < end && bytes[start] == ' ') {
+			start++;
+		}
+		while (end > start && bytes[end - 1] == ' ') {
+			end--;
+		}
+		int len = end - start;
+		for (int d = 0; d < DAY_NAMES.length; d++) {
+			String name = DAY_NAMES[d];
+			if (len != 3 && len != name.length()) {
+				continue;
+			}
+			int i = 0;
+			while (i < len && Character.toUpperCase((char) bytes[start + i]) == name.charAt(i)) {
+				i++;
+			}
+			if (i == len) {
+				return Calendar.SUNDAY + d;
+			}
+		}
+		return 0;
+	}
+}
@@ -15,7 +15,7 @@
 
 package com.nexr.platform.hive.udf;
 
-import java.text.ParseException;
+import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
@@ -43,61 +43,114 @@ import org.apache.hive.pdk.HivePdkUnitTests;
         @HivePdkUnitTest(query = "SELECT nexr_str_to_date('2011/05/01','yyyy/MM/dd') FROM onerow;", result = "2011-05-01 00:00:00"),
         @HivePdkUnitTest(query = "SELECT nexr_str_to_date('2011/07/21 12:55:11','yyyy/MM/dd HH:mm:ss') "
                 + "FROM onerow;", result = "2011-07-21 12:55:11"),
-        @HivePdkUnitTest(query = "SELECT nexr_str_to_date('2011/05/01','yyyy/MM/dd', 1) FROM onerow;", result = "2011-05-02 00:00:00")})
+        @HivePdkUnitTest(query = "SELECT nexr_str_to_date('2011/05/01','yyyy/MM/dd', 1) FROM onerow;", result = "2011-05-02 00:00:00"),
+        @HivePdkUnitTest(query = "SELECT nexr_str_to_date('20120228 2310','yyyyMMdd HHmm', 2) FROM onerow;", result = "2012-03-01 23:10:00"),
+        // a daylight saving gap of America/New_York, the time zone of the tests
+        @HivePdkUnitTest(query = "SELECT nexr_str_to_date('2011/03/13 02:30','yyyy/MM/dd HH:mm') FROM onerow;", result = "NULL")})
 @UDFType(deterministic = false)
 public class UDFStrToDate extends UDF {
-    private final SimpleDateFormat standardFormatter = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-    private final SimpleDateFormat formatter = new SimpleDateFormat();
-    private final Calendar calendar = Calendar.getInstance();
+    private final UDFMetrics metrics = UDFMetrics.of(getClass());
+    private final ParseErrorPolicy parseErrors = ParseErrorPolicy.forFunction("str_to_date");
+
+    private final ThreadLocal<State> state = new ThreadLocal<State>() {
+        @Override
+        protected State initialValue() {
+            return new State();
+        }
+    };
 
-    public UDFStrToDate() {
-      standardFormatter.setLenient(false);
-      formatter.setLenient(false);
-    }
-    
-    Text result = new Text();
-    Text lastPatternText = new Text();
-    
     public Text evaluate(Text dateText, Text patternText) {
+        return metrics.finish(metrics.start(), strToDate(dateText, patternText, 0));
+    }
+
+    public Text evaluate(Text dateText, Text patternText, IntWritable days) {
+        return metrics.finish(metrics.start(), days == null ? null : strToDate(dateText, patternText, days.get()));
+    }
+
+    private Text strToDate(Text dateText, Text patternText, int days) {
         if (dateText == null || patternText == null) {
             return null;
         }
-        try {
-            if (!patternText.equals(lastPatternText)) {
-                formatter.applyPattern(patternText.toString());
-                lastPatternText.set(patternText);
-            }
-        } catch (Exception e) {
+        State s = state.get();
+        if (!s.applyPattern(patternText)) {
             return null;
         }
-        
-        Date date;
-        try {
-            date = formatter.parse(dateText.toString());
-            result.set(standardFormatter.format(date));
-            return result;
-        } catch (ParseException e) {
-            return null;
+        if (s.pattern != null && s.fields.parse(s.pattern, dateText.getBytes(), 0, dateText.getLength())
+                && s.fields.addDays(days)) {
+            s.fields.write(s.result);
+            return s.result;
+        }
+        Date date = s.parse(dateText);
+        if (date == null) {
+            metrics.parseFailure();
+            return parseErrors.onError(dateText);
+        }
+        if (days == 0) {
+            s.result.set(s.standardFormatter.format(date));
+            return s.result;
         }
+        s.calendar.setTime(date);
+        if (s.fields.set(s.calendar) && s.fields.addDays(days)) {
+            s.fields.write(s.result);
+        } else {
+            s.calendar.add(Calendar.DAY_OF_MONTH, days);
+            s.result.set(s.standardFormatter.format(s.calendar.getTime()));
+        }
+        return s.result;
     }
-    
-    Text t = new Text();
-    
-    public Text evaluate(Text dateText, Text patternText, IntWritable days) {
-        if (dateText == null || patternText == null || days == null) {
-            return null;
+
+    /**
+     * Formatters, calendar and the result of one thread. Values of numeric
+     * patterns are parsed from the bytes by the fields, the others by the
+     * formatter.
+     */
+    private static final class State {
+        private final SimpleDateFormat standardFormatter = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        private final SimpleDateFormat formatter = new SimpleDateFormat();
+        private final Calendar calendar = Calendar.getInstance();
+        private final DateTimeFields fields = new DateTimeFields();
+
+        private final Text result = new Text();
+        private final Text lastPatternText = new Text();
+        private boolean patternResolved;
+        private boolean patternValid;
+        /** The pattern when the fields read it from the bytes, else null. */
+        private DateTimeFields.Pattern pattern;
+        private final ParsePosition position = new ParsePosition(0);
+
+        State() {
+            standardFormatter.setLenient(false);
+            formatter.setLenient(false);
         }
-        
-        t = evaluate(dateText, patternText);
-        try {
-            calendar.setTime(standardFormatter.parse(t.toString()));
-            calendar.add(Calendar.DAY_OF_MONTH, days.get());
-            Date newDate = calendar.getTime();
-            result.set(standardFormatter.format(newDate));
-            return result;
-        } catch (ParseException e) {
-            e.printStackTrace();
-            return null;
+
+        private boolean applyPattern(Text patternText) {
+            if (!patternResolved || !patternText.equals(lastPatternText)) {
+                lastPatternText.set(patternText);
+                patternResolved = true;
+                try {
+                    String source = patternText.toString();
+                    formatter.applyPattern(source);
+                    pattern = DateTimeFields.Pattern.compile(source);
+                    patternValid = true;
+                } catch (IllegalArgumentException e) {
+                    // invalid pattern, every value is NULL
+                    pattern = null;
+                    patternValid = false;
+                }
+            }
+            return patternValid;
+        }
+
+        /**
+         * Parses the value with the last applied pattern, without the
+         * ParseException thrown by {@link SimpleDateFormat#parse(String)}.
+         *
+         * @return null if the value can not be parsed.
+         */
+        private Date parse(Text dateText) {
+            position.setIndex(0);
+            position.setErrorIndex(-1);
+            return formatter.parse(dateText.toString(), position);
         }
     }
 }
@@ -72,6 +72,7 @@ import org.apache.hive.pdk.HivePdkUnitTests;
 		}
 	)
 public class UDFSubstrForOracle extends UDF {
+  private final UDFMetrics metrics = UDFMetrics.of(getClass());
   private Text r;
 
   public UDFSubstrForOracle() {
@@ -79,6 +80,10 @@ public class UDFSubstrForOracle extends UDF {
   }
 
   public Text evaluate(Text t, IntWritable pos, IntWritable len) {
+    return metrics.finish(metrics.start(), substr(t, pos, len));
+  }
+
+  private Text substr(Text t, IntWritable pos, IntWritable len) {
 
     if ((t == null) || (pos == null) || (len == null)) {
       return null;
@@ -119,7 +124,7 @@ public class UDFSubstrForOracle extends UDF {
   private IntWritable maxValue = new IntWritable(Integer.MAX_VALUE);
 
   public Text evaluate(Text s, IntWritable pos) {
-    return evaluate(s, pos, maxValue);
+    return metrics.finish(metrics.start(), substr(s, pos, maxValue));
   }
 
 }
@@ -18,7 +18,6 @@
 
 package com.nexr.platform.hive.udf;
 
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
@@ -38,6 +37,24 @@ import org.apache.hadoop.io.Text;
  * SYSDATE()
  * </pre>
  * <p>
+ * By default the current time is read for every row. In query mode every row
+ * of every task of the job returns the same time, as Oracle does for one
+ * statement. The time is fixed by the client when it submits the query and
+ * passed to the tasks in the job configuration, as a JVM system property in
+ * <code>mapred.child.java.opts</code>; a time read in the tasks would differ
+ * from task to task:
+ * <ul>
+ * <li>nexr.sysdate=2011-06-13 13:47:36 (or epoch milliseconds) : use this time, which selects query mode
+ * <li>nexr.sysdate.mode=query : requires nexr.sysdate and fails without it
+ * </ul>
+ * For example, with the submission time in epoch milliseconds:
+ * <pre>
+ * hive -hiveconf now=$(date +%s)000
+ * hive> set mapred.child.java.opts=-Xmx1024m -Dnexr.sysdate=${hiveconf:now};
+ * </pre>
+ * In query mode the formatted result is kept for the last format and day offset,
+ * so a row only compares its arguments and returns the cached text.
+ * <p>
  */
 @Description(name = "sysdate",
 	value = "_FUNC_() - Returns the current date and time as a value in 'yyyy-MM-dd HH:mm:ss' format"
@@ -49,45 +66,128 @@ import org.apache.hadoop.io.Text;
 		+ "  > SELECT _FUNC_('yyyyMMdd',1) FROM src LIMIT 1;\n" + "20110614")
 
 public class UDFSysDate extends UDF{
-	private final SimpleDateFormat stdFormatter = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-	private final SimpleDateFormat formatter = new SimpleDateFormat();
-	  private final Calendar calendar = Calendar.getInstance();
-
-  public UDFSysDate() {
-    stdFormatter.setLenient(false);
-    formatter.setLenient(false);
-  }
-	  
-	Text result= new Text();
+	static final String MODE_PROPERTY = "nexr.sysdate.mode";
+	static final String VALUE_PROPERTY = "nexr.sysdate";
+	static final String STANDARD_PATTERN = "yyyy-MM-dd HH:mm:ss";
+
+	private final UDFMetrics metrics = UDFMetrics.of(getClass());
+	private final boolean queryMode;
+	private final long queryTime;
+	private final ThreadLocal<State> state = new ThreadLocal<State>() {
+		@Override
+		protected State initialValue() {
+			return new State();
+		}
+	};
+
+	public UDFSysDate() {
+		String pinned = System.getProperty(VALUE_PROPERTY);
+		if (pinned == null && "query".equalsIgnoreCase(System.getProperty(MODE_PROPERTY))) {
+			throw new IllegalArgumentException(MODE_PROPERTY + "=query needs the time of the query in "
+					+ VALUE_PROPERTY + ", set by the client in mapred.child.java.opts, e.g. -D"
+					+ VALUE_PROPERTY + "=${hiveconf:now} with hive -hiveconf now=$(date +%s)000");
+		}
+		queryMode = pinned != null;
+		queryTime = queryMode ? parseTime(pinned.trim()) : -1;
+	}
+
 	public Text evaluate() {
-		Date date = new Date();
-		result.set(stdFormatter.format(date));
-		return result;
+		State s = state.get();
+		return metrics.finish(metrics.start(), queryMode ? s.cached(queryTime, null, 0) : s.now());
 	}
 
 	public Text evaluate(Text format) {
-		if (format==null) {
-			format.set("yyyy-MM-dd HH:mm:ss");
+		return metrics.finish(metrics.start(), sysdate(format, 0));
+	}
+
+	public Text evaluate(Text format, IntWritable days) {
+		return metrics.finish(metrics.start(), days == null ? null : sysdate(format, days.get()));
+	}
+
+	private Text sysdate(Text format, int days) {
+		State s = state.get();
+		if (queryMode) {
+			return s.cached(queryTime, format, days);
+		}
+		return s.format(System.currentTimeMillis(), format, days);
+	}
+
+	/**
+	 * Formatters, the cached result and the calendar of one thread.
+	 */
+	private static final class State {
+		private final SimpleDateFormat stdFormatter = new SimpleDateFormat(STANDARD_PATTERN);
+		private final SimpleDateFormat formatter = new SimpleDateFormat();
+		private final Calendar calendar = Calendar.getInstance();
+		private final Date date = new Date();
+		private final DateTimeFields fields = new DateTimeFields();
+
+		private final Text result = new Text();
+		private final Text lastFormat = new Text();
+		private final Text lastPattern = new Text();
+		private int lastDays;
+		private boolean cached;
+
+		State() {
+			stdFormatter.setLenient(false);
+			formatter.setLenient(false);
 		}
 
-		Date date = new Date();
-		formatter.applyPattern(format.toString());
-		result.set(formatter.format(date));
-		return result;
+		private Text now() {
+			date.setTime(System.currentTimeMillis());
+			result.set(stdFormatter.format(date));
+			return result;
+		}
+
+		private Text cached(long queryTime, Text format, int days) {
+			if (cached && days == lastDays && (format == null ? lastFormat.getLength() == 0 : format.equals(lastFormat))) {
+				return result;
+			}
+			format(queryTime, format, days);
+			if (format == null) {
+				lastFormat.clear();
+			} else {
+				lastFormat.set(format);
+			}
+			lastDays = days;
+			cached = true;
+			return result;
+		}
+
+		private Text format(long time, Text format, int days) {
+			calendar.setTimeInMillis(time);
+			SimpleDateFormat f = stdFormatter;
+			if (format == null) {
+				if (fields.set(calendar) && fields.addDays(days)) {
+					fields.write(result);
+					return result;
+				}
+			} else {
+				if (!format.equals(lastPattern)) {
+					formatter.applyPattern(format.toString());
+					lastPattern.set(format);
+				}
+				f = formatter;
+			}
+			if (days != 0) {
+				calendar.add(Calendar.DAY_OF_MONTH, days);
+			}
+			result.set(f.format(calendar.getTime()));
+			return result;
+		}
 	}
 
-	public Text evaluate(Text format, IntWritable days){
-		if (format==null) {
-			format.set("yyyy-MM-dd HH:mm:ss");
+	private static long parseTime(String value) {
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			try {
+				SimpleDateFormat f = new SimpleDateFormat(STANDARD_PATTERN);
+				f.setLenient(false);
+				return f.parse(value).getTime();
+			} catch (java.text.ParseException pe) {
+				throw new IllegalArgumentException("Invalid " + VALUE_PROPERTY + ": " + value);
+			}
 		}
-		
-		formatter.applyPattern(format.toString());
-		Date date = new Date();
-		calendar.setTime(date);
-		calendar.add(Calendar.DAY_OF_MONTH, days.get());
-		Date newDate = calendar.getTime();
-		result.set(formatter.format(newDate));
-		return result;
 	}
-	
 }
@@ -18,9 +18,8 @@
 
 package com.nexr.platform.hive.udf;
 
-import java.text.DecimalFormat;
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Calendar;
 import java.util.Date;
 
 import org.apache.hadoop.hive.ql.exec.Description;
@@ -30,6 +29,7 @@ import org.apache.hadoop.hive.serde2.ByteStream;
 import org.apache.hadoop.hive.serde2.io.ByteWritable;
 import org.apache.hadoop.hive.serde2.io.DoubleWritable;
 import org.apache.hadoop.hive.serde2.io.ShortWritable;
+import org.apache.hadoop.hive.serde2.io.TimestampWritable;
 import org.apache.hadoop.hive.serde2.lazy.LazyInteger;
 import org.apache.hadoop.hive.serde2.lazy.LazyLong;
 import org.apache.hadoop.io.FloatWritable;
@@ -44,6 +44,13 @@ import org.apache.hive.pdk.HivePdkUnitTests;
  * UDFToChar
  *
  * This function is an alternative to Oracle to_char function.
+ * Numbers are formatted with a compiled {@link NumberFormatMask} (9, 0, comma,
+ * period, $, S, MI, PR, FM and EEEE), and a float or double without format is
+ * written with the shortest digits that read back to the same value.
+ * An optional nls_params argument selects the D, G and L symbols and the
+ * month and day names, see {@link NlsSymbols}.
+ * A timestamp is formatted with a date pattern; a bigint is always a number, so
+ * epoch seconds go through date_format or a timestamp.
  */
 
 @UDFType(deterministic = false)
@@ -52,7 +59,8 @@ import org.apache.hive.pdk.HivePdkUnitTests;
 				"to a string with given pattern.\n"
 		+"_FUNC_(datetime, pattern)  converts a string with yyyy-MM-dd pattern " +
 				"to a string with given pattern.\n"
-		+"_FUNC_(number [,format]) converts a number to a string\n",
+		+"_FUNC_(timestamp, pattern [,nls_params])  converts a timestamp to a string with given pattern.\n"
+		+"_FUNC_(number [,format [,nls_params]]) converts a number to a string\n",
 		extended = "Example:\n"
 		+" > SELECT to_char('2011-05-11 10:00:12'.'yyyyMMdd') FROM src LIMIT 1;\n"
 		+"20110511\n"
@@ -74,186 +82,312 @@ import org.apache.hive.pdk.HivePdkUnitTests;
 			@HivePdkUnitTest(query = "SELECT nexr_to_char(1210.73,'9999.9') FROM datatypes;",result = "1210.7"),
 			@HivePdkUnitTest(query = "SELECT nexr_to_char(1210.73,'9,999.99') FROM datatypes;",result = "1,210.73"),
 			@HivePdkUnitTest(query = "SELECT nexr_to_char(1210,'$9999') FROM datatypes;",result = "$1210"),
-			@HivePdkUnitTest(query = "SELECT nexr_to_char('test') FROM onerow;",result = "test")
+			@HivePdkUnitTest(query = "SELECT nexr_to_char(-1210.5,'9,999.00MI') FROM datatypes;",result = "1,210.50-"),
+			@HivePdkUnitTest(query = "SELECT nexr_to_char(1210.73,'9.99EEEE') FROM datatypes;",result = "1.21E+03"),
+			@HivePdkUnitTest(query = "SELECT nexr_to_char(12345,'999') FROM datatypes;",result = "####"),
+			@HivePdkUnitTest(query = "SELECT nexr_to_char(1210.73,'9G999D99','de_DE') FROM datatypes;",result = "1.210,73"),
+			@HivePdkUnitTest(query = "SELECT nexr_to_char('2011-07-01 00:00:00', 'yyyy MMMM', 'NLS_DATE_LANGUAGE = GERMAN') FROM onerow;",result = "2011 Juli"),
+			@HivePdkUnitTest(query = "SELECT nexr_to_char(cast('2011-07-01 13:00:00' as timestamp), 'yyyyMMdd HH') FROM onerow;",result = "20110701 13"),
+			@HivePdkUnitTest(query = "SELECT nexr_to_char('test') FROM onerow;",result = "test"),
+			@HivePdkUnitTest(query = "SELECT nexr_to_char('0001-01-01 00:00:00', 'yyyy-MM-dd HH:mm:ss') FROM onerow;",result = "0001-01-01 00:00:00"),
+			// a daylight saving gap of America/New_York, the time zone of the tests
+			@HivePdkUnitTest(query = "SELECT nexr_to_char('2011-03-13 02:30:00', 'yyyy-MM-dd HH:mm') FROM onerow;",result = "NULL")
 		}
 	)
 
 
 public class UDFToChar extends UDF {
-	private final SimpleDateFormat standardFormatter = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-	private final SimpleDateFormat formatter = new SimpleDateFormat();
-	private final DecimalFormat decimalFormat = new DecimalFormat();
-	private ByteStream.Output out = new ByteStream.Output();
-
-	private Text result = new Text();
-	private Text lastPatternText = new Text();
-
-	public UDFToChar() {
-    standardFormatter.setLenient(false);
-    formatter.setLenient(false);
-	}
+	private final UDFMetrics metrics = UDFMetrics.of(getClass());
+	private final ParseErrorPolicy parseErrors = ParseErrorPolicy.forFunction("to_char");
+	private final ThreadLocal<State> state = new ThreadLocal<State>() {
+		@Override
+		protected State initialValue() {
+			return new State();
+		}
+	};
 
 	public Text evaluate(NullWritable i) {
-		return null;
+		return metrics.finish(metrics.start(), (Text) null);
 	}
-	
+
 	public Text evaluate(ByteWritable i) {
-		if (i == null) {
-			return null;
-		} else {
-			out.reset();
-			LazyInteger.writeUTF8NoException(out, i.get());
-			result.set(out.getData(), 0, out.getCount());
-			return result;
-		}
+		return metrics.finish(metrics.start(), i == null ? null : state.get().toText(i.get()));
 	}
+
 	public Text evaluate(ByteWritable i, Text format) {
-		if (i == null|| format==null) {
-			return null;
-		} else {
-			String pattern  = format.toString().replace("9", "#");
-			decimalFormat.applyPattern(pattern);
-			result.set(decimalFormat.format(i.get()));
-			return result;
-		}
+		return metrics.finish(metrics.start(), i == null ? null : state.get().formatNumber(i.get(), format, NlsSymbols.DEFAULT));
+	}
+
+	public Text evaluate(ByteWritable i, Text format, Text nls) {
+		State s = state.get();
+		return metrics.finish(metrics.start(), i == null ? null : s.formatNumber(i.get(), format, s.nls(nls)));
 	}
 
 	public Text evaluate(ShortWritable i) {
-		if (i == null) {
-			return null;
-		} else {
-			out.reset();
-			LazyInteger.writeUTF8NoException(out, i.get());
-			result.set(out.getData(), 0, out.getCount());
-			return result;
-		}
+		return metrics.finish(metrics.start(), i == null ? null : state.get().toText(i.get()));
 	}
-	
+
 	public Text evaluate(ShortWritable i, Text format) {
-		if (i == null|| format==null) {
-			return null;
-		} else {
-			String pattern  = format.toString().replace("9", "#");
-			decimalFormat.applyPattern(pattern);
-			result.set(decimalFormat.format(i.get()));
-			return result;
-		}
+		return metrics.finish(metrics.start(), i == null ? null : state.get().formatNumber(i.get(), format, NlsSymbols.DEFAULT));
+	}
+
+	public Text evaluate(ShortWritable i, Text format, Text nls) {
+		State s = state.get();
+		return metrics.finish(metrics.start(), i == null ? null : s.formatNumber(i.get(), format, s.nls(nls)));
 	}
 
 	public Text evaluate(IntWritable i) {
-		if (i == null) {
-			return null;
-		} else {
-			out.reset();
-			LazyInteger.writeUTF8NoException(out, i.get());
-			result.set(out.getData(), 0, out.getCount());
-			return result;
-		}
+		return metrics.finish(metrics.start(), i == null ? null : state.get().toText(i.get()));
 	}
-	
+
 	public Text evaluate(IntWritable i, Text format) {
-		if (i == null|| format==null) {
-			return null;
-		} else {
-			String pattern  = format.toString().replace("9", "#");
-			decimalFormat.applyPattern(pattern);
-			result.set(decimalFormat.format(i.get()));
-			return result;
-		}
+		return metrics.finish(metrics.start(), i == null ? null : state.get().formatNumber(i.get(), format, NlsSymbols.DEFAULT));
+	}
+
+	public Text evaluate(IntWritable i, Text format, Text nls) {
+		State s = state.get();
+		return metrics.finish(metrics.start(), i == null ? null : s.formatNumber(i.get(), format, s.nls(nls)));
 	}
 
 	public Text evaluate(LongWritable i) {
-		if (i == null) {
-			return null;
-		} else {
-			out.reset();
-			LazyLong.writeUTF8NoException(out, i.get());
-			result.set(out.getData(), 0, out.getCount());
-			return result;
-		}
+		return metrics.finish(metrics.start(), i == null ? null : state.get().toText(i.get()));
 	}
-	
+
 	public Text evaluate(LongWritable i, Text format) {
-		if (i == null|| format==null) {
-			return null;
-		} else {
-			String pattern  = format.toString().replace("9", "#");
-			decimalFormat.applyPattern(pattern);
-			result.set(decimalFormat.format(i.get()));
-			return result;
-		}
+		return metrics.finish(metrics.start(), i == null ? null : state.get().formatNumber(i.get(), format, NlsSymbols.DEFAULT));
+	}
+
+	public Text evaluate(LongWritable i, Text format, Text nls) {
+		State s = state.get();
+		return metrics.finish(metrics.start(), i == null ? null : s.formatNumber(i.get(), format, s.nls(nls)));
 	}
 
 	public Text evaluate(FloatWritable i) {
-		if (i == null) {
-			return null;
-		} else {
-			result.set(i.toString());
-			return result;
-		}
+		return metrics.finish(metrics.start(), i == null ? null : state.get().toText(i.get()));
 	}
-	
-	
+
 	public Text evaluate(FloatWritable i, Text format) {
-		if (i == null|| format==null) {
-			return null;
-		} else {
-			String pattern  = format.toString().replace("9", "#");
-			decimalFormat.applyPattern(pattern);
-			result.set(decimalFormat.format(i.get()));
-			return result;
-		}
+		return metrics.finish(metrics.start(), i == null ? null : state.get().formatNumber(i.get(), format, NlsSymbols.DEFAULT));
+	}
+
+	public Text evaluate(FloatWritable i, Text format, Text nls) {
+		State s = state.get();
+		return metrics.finish(metrics.start(), i == null ? null : s.formatNumber(i.get(), format, s.nls(nls)));
 	}
 
 	public Text evaluate(DoubleWritable i) {
-		if (i == null) {
-			return null;
-		} else {
-			result.set(i.toString());
-			return result;
-		}
+		return metrics.finish(metrics.start(), i == null ? null : state.get().toText(i.get()));
 	}
-	
+
 	public Text evaluate(DoubleWritable i, Text format) {
-		if (i == null|| format==null) {
-			return null;
-		} else {
-			String pattern  = format.toString().replace("9", "#");
-			decimalFormat.applyPattern(pattern);
-			result.set(decimalFormat.format(i.get()));
-			return result;
-		}
+		return metrics.finish(metrics.start(), i == null ? null : state.get().formatNumber(i.get(), format, NlsSymbols.DEFAULT));
 	}
-	
+
+	public Text evaluate(DoubleWritable i, Text format, Text nls) {
+		State s = state.get();
+		return metrics.finish(metrics.start(), i == null ? null : s.formatNumber(i.get(), format, s.nls(nls)));
+	}
+
 	public Text evaluate(Text dateText, Text patternText) {
-		if (dateText == null || patternText == null) {
+		return metrics.finish(metrics.start(), formatDate(dateText, patternText, NlsSymbols.DEFAULT));
+	}
+
+	public Text evaluate(Text dateText, Text patternText, Text nls) {
+		return metrics.finish(metrics.start(), formatDate(dateText, patternText, state.get().nls(nls)));
+	}
+
+	private Text formatDate(Text dateText, Text patternText, NlsSymbols nls) {
+		State s = state.get();
+		if (dateText == null || !s.applyPattern(patternText, nls)) {
 			return null;
 		}
-		if (dateText.toString().trim().length()==10){
-			standardFormatter.applyPattern("yyyy-MM-dd");
+		if (!s.parse(dateText)) {
+			metrics.parseFailure();
+			return parseErrors.onError(dateText);
 		}
-		
-		try {
-			if (!patternText.equals(lastPatternText)) {
-				formatter.applyPattern(patternText.toString());
-				lastPatternText.set(patternText);
+		return s.formatDate();
+	}
+
+	public Text evaluate(TimestampWritable timestamp, Text patternText) {
+		return metrics.finish(metrics.start(), state.get().formatDate(timestamp, patternText, NlsSymbols.DEFAULT));
+	}
+
+	public Text evaluate(TimestampWritable timestamp, Text patternText, Text nls) {
+		State s = state.get();
+		return metrics.finish(metrics.start(), s.formatDate(timestamp, patternText, s.nls(nls)));
+	}
+
+	public Text evaluate(Text text) {
+		return metrics.finish(metrics.start(), text);
+	}
+
+	/**
+	 * Formatters, caches and the result of one thread.
+	 */
+	private static final class State {
+		private final SimpleDateFormat formatter = new SimpleDateFormat();
+		private final DateTimeFields fields = new DateTimeFields();
+		private final ByteStream.Output out = new ByteStream.Output();
+		private final DecimalDigits digits = new DecimalDigits();
+		private final Date date = new Date();
+		private final Calendar calendar = Calendar.getInstance();
+
+		private final Text result = new Text();
+		private final Text lastPatternText = new Text();
+		private boolean patternResolved;
+		private boolean patternValid;
+		private final Text lastNumberFormat = new Text();
+		private NumberFormatMask numberMask;
+		private NlsSymbols numberMaskSymbols;
+		private boolean numberMaskResolved;
+		private NlsSymbols formatterSymbols = NlsSymbols.DEFAULT;
+		private final NlsSymbols.LastResolved lastNls = new NlsSymbols.LastResolved();
+
+		State() {
+			formatter.setLenient(false);
+			calendar.setLenient(false);
+		}
+
+		/** @return the symbols of the parameters, or null if they are NULL or invalid. */
+		private NlsSymbols nls(Text nls) {
+			return nls == null ? null : lastNls.get(nls);
+		}
+
+		private Text toText(int value) {
+			out.reset();
+			LazyInteger.writeUTF8NoException(out, value);
+			result.set(out.getData(), 0, out.getCount());
+			return result;
+		}
+
+		private Text toText(long value) {
+			out.reset();
+			LazyLong.writeUTF8NoException(out, value);
+			result.set(out.getData(), 0, out.getCount());
+			return result;
+		}
+
+		private Text toText(float value) {
+			digits.set(value);
+			return digitsText();
+		}
+
+		private Text toText(double value) {
+			digits.set(value);
+			return digitsText();
+		}
+
+		private Text digitsText() {
+			out.reset();
+			digits.writeJavaString(out);
+			result.set(out.getData(), 0, out.getCount());
+			return result;
+		}
+
+		private Text formatNumber(long value, Text format, NlsSymbols nls) {
+			if (format == null) {
+				return null;
 			}
-		} catch (Exception e) {
-			return null;
+			digits.set(value);
+			return formatNumber(format, nls);
 		}
 
-		Date date;
-		try {
-			date = standardFormatter.parse(dateText.toString());
+		private Text formatNumber(float value, Text format, NlsSymbols nls) {
+			if (format == null) {
+				return null;
+			}
+			digits.set(value);
+			return formatNumber(format, nls);
+		}
+
+		private Text formatNumber(double value, Text format, NlsSymbols nls) {
+			if (format == null) {
+				return null;
+			}
+			digits.set(value);
+			return formatNumber(format, nls);
+		}
+
+		private Text formatDate(TimestampWritable timestamp, Text patternText, NlsSymbols nls) {
+			if (timestamp == null || !applyPattern(patternText, nls)) {
+				return null;
+			}
+			date.setTime(timestamp.getSeconds() * 1000L + timestamp.getNanos() / 1000000);
+			return formatDate();
+		}
+
+		private Text formatDate() {
 			result.set(formatter.format(date));
 			return result;
-		} catch (ParseException e) {
-			return null;
+		}
+
+		private boolean applyPattern(Text patternText, NlsSymbols nls) {
+			if (patternText == null || nls == null) {
+				return false;
+			}
+			if (nls != formatterSymbols) {
+				formatter.setDateFormatSymbols(nls.dateSymbols);
+				formatterSymbols = nls;
+			}
+			if (!patternResolved || !patternText.equals(lastPatternText)) {
+				lastPatternText.set(patternText);
+				patternResolved = true;
+				try {
+					formatter.applyPattern(patternText.toString());
+					patternValid = true;
+				} catch (IllegalArgumentException e) {
+					// invalid pattern, every value is NULL
+					patternValid = false;
+				}
+			}
+			return patternValid;
+		}
+
+		/**
+		 * Parses a 'yyyy-MM-dd HH:mm:ss' value, or a 'yyyy-MM-dd' value of ten
+		 * characters after trimming, into {@link #date}.
+		 *
+		 * @return false if the value can not be parsed or the time does not exist.
+		 */
+		private boolean parse(Text dateText) {
+			byte[] bytes = dateText.getBytes();
+			int start = 0;
+			int end = dateText.getLength();
+			while (start < end && (bytes[start] & 0xff) <= ' ') {
+				start++;
+			}
+			while (end > start && (bytes[end - 1] & 0xff) <= ' ') {
+				end--;
+			}
+			boolean parsed = end - start == 10 ? fields.parseDate(bytes, start, 10)
+					: fields.parse(bytes, start, end - start);
+			if (!parsed) {
+				return false;
+			}
+			return fields.toDate(date, calendar);
+		}
+
+		private Text formatNumber(Text format, NlsSymbols nls) {
+			if (nls == null) {
+				return null;
+			}
+			if (!numberMaskResolved || nls != numberMaskSymbols || !format.equals(lastNumberFormat)) {
+				lastNumberFormat.set(format);
+				numberMaskSymbols = nls;
+				numberMaskResolved = true;
+				try {
+					numberMask = NumberFormatMask.compile(format.toString(), nls);
+				} catch (IllegalArgumentException e) {
+					numberMask = null;
+				}
+			}
+			if (numberMask == null) {
+				return null;
+			}
+			out.reset();
+			numberMask.format(digits, out);
+			result.set(out.getData(), 0, out.getCount());
+			return result;
 		}
 	}
-	
-	public Text evaluate(Text text){
-		return text;
-	}
-	
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import org.apache.hadoop.hive.serde2.io.ByteWritable;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.serde2.io.ShortWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils.ObjectInspectorCopyOption;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector.PrimitiveCategory;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorUtils;
+import org.apache.hadoop.io.BooleanWritable;
+import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+
+/**
+ * ValueSlot
+ *
+ * One value kept from row to row by an analytic function. A boolean or
+ * numeric value is kept in a long or double field and returned in one reused
+ * Writable, so keeping a value allocates nothing. Other values are copied.
+ */
+final class ValueSlot {
+
+	private final ObjectInspector inputOI;
+	private final PrimitiveCategory category;
+	private final ObjectInspector resultOI;
+	private final Object result;
+	private boolean isNull = true;
+	private long longValue;
+	private double doubleValue;
+	private Object copy;
+
+	ValueSlot(ObjectInspector inputOI) {
+		this.inputOI = inputOI;
+		category = inputOI.getCategory() == ObjectInspector.Category.PRIMITIVE
+				? ((PrimitiveObjectInspector) inputOI).getPrimitiveCategory() : null;
+		if (category == null) {
+			resultOI = ObjectInspectorUtils.getStandardObjectInspector(inputOI, ObjectInspectorCopyOption.WRITABLE);
+			result = null;
+			return;
+		}
+		switch (category) {
+		case BOOLEAN:
+			result = new BooleanWritable();
+			break;
+		case BYTE:
+			result = new ByteWritable();
+			break;
+		case SHORT:
+			result = new ShortWritable();
+			break;
+		case INT:
+			result = new IntWritable();
+			break;
+		case LONG:
+			result = new LongWritable();
+			break;
+		case FLOAT:
+			result = new FloatWritable();
+			break;
+		case DOUBLE:
+			result = new DoubleWritable();
+			break;
+		default:
+			result = null;
+		}
+		resultOI = result != null
+				? PrimitiveObjectInspectorFactory.getPrimitiveWritableObjectInspector(category)
+				: ObjectInspectorUtils.getStandardObjectInspector(inputOI, ObjectInspectorCopyOption.WRITABLE);
+	}
+
+	/** @return the ObjectInspector of the values returned by {@link #get()}. */
+	ObjectInspector resultInspector() {
+		return resultOI;
+	}
+
+	void set(Object value) {
+		isNull = value == null;
+		if (isNull) {
+			copy = null;
+		} else if (result == null) {
+			copy = ObjectInspectorUtils.copyToStandardObject(value, inputOI, ObjectInspectorCopyOption.WRITABLE);
+		} else if (category == PrimitiveCategory.FLOAT || category == PrimitiveCategory.DOUBLE) {
+			doubleValue = PrimitiveObjectInspectorUtils.getDouble(value, (PrimitiveObjectInspector) inputOI);
+		} else if (category == PrimitiveCategory.BOOLEAN) {
+			longValue = PrimitiveObjectInspectorUtils.getBoolean(value, (PrimitiveObjectInspector) inputOI) ? 1 : 0;
+		} else {
+			longValue = PrimitiveObjectInspectorUtils.getLong(value, (PrimitiveObjectInspector) inputOI);
+		}
+	}
+
+	void clear() {
+		isNull = true;
+		copy = null;
+	}
+
+	boolean isNull() {
+		return isNull;
+	}
+
+	/** @return the kept value, valid until the next call, or null. */
+	Object get() {
+		if (isNull) {
+			return null;
+		}
+		if (result == null) {
+			return copy;
+		}
+		switch (category) {
+		case BOOLEAN:
+			((BooleanWritable) result).set(longValue != 0);
+			break;
+		case BYTE:
+			((ByteWritable) result).set((byte) longValue);
+			break;
+		case SHORT:
+			((ShortWritable) result).set((short) longValue);
+			break;
+		case INT:
+			((IntWritable) result).set((int) longValue);
+			break;
+		case LONG:
+			((LongWritable) result).set(longValue);
+			break;
+		case FLOAT:
+			((FloatWritable) result).set((float) doubleValue);
+			break;
+		default:
+			((DoubleWritable) result).set(doubleValue);
+		}
+		return result;
+	}
+
+	/** @return the estimated bytes of a copied value, 0 for a primitive slot. */
+	long bytes() {
+		return copy == null ? 0 : StateSize.estimate(copy, resultOI);
+	}
+}
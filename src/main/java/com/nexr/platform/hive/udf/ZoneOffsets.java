@@ -0,0 +1,273 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nexr.platform.hive.udf;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.TimeZone;
+
+import org.apache.hadoop.io.Text;
+
+/**
+ * ZoneOffsets
+ *
+ * UTC offsets of a time zone with its transitions between 1900 and 2100
+ * precomputed, so converting an instant to wall clock time is a binary search
+ * and an addition instead of a Calendar computation. Instants outside the
+ * table fall back to the TimeZone. Tables are built once per zone and cached
+ * per JVM for the most recently used {@link #CACHE_SIZE} zones.
+ * <p>
+ * The transitions come from java.time when the JVM has it, checked against the
+ * TimeZone. Otherwise the TimeZone is sampled once a day, which misses a pair
+ * of transitions less than a day apart.
+ * <p>
+ * Zones are given as TimeZone IDs ('Asia/Seoul', 'UTC') or as offsets
+ * ('+09:00', '-0530').
+ */
+final class ZoneOffsets {
+
+	private static final long TABLE_START = -2208988800L; // 1900-01-01 00:00:00 UTC
+	private static final long TABLE_END = 4102444800L; // 2100-01-01 00:00:00 UTC
+	private static final long SCAN_STEP = 86400;
+
+	static final int CACHE_SIZE = 256;
+
+	private static final BoundedCache<ZoneOffsets> CACHE = new BoundedCache<ZoneOffsets>(CACHE_SIZE);
+
+	/** Offsets of the JVM default time zone. */
+	static final ZoneOffsets DEFAULT = of(TimeZone.getDefault());
+
+	final TimeZone zone;
+	private final long[] transitions;
+	private final int[] offsets;
+
+	private ZoneOffsets(TimeZone zone) {
+		this.zone = zone;
+		Table table = exactTable();
+		if (table == null) {
+			table = scanTable();
+		}
+		this.transitions = Arrays.copyOf(table.times, table.count);
+		this.offsets = Arrays.copyOf(table.values, table.count + 1);
+	}
+
+	/** Transition times and the offsets from each of them on. */
+	private static final class Table {
+		long[] times = new long[16];
+		int[] values = new int[17];
+		int count;
+
+		Table(int offset) {
+			values[0] = offset;
+		}
+
+		void add(long time, int offset) {
+			if (count == times.length) {
+				times = Arrays.copyOf(times, count * 2);
+				values = Arrays.copyOf(values, count * 2 + 1);
+			}
+			times[count++] = time;
+			values[count] = offset;
+		}
+	}
+
+	private Table scanTable() {
+		long time = TABLE_START;
+		int offset = scan(time);
+		Table table = new Table(offset);
+		while (time < TABLE_END) {
+			long next = time + SCAN_STEP;
+			if (scan(next) == offset) {
+				time = next;
+				continue;
+			}
+			long low = time;
+			long high = next;
+			while (high - low > 1) {
+				long mid = low + (high - low) / 2;
+				if (scan(mid) == offset) {
+					low = mid;
+				} else {
+					high = mid;
+				}
+			}
+			// go on from the transition, another one may follow within the step
+			offset = scan(high);
+			table.add(high, offset);
+			time = high;
+		}
+		return table;
+	}
+
+	/**
+	 * Reads the transitions from the java.time rules of the zone, through
+	 * reflection as older JVMs do not have them.
+	 *
+	 * @return the table, or null without java.time or if the rules do not agree
+	 *         with the TimeZone, as for a custom zone.
+	 */
+	private Table exactTable() {
+		try {
+			Class<?> instantClass = Class.forName("java.time.Instant");
+			Method ofEpochSecond = instantClass.getMethod("ofEpochSecond", long.class);
+			Object rules = Class.forName("java.time.ZoneId").getMethod("getRules")
+					.invoke(TimeZone.class.getMethod("toZoneId").invoke(zone));
+			Method nextTransition = rules.getClass().getMethod("nextTransition", instantClass);
+			Class<?> transitionClass = Class.forName("java.time.zone.ZoneOffsetTransition");
+			Method toEpochSecond = transitionClass.getMethod("toEpochSecond");
+			Method offsetAfter = transitionClass.getMethod("getOffsetAfter");
+			Method totalSeconds = Class.forName("java.time.ZoneOffset").getMethod("getTotalSeconds");
+
+			int offset = scan(TABLE_START);
+			Table table = new Table(offset);
+			Object transition = nextTransition.invoke(rules, ofEpochSecond.invoke(null, TABLE_START));
+			while (transition != null) {
+				long time = (Long) toEpochSecond.invoke(transition);
+				if (time >= TABLE_END) {
+					break;
+				}
+				int next = (Integer) totalSeconds.invoke(offsetAfter.invoke(transition));
+				if (scan(time - 1) != offset || scan(time) != next) {
+					return null;
+				}
+				if (next != offset) {
+					table.add(time, next);
+					offset = next;
+				}
+				transition = nextTransition.invoke(rules, ofEpochSecond.invoke(null, time));
+			}
+			return scan(TABLE_END - 1) == offset ? table : null;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	private int scan(long epochSecond) {
+		return zone.getOffset(epochSecond * 1000) / 1000;
+	}
+
+	/**
+	 * Returns the offsets of the zone, building them on first use.
+	 *
+	 * @throws IllegalArgumentException if the zone is not known.
+	 */
+	static ZoneOffsets forId(String id) {
+		ZoneOffsets offsets = CACHE.get(id);
+		if (offsets == null) {
+			offsets = of(resolve(id.trim()));
+			CACHE.put(id, offsets);
+		}
+		return offsets;
+	}
+
+	private static ZoneOffsets of(TimeZone zone) {
+		ZoneOffsets offsets = CACHE.get(zone.getID());
+		if (offsets == null) {
+			offsets = new ZoneOffsets(zone);
+			CACHE.put(zone.getID(), offsets);
+		}
+		return offsets;
+	}
+
+	private static TimeZone resolve(String id) {
+		String name = id;
+		if (name.startsWith("+") || name.startsWith("-")) {
+			name = "GMT" + name;
+		}
+		TimeZone zone = TimeZone.getTimeZone(name);
+		if ("GMT".equals(zone.getID()) && !"GMT".equalsIgnoreCase(name)) {
+			throw new IllegalArgumentException("Unknown time zone: " + id);
+		}
+		return zone;
+	}
+
+	/** @return the offset from UTC in seconds at the instant. */
+	int offsetAt(long epochSecond) {
+		if (transitions.length == 0) {
+			return offsets[0];
+		}
+		if (epochSecond < TABLE_START || epochSecond >= TABLE_END) {
+			return scan(epochSecond);
+		}
+		int index = Arrays.binarySearch(transitions, epochSecond);
+		return offsets[index >= 0 ? index + 1 : -index - 1];
+	}
+
+	/** @return the wall clock time, in seconds since 1970-01-01 00:00:00, of the instant. */
+	long toLocal(long epochSecond) {
+		return epochSecond + offsetAt(epochSecond);
+	}
+
+	/**
+	 * @return the instant of the wall clock time. A time that falls in a daylight
+	 *         saving gap is moved forward and a time repeated when the clocks
+	 *         go back is the later instant, as for a lenient Calendar.
+	 */
+	long toInstant(long localSecond) {
+		int offset = offsetAt(localSecond - offsetAt(localSecond));
+		long instant = localSecond - offset;
+		int actual = offsetAt(instant);
+		if (actual != offset) {
+			long other = localSecond - actual;
+			if (offsetAt(other) != actual) {
+				// in a gap neither offset gives the wall clock time back; the
+				// smaller one, from before the transition, moves it forward
+				return localSecond - Math.min(offset, actual);
+			}
+			instant = other;
+			offset = actual;
+		}
+		int later = offsetAt(instant + SCAN_STEP);
+		if (later < offset && offsetAt(localSecond - later) == later) {
+			return localSecond - later;
+		}
+		return instant;
+	}
+
+	/** @return false if the wall clock time falls in a daylight saving gap. */
+	boolean exists(long localSecond) {
+		return toLocal(toInstant(localSecond)) == localSecond;
+	}
+
+	/**
+	 * Remembers the zone last seen by one UDF instance, so that a constant
+	 * argument is converted to a String and looked up only once.
+	 */
+	static final class LastResolved {
+		private final Text lastText = new Text();
+		private boolean resolved;
+		private ZoneOffsets offsets;
+
+		/**
+		 * @return the offsets, or null if the zone is not known.
+		 */
+		ZoneOffsets get(Text zone) {
+			if (!resolved || !zone.equals(lastText)) {
+				lastText.set(zone);
+				resolved = true;
+				try {
+					offsets = forId(zone.toString());
+				} catch (IllegalArgumentException e) {
+					offsets = null;
+				}
+			}
+			return offsets;
+		}
+	}
+}
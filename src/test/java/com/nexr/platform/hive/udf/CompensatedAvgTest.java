@@ -0,0 +1,68 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.math.BigDecimal;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Checks that <code>-Dnexr.avg.compensated=true</code> makes avg return the
+ * compensated sum divided by the count, as Oracle's AVG, instead of Welford's
+ * mean.
+ */
+public class CompensatedAvgTest {
+
+	private static final String QUERY = "SELECT t.empno, t.sal, nexr_avg(t.deptno, t.sal / 3) FROM ("
+			+ "  select a.empno, a.deptno, a.sal from emp a where a.deptno = 30 sort BY a.empno) t";
+
+	@After
+	public void clearProperty() {
+		System.clearProperty("nexr.avg.compensated");
+	}
+
+	@Test
+	public void compensated() throws Exception {
+		String welford = run();
+		System.setProperty("nexr.avg.compensated", "true");
+		String compensated = run();
+		assertFalse(welford.equals(compensated));
+
+		BigDecimal sum = BigDecimal.ZERO;
+		int count = 0;
+		for (String row : compensated.split("\n")) {
+			String[] columns = row.split("\t");
+			sum = sum.add(new BigDecimal(Integer.parseInt(columns[1]) / 3.0));
+			count++;
+			assertEquals(row, sum.doubleValue() / count, Double.parseDouble(columns[2]), 0);
+		}
+	}
+
+	private static String run() throws Exception {
+		PdkHarness harness = new PdkHarness(PdkHarnessTest.ROOT);
+		harness.execute(new File(PdkHarnessTest.ROOT, "test/setup.sql"));
+		return harness.query(QUERY);
+	}
+}
@@ -0,0 +1,478 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * FixtureGenerator
+ *
+ * Generates rows of the <code>test/</code> tables emp, lineitem and datatypes
+ * in the fixture file format, at any scale. A row depends only on the seed and
+ * its index, so the same options give the same rows in any run, and a large
+ * table can be generated in slices by separate processes. Every slice of
+ * lineitem is given the total rows of the table, so that the slices share
+ * the default number of partitions:
+ * <pre>
+ * java -cp target/test-classes com.nexr.platform.hive.udf.FixtureGenerator \
+ *     lineitem 1000000000 seed=7,skew=1.2,nulls=0.05,bad=0.01,from=0,total=2000000000,out=lineitem_0.txt
+ * </pre>
+ * Options, separated by commas:
+ * <ul>
+ * <li>seed: the random seed, 1 by default.</li>
+ * <li>from: the index of the first row, 0 by default.</li>
+ * <li>total: the rows of the whole table, for the default number of
+ * partitions; the rows generated by default. A lineitem slice given
+ * <code>from</code> needs <code>total</code> or <code>partitions</code>.</li>
+ * <li>skew: the exponent of the Zipf-like distribution of the partition key
+ * (emp.deptno, lineitem.l_orderkey, datatypes.col_int), 0 for uniform.</li>
+ * <li>partitions: the number of distinct partition keys; 3 for emp, a quarter
+ * of the total rows for lineitem and 100 for datatypes by default.</li>
+ * <li>nulls: the ratio of NULL (\N) values in every nullable column, 0 by
+ * default. The first column is never NULL.</li>
+ * <li>bad: the ratio of values that do not parse in every numeric and date
+ * column, 0 by default.</li>
+ * <li>formats: the date patterns, separated by '|'; each date picks one of
+ * them. By default the pattern of the fixture file.</li>
+ * <li>out: the output file, standard output by default.</li>
+ * </ul>
+ */
+final class FixtureGenerator {
+
+	static final String[] TABLES = { "emp", "lineitem", "datatypes" };
+
+	private static final long DAY = 24L * 60 * 60 * 1000;
+	private static final long STRIDE = 0xD1B54A32D192ED03L;
+
+	private static final String[] NAMES = { "SMITH", "ALLEN", "WARD", "JONES", "MARTIN", "BLAKE", "CLARK",
+			"SCOTT", "KING", "TURNER", "ADAMS", "JAMES", "FORD", "MILLER", "LEE", "KIM", "PARK", "CHOI" };
+	private static final String[] JOBS = { "CLERK", "SALESMAN", "MANAGER", "ANALYST", "PRESIDENT" };
+	private static final String[] WORDS = { "regular", "express", "final", "pending", "ironic", "bold",
+			"furiously", "slyly", "carefully", "quickly", "deposits", "accounts", "requests", "packages",
+			"foxes", "ideas", "theodolites", "pinto", "beans", "instructions" };
+	private static final String[] INSTRUCTIONS = { "DELIVER IN PERSON", "COLLECT COD", "NONE",
+			"TAKE BACK RETURN" };
+	private static final String[] MODES = { "REG AIR", "AIR", "RAIL", "SHIP", "TRUCK", "MAIL", "FOB" };
+	private static final String[] FLAGS = { "R", "A", "N" };
+	private static final String[] STATUSES = { "O", "F" };
+	private static final String[] BAD_NUMBERS = { "n/a", "12x", "-", "1.2.3", "", "99999999999999999999" };
+	private static final String[] BAD_DATES = { "2011-13-45", "31/02/2011", "yesterday", "", "0000-00-00",
+			"2011-05-11T" };
+
+	/** Generator options, see the class comment. */
+	static final class Options {
+		long seed = 1;
+		long from;
+		boolean slice;
+		long total;
+		double skew;
+		long partitions;
+		double nulls;
+		double bad;
+		String[] formats;
+		String out;
+
+		/** Parses <code>name=value,...</code>. */
+		static Options parse(String spec) {
+			Options options = new Options();
+			if (spec == null) {
+				return options;
+			}
+			for (String option : spec.split(",")) {
+				if (option.trim().length() == 0) {
+					continue;
+				}
+				int eq = option.indexOf('=');
+				if (eq < 0) {
+					throw new IllegalArgumentException("Invalid option: " + option);
+				}
+				String name = option.substring(0, eq).trim();
+				String value = option.substring(eq + 1).trim();
+				if (name.equals("seed")) {
+					options.seed = Long.parseLong(value);
+				} else if (name.equals("from")) {
+					options.from = Long.parseLong(value);
+					options.slice = true;
+				} else if (name.equals("total")) {
+					options.total = Long.parseLong(value);
+				} else if (name.equals("skew")) {
+					options.skew = Double.parseDouble(value);
+				} else if (name.equals("partitions")) {
+					options.partitions = Long.parseLong(value);
+				} else if (name.equals("nulls")) {
+					options.nulls = Double.parseDouble(value);
+				} else if (name.equals("bad")) {
+					options.bad = Double.parseDouble(value);
+				} else if (name.equals("formats")) {
+					options.formats = value.split("\\|");
+				} else if (name.equals("out")) {
+					options.out = value;
+				} else {
+					throw new IllegalArgumentException("Unknown option: " + name);
+				}
+			}
+			return options;
+		}
+	}
+
+	private final String table;
+	private final Options options;
+	private final long partitions;
+	private final String[] formats;
+	private final SimpleDateFormat[] dateFormats;
+	private final String[][] formatted;
+	private final int firstDay;
+	private long state;
+
+	/**
+	 * @param table emp, lineitem or datatypes.
+	 * @param rows the number of rows generated, for the default number of
+	 *        partitions when no total is given.
+	 * @throws IllegalArgumentException if a lineitem slice has neither a total
+	 *         nor partitions.
+	 */
+	FixtureGenerator(String table, long rows, Options options) {
+		this.table = table;
+		this.options = options;
+		if (table.equals("emp")) {
+			partitions = 3;
+			formats = new String[] { "yyyy-MM-dd HH:mm:ss.S" };
+			firstDay = day(1980, 1, 1);
+		} else if (table.equals("lineitem")) {
+			if (options.slice && options.total <= 0 && options.partitions <= 0) {
+				throw new IllegalArgumentException("A lineitem slice needs the total or partitions option");
+			}
+			partitions = Math.max(1, (options.total > 0 ? options.total : rows) / 4);
+			formats = new String[] { "yyyy-MM-dd" };
+			firstDay = day(1992, 1, 1);
+		} else if (table.equals("datatypes")) {
+			partitions = 100;
+			formats = null;
+			firstDay = 0;
+		} else {
+			throw new IllegalArgumentException("Unknown table: " + table);
+		}
+
+		String[] patterns = options.formats == null ? formats : options.formats;
+		dateFormats = new SimpleDateFormat[patterns == null ? 0 : patterns.length];
+		for (int i = 0; i < dateFormats.length; i++) {
+			dateFormats[i] = new SimpleDateFormat(patterns[i], Locale.US);
+			dateFormats[i].setTimeZone(TimeZone.getTimeZone("UTC"));
+		}
+		formatted = new String[dateFormats.length][];
+	}
+
+	/** Appends the row with the given index, without a line terminator. */
+	void row(long index, StringBuilder line) {
+		state = options.seed + (options.from + index) * STRIDE;
+		long id = options.from + index;
+		if (table.equals("emp")) {
+			emp(id, line);
+		} else if (table.equals("lineitem")) {
+			lineitem(line);
+		} else {
+			datatypes(id, line);
+		}
+	}
+
+	/** Writes the given number of rows, one per line. */
+	void write(long rows, Writer out) throws IOException {
+		StringBuilder line = new StringBuilder(256);
+		for (long i = 0; i < rows; i++) {
+			line.setLength(0);
+			row(i, line);
+			line.append('\n');
+			out.append(line);
+		}
+	}
+
+	/** <code>FixtureGenerator table rows [options]</code> */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2 || args.length > 3) {
+			System.err.println("Usage: FixtureGenerator emp|lineitem|datatypes rows [name=value,...]");
+			System.exit(1);
+		}
+		long rows = Long.parseLong(args[1]);
+		Options options = Options.parse(args.length == 3 ? args[2] : null);
+		OutputStream stream = options.out == null ? System.out : new FileOutputStream(options.out);
+		Writer out = new BufferedWriter(new OutputStreamWriter(stream, "UTF-8"), 1 << 16);
+		try {
+			new FixtureGenerator(args[0], rows, options).write(rows, out);
+		} finally {
+			out.close();
+		}
+	}
+
+	private void emp(long id, StringBuilder line) {
+		int empno = (int) (1 + id % Integer.MAX_VALUE);
+		line.append(empno).append('\t');
+		if (!isNull(line)) {
+			line.append(pick(NAMES));
+		}
+		line.append('\t');
+		if (!isNull(line)) {
+			line.append(JOBS[(int) partition(JOBS.length) - 1]);
+		}
+		line.append('\t');
+		if (!isNull(line) && !badNumber(line)) {
+			line.append(1 + nextInt(empno));
+		}
+		line.append('\t');
+		date(nextInt(11 * 365), line);
+		line.append('\t');
+		if (!isNull(line) && !badNumber(line)) {
+			line.append(500 + nextInt(4501));
+		}
+		line.append('\t');
+		if (!isNull(line) && !badNumber(line)) {
+			line.append(100 * nextInt(15));
+		}
+		line.append('\t');
+		if (!isNull(line) && !badNumber(line)) {
+			line.append(10 * partition(partitions()));
+		}
+	}
+
+	private void lineitem(StringBuilder line) {
+		line.append(partition(partitions())).append('|');
+		number(1 + nextInt(200000), line);
+		line.append('|');
+		number(1 + nextInt(10000), line);
+		line.append('|');
+		number(1 + nextInt(7), line);
+		line.append('|');
+		int quantity = 1 + nextInt(50);
+		number(quantity, line);
+		line.append('|');
+		if (!isNull(line) && !badNumber(line)) {
+			cents(quantity * (90000L + nextInt(1010000)) / 10, line);
+		}
+		line.append('|');
+		if (!isNull(line) && !badNumber(line)) {
+			cents(nextInt(11), line);
+		}
+		line.append('|');
+		if (!isNull(line) && !badNumber(line)) {
+			cents(nextInt(9), line);
+		}
+		line.append('|');
+		nullable(pick(FLAGS), line);
+		line.append('|');
+		nullable(pick(STATUSES), line);
+		line.append('|');
+		int ship = nextInt(2526);
+		date(ship, line);
+		line.append('|');
+		date(ship - 30 + nextInt(91), line);
+		line.append('|');
+		date(ship + 1 + nextInt(30), line);
+		line.append('|');
+		nullable(pick(INSTRUCTIONS), line);
+		line.append('|');
+		nullable(pick(MODES), line);
+		line.append('|');
+		if (!isNull(line)) {
+			words(2 + nextInt(5), ' ', line);
+		}
+		line.append('|');
+	}
+
+	private void datatypes(long id, StringBuilder line) {
+		line.append(id % 256 - 128).append('\t');
+		number(nextInt(65536) - 32768, line);
+		line.append('\t');
+		number(partition(partitions()), line);
+		line.append('\t');
+		number(nextLong() >> 16, line);
+		line.append('\t');
+		nullable(nextInt(2) == 0 ? "true" : "false", line);
+		line.append('\t');
+		if (!isNull(line) && !badNumber(line)) {
+			cents(nextInt(1000000), line);
+		}
+		line.append('\t');
+		if (!isNull(line) && !badNumber(line)) {
+			line.append(nextInt(100000000) / 10000.0);
+		}
+		line.append('\t');
+		if (!isNull(line)) {
+			words(1 + nextInt(3), ' ', line);
+		}
+		line.append('\t');
+		if (!isNull(line)) {
+			for (int i = 0, n = nextInt(6); i < n; i++) {
+				line.append(i == 0 ? "" : ",").append(10 * nextInt(100));
+			}
+		}
+		line.append('\t');
+		if (!isNull(line)) {
+			words(nextInt(6), ',', line);
+		}
+		line.append('\t');
+		if (!isNull(line)) {
+			for (int i = 0, n = nextInt(4); i < n; i++) {
+				line.append(i == 0 ? "" : ",").append(10 * (i + 1)).append(':').append("val").append(nextInt(100));
+			}
+		}
+		line.append('\t');
+		if (!isNull(line)) {
+			line.append('a').append(nextInt(100)).append(',').append(pick(NAMES).toLowerCase(Locale.US)).append(',')
+					.append(nextInt(100000));
+		}
+	}
+
+	private long partitions() {
+		return options.partitions > 0 ? options.partitions : partitions;
+	}
+
+	/**
+	 * @return a key in [1, n], approximately Zipf distributed with the skew as
+	 *         exponent: the inverse of the continuous power law, so that n can
+	 *         be as large as the table.
+	 */
+	private long partition(long n) {
+		double u = nextDouble();
+		double s = options.skew;
+		double x;
+		if (s <= 0) {
+			x = 1 + u * n;
+		} else if (Math.abs(s - 1) < 1e-9) {
+			x = Math.pow(n + 1, u);
+		} else {
+			x = Math.pow((Math.pow(n + 1, 1 - s) - 1) * u + 1, 1 / (1 - s));
+		}
+		return Math.max(1, Math.min(n, (long) x));
+	}
+
+	private void number(long value, StringBuilder line) {
+		if (!isNull(line) && !badNumber(line)) {
+			line.append(value);
+		}
+	}
+
+	private void nullable(String value, StringBuilder line) {
+		if (!isNull(line)) {
+			line.append(value);
+		}
+	}
+
+	private static void cents(long cents, StringBuilder line) {
+		line.append(cents / 100).append('.');
+		long fraction = cents % 100;
+		if (fraction < 10) {
+			line.append('0');
+		}
+		line.append(fraction);
+	}
+
+	private void words(int n, char separator, StringBuilder line) {
+		for (int i = 0; i < n; i++) {
+			if (i > 0) {
+				line.append(separator);
+			}
+			line.append(pick(WORDS));
+		}
+	}
+
+	/** Appends the date firstDay + offset in one of the formats, or a bad or NULL value. */
+	private void date(int offset, StringBuilder line) {
+		if (isNull(line)) {
+			return;
+		}
+		if (options.bad > 0 && nextDouble() < options.bad) {
+			line.append(pick(BAD_DATES));
+			return;
+		}
+		int format = dateFormats.length == 1 ? 0 : nextInt(dateFormats.length);
+		String[] cache = formatted[format];
+		if (cache == null || offset + 31 >= cache.length) {
+			String[] grown = new String[Math.max(offset + 32, cache == null ? 4096 : cache.length * 2)];
+			if (cache != null) {
+				System.arraycopy(cache, 0, grown, 0, cache.length);
+			}
+			cache = grown;
+			formatted[format] = cache;
+		}
+		// offsets start 31 days before the first day
+		int slot = offset + 31;
+		if (cache[slot] == null) {
+			cache[slot] = dateFormats[format].format(new Date((firstDay + offset) * DAY));
+		}
+		line.append(cache[slot]);
+	}
+
+	private static int day(int year, int month, int day) {
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		try {
+			return (int) (format.parse(year + "-" + month + "-" + day).getTime() / DAY);
+		} catch (ParseException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/** Appends \N at the NULL ratio. */
+	private boolean isNull(StringBuilder line) {
+		if (options.nulls > 0 && nextDouble() < options.nulls) {
+			line.append("\\N");
+			return true;
+		}
+		return false;
+	}
+
+	/** Appends a bad number instead of the value, at the bad value rate. */
+	private boolean badNumber(StringBuilder line) {
+		if (options.bad > 0 && nextDouble() < options.bad) {
+			line.append(pick(BAD_NUMBERS));
+			return true;
+		}
+		return false;
+	}
+
+	private String pick(String[] values) {
+		return values[nextInt(values.length)];
+	}
+
+	/** SplitMix64, seeded per row. */
+	private long nextLong() {
+		long z = state += 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	private double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	private int nextInt(int n) {
+		return (int) ((nextLong() >>> 1) % n);
+	}
+}
@@ -0,0 +1,57 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link FixtureGenerator} slices concatenate into the table
+ * generated at once.
+ */
+public class FixtureGeneratorTest {
+
+	private static final String OPTIONS = "seed=7,skew=1.2,nulls=0.05,bad=0.01";
+
+	@Test
+	public void slices() throws IOException {
+		for (String table : FixtureGenerator.TABLES) {
+			String whole = generate(table, 1000, OPTIONS);
+			String slices = generate(table, 400, OPTIONS + ",from=0,total=1000")
+					+ generate(table, 600, OPTIONS + ",from=400,total=1000");
+			assertEquals(table, whole, slices);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void lineitemSliceWithoutTotal() throws IOException {
+		generate("lineitem", 600, OPTIONS + ",from=400");
+	}
+
+	private static String generate(String table, long rows, String options) throws IOException {
+		StringWriter out = new StringWriter();
+		new FixtureGenerator(table, rows, FixtureGenerator.Options.parse(options)).write(rows, out);
+		return out.toString();
+	}
+}
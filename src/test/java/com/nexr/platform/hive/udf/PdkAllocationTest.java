@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Fails when a <code>@HivePdkUnitTests</code> query allocates more bytes per
+ * input row than its budget in <code>test/allocation-budget.properties</code>,
+ * so that per-row allocations, such as a Converter or a Text created in
+ * evaluate, do not slip back into the hot paths. It runs in its own surefire
+ * execution of the test phase, with <code>-XX:-DoEscapeAnalysis</code>: the
+ * JIT's escape analysis removes some short-lived objects in one JVM run and
+ * not in the next, and without it a query allocates the same bytes per row in
+ * every run.
+ * The bytes allocated by the test thread are counted by the JVM's
+ * ThreadMXBean, after a warm-up so that the counted rows run compiled code,
+ * and the least of three runs is taken. A case fails only when it is over its
+ * budget by more than <code>pdk.allocation.slack</code> bytes per row, 32 by
+ * default. The test is skipped on a JVM that does not count allocations. After
+ * an intended change, record the budgets again and check in the file:
+ * <pre>
+ * mvn test -Dpdk.allocation.record=true
+ * </pre>
+ * A recorded budget is the measured bytes per row plus a quarter and 32 bytes
+ * for the variation between JVM runs, rounded up to 8 bytes.
+ */
+@RunWith(Parameterized.class)
+public class PdkAllocationTest {
+
+	static final File BUDGETS = new File(PdkHarnessTest.ROOT, "test/allocation-budget.properties");
+
+	private static final int WARM_UP_ROWS = 100000;
+	private static final int ROWS = 50000;
+	private static final int RUNS = 3;
+
+	private static final long SLACK = Long.getLong("pdk.allocation.slack", 32);
+	private static final boolean RECORD = Boolean.getBoolean("pdk.allocation.record");
+	private static final Map<String, Long> recorded = new LinkedHashMap<String, Long>();
+	private static Properties budgets;
+
+	private final PdkHarness.Case test;
+
+	public PdkAllocationTest(PdkHarness.Case test) {
+		this.test = test;
+	}
+
+	@Parameters
+	public static Collection<Object[]> cases() {
+		return PdkHarnessTest.cases();
+	}
+
+	@BeforeClass
+	public static void loadBudgets() throws IOException {
+		budgets = new Properties();
+		if (BUDGETS.exists()) {
+			InputStream in = new FileInputStream(BUDGETS);
+			try {
+				budgets.load(in);
+			} finally {
+				in.close();
+			}
+		}
+	}
+
+	@AfterClass
+	public static void recordBudgets() throws IOException {
+		if (!RECORD || recorded.isEmpty()) {
+			return;
+		}
+		Writer out = new OutputStreamWriter(new FileOutputStream(BUDGETS), "ISO-8859-1");
+		try {
+			out.write("# Bytes allocated per input row by each @HivePdkUnitTests query, checked by\n");
+			out.write("# PdkAllocationTest. Record again with\n");
+			out.write("#   mvn test -Dpdk.allocation.record=true\n");
+			for (Map.Entry<String, Long> budget : recorded.entrySet()) {
+				out.write(budget.getKey() + "=" + budget.getValue() + "\n");
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	@Test
+	public void allocation() throws Exception {
+		Assume.assumeTrue(PdkHarness.isAllocationMeasured());
+		double bytesPerRow = measure();
+		if (RECORD) {
+			recorded.put(test.toString(), (long) Math.ceil((bytesPerRow * 1.25 + 32) / 8) * 8);
+			return;
+		}
+		String budget = budgets.getProperty(test.toString());
+		assertNotNull(test + " has no allocation budget in " + BUDGETS
+				+ ", record it with -Dpdk.allocation.record=true", budget);
+		assertTrue(String.format("%s allocates %.1f bytes/row, over its budget of %s by more than %d: %s", test,
+				bytesPerRow, budget, SLACK, test.query), bytesPerRow <= Long.parseLong(budget) + SLACK);
+	}
+
+	private double measure() throws Exception {
+		PdkHarness harness = new PdkHarness(PdkHarnessTest.ROOT);
+		harness.execute(new File(PdkHarnessTest.ROOT, "test/setup.sql"));
+		harness.execute(test.setup);
+		try {
+			harness.benchmark(test.query, WARM_UP_ROWS);
+			double least = Double.MAX_VALUE;
+			for (int i = 0; i < RUNS; i++) {
+				least = Math.min(least, harness.benchmark(test.query, ROWS).bytesPerRow());
+			}
+			return least;
+		} finally {
+			harness.execute(test.cleanup);
+		}
+	}
+}
@@ -0,0 +1,77 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import java.io.File;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Throughput of every <code>@HivePdkUnitTests</code> query over its fixture
+ * rows repeated to <code>pdk.benchmark.rows</code> input rows. Skipped unless
+ * that property is set, which the <code>benchmark</code> profile does:
+ * <pre>
+ * mvn test -Pbenchmark [-Dpdk.benchmark.rows=1000000] [-Dpdk.benchmark.filter=ToChar]
+ *     [-Dpdk.benchmark.generate=seed=7,skew=1.2,nulls=0.05,bad=0.01]
+ * </pre>
+ * With <code>pdk.benchmark.generate</code>, the emp and datatypes tables
+ * hold that many {@link FixtureGenerator} rows with the given options instead
+ * of the fixture rows. Each query is run once over a tenth of the rows to warm
+ * up before it is measured.
+ */
+public class PdkBenchmark {
+
+	@Test
+	public void benchmark() throws Exception {
+		String rows = System.getProperty("pdk.benchmark.rows");
+		Assume.assumeTrue(rows != null && rows.length() > 0);
+		long count = Long.parseLong(rows);
+		String filter = System.getProperty("pdk.benchmark.filter", "");
+		String generate = System.getProperty("pdk.benchmark.generate", "");
+
+		System.out.println(String.format("%-32s %12s %12s %14s %10s", "case", "input rows", "output rows", "rows/s",
+				"bytes/row"));
+		for (PdkHarness.Case test : PdkHarness.cases()) {
+			if (!test.toString().contains(filter)) {
+				continue;
+			}
+			PdkHarness harness = new PdkHarness(PdkHarnessTest.ROOT);
+			harness.execute(new File(PdkHarnessTest.ROOT, "test/setup.sql"));
+			if (generate.length() > 0) {
+				FixtureGenerator.Options options = FixtureGenerator.Options.parse(generate);
+				for (String table : FixtureGenerator.TABLES) {
+					if (harness.hasTable(table)) {
+						harness.generate(table, count, options);
+					}
+				}
+			}
+			harness.execute(test.setup);
+			try {
+				harness.benchmark(test.query, count / 10);
+				PdkHarness.Throughput throughput = harness.benchmark(test.query, count);
+				System.out.println(String.format("%-32s %12d %12d %14d %10.1f", test, throughput.inputRows,
+						throughput.outputRows, throughput.rowsPerSecond(), throughput.bytesPerRow()));
+			} finally {
+				harness.execute(test.cleanup);
+			}
+		}
+	}
+}
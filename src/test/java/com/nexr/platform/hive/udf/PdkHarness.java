@@ -0,0 +1,1473 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.ExprNodeEvaluator;
+import org.apache.hadoop.hive.ql.exec.ExprNodeEvaluatorFactory;
+import org.apache.hadoop.hive.ql.exec.FunctionInfo;
+import org.apache.hadoop.hive.ql.exec.FunctionRegistry;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.parse.BaseSemanticAnalyzer;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeNullDesc;
+import org.apache.hadoop.hive.ql.udf.generic.Collector;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.AggregationBuffer;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDTF;
+import org.apache.hadoop.hive.serde.Constants;
+import org.apache.hadoop.hive.serde2.SerDeException;
+import org.apache.hadoop.hive.serde2.SerDeUtils;
+import org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils.ObjectInspectorCopyOption;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.StructField;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.BooleanObjectInspector;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
+import org.apache.hadoop.io.Text;
+import org.apache.hive.pdk.HivePdkUnitTest;
+import org.apache.hive.pdk.HivePdkUnitTests;
+
+/**
+ * PdkHarness
+ *
+ * Runs the HiveQL of the <code>@HivePdkUnitTests</code> cases in process,
+ * without a Hive installation. Tables are read from the <code>test/*.txt</code>
+ * fixtures through LazySimpleSerDe, and expressions are compiled to Hive's own
+ * ExprNodeDesc trees and evaluated by its ExprNodeEvaluators. Every function,
+ * Hive's built-ins and ours registered as <code>nexr_&lt;name&gt;</code> as in
+ * the pdk build, is initialized and called with the ObjectInspectors of a Hive
+ * task.
+ * <p>
+ * The HiveQL understood is what the cases use:
+ * <pre>
+ * CREATE TABLE t (col type, ...) [ROW FORMAT DELIMITED ... TERMINATED BY 'c'] [STORED AS TEXTFILE]
+ * LOAD DATA LOCAL INPATH 'file' [OVERWRITE] INTO TABLE t
+ * INSERT OVERWRITE TABLE t query
+ * DROP TABLE [IF EXISTS] t
+ * SELECT expr [[AS] alias], ... | udtf(expr, ...) AS (col, ...) FROM t [alias] | (query) alias
+ *   [[INNER] JOIN t [alias] | (query) alias ON expr]
+ *   [LATERAL VIEW udtf(expr, ...) alias AS col, ...] [WHERE expr] [GROUP BY expr, ...]
+ *   [DISTRIBUTE BY expr, ...] [SORT BY | ORDER BY expr, ...] [LIMIT n]
+ * </pre>
+ * Expressions are function calls, CAST, arithmetic, comparisons, AND, OR, NOT,
+ * IS [NOT] NULL, literals and column references. All rows go through one
+ * reducer, so SORT BY orders the whole result and DISTRIBUTE BY is ignored.
+ * <p>
+ * Table aliases are dropped, so the columns of the two sides of a join must
+ * have different names. A JOIN pairs every row of the left side with every row
+ * of the right side and keeps those the ON condition is true for; the joined
+ * rows keep no order. A query with GROUP BY or an aggregate function, such as
+ * COUNT(*), evaluates the aggregates of each group and the other select
+ * expressions on the first row of the group; its SORT BY refers to the select
+ * aliases.
+ */
+final class PdkHarness {
+
+	/** Prefix of the registered function names, as in the pdk build. */
+	static final String PREFIX = "nexr_";
+
+	private static final String ROOT_VARIABLE = "${env:HIVE_PLUGIN_ROOT_DIR}";
+	private static final String QUOTED = "('(?:\\\\.|[^'])*'|\"(?:\\\\.|[^\"])*\")";
+	private static final Pattern CREATE = Pattern.compile("create\\s+table\\s+(\\w+)\\s*\\((.*?)\\)\\s*"
+			+ "((?:row\\s+format|stored\\s+as).*)?", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final Pattern LOAD = Pattern.compile("load\\s+data\\s+local\\s+inpath\\s+" + QUOTED
+			+ "\\s+(overwrite\\s+)?into\\s+table\\s+(\\w+)", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final Pattern INSERT = Pattern.compile("insert\\s+overwrite\\s+table\\s+(\\w+)\\s+(select\\s.*)",
+			Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final Pattern DROP = Pattern.compile("drop\\s+table\\s+(if\\s+exists\\s+)?(\\w+)",
+			Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final Pattern FIELDS = delimiter("fields");
+	private static final Pattern COLLECTION = delimiter("collection\\s+items");
+	private static final Pattern MAP_KEYS = delimiter("map\\s+keys");
+
+	private static List<Class<?>> functions;
+
+	private final File root;
+	private final Map<String, Table> tables = new HashMap<String, Table>();
+
+	/**
+	 * @param root the directory of <code>test/setup.sql</code>, substituted for
+	 *        ${env:HIVE_PLUGIN_ROOT_DIR}.
+	 */
+	PdkHarness(File root) {
+		this.root = root;
+		registerFunctions();
+	}
+
+	private static Pattern delimiter(String name) {
+		return Pattern.compile(name + "\\s+terminated\\s+by\\s+" + QUOTED, Pattern.CASE_INSENSITIVE);
+	}
+
+	/**
+	 * Registers every function of the package, once per JVM.
+	 *
+	 * @return the function classes, ordered by name.
+	 */
+	static synchronized List<Class<?>> registerFunctions() {
+		if (functions != null) {
+			return functions;
+		}
+		File dir;
+		try {
+			dir = new File(UDFMetrics.class.getResource(UDFMetrics.class.getSimpleName() + ".class").toURI())
+					.getParentFile();
+		} catch (URISyntaxException e) {
+			throw new IllegalStateException(e);
+		}
+		String[] names = dir.list();
+		Arrays.sort(names);
+		List<Class<?>> classes = new ArrayList<Class<?>>();
+		for (String name : names) {
+			if (!name.endsWith(".class") || name.indexOf('$') >= 0) {
+				continue;
+			}
+			Class<?> cls;
+			try {
+				cls = Class.forName(UDFMetrics.class.getPackage().getName() + "."
+						+ name.substring(0, name.length() - ".class".length()));
+			} catch (ClassNotFoundException e) {
+				throw new IllegalStateException(e);
+			}
+			Description description = cls.getAnnotation(Description.class);
+			if (description != null && FunctionRegistry.registerTemporaryFunction(PREFIX + description.name(), cls)) {
+				classes.add(cls);
+			}
+		}
+		functions = Collections.unmodifiableList(classes);
+		return functions;
+	}
+
+	/** One <code>@HivePdkUnitTest</code> case with the setup of its class. */
+	static final class Case {
+		final Class<?> function;
+		final int index;
+		final String setup;
+		final String cleanup;
+		final String query;
+		final String result;
+
+		Case(Class<?> function, int index, HivePdkUnitTests tests, HivePdkUnitTest test) {
+			this.function = function;
+			this.index = index;
+			this.setup = tests.setup();
+			this.cleanup = tests.cleanup();
+			this.query = test.query();
+			this.result = test.result();
+		}
+
+		@Override
+		public String toString() {
+			return function.getSimpleName() + "[" + index + "]";
+		}
+	}
+
+	/** @return the cases of every function class, in class order. */
+	static List<Case> cases() {
+		List<Case> cases = new ArrayList<Case>();
+		for (Class<?> function : registerFunctions()) {
+			HivePdkUnitTests tests = function.getAnnotation(HivePdkUnitTests.class);
+			if (tests == null) {
+				continue;
+			}
+			HivePdkUnitTest[] tested = tests.cases();
+			for (int i = 0; i < tested.length; i++) {
+				cases.add(new Case(function, i, tests, tested[i]));
+			}
+		}
+		return cases;
+	}
+
+	/** Runs the setup, the query and the cleanup of a case. */
+	String run(Case test) throws Exception {
+		execute(test.setup);
+		try {
+			return query(test.query);
+		} finally {
+			execute(test.cleanup);
+		}
+	}
+
+	/** Runs the statements of a script file. */
+	void execute(File script) throws Exception {
+		StringBuilder text = new StringBuilder();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(script), "UTF-8"));
+		try {
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				text.append(line).append('\n');
+			}
+		} finally {
+			reader.close();
+		}
+		execute(text.toString());
+	}
+
+	/** Runs the statements of a script, separated by ';'. */
+	void execute(String script) throws Exception {
+		for (String statement : split(script)) {
+			execute(statement, null);
+		}
+	}
+
+	/** @return the rows of a query as the Hive CLI prints them, one line per row. */
+	String query(String sql) throws Exception {
+		List<String> statements = split(sql);
+		if (statements.size() != 1) {
+			throw new IllegalArgumentException("One query expected: " + sql);
+		}
+		StringBuilder result = new StringBuilder();
+		execute(statements.get(0), result);
+		return result.toString();
+	}
+
+	/**
+	 * Runs a query over its input repeated until it has at least the given
+	 * number of rows, without keeping the result. Planning, including the run
+	 * of a subquery, is not measured.
+	 */
+	Throughput benchmark(String sql, long rows) throws Exception {
+		List<String> statements = split(sql);
+		if (statements.size() != 1) {
+			throw new IllegalArgumentException("One query expected: " + sql);
+		}
+		Plan plan = plan(new Parser(statements.get(0)).query());
+		final long[] output = new long[1];
+		RowHandler counter = new RowHandler() {
+			public boolean row(Object row) {
+				output[0]++;
+				return true;
+			}
+		};
+		long size = plan.input.size();
+		int repeat = (int) Math.max(1, (rows + size - 1) / Math.max(1, size));
+		long allocated = allocatedBytes();
+		long start = System.nanoTime();
+		plan.run(repeat, counter);
+		long nanos = System.nanoTime() - start;
+		allocated = allocated < 0 ? -1 : allocatedBytes() - allocated;
+		return new Throughput(size * repeat, output[0], nanos, allocated);
+	}
+
+	/** @return true if the JVM counts the bytes allocated by a thread. */
+	static boolean isAllocationMeasured() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		return threads instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+				&& ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled();
+	}
+
+	/** @return the bytes allocated by this thread so far, or -1 if not measured. */
+	private static long allocatedBytes() {
+		if (!isAllocationMeasured()) {
+			return -1;
+		}
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/** Rows read and written by a benchmark run, its time and allocation. */
+	static final class Throughput {
+		final long inputRows;
+		final long outputRows;
+		final long nanos;
+		final long allocatedBytes;
+
+		Throughput(long inputRows, long outputRows, long nanos, long allocatedBytes) {
+			this.inputRows = inputRows;
+			this.outputRows = outputRows;
+			this.nanos = nanos;
+			this.allocatedBytes = allocatedBytes;
+		}
+
+		long rowsPerSecond() {
+			return nanos == 0 ? 0 : inputRows * 1000000000L / nanos;
+		}
+
+		/** @return the bytes allocated per input row, or -1 if not measured. */
+		double bytesPerRow() {
+			return allocatedBytes < 0 || inputRows == 0 ? -1 : (double) allocatedBytes / inputRows;
+		}
+
+		@Override
+		public String toString() {
+			return inputRows + " rows in " + nanos / 1000000 + " ms, " + rowsPerSecond() + " rows/s";
+		}
+	}
+
+	private void execute(String statement, StringBuilder result) throws Exception {
+		String keyword = statement.split("\\s+", 2)[0].toLowerCase(Locale.ENGLISH);
+		Matcher m;
+		if (keyword.equals("select")) {
+			if (result == null) {
+				throw new IllegalArgumentException("A query is not expected here: " + statement);
+			}
+			print(plan(new Parser(statement).query()), result);
+		} else if ((m = CREATE.matcher(statement)).matches()) {
+			create(m.group(1), m.group(2), m.group(3));
+		} else if ((m = LOAD.matcher(statement)).matches()) {
+			String path = BaseSemanticAnalyzer.unescapeSQLString(m.group(1)).replace(ROOT_VARIABLE, root.getPath());
+			table(m.group(3)).load(new File(path), m.group(2) != null);
+		} else if ((m = INSERT.matcher(statement)).matches()) {
+			Table table = table(m.group(1));
+			table.insert(plan(new Parser(m.group(2)).query()));
+		} else if ((m = DROP.matcher(statement)).matches()) {
+			if (tables.remove(m.group(2).toLowerCase(Locale.ENGLISH)) == null && m.group(1) == null) {
+				throw new IllegalArgumentException("Table not found: " + m.group(2));
+			}
+		} else {
+			throw new UnsupportedOperationException("Unsupported statement: " + statement);
+		}
+	}
+
+	private void create(String name, String columns, String format) throws SerDeException {
+		List<String> names = new ArrayList<String>();
+		List<String> types = new ArrayList<String>();
+		int depth = 0;
+		int start = 0;
+		for (int i = 0; i <= columns.length(); i++) {
+			char c = i == columns.length() ? ',' : columns.charAt(i);
+			if (c == '<') {
+				depth++;
+			} else if (c == '>') {
+				depth--;
+			} else if (c == ',' && depth == 0) {
+				String[] column = columns.substring(start, i).trim().split("\\s+", 2);
+				names.add(column[0].toLowerCase(Locale.ENGLISH));
+				types.add(column[1].replaceAll("\\s+", "").toLowerCase(Locale.ENGLISH));
+				start = i + 1;
+			}
+		}
+
+		Properties properties = new Properties();
+		properties.setProperty(Constants.LIST_COLUMNS, join(names, ","));
+		properties.setProperty(Constants.LIST_COLUMN_TYPES, join(types, ":"));
+		if (format != null) {
+			setDelimiter(properties, Constants.FIELD_DELIM, FIELDS.matcher(format));
+			setDelimiter(properties, Constants.COLLECTION_DELIM, COLLECTION.matcher(format));
+			setDelimiter(properties, Constants.MAPKEY_DELIM, MAP_KEYS.matcher(format));
+		}
+		if (properties.containsKey(Constants.FIELD_DELIM)) {
+			properties.setProperty(Constants.SERIALIZATION_FORMAT, properties.getProperty(Constants.FIELD_DELIM));
+		}
+		tables.put(name.toLowerCase(Locale.ENGLISH), new Table(properties));
+	}
+
+	private static void setDelimiter(Properties properties, String key, Matcher m) {
+		if (m.find()) {
+			properties.setProperty(key, BaseSemanticAnalyzer.unescapeSQLString(m.group(1)));
+		}
+	}
+
+	/** @return true if the table exists. */
+	boolean hasTable(String name) {
+		return tables.containsKey(name.toLowerCase(Locale.ENGLISH));
+	}
+
+	/**
+	 * Replaces the rows of a table with rows of the {@link FixtureGenerator}
+	 * table of the same name.
+	 */
+	void generate(String name, long rows, FixtureGenerator.Options options) {
+		Table table = table(name);
+		FixtureGenerator generator = new FixtureGenerator(name.toLowerCase(Locale.ENGLISH), rows, options);
+		table.clear();
+		StringBuilder line = new StringBuilder(256);
+		Text text = new Text();
+		for (long i = 0; i < rows; i++) {
+			line.setLength(0);
+			generator.row(i, line);
+			text.set(line.toString());
+			table.append(text);
+		}
+	}
+
+	private Table table(String name) {
+		Table table = tables.get(name.toLowerCase(Locale.ENGLISH));
+		if (table == null) {
+			throw new IllegalArgumentException("Table not found: " + name);
+		}
+		return table;
+	}
+
+	private static void print(Plan plan, final StringBuilder result) throws Exception {
+		final List<? extends StructField> fields = plan.output.getAllStructFieldRefs();
+		plan.run(1, new RowHandler() {
+			public boolean row(Object row) {
+				if (result.length() > 0) {
+					result.append('\n');
+				}
+				Object[] values = (Object[]) row;
+				for (int i = 0; i < values.length; i++) {
+					if (i > 0) {
+						result.append('\t');
+					}
+					result.append(format(values[i], fields.get(i).getFieldObjectInspector()));
+				}
+				return true;
+			}
+		});
+	}
+
+	/** Formats a value as the Hive CLI prints it. */
+	static String format(Object value, ObjectInspector inspector) {
+		if (value == null) {
+			return "NULL";
+		}
+		if (inspector.getCategory() == ObjectInspector.Category.PRIMITIVE) {
+			Object writable = ((PrimitiveObjectInspector) inspector).getPrimitiveWritableObject(value);
+			return writable == null ? "NULL" : writable.toString();
+		}
+		return SerDeUtils.getJSONString(value, inspector);
+	}
+
+	static List<String> split(String script) {
+		List<String> statements = new ArrayList<String>();
+		StringBuilder statement = new StringBuilder();
+		char quote = 0;
+		for (int i = 0; i < script.length(); i++) {
+			char c = script.charAt(i);
+			if (quote != 0) {
+				if (c == '\\' && i + 1 < script.length()) {
+					statement.append(c);
+					c = script.charAt(++i);
+				} else if (c == quote) {
+					quote = 0;
+				}
+			} else if (c == '\'' || c == '"') {
+				quote = c;
+			} else if (c == ';') {
+				addStatement(statements, statement);
+				continue;
+			}
+			statement.append(c);
+		}
+		addStatement(statements, statement);
+		return statements;
+	}
+
+	private static void addStatement(List<String> statements, StringBuilder statement) {
+		String trimmed = statement.toString().trim();
+		if (trimmed.length() > 0) {
+			statements.add(trimmed);
+		}
+		statement.setLength(0);
+	}
+
+	private static String join(List<String> values, String separator) {
+		StringBuilder joined = new StringBuilder();
+		for (String value : values) {
+			if (joined.length() > 0) {
+				joined.append(separator);
+			}
+			joined.append(value);
+		}
+		return joined.toString();
+	}
+
+	/** Receives rows; returns false to stop the scan. */
+	private interface RowHandler {
+		boolean row(Object row) throws HiveException;
+	}
+
+	/** Rows of a table or of a materialized query. */
+	private abstract static class Rows {
+		abstract StructObjectInspector inspector() throws SerDeException;
+
+		abstract long size();
+
+		/** Passes every row, the whole input repeat times, until the handler stops. */
+		abstract void scan(int repeat, RowHandler handler) throws Exception;
+	}
+
+	/**
+	 * A text table, kept as one buffer of lines and deserialized row by row
+	 * from a reused Text, as a Hive task reads a file.
+	 */
+	private static final class Table extends Rows {
+		private final LazySimpleSerDe serde;
+		private byte[] data = new byte[4096];
+		private int[] ends = new int[64];
+		private int rows;
+
+		Table(Properties properties) throws SerDeException {
+			serde = new LazySimpleSerDe();
+			serde.initialize(null, properties);
+		}
+
+		@Override
+		StructObjectInspector inspector() throws SerDeException {
+			return (StructObjectInspector) serde.getObjectInspector();
+		}
+
+		@Override
+		long size() {
+			return rows;
+		}
+
+		void clear() {
+			rows = 0;
+		}
+
+		void append(Text line) {
+			int start = rows == 0 ? 0 : ends[rows - 1];
+			int end = start + line.getLength();
+			if (end > data.length) {
+				data = Arrays.copyOf(data, Math.max(end, data.length * 2));
+			}
+			if (rows == ends.length) {
+				ends = Arrays.copyOf(ends, rows * 2);
+			}
+			System.arraycopy(line.getBytes(), 0, data, start, line.getLength());
+			ends[rows++] = end;
+		}
+
+		void load(File file, boolean overwrite) throws IOException {
+			if (overwrite) {
+				clear();
+			}
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			try {
+				Text text = new Text();
+				for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+					text.set(line);
+					append(text);
+				}
+			} finally {
+				reader.close();
+			}
+		}
+
+		void insert(Plan plan) throws Exception {
+			final List<Text> inserted = new ArrayList<Text>();
+			final ObjectInspector output = plan.output;
+			plan.run(1, new RowHandler() {
+				public boolean row(Object row) throws HiveException {
+					try {
+						inserted.add(new Text((Text) serde.serialize(row, output)));
+					} catch (SerDeException e) {
+						throw new HiveException(e);
+					}
+					return true;
+				}
+			});
+			clear();
+			for (Text line : inserted) {
+				append(line);
+			}
+		}
+
+		@Override
+		void scan(int repeat, RowHandler handler) throws Exception {
+			Text line = new Text();
+			for (int r = 0; r < repeat; r++) {
+				for (int i = 0; i < rows; i++) {
+					int start = i == 0 ? 0 : ends[i - 1];
+					line.set(data, start, ends[i] - start);
+					if (!handler.row(serde.deserialize(line))) {
+						return;
+					}
+				}
+			}
+		}
+	}
+
+	/** Rows of a subquery, copied to standard objects. */
+	private static final class Materialized extends Rows {
+		private final StructObjectInspector inspector;
+		private final List<Object> rows;
+
+		Materialized(StructObjectInspector inspector, List<Object> rows) {
+			this.inspector = inspector;
+			this.rows = rows;
+		}
+
+		@Override
+		StructObjectInspector inspector() {
+			return inspector;
+		}
+
+		@Override
+		long size() {
+			return rows.size();
+		}
+
+		@Override
+		void scan(int repeat, RowHandler handler) throws Exception {
+			for (int r = 0; r < repeat; r++) {
+				for (Object row : rows) {
+					if (!handler.row(row)) {
+						return;
+					}
+				}
+			}
+		}
+	}
+
+	/** Parsed, not yet compiled expression. */
+	private static final class Node {
+		final String function;
+		final String column;
+		final ExprNodeDesc constant;
+		final List<Node> children;
+
+		private Node(String function, String column, ExprNodeDesc constant, List<Node> children) {
+			this.function = function;
+			this.column = column;
+			this.constant = constant;
+			this.children = children;
+		}
+
+		static Node call(String function, Node... children) {
+			return new Node(function.toLowerCase(Locale.ENGLISH), null, null, new ArrayList<Node>(Arrays.asList(children)));
+		}
+
+		static Node call(String function, List<Node> children) {
+			return new Node(function.toLowerCase(Locale.ENGLISH), null, null, children);
+		}
+
+		static Node column(String name) {
+			return new Node(null, name.toLowerCase(Locale.ENGLISH), null, null);
+		}
+
+		static Node constant(ExprNodeDesc constant) {
+			return new Node(null, null, constant, null);
+		}
+
+		/** @return the output column name Hive gives an unaliased expression, or null. */
+		String name() {
+			return column;
+		}
+
+		boolean isAggregate() {
+			if (function == null) {
+				return false;
+			}
+			FunctionInfo info = FunctionRegistry.getFunctionInfo(function);
+			return info != null && info.isGenericUDAF();
+		}
+
+		ExprNodeDesc compile(Map<String, TypeInfo> scope) throws HiveException {
+			if (constant != null) {
+				return constant;
+			}
+			if (column != null) {
+				TypeInfo type = scope.get(column);
+				if (type == null) {
+					throw new IllegalArgumentException("Invalid column reference " + column + " in " + scope.keySet());
+				}
+				return new ExprNodeColumnDesc(type, column, null, false);
+			}
+			FunctionInfo info = FunctionRegistry.getFunctionInfo(function);
+			if (info == null || !info.isGenericUDF()) {
+				throw new IllegalArgumentException("Invalid function " + function);
+			}
+			List<ExprNodeDesc> arguments = new ArrayList<ExprNodeDesc>(children.size());
+			for (Node child : children) {
+				arguments.add(child.compile(scope));
+			}
+			return ExprNodeGenericFuncDesc.newInstance(info.getGenericUDF(), arguments);
+		}
+	}
+
+	/** Parsed query. */
+	private static final class Query {
+		final List<Node> select = new ArrayList<Node>();
+		final List<String> names = new ArrayList<String>();
+		String table;
+		Query subquery;
+		Query join;
+		Node joinOn;
+		String udtf;
+		List<Node> udtfArguments;
+		final List<String> udtfColumns = new ArrayList<String>();
+		/** The table function is the select list, without the input columns. */
+		boolean udtfSelect;
+		Node where;
+		final List<Node> groupBy = new ArrayList<Node>();
+		final List<Node> sortBy = new ArrayList<Node>();
+		final List<Boolean> descending = new ArrayList<Boolean>();
+		long limit = -1;
+	}
+
+	private Plan plan(Query query) throws Exception {
+		Rows input = source(query);
+		if (query.join != null) {
+			input = join(input, source(query.join), query.joinOn);
+		}
+		boolean aggregate = !query.groupBy.isEmpty();
+		for (Node node : query.select) {
+			aggregate |= node.isAggregate();
+		}
+		if (!aggregate) {
+			return new Plan(query, input);
+		}
+		Query grouped = new Query();
+		for (String name : query.names) {
+			grouped.select.add(Node.column(name));
+			grouped.names.add(name);
+		}
+		grouped.sortBy.addAll(query.sortBy);
+		grouped.descending.addAll(query.descending);
+		grouped.limit = query.limit;
+		return new Plan(grouped, aggregate(query, input));
+	}
+
+	private Rows source(Query query) throws Exception {
+		if (query.subquery != null) {
+			return plan(query.subquery).materialize();
+		}
+		return table(query.table);
+	}
+
+	/** Joins the rows of the two inputs for which the condition is true. */
+	private static Rows join(Rows left, Rows right, Node on) throws Exception {
+		final StructObjectInspector leftInspector = left.inspector();
+		final StructObjectInspector rightInspector = right.inspector();
+		List<String> names = new ArrayList<String>();
+		List<ObjectInspector> inspectors = new ArrayList<ObjectInspector>();
+		for (StructObjectInspector side : Arrays.asList(leftInspector, rightInspector)) {
+			for (StructField field : side.getAllStructFieldRefs()) {
+				String name = field.getFieldName().toLowerCase(Locale.ENGLISH);
+				if (names.contains(name)) {
+					throw new IllegalArgumentException("Column " + name
+							+ " is on both sides of the join, rename it in a subquery");
+				}
+				names.add(name);
+				inspectors.add(ObjectInspectorUtils.getStandardObjectInspector(field.getFieldObjectInspector(),
+						ObjectInspectorCopyOption.WRITABLE));
+			}
+		}
+		StructObjectInspector joined = ObjectInspectorFactory.getStandardStructObjectInspector(names, inspectors);
+		final ExprNodeEvaluator condition = Plan.compile(Collections.singletonList(on), joined)[0];
+		final BooleanObjectInspector conditionInspector = (BooleanObjectInspector) condition.initialize(joined);
+
+		final List<List<Object>> rightRows = new ArrayList<List<Object>>();
+		right.scan(1, new RowHandler() {
+			public boolean row(Object row) {
+				rightRows.add(standardFields(row, rightInspector));
+				return true;
+			}
+		});
+		final List<Object> rows = new ArrayList<Object>();
+		left.scan(1, new RowHandler() {
+			public boolean row(Object row) throws HiveException {
+				List<Object> leftFields = standardFields(row, leftInspector);
+				for (List<Object> rightFields : rightRows) {
+					List<Object> pair = new ArrayList<Object>(leftFields);
+					pair.addAll(rightFields);
+					Object value = condition.evaluate(pair);
+					if (value != null && conditionInspector.get(value)) {
+						rows.add(pair);
+					}
+				}
+				return true;
+			}
+		});
+		return new Materialized(joined, rows);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Object> standardFields(Object row, StructObjectInspector inspector) {
+		return (List<Object>) ObjectInspectorUtils.copyToStandardObject(row, inspector,
+				ObjectInspectorCopyOption.WRITABLE);
+	}
+
+	/**
+	 * Groups the rows that pass the WHERE condition by the GROUP BY expressions,
+	 * and returns a row of the select expressions for each group, in the order of
+	 * the first row of the groups.
+	 */
+	private static Rows aggregate(Query query, Rows input) throws Exception {
+		final StructObjectInspector inspector = input.inspector();
+		final ExprNodeEvaluator where = query.where == null ? null
+				: Plan.compile(Collections.singletonList(query.where), inspector)[0];
+		final BooleanObjectInspector whereInspector = where == null ? null
+				: (BooleanObjectInspector) where.initialize(inspector);
+		final ExprNodeEvaluator[] keys = Plan.compile(query.groupBy, inspector);
+		final ObjectInspector[] keyInspectors = Plan.initialize(keys, inspector);
+
+		final int width = query.select.size();
+		final GenericUDAFEvaluator[] aggregates = new GenericUDAFEvaluator[width];
+		final ExprNodeEvaluator[][] arguments = new ExprNodeEvaluator[width][];
+		final ExprNodeEvaluator[] values = new ExprNodeEvaluator[width];
+		final ObjectInspector[] inspectors = new ObjectInspector[width];
+		List<ObjectInspector> outputs = new ArrayList<ObjectInspector>();
+		for (int i = 0; i < width; i++) {
+			Node node = query.select.get(i);
+			if (node.isAggregate()) {
+				arguments[i] = Plan.compile(node.children, inspector);
+				ObjectInspector[] argumentInspectors = Plan.initialize(arguments[i], inspector);
+				aggregates[i] = FunctionRegistry.getGenericUDAFEvaluator(node.function,
+						Arrays.asList(argumentInspectors), false, node.children.isEmpty());
+				inspectors[i] = aggregates[i].init(GenericUDAFEvaluator.Mode.COMPLETE, argumentInspectors);
+			} else {
+				values[i] = Plan.compile(Collections.singletonList(node), inspector)[0];
+				inspectors[i] = values[i].initialize(inspector);
+			}
+			outputs.add(ObjectInspectorUtils.getStandardObjectInspector(inspectors[i],
+					ObjectInspectorCopyOption.WRITABLE));
+		}
+
+		final Map<List<Object>, Object[]> groups = new LinkedHashMap<List<Object>, Object[]>();
+		input.scan(1, new RowHandler() {
+			public boolean row(Object row) throws HiveException {
+				if (where != null) {
+					Object condition = where.evaluate(row);
+					if (condition == null || !whereInspector.get(condition)) {
+						return true;
+					}
+				}
+				List<Object> key = Arrays.asList(Plan.copy(keys, keyInspectors, row));
+				Object[] group = groups.get(key);
+				if (group == null) {
+					group = new Object[width];
+					for (int i = 0; i < width; i++) {
+						group[i] = aggregates[i] != null ? aggregates[i].getNewAggregationBuffer()
+								: ObjectInspectorUtils.copyToStandardObject(values[i].evaluate(row), inspectors[i],
+										ObjectInspectorCopyOption.WRITABLE);
+					}
+					groups.put(key, group);
+				}
+				for (int i = 0; i < width; i++) {
+					if (aggregates[i] != null) {
+						Object[] parameters = new Object[arguments[i].length];
+						for (int j = 0; j < parameters.length; j++) {
+							parameters[j] = arguments[i][j].evaluate(row);
+						}
+						aggregates[i].iterate((AggregationBuffer) group[i], parameters);
+					}
+				}
+				return true;
+			}
+		});
+		if (groups.isEmpty() && query.groupBy.isEmpty()) {
+			// aggregates of no rows are one row
+			Object[] group = new Object[width];
+			for (int i = 0; i < width; i++) {
+				group[i] = aggregates[i] != null ? aggregates[i].getNewAggregationBuffer() : null;
+			}
+			groups.put(Collections.emptyList(), group);
+		}
+
+		List<Object> rows = new ArrayList<Object>(groups.size());
+		for (Object[] group : groups.values()) {
+			List<Object> row = new ArrayList<Object>(width);
+			for (int i = 0; i < width; i++) {
+				row.add(aggregates[i] == null ? group[i] : ObjectInspectorUtils.copyToStandardObject(
+						aggregates[i].terminate((AggregationBuffer) group[i]), inspectors[i],
+						ObjectInspectorCopyOption.WRITABLE));
+			}
+			rows.add(row);
+		}
+		return new Materialized(ObjectInspectorFactory.getStandardStructObjectInspector(query.names, outputs), rows);
+	}
+
+	/** A compiled query: scan, lateral view, filter, projection and sort. */
+	private static final class Plan {
+		final Rows input;
+		final StructObjectInspector output;
+		private final StructObjectInspector inputInspector;
+		private final GenericUDTF udtf;
+		private final ExprNodeEvaluator[] udtfArguments;
+		private final StructObjectInspector udtfInspector;
+		/** The number of input columns in a row, before the columns of the table function. */
+		private final int width;
+		private final StructObjectInspector row;
+		private final ExprNodeEvaluator where;
+		private final BooleanObjectInspector whereInspector;
+		private final ExprNodeEvaluator[] select;
+		private final ObjectInspector[] selectInspectors;
+		private final ExprNodeEvaluator[] sortBy;
+		private final ObjectInspector[] sortInspectors;
+		private final boolean[] descending;
+		private final long limit;
+
+		Plan(Query query, Rows input) throws Exception {
+			this.input = input;
+			this.inputInspector = input.inspector();
+			this.limit = query.limit;
+
+			List<String> names = new ArrayList<String>();
+			List<ObjectInspector> inspectors = new ArrayList<ObjectInspector>();
+			for (StructField field : inputInspector.getAllStructFieldRefs()) {
+				names.add(field.getFieldName().toLowerCase(Locale.ENGLISH));
+				inspectors.add(field.getFieldObjectInspector());
+			}
+			if (query.udtf != null) {
+				FunctionInfo info = FunctionRegistry.getFunctionInfo(query.udtf);
+				if (info == null || !info.isGenericUDTF()) {
+					throw new IllegalArgumentException("Invalid table function " + query.udtf);
+				}
+				udtf = info.getGenericUDTF();
+				udtfArguments = compile(query.udtfArguments, inputInspector);
+				ObjectInspector[] arguments = initialize(udtfArguments, inputInspector);
+				udtfInspector = udtf.initialize(arguments);
+				List<? extends StructField> fields = udtfInspector.getAllStructFieldRefs();
+				if (fields.size() != query.udtfColumns.size()) {
+					throw new IllegalArgumentException(query.udtf + " returns " + fields.size() + " columns");
+				}
+				if (query.udtfSelect) {
+					names.clear();
+					inspectors.clear();
+				}
+				for (int i = 0; i < fields.size(); i++) {
+					names.add(query.udtfColumns.get(i));
+					inspectors.add(fields.get(i).getFieldObjectInspector());
+				}
+			} else {
+				udtf = null;
+				udtfArguments = null;
+				udtfInspector = null;
+			}
+			width = names.size() - query.udtfColumns.size();
+			row = udtf == null ? inputInspector : ObjectInspectorFactory.getStandardStructObjectInspector(names,
+					inspectors);
+
+			if (query.where != null) {
+				where = compile(Collections.singletonList(query.where), row)[0];
+				whereInspector = (BooleanObjectInspector) where.initialize(row);
+			} else {
+				where = null;
+				whereInspector = null;
+			}
+			select = compile(query.select, row);
+			selectInspectors = initialize(select, row);
+			sortBy = compile(query.sortBy, row);
+			sortInspectors = initialize(sortBy, row);
+			descending = new boolean[sortBy.length];
+			for (int i = 0; i < descending.length; i++) {
+				descending[i] = query.descending.get(i);
+			}
+
+			StructObjectInspector selected = ObjectInspectorFactory.getStandardStructObjectInspector(query.names,
+					Arrays.asList(selectInspectors));
+			// sorted rows are copied before they are passed on
+			output = sortBy.length == 0 ? selected : standard(selected);
+		}
+
+		private static ExprNodeEvaluator[] compile(List<Node> nodes, StructObjectInspector inspector)
+				throws HiveException {
+			Map<String, TypeInfo> scope = new HashMap<String, TypeInfo>();
+			for (StructField field : inspector.getAllStructFieldRefs()) {
+				scope.put(field.getFieldName().toLowerCase(Locale.ENGLISH),
+						TypeInfoUtils.getTypeInfoFromObjectInspector(field.getFieldObjectInspector()));
+			}
+			ExprNodeEvaluator[] evaluators = new ExprNodeEvaluator[nodes.size()];
+			for (int i = 0; i < evaluators.length; i++) {
+				evaluators[i] = ExprNodeEvaluatorFactory.get(nodes.get(i).compile(scope));
+			}
+			return evaluators;
+		}
+
+		private static ObjectInspector[] initialize(ExprNodeEvaluator[] evaluators, ObjectInspector row)
+				throws HiveException {
+			ObjectInspector[] inspectors = new ObjectInspector[evaluators.length];
+			for (int i = 0; i < inspectors.length; i++) {
+				inspectors[i] = evaluators[i].initialize(row);
+			}
+			return inspectors;
+		}
+
+		private static StructObjectInspector standard(StructObjectInspector inspector) {
+			return (StructObjectInspector) ObjectInspectorUtils.getStandardObjectInspector(inspector,
+					ObjectInspectorCopyOption.WRITABLE);
+		}
+
+		/** Runs the query once and keeps its rows. */
+		Rows materialize() throws Exception {
+			final List<Object> rows = new ArrayList<Object>();
+			run(1, new RowHandler() {
+				public boolean row(Object values) {
+					rows.add(ObjectInspectorUtils.copyToStandardObject(values, output,
+							ObjectInspectorCopyOption.WRITABLE));
+					return true;
+				}
+			});
+			return new Materialized(standard(output), rows);
+		}
+
+		/**
+		 * Runs the query over the input, repeated the given times, and passes the
+		 * selected values of every row to the handler as one reused Object[].
+		 */
+		void run(int repeat, final RowHandler handler) throws Exception {
+			final Object[] values = new Object[select.length];
+			final long[] count = new long[1];
+			final boolean[] stopped = new boolean[1];
+			final List<Object[][]> sorted = sortBy.length == 0 ? null : new ArrayList<Object[][]>();
+
+			final RowHandler project = new RowHandler() {
+				public boolean row(Object joined) throws HiveException {
+					if (where != null) {
+						Object condition = where.evaluate(joined);
+						if (condition == null || !whereInspector.get(condition)) {
+							return true;
+						}
+					}
+					if (sorted != null) {
+						sorted.add(new Object[][] { copy(sortBy, sortInspectors, joined),
+								copy(select, selectInspectors, joined) });
+						return true;
+					}
+					for (int i = 0; i < select.length; i++) {
+						values[i] = select[i].evaluate(joined);
+					}
+					if (!handler.row(values) || (limit >= 0 && ++count[0] >= limit)) {
+						stopped[0] = true;
+					}
+					return !stopped[0];
+				}
+			};
+
+			if (udtf == null) {
+				input.scan(repeat, project);
+			} else {
+				final List<Object> joined = new ArrayList<Object>(Collections.nCopies(
+						row.getAllStructFieldRefs().size(), null));
+				udtf.setCollector(new Collector() {
+					public void collect(Object udtfRow) throws HiveException {
+						if (stopped[0]) {
+							return;
+						}
+						List<Object> fields = udtfInspector.getStructFieldsDataAsList(udtfRow);
+						for (int i = 0; i < fields.size(); i++) {
+							joined.set(width + i, fields.get(i));
+						}
+						project.row(joined);
+					}
+				});
+				final Object[] arguments = new Object[udtfArguments.length];
+				input.scan(repeat, new RowHandler() {
+					public boolean row(Object inputRow) throws HiveException {
+						List<Object> fields = inputInspector.getStructFieldsDataAsList(inputRow);
+						for (int i = 0; i < width; i++) {
+							joined.set(i, fields.get(i));
+						}
+						for (int i = 0; i < arguments.length; i++) {
+							arguments[i] = udtfArguments[i].evaluate(inputRow);
+						}
+						udtf.process(arguments);
+						return !stopped[0];
+					}
+				});
+				udtf.close();
+			}
+
+			if (sorted == null) {
+				return;
+			}
+			final ObjectInspector[] keys = new ObjectInspector[sortInspectors.length];
+			for (int i = 0; i < keys.length; i++) {
+				keys[i] = ObjectInspectorUtils.getStandardObjectInspector(sortInspectors[i],
+						ObjectInspectorCopyOption.WRITABLE);
+			}
+			Collections.sort(sorted, new Comparator<Object[][]>() {
+				public int compare(Object[][] a, Object[][] b) {
+					for (int i = 0; i < keys.length; i++) {
+						int c = ObjectInspectorUtils.compare(a[0][i], keys[i], b[0][i], keys[i]);
+						if (c != 0) {
+							return descending[i] ? -c : c;
+						}
+					}
+					return 0;
+				}
+			});
+			for (Object[][] entry : sorted) {
+				if (!handler.row(entry[1]) || (limit >= 0 && ++count[0] >= limit)) {
+					break;
+				}
+			}
+		}
+
+		private static Object[] copy(ExprNodeEvaluator[] evaluators, ObjectInspector[] inspectors, Object row)
+				throws HiveException {
+			Object[] values = new Object[evaluators.length];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = ObjectInspectorUtils.copyToStandardObject(evaluators[i].evaluate(row), inspectors[i],
+						ObjectInspectorCopyOption.WRITABLE);
+			}
+			return values;
+		}
+	}
+
+	/** Recursive descent parser of a SELECT statement. */
+	private static final class Parser {
+		private static final Pattern TOKEN = Pattern.compile("\\s*(?:([A-Za-z_][A-Za-z0-9_]*)"
+				+ "|(\\d+(?:\\.\\d*)?(?:[eE][-+]?\\d+)?[LlSsYy]?|\\.\\d+(?:[eE][-+]?\\d+)?)" + "|" + QUOTED
+				+ "|(<=|>=|<>|!=|==|[-+*/%(),.<>=!;\\[\\]]))");
+		private static final List<String> KEYWORDS = Arrays.asList("from", "where", "lateral", "distribute",
+				"sort", "order", "cluster", "limit", "as", "and", "or", "not", "is", "select", "join", "inner", "on",
+				"group");
+
+		private final String sql;
+		private final List<String> tokens = new ArrayList<String>();
+		private int position;
+
+		Parser(String sql) {
+			this.sql = sql;
+			Matcher m = TOKEN.matcher(sql);
+			int end = 0;
+			while (end < sql.length() && m.find(end) && m.start() == end) {
+				tokens.add(m.group().trim());
+				end = m.end();
+				while (end < sql.length() && Character.isWhitespace(sql.charAt(end))) {
+					end++;
+				}
+			}
+			if (end < sql.length()) {
+				throw new IllegalArgumentException("Can not parse '" + sql.substring(end) + "' in " + sql);
+			}
+		}
+
+		Query query() {
+			Query query = parseQuery();
+			if (position < tokens.size()) {
+				throw error();
+			}
+			return query;
+		}
+
+		private Query parseQuery() {
+			Query query = new Query();
+			expect("select");
+			do {
+				Node node = expression();
+				String name = node.name();
+				if (accept("as")) {
+					if (query.select.isEmpty() && node.function != null && accept("(")) {
+						selectTableFunction(query, node);
+						break;
+					}
+					name = identifier();
+				} else if (isIdentifier(peek())) {
+					name = identifier();
+				}
+				query.select.add(node);
+				query.names.add(name == null ? "_c" + query.names.size() : name);
+			} while (accept(","));
+
+			expect("from");
+			source(query);
+			if (accept("inner")) {
+				expect("join");
+				query.join = new Query();
+			} else if (accept("join")) {
+				query.join = new Query();
+			}
+			if (query.join != null) {
+				source(query.join);
+				expect("on");
+				query.joinOn = expression();
+			}
+			if (accept("lateral")) {
+				expect("view");
+				query.udtf = identifier().toLowerCase(Locale.ENGLISH);
+				query.udtfArguments = arguments();
+				identifier();
+				expect("as");
+				do {
+					query.udtfColumns.add(identifier());
+				} while (accept(","));
+			}
+			if (accept("where")) {
+				query.where = expression();
+			}
+			if (accept("group")) {
+				expect("by");
+				do {
+					query.groupBy.add(expression());
+				} while (accept(","));
+			}
+			if (accept("distribute") || accept("cluster")) {
+				expect("by");
+				// one reducer gets every row
+				do {
+					expression();
+				} while (accept(","));
+			}
+			if (accept("sort") || accept("order")) {
+				expect("by");
+				do {
+					query.sortBy.add(expression());
+					boolean descending = accept("desc");
+					if (!descending) {
+						accept("asc");
+					}
+					query.descending.add(descending);
+				} while (accept(","));
+			}
+			if (accept("limit")) {
+				query.limit = Long.parseLong(next());
+			}
+			return query;
+		}
+
+		/** Parses the columns of <code>SELECT udtf(expr, ...) AS (col, ...)</code>. */
+		private void selectTableFunction(Query query, Node call) {
+			query.udtf = call.function;
+			query.udtfArguments = call.children;
+			query.udtfSelect = true;
+			do {
+				String column = identifier();
+				query.udtfColumns.add(column);
+				query.select.add(Node.column(column));
+				query.names.add(column);
+			} while (accept(","));
+			expect(")");
+		}
+
+		/** Parses a table or a subquery, and its alias, as the input of the query. */
+		private void source(Query query) {
+			if (accept("(")) {
+				query.subquery = parseQuery();
+				expect(")");
+				identifier();
+			} else {
+				query.table = identifier();
+				if (isIdentifier(peek())) {
+					identifier();
+				}
+			}
+		}
+
+		/** @return the arguments of a call, none for <code>(*)</code>. */
+		private List<Node> arguments() {
+			expect("(");
+			List<Node> arguments = new ArrayList<Node>();
+			if (accept("*")) {
+				expect(")");
+			} else if (!accept(")")) {
+				do {
+					arguments.add(expression());
+				} while (accept(","));
+				expect(")");
+			}
+			return arguments;
+		}
+
+		private Node expression() {
+			Node node = and();
+			while (accept("or")) {
+				node = Node.call("or", node, and());
+			}
+			return node;
+		}
+
+		private Node and() {
+			Node node = not();
+			while (accept("and")) {
+				node = Node.call("and", node, not());
+			}
+			return node;
+		}
+
+		private Node not() {
+			if (accept("not") || accept("!")) {
+				return Node.call("not", not());
+			}
+			return comparison();
+		}
+
+		private Node comparison() {
+			Node node = additive();
+			String op = peek();
+			if (op != null && (op.equals("=") || op.equals("==") || op.equals("<>") || op.equals("!=")
+					|| op.equals("<") || op.equals("<=") || op.equals(">") || op.equals(">="))) {
+				next();
+				return Node.call(op.equals("==") ? "=" : op, node, additive());
+			}
+			if (accept("is")) {
+				String function = accept("not") ? "isnotnull" : "isnull";
+				expect("null");
+				return Node.call(function, node);
+			}
+			return node;
+		}
+
+		private Node additive() {
+			Node node = multiplicative();
+			while ("+".equals(peek()) || "-".equals(peek())) {
+				node = Node.call(next(), node, multiplicative());
+			}
+			return node;
+		}
+
+		private Node multiplicative() {
+			Node node = unary();
+			while ("*".equals(peek()) || "/".equals(peek()) || "%".equals(peek())) {
+				node = Node.call(next(), node, unary());
+			}
+			return node;
+		}
+
+		private Node unary() {
+			if (accept("-")) {
+				String token = peek();
+				if (token != null && (Character.isDigit(token.charAt(0)) || token.charAt(0) == '.')) {
+					return number("-" + next());
+				}
+				return Node.call("negative", unary());
+			}
+			if (accept("+")) {
+				return unary();
+			}
+			return primary();
+		}
+
+		private Node primary() {
+			String token = next();
+			char c = token.charAt(0);
+			if (token.equals("(")) {
+				Node node = expression();
+				expect(")");
+				return node;
+			}
+			if (c == '\'' || c == '"') {
+				return Node.constant(new ExprNodeConstantDesc(TypeInfoFactory.stringTypeInfo,
+						BaseSemanticAnalyzer.unescapeSQLString(token)));
+			}
+			if (Character.isDigit(c) || c == '.') {
+				return number(token);
+			}
+			if (!isIdentifier(token)) {
+				throw error();
+			}
+			String word = token.toLowerCase(Locale.ENGLISH);
+			if (word.equals("null")) {
+				return Node.constant(new ExprNodeNullDesc());
+			}
+			if (word.equals("true") || word.equals("false")) {
+				return Node.constant(new ExprNodeConstantDesc(TypeInfoFactory.booleanTypeInfo,
+						Boolean.valueOf(word)));
+			}
+			if (word.equals("cast")) {
+				expect("(");
+				Node value = expression();
+				expect("as");
+				String type = identifier().toLowerCase(Locale.ENGLISH);
+				expect(")");
+				return Node.call(type, value);
+			}
+			if ("(".equals(peek())) {
+				return Node.call(word, arguments());
+			}
+			if (accept(".")) {
+				return Node.column(identifier());
+			}
+			return Node.column(word);
+		}
+
+		/** Types a numeric literal as Hive does: int, else bigint, else double. */
+		private static Node number(String token) {
+			char suffix = Character.toUpperCase(token.charAt(token.length() - 1));
+			String digits = token.substring(0, token.length() - 1);
+			if (suffix == 'L') {
+				return Node.constant(new ExprNodeConstantDesc(TypeInfoFactory.longTypeInfo, Long.valueOf(digits)));
+			} else if (suffix == 'S') {
+				return Node.constant(new ExprNodeConstantDesc(TypeInfoFactory.shortTypeInfo, Short.valueOf(digits)));
+			} else if (suffix == 'Y') {
+				return Node.constant(new ExprNodeConstantDesc(TypeInfoFactory.byteTypeInfo, Byte.valueOf(digits)));
+			}
+			try {
+				return Node.constant(new ExprNodeConstantDesc(TypeInfoFactory.intTypeInfo, Integer.valueOf(token)));
+			} catch (NumberFormatException e) {
+				// wider type below
+			}
+			try {
+				return Node.constant(new ExprNodeConstantDesc(TypeInfoFactory.longTypeInfo, Long.valueOf(token)));
+			} catch (NumberFormatException e) {
+				// wider type below
+			}
+			return Node.constant(new ExprNodeConstantDesc(TypeInfoFactory.doubleTypeInfo, Double.valueOf(token)));
+		}
+
+		private static boolean isIdentifier(String token) {
+			return token != null && (Character.isLetter(token.charAt(0)) || token.charAt(0) == '_')
+					&& !KEYWORDS.contains(token.toLowerCase(Locale.ENGLISH));
+		}
+
+		private String identifier() {
+			String token = next();
+			if (!isIdentifier(token)) {
+				throw error();
+			}
+			return token.toLowerCase(Locale.ENGLISH);
+		}
+
+		private String peek() {
+			return position < tokens.size() ? tokens.get(position) : null;
+		}
+
+		private String next() {
+			if (position == tokens.size()) {
+				throw new IllegalArgumentException("Unexpected end of " + sql);
+			}
+			return tokens.get(position++);
+		}
+
+		private boolean accept(String token) {
+			if (token.equalsIgnoreCase(peek())) {
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		private void expect(String token) {
+			if (!accept(token)) {
+				throw error();
+			}
+		}
+
+		private IllegalArgumentException error() {
+			return new IllegalArgumentException("Unexpected '" + peek() + "' at token " + position + " of " + sql);
+		}
+	}
+}
@@ -0,0 +1,73 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nexr.platform.hive.udf;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Runs every <code>@HivePdkUnitTests</code> case in process with
+ * {@link PdkHarness}, so <code>mvn test</code> checks the functions without a
+ * Hive installation.
+ */
+@RunWith(Parameterized.class)
+public class PdkHarnessTest {
+
+	static final File ROOT = new File(System.getProperty("basedir", "."));
+
+	private final PdkHarness.Case test;
+
+	public PdkHarnessTest(PdkHarness.Case test) {
+		this.test = test;
+	}
+
+	@Parameters
+	public static Collection<Object[]> cases() {
+		List<Object[]> cases = new ArrayList<Object[]>();
+		for (PdkHarness.Case test : PdkHarness.cases()) {
+			cases.add(new Object[] { test });
+		}
+		return cases;
+	}
+
+	@Test
+	public void run() throws Exception {
+		PdkHarness harness = new PdkHarness(ROOT);
+		harness.execute(new File(ROOT, "test/setup.sql"));
+		assertEquals(test + ": " + test.query, trim(test.result), trim(harness.run(test)));
+	}
+
+	private static String trim(String result) {
+		int end = result.length();
+		while (end > 0 && result.charAt(end - 1) == '\n') {
+			end--;
+		}
+		return result.substring(0, end);
+	}
+}